@@ -1,6 +1,10 @@
 package com.adidas.chriniko.routesservice.configuration;
 
 import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+// Note: scheduling runs the background purge of soft deleted routes, see: RoutePurgeCompactor.
+@EnableScheduling
 
 @Configuration
 public class AppConfiguration {
@@ -0,0 +1,74 @@
+package com.adidas.chriniko.routesservice.configuration;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.InstrumentedExecutorService;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Dedicated scheduler for blocking jdbc (jpa) work, sized to the connection pool and with a bounded queue,
+ * so database stalls do not starve the cpu bound parallel scheduler.
+ * <p>
+ * When the queue is full work is rejected (fast) and surfaced as HTTP 503.
+ */
+@Log4j2
+
+@Configuration
+public class JdbcSchedulerConfiguration {
+
+    private static final String NAME = "jdbc-scheduler";
+
+    @Value("${jdbc-scheduler.pool-size}")
+    private int poolSize;
+
+    @Value("${jdbc-scheduler.queue-capacity}")
+    private int queueCapacity;
+
+    @Bean(destroyMethod = "dispose")
+    public Scheduler jdbcScheduler(MetricRegistry metricRegistry) {
+        log.debug("jdbc scheduler, poolSize: {}, queueCapacity: {}", poolSize, queueCapacity);
+
+        final ArrayBlockingQueue<Runnable> queue = new ArrayBlockingQueue<>(queueCapacity);
+        final Meter rejected = metricRegistry.meter(MetricRegistry.name(NAME, "rejected"));
+
+        final ThreadPoolExecutor executor = new ThreadPoolExecutor(
+                poolSize, poolSize,
+                0L, TimeUnit.MILLISECONDS,
+                queue,
+                new ThreadFactory() {
+                    private final AtomicInteger id = new AtomicInteger(0);
+
+                    @Override
+                    public Thread newThread(Runnable runnable) {
+                        Thread t = new Thread(runnable);
+                        t.setName(NAME + "-" + id.incrementAndGet());
+                        t.setDaemon(true);
+                        return t;
+                    }
+                },
+                (runnable, pool) -> {
+                    rejected.mark();
+                    throw new RejectedExecutionException(NAME + " is saturated, queue size: " + pool.getQueue().size());
+                }
+        );
+
+        metricRegistry.register(MetricRegistry.name(NAME, "queue-depth"), (Gauge<Integer>) queue::size);
+        metricRegistry.register(MetricRegistry.name(NAME, "active"), (Gauge<Integer>) executor::getActiveCount);
+
+        // Note: metrics for wait time (jdbc-scheduler.idle) and execution time (jdbc-scheduler.duration).
+        return Schedulers.fromExecutorService(new InstrumentedExecutorService(executor, metricRegistry, NAME));
+    }
+}
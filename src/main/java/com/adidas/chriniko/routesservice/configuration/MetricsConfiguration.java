@@ -1,10 +1,16 @@
 package com.adidas.chriniko.routesservice.configuration;
 
+import com.adidas.chriniko.routesservice.init.RouteGenerator;
+import com.adidas.chriniko.routesservice.serializer.CompressingRedisSerializer;
 import com.adidas.chriniko.routesservice.service.CacheService;
+import com.adidas.chriniko.routesservice.service.RoutePurgeCompactor;
+import com.adidas.chriniko.routesservice.service.RouteService;
+import com.codahale.metrics.Histogram;
 import com.codahale.metrics.Meter;
 import com.codahale.metrics.Metric;
 import com.codahale.metrics.MetricRegistry;
 import com.codahale.metrics.MetricSet;
+import com.codahale.metrics.Timer;
 import com.codahale.metrics.jmx.JmxReporter;
 import com.codahale.metrics.jvm.FileDescriptorRatioGauge;
 import com.codahale.metrics.jvm.GarbageCollectorMetricSet;
@@ -49,6 +55,128 @@ public class MetricsConfiguration {
         return metricRegistry.meter(MetricRegistry.name(CacheService.class, "cache-miss-find-by-route-id"));
     }
 
+    @Bean
+    public Meter nearCacheHitFindByCityInfo(MetricRegistry metricRegistry) {
+        return metricRegistry.meter(MetricRegistry.name(CacheService.class, "near-cache-hit-find-by-city-info"));
+    }
+
+    @Bean
+    public Meter nearCacheMissFindByCityInfo(MetricRegistry metricRegistry) {
+        return metricRegistry.meter(MetricRegistry.name(CacheService.class, "near-cache-miss-find-by-city-info"));
+    }
+
+    @Bean
+    public Meter nearCacheHitFindByRouteId(MetricRegistry metricRegistry) {
+        return metricRegistry.meter(MetricRegistry.name(CacheService.class, "near-cache-hit-find-by-route-id"));
+    }
+
+    @Bean
+    public Meter nearCacheMissFindByRouteId(MetricRegistry metricRegistry) {
+        return metricRegistry.meter(MetricRegistry.name(CacheService.class, "near-cache-miss-find-by-route-id"));
+    }
+
+    @Bean
+    public Timer cacheLatencyFindByCityInfo(MetricRegistry metricRegistry) {
+        return metricRegistry.timer(MetricRegistry.name(CacheService.class, "cache-latency-find-by-city-info"));
+    }
+
+    @Bean
+    public Timer cacheLatencyFindByRouteId(MetricRegistry metricRegistry) {
+        return metricRegistry.timer(MetricRegistry.name(CacheService.class, "cache-latency-find-by-route-id"));
+    }
+
+    @Bean
+    public Meter staleHitFindByCityInfo(MetricRegistry metricRegistry) {
+        return metricRegistry.meter(MetricRegistry.name(CacheService.class, "stale-hit-find-by-city-info"));
+    }
+
+    @Bean
+    public Meter staleHitFindByRouteId(MetricRegistry metricRegistry) {
+        return metricRegistry.meter(MetricRegistry.name(CacheService.class, "stale-hit-find-by-route-id"));
+    }
+
+    @Bean
+    public Meter earlyRefreshFindByCityInfo(MetricRegistry metricRegistry) {
+        return metricRegistry.meter(MetricRegistry.name(CacheService.class, "early-refresh-find-by-city-info"));
+    }
+
+    @Bean
+    public Meter earlyRefreshFindByRouteId(MetricRegistry metricRegistry) {
+        return metricRegistry.meter(MetricRegistry.name(CacheService.class, "early-refresh-find-by-route-id"));
+    }
+
+    @Bean
+    public Meter cacheHitFindPageByCityInfo(MetricRegistry metricRegistry) {
+        return metricRegistry.meter(MetricRegistry.name(CacheService.class, "cache-hit-find-page-by-city-info"));
+    }
+
+    @Bean
+    public Meter cacheMissFindPageByCityInfo(MetricRegistry metricRegistry) {
+        return metricRegistry.meter(MetricRegistry.name(CacheService.class, "cache-miss-find-page-by-city-info"));
+    }
+
+    @Bean
+    public Meter cacheHitFindByDestiny(MetricRegistry metricRegistry) {
+        return metricRegistry.meter(MetricRegistry.name(CacheService.class, "cache-hit-find-by-destiny"));
+    }
+
+    @Bean
+    public Meter cacheMissFindByDestiny(MetricRegistry metricRegistry) {
+        return metricRegistry.meter(MetricRegistry.name(CacheService.class, "cache-miss-find-by-destiny"));
+    }
+
+    @Bean
+    public Timer cacheLatencyFindByDestiny(MetricRegistry metricRegistry) {
+        return metricRegistry.timer(MetricRegistry.name(CacheService.class, "cache-latency-find-by-destiny"));
+    }
+
+    // Note: db load and cache fill, it is the recompute cost (delta) of the early refresh.
+    @Bean
+    public Timer loadFindByCityInfo(MetricRegistry metricRegistry) {
+        return metricRegistry.timer(MetricRegistry.name(RouteService.class, "load-find-by-city-info"));
+    }
+
+    @Bean
+    public Timer loadFindByRouteId(MetricRegistry metricRegistry) {
+        return metricRegistry.timer(MetricRegistry.name(RouteService.class, "load-find-by-route-id"));
+    }
+
+    @Bean
+    public Meter coalescedFindByCityInfo(MetricRegistry metricRegistry) {
+        return metricRegistry.meter(MetricRegistry.name(RouteService.class, "coalesced-find-by-city-info"));
+    }
+
+    @Bean
+    public Meter coalescedFindByRouteId(MetricRegistry metricRegistry) {
+        return metricRegistry.meter(MetricRegistry.name(RouteService.class, "coalesced-find-by-route-id"));
+    }
+
+    @Bean
+    public Timer cacheCompressionTime(MetricRegistry metricRegistry) {
+        return metricRegistry.timer(MetricRegistry.name(CompressingRedisSerializer.class, "compression-time"));
+    }
+
+    @Bean
+    public Timer cacheDecompressionTime(MetricRegistry metricRegistry) {
+        return metricRegistry.timer(MetricRegistry.name(CompressingRedisSerializer.class, "decompression-time"));
+    }
+
+    @Bean
+    public Meter purgedRoutes(MetricRegistry metricRegistry) {
+        return metricRegistry.meter(MetricRegistry.name(RoutePurgeCompactor.class, "purged-routes"));
+    }
+
+    @Bean
+    public Meter seededRoutes(MetricRegistry metricRegistry) {
+        return metricRegistry.meter(MetricRegistry.name(RouteGenerator.class, "seeded-routes"));
+    }
+
+    // Note: compressed size as percentage of the uncompressed size.
+    @Bean
+    public Histogram cacheCompressionRatio(MetricRegistry metricRegistry) {
+        return metricRegistry.histogram(MetricRegistry.name(CompressingRedisSerializer.class, "compression-ratio-percent"));
+    }
+
     @Bean(destroyMethod = "stop")
     public JmxReporter graphiteReporter(MetricRegistry metricRegistry) {
 
@@ -0,0 +1,45 @@
+package com.adidas.chriniko.routesservice.configuration;
+
+import com.adidas.chriniko.routesservice.dto.CityInfo;
+import com.adidas.chriniko.routesservice.dto.RouteInfo;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * In-process (near) cache tier which sits in front of redis.
+ * <p>
+ * Caffeine uses W-TinyLFU eviction, so hot origin cities survive bursts of one-off lookups.
+ */
+@Configuration
+public class NearCacheConfiguration {
+
+    @Value("${cache-service.near-cache.maximum-size}")
+    private long maximumSize;
+
+    @Value("${cache-service.near-cache.expire-after-write-seconds}")
+    private long expireAfterWriteSeconds;
+
+    // Note: CityInfo ---> [RouteInfo]
+    @Bean
+    public Cache<CityInfo, List<RouteInfo>> nearCacheCityInfoToRouteInfo() {
+        return Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(expireAfterWriteSeconds, TimeUnit.SECONDS)
+                .build();
+    }
+
+    // Note: routeId: String ---> RouteInfo
+    @Bean
+    public Cache<String, RouteInfo> nearCacheRouteIdToRouteInfo() {
+        return Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(expireAfterWriteSeconds, TimeUnit.SECONDS)
+                .build();
+    }
+}
@@ -2,13 +2,39 @@ package com.adidas.chriniko.routesservice.configuration;
 
 import com.adidas.chriniko.routesservice.dto.CityInfo;
 import com.adidas.chriniko.routesservice.dto.RouteInfo;
+import com.adidas.chriniko.routesservice.serializer.BinaryListRouteInfoRedisSerializer;
+import com.adidas.chriniko.routesservice.serializer.BinaryRouteInfoRedisSerializer;
+import com.adidas.chriniko.routesservice.serializer.CacheKeyNamespace;
 import com.adidas.chriniko.routesservice.serializer.CityInfoRedisSerializer;
+import com.adidas.chriniko.routesservice.serializer.CompressingRedisSerializer;
 import com.adidas.chriniko.routesservice.serializer.ListRouteInfoRedisSerializer;
+import com.adidas.chriniko.routesservice.serializer.NamespacedRedisSerializer;
 import com.adidas.chriniko.routesservice.serializer.RouteInfoRedisSerializer;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Timer;
+import io.lettuce.core.resource.ClientResources;
+import org.apache.commons.pool2.impl.GenericObjectPoolConfig;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.data.redis.RedisProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.scripting.support.ResourceScriptSource;
+import org.springframework.data.redis.connection.RedisPassword;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.jedis.JedisClientConfiguration;
 import org.springframework.data.redis.connection.jedis.JedisConnectionFactory;
+import org.springframework.data.redis.connection.lettuce.LettuceClientConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.serializer.RedisSerializationContext;
+import org.springframework.data.redis.serializer.RedisSerializer;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
 
 import java.util.List;
@@ -16,36 +42,313 @@ import java.util.List;
 @Configuration
 public class RedisConfiguration {
 
-    // Note: CityInfo ---> [RouteInfo]
+    // Note: keys are namespaced per cache generation, eg: routes-cache:v3:city:{cityInfo} and routes-cache:v3:route:{routeId}
+    private static final String CITY_KEY_TYPE = "city";
+    private static final String ROUTE_KEY_TYPE = "route";
+    private static final String PAGE_KEY_TYPE = "page";
+    private static final String INBOUND_KEY_TYPE = "inbound";
+    private static final String DEPARTURES_KEY_TYPE = "departures";
+
+    private static final String BINARY_VALUE_FORMAT = "binary";
+
+    // Note: both clients are on the classpath, so we define the connection factories ourselves (jedis is the default one).
+    @Bean
+    @Primary
+    public JedisConnectionFactory jedisConnectionFactory(RedisProperties redisProperties) {
+
+        final JedisClientConfiguration.JedisClientConfigurationBuilder builder = JedisClientConfiguration.builder();
+
+        if (redisProperties.getTimeout() != null) {
+            builder.readTimeout(redisProperties.getTimeout()).connectTimeout(redisProperties.getTimeout());
+        }
+
+        RedisProperties.Pool pool = redisProperties.getJedis().getPool();
+        if (pool != null) {
+            GenericObjectPoolConfig poolConfig = new GenericObjectPoolConfig();
+            poolConfig.setMaxTotal(pool.getMaxActive());
+            poolConfig.setMaxIdle(pool.getMaxIdle());
+            poolConfig.setMinIdle(pool.getMinIdle());
+            if (pool.getMaxWait() != null) {
+                poolConfig.setMaxWaitMillis(pool.getMaxWait().toMillis());
+            }
+            builder.usePooling().poolConfig(poolConfig);
+        }
+
+        return new JedisConnectionFactory(redisStandaloneConfiguration(redisProperties), builder.build());
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "cache-service.backend", havingValue = "reactive")
+    public LettuceConnectionFactory lettuceConnectionFactory(RedisProperties redisProperties,
+                                                             ClientResources clientResources) {
+
+        final LettuceClientConfiguration.LettuceClientConfigurationBuilder builder = LettuceClientConfiguration.builder()
+                .clientResources(clientResources);
+
+        if (redisProperties.getTimeout() != null) {
+            builder.commandTimeout(redisProperties.getTimeout());
+        }
+
+        return new LettuceConnectionFactory(redisStandaloneConfiguration(redisProperties), builder.build());
+    }
+
+    // Note: json (jackson) or binary (see: RouteInfoBinaryCodec, also reads json), see property: cache-service.value-format
+    @Bean
+    public RedisSerializer<RouteInfo> routeInfoValueSerializer(
+            @Value("${cache-service.value-format}") String valueFormat,
+            RouteInfoRedisSerializer routeInfoRedisSerializer,
+            BinaryRouteInfoRedisSerializer binaryRouteInfoRedisSerializer) {
+        return BINARY_VALUE_FORMAT.equals(valueFormat) ? binaryRouteInfoRedisSerializer : routeInfoRedisSerializer;
+    }
+
+    // Note: list values can get large, so they are deflated above a threshold, see properties: cache-service.compression.*
+    @Bean
+    public RedisSerializer<List<RouteInfo>> listRouteInfoValueSerializer(
+            @Value("${cache-service.value-format}") String valueFormat,
+            @Value("${cache-service.compression.enabled}") boolean compressionEnabled,
+            @Value("${cache-service.compression.threshold-bytes}") int compressionThresholdBytes,
+            @Value("${cache-service.compression.level}") int compressionLevel,
+            ListRouteInfoRedisSerializer listRouteInfoRedisSerializer,
+            BinaryListRouteInfoRedisSerializer binaryListRouteInfoRedisSerializer,
+            Timer cacheCompressionTime,
+            Timer cacheDecompressionTime,
+            Histogram cacheCompressionRatio) {
+
+        final RedisSerializer<List<RouteInfo>> serializer
+                = BINARY_VALUE_FORMAT.equals(valueFormat) ? binaryListRouteInfoRedisSerializer : listRouteInfoRedisSerializer;
+
+        if (!compressionEnabled) {
+            return serializer;
+        }
+
+        return new CompressingRedisSerializer<>(
+                serializer,
+                compressionThresholdBytes,
+                compressionLevel,
+                cacheCompressionTime,
+                cacheDecompressionTime,
+                cacheCompressionRatio
+        );
+    }
+
+    // Note: CityInfo ---> [RouteInfo], stored as a redis hash: routeId ---> RouteInfo
     @Bean
     public RedisTemplate<CityInfo, List<RouteInfo>> redisTemplateCityInfoToRouteInfo(
             JedisConnectionFactory jedisConnectionFactory,
+            CacheKeyNamespace cacheKeyNamespace,
             CityInfoRedisSerializer cityInfoRedisSerializer,
-            ListRouteInfoRedisSerializer listRouteInfoRedisSerializer) {
+            @Qualifier("listRouteInfoValueSerializer") RedisSerializer<List<RouteInfo>> listRouteInfoValueSerializer,
+            @Qualifier("routeInfoValueSerializer") RedisSerializer<RouteInfo> routeInfoValueSerializer) {
 
         final RedisTemplate<CityInfo, List<RouteInfo>> redisTemplate = new RedisTemplate<>();
 
-        redisTemplate.setKeySerializer(cityInfoRedisSerializer);
-        redisTemplate.setValueSerializer(listRouteInfoRedisSerializer);
+        redisTemplate.setKeySerializer(new NamespacedRedisSerializer<>(cacheKeyNamespace, CITY_KEY_TYPE, cityInfoRedisSerializer));
+        redisTemplate.setValueSerializer(listRouteInfoValueSerializer);
+        redisTemplate.setHashKeySerializer(new StringRedisSerializer());
+        redisTemplate.setHashValueSerializer(routeInfoValueSerializer);
 
         redisTemplate.setConnectionFactory(jedisConnectionFactory);
 
         return redisTemplate;
     }
 
+    // Note: CityInfo ---> pages, stored as a redis hash: {limit}:{cursor} ---> [RouteInfo], so all pages of a city go with one DEL
+    @Bean
+    public RedisTemplate<CityInfo, List<RouteInfo>> redisTemplateCityInfoToRoutePages(
+            JedisConnectionFactory jedisConnectionFactory,
+            CacheKeyNamespace cacheKeyNamespace,
+            CityInfoRedisSerializer cityInfoRedisSerializer,
+            @Qualifier("listRouteInfoValueSerializer") RedisSerializer<List<RouteInfo>> listRouteInfoValueSerializer) {
+
+        final RedisTemplate<CityInfo, List<RouteInfo>> redisTemplate = new RedisTemplate<>();
+
+        redisTemplate.setKeySerializer(new NamespacedRedisSerializer<>(cacheKeyNamespace, PAGE_KEY_TYPE, cityInfoRedisSerializer));
+        redisTemplate.setValueSerializer(listRouteInfoValueSerializer);
+        redisTemplate.setHashKeySerializer(new StringRedisSerializer());
+        redisTemplate.setHashValueSerializer(listRouteInfoValueSerializer);
+
+        redisTemplate.setConnectionFactory(jedisConnectionFactory);
+
+        return redisTemplate;
+    }
+
+    // Note: destination CityInfo ---> [RouteInfo] (inbound routes), stored as a simple value
+    @Bean
+    public RedisTemplate<CityInfo, List<RouteInfo>> redisTemplateCityInfoToInboundRoutes(
+            JedisConnectionFactory jedisConnectionFactory,
+            CacheKeyNamespace cacheKeyNamespace,
+            CityInfoRedisSerializer cityInfoRedisSerializer,
+            @Qualifier("listRouteInfoValueSerializer") RedisSerializer<List<RouteInfo>> listRouteInfoValueSerializer) {
+
+        final RedisTemplate<CityInfo, List<RouteInfo>> redisTemplate = new RedisTemplate<>();
+
+        redisTemplate.setKeySerializer(new NamespacedRedisSerializer<>(cacheKeyNamespace, INBOUND_KEY_TYPE, cityInfoRedisSerializer));
+        redisTemplate.setValueSerializer(listRouteInfoValueSerializer);
+
+        redisTemplate.setConnectionFactory(jedisConnectionFactory);
+
+        return redisTemplate;
+    }
+
+    // Note: CityInfo ---> sorted set of routeIds scored by departure epoch millis, time window index of the city hash
+    @Bean
+    public RedisTemplate<CityInfo, String> redisTemplateCityInfoToDepartures(
+            JedisConnectionFactory jedisConnectionFactory,
+            CacheKeyNamespace cacheKeyNamespace,
+            CityInfoRedisSerializer cityInfoRedisSerializer) {
+
+        final RedisTemplate<CityInfo, String> redisTemplate = new RedisTemplate<>();
+
+        redisTemplate.setKeySerializer(new NamespacedRedisSerializer<>(cacheKeyNamespace, DEPARTURES_KEY_TYPE, cityInfoRedisSerializer));
+        redisTemplate.setValueSerializer(new StringRedisSerializer());
+
+        redisTemplate.setConnectionFactory(jedisConnectionFactory);
+
+        return redisTemplate;
+    }
+
+    // Note: KEYS: city hash, departures sorted set, ARGV: min and max departure epoch millis
+    @Bean
+    @SuppressWarnings("rawtypes")
+    public RedisScript<List> departureWindowScript() {
+        final DefaultRedisScript<List> script = new DefaultRedisScript<>();
+        script.setScriptSource(new ResourceScriptSource(new ClassPathResource("redis/departure-window.lua")));
+        script.setResultType(List.class);
+        return script;
+    }
+
+    // Note: KEYS: city hash, departures sorted set, ARGV: ttl millis, routes, routeId and route pairs, departure and routeId pairs
+    @Bean
+    public RedisScript<Long> cityUpsertScript() {
+        final DefaultRedisScript<Long> script = new DefaultRedisScript<>();
+        script.setScriptSource(new ResourceScriptSource(new ClassPathResource("redis/city-upsert.lua")));
+        script.setResultType(Long.class);
+        return script;
+    }
+
+    // Note: KEYS: city hash, departures sorted set, ARGV: routeId, route, departure epoch millis
+    @Bean
+    public RedisScript<Boolean> cityReplaceScript() {
+        final DefaultRedisScript<Boolean> script = new DefaultRedisScript<>();
+        script.setScriptSource(new ResourceScriptSource(new ClassPathResource("redis/city-replace.lua")));
+        script.setResultType(Boolean.class);
+        return script;
+    }
+
     // Note: routeId: String ---> RouteInfo
     @Bean
     public RedisTemplate<String, RouteInfo> redisTemplateRouteIdToRouteInfo(
             JedisConnectionFactory jedisConnectionFactory,
-            RouteInfoRedisSerializer routeInfoRedisSerializer) {
+            CacheKeyNamespace cacheKeyNamespace,
+            @Qualifier("routeInfoValueSerializer") RedisSerializer<RouteInfo> routeInfoValueSerializer) {
 
         final RedisTemplate<String, RouteInfo> redisTemplate = new RedisTemplate<>();
 
-        redisTemplate.setKeySerializer(new StringRedisSerializer());
-        redisTemplate.setValueSerializer(routeInfoRedisSerializer);
+        redisTemplate.setKeySerializer(new NamespacedRedisSerializer<>(cacheKeyNamespace, ROUTE_KEY_TYPE, new StringRedisSerializer()));
+        redisTemplate.setValueSerializer(routeInfoValueSerializer);
 
         redisTemplate.setConnectionFactory(jedisConnectionFactory);
 
         return redisTemplate;
     }
+
+    // Note: CityInfo ---> [RouteInfo], stored as a redis hash: routeId ---> RouteInfo (non blocking)
+    @Bean
+    @ConditionalOnProperty(name = "cache-service.backend", havingValue = "reactive")
+    public ReactiveRedisTemplate<CityInfo, List<RouteInfo>> reactiveRedisTemplateCityInfoToRouteInfo(
+            LettuceConnectionFactory lettuceConnectionFactory,
+            CacheKeyNamespace cacheKeyNamespace,
+            CityInfoRedisSerializer cityInfoRedisSerializer,
+            @Qualifier("listRouteInfoValueSerializer") RedisSerializer<List<RouteInfo>> listRouteInfoValueSerializer,
+            @Qualifier("routeInfoValueSerializer") RedisSerializer<RouteInfo> routeInfoValueSerializer) {
+
+        final RedisSerializationContext<CityInfo, List<RouteInfo>> serializationContext = RedisSerializationContext
+                .<CityInfo, List<RouteInfo>>newSerializationContext(new StringRedisSerializer())
+                .key(new NamespacedRedisSerializer<>(cacheKeyNamespace, CITY_KEY_TYPE, cityInfoRedisSerializer))
+                .value(listRouteInfoValueSerializer)
+                .hashKey(new StringRedisSerializer())
+                .hashValue(routeInfoValueSerializer)
+                .build();
+
+        return new ReactiveRedisTemplate<>(lettuceConnectionFactory, serializationContext);
+    }
+
+    // Note: CityInfo ---> pages, stored as a redis hash: {limit}:{cursor} ---> [RouteInfo] (non blocking)
+    @Bean
+    @ConditionalOnProperty(name = "cache-service.backend", havingValue = "reactive")
+    public ReactiveRedisTemplate<CityInfo, List<RouteInfo>> reactiveRedisTemplateCityInfoToRoutePages(
+            LettuceConnectionFactory lettuceConnectionFactory,
+            CacheKeyNamespace cacheKeyNamespace,
+            CityInfoRedisSerializer cityInfoRedisSerializer,
+            @Qualifier("listRouteInfoValueSerializer") RedisSerializer<List<RouteInfo>> listRouteInfoValueSerializer) {
+
+        final RedisSerializationContext<CityInfo, List<RouteInfo>> serializationContext = RedisSerializationContext
+                .<CityInfo, List<RouteInfo>>newSerializationContext(new StringRedisSerializer())
+                .key(new NamespacedRedisSerializer<>(cacheKeyNamespace, PAGE_KEY_TYPE, cityInfoRedisSerializer))
+                .value(listRouteInfoValueSerializer)
+                .hashKey(new StringRedisSerializer())
+                .hashValue(listRouteInfoValueSerializer)
+                .build();
+
+        return new ReactiveRedisTemplate<>(lettuceConnectionFactory, serializationContext);
+    }
+
+    // Note: destination CityInfo ---> [RouteInfo] (inbound routes), stored as a simple value (non blocking)
+    @Bean
+    @ConditionalOnProperty(name = "cache-service.backend", havingValue = "reactive")
+    public ReactiveRedisTemplate<CityInfo, List<RouteInfo>> reactiveRedisTemplateCityInfoToInboundRoutes(
+            LettuceConnectionFactory lettuceConnectionFactory,
+            CacheKeyNamespace cacheKeyNamespace,
+            CityInfoRedisSerializer cityInfoRedisSerializer,
+            @Qualifier("listRouteInfoValueSerializer") RedisSerializer<List<RouteInfo>> listRouteInfoValueSerializer) {
+
+        final RedisSerializationContext<CityInfo, List<RouteInfo>> serializationContext = RedisSerializationContext
+                .<CityInfo, List<RouteInfo>>newSerializationContext(new StringRedisSerializer())
+                .key(new NamespacedRedisSerializer<>(cacheKeyNamespace, INBOUND_KEY_TYPE, cityInfoRedisSerializer))
+                .value(listRouteInfoValueSerializer)
+                .build();
+
+        return new ReactiveRedisTemplate<>(lettuceConnectionFactory, serializationContext);
+    }
+
+    // Note: CityInfo ---> sorted set of routeIds scored by departure epoch millis (non blocking)
+    @Bean
+    @ConditionalOnProperty(name = "cache-service.backend", havingValue = "reactive")
+    public ReactiveRedisTemplate<CityInfo, String> reactiveRedisTemplateCityInfoToDepartures(
+            LettuceConnectionFactory lettuceConnectionFactory,
+            CacheKeyNamespace cacheKeyNamespace,
+            CityInfoRedisSerializer cityInfoRedisSerializer) {
+
+        final RedisSerializationContext<CityInfo, String> serializationContext = RedisSerializationContext
+                .<CityInfo, String>newSerializationContext(new StringRedisSerializer())
+                .key(new NamespacedRedisSerializer<>(cacheKeyNamespace, DEPARTURES_KEY_TYPE, cityInfoRedisSerializer))
+                .value(new StringRedisSerializer())
+                .build();
+
+        return new ReactiveRedisTemplate<>(lettuceConnectionFactory, serializationContext);
+    }
+
+    // Note: routeId: String ---> RouteInfo (non blocking)
+    @Bean
+    @ConditionalOnProperty(name = "cache-service.backend", havingValue = "reactive")
+    public ReactiveRedisTemplate<String, RouteInfo> reactiveRedisTemplateRouteIdToRouteInfo(
+            LettuceConnectionFactory lettuceConnectionFactory,
+            CacheKeyNamespace cacheKeyNamespace,
+            @Qualifier("routeInfoValueSerializer") RedisSerializer<RouteInfo> routeInfoValueSerializer) {
+
+        final RedisSerializationContext<String, RouteInfo> serializationContext = RedisSerializationContext
+                .<String, RouteInfo>newSerializationContext(new StringRedisSerializer())
+                .key(new NamespacedRedisSerializer<>(cacheKeyNamespace, ROUTE_KEY_TYPE, new StringRedisSerializer()))
+                .value(routeInfoValueSerializer)
+                .build();
+
+        return new ReactiveRedisTemplate<>(lettuceConnectionFactory, serializationContext);
+    }
+
+    private RedisStandaloneConfiguration redisStandaloneConfiguration(RedisProperties redisProperties) {
+        RedisStandaloneConfiguration configuration = new RedisStandaloneConfiguration(redisProperties.getHost(), redisProperties.getPort());
+        configuration.setDatabase(redisProperties.getDatabase());
+        configuration.setPassword(RedisPassword.of(redisProperties.getPassword()));
+        return configuration;
+    }
 }
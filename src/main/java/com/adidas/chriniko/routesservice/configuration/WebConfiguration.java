@@ -0,0 +1,41 @@
+package com.adidas.chriniko.routesservice.configuration;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.boot.web.codec.CodecCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.json.Jackson2JsonDecoder;
+import org.springframework.http.codec.json.Jackson2JsonEncoder;
+import org.springframework.util.MimeType;
+
+import java.util.Arrays;
+
+@Configuration
+public class WebConfiguration {
+
+    public static final String APPLICATION_NDJSON_VALUE = "application/x-ndjson";
+    public static final MediaType APPLICATION_NDJSON = MediaType.parseMediaType(APPLICATION_NDJSON_VALUE);
+
+    // Note: newline delimited json, every element of a Flux is written (and flushed) as one line, and read as it arrives.
+    @Bean
+    public CodecCustomizer ndjsonCodecCustomizer(ObjectMapper objectMapper) {
+        return configurer -> {
+            Jackson2JsonEncoder encoder = new Jackson2JsonEncoder(
+                    objectMapper,
+                    MediaType.APPLICATION_JSON,
+                    new MimeType("application", "*+json"),
+                    APPLICATION_NDJSON
+            );
+            encoder.setStreamingMediaTypes(Arrays.asList(MediaType.APPLICATION_STREAM_JSON, APPLICATION_NDJSON));
+
+            configurer.defaultCodecs().jackson2JsonEncoder(encoder);
+            configurer.defaultCodecs().jackson2JsonDecoder(new Jackson2JsonDecoder(
+                    objectMapper,
+                    MediaType.APPLICATION_JSON,
+                    new MimeType("application", "*+json"),
+                    APPLICATION_NDJSON
+            ));
+        };
+    }
+}
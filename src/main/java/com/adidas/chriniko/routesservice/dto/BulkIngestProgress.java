@@ -0,0 +1,18 @@
+package com.adidas.chriniko.routesservice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// Note: one per committed chunk of the bulk ingest, totals are cumulative since the start of the request.
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class BulkIngestProgress {
+
+    private int chunk;
+    private int chunkRoutes;
+
+    private long totalRoutes;
+    private long elapsedMillis;
+}
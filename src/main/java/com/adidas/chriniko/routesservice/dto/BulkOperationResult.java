@@ -0,0 +1,13 @@
+package com.adidas.chriniko.routesservice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class BulkOperationResult {
+
+    private int affectedRoutes;
+}
@@ -0,0 +1,20 @@
+package com.adidas.chriniko.routesservice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.validation.Valid;
+import java.util.List;
+
+// Note: selects routes either by ids or by origin (exactly one of them).
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class BulkRouteDelete {
+
+    private List<String> ids;
+
+    @Valid
+    private CityInfo origin;
+}
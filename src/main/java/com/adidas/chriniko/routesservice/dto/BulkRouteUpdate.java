@@ -0,0 +1,29 @@
+package com.adidas.chriniko.routesservice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.validation.Valid;
+import java.util.List;
+
+/**
+ * Selects routes either by ids or by origin (exactly one of them), then shifts their departure and arrival times
+ * and/or reassigns their destination (at least one of them).
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class BulkRouteUpdate {
+
+    private List<String> ids;
+
+    @Valid
+    private CityInfo origin;
+
+    // Note: seconds added to both departure and arrival time, negative shifts earlier.
+    private Long shiftSeconds;
+
+    @Valid
+    private CityInfo destinyCity;
+}
@@ -0,0 +1,21 @@
+package com.adidas.chriniko.routesservice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.validation.Valid;
+import javax.validation.constraints.NotEmpty;
+import javax.validation.constraints.Size;
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class CityInfoBatch {
+
+    @NotEmpty
+    @Size(max = 100)
+    @Valid
+    private List<CityInfo> cities;
+}
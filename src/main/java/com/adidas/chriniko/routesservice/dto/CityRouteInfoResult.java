@@ -0,0 +1,17 @@
+package com.adidas.chriniko.routesservice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class CityRouteInfoResult {
+
+    private CityInfo city;
+
+    private List<RouteInfo> results;
+}
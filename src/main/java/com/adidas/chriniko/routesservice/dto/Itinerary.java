@@ -0,0 +1,28 @@
+package com.adidas.chriniko.routesservice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class Itinerary {
+
+    private List<RouteInfo> legs;
+
+    private int hops;
+
+    private Instant departureTime;
+    private Instant arrivalTime;
+
+    public Itinerary(List<RouteInfo> legs) {
+        this.legs = legs;
+        this.hops = legs.size();
+        this.departureTime = legs.get(0).getDepartureTime();
+        this.arrivalTime = legs.get(legs.size() - 1).getArrivalTime();
+    }
+}
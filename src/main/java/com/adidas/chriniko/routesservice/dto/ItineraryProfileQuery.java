@@ -0,0 +1,27 @@
+package com.adidas.chriniko.routesservice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.validation.Valid;
+import javax.validation.constraints.NotNull;
+import java.time.Instant;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ItineraryProfileQuery {
+
+    @NotNull
+    @Valid
+    private CityInfo from;
+
+    @NotNull
+    @Valid
+    private CityInfo to;
+
+    // Note: window of the first leg departure [departureFrom, departureTo), absent bounds are unbounded.
+    private Instant departureFrom;
+    private Instant departureTo;
+}
@@ -0,0 +1,34 @@
+package com.adidas.chriniko.routesservice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.validation.Valid;
+import javax.validation.constraints.NotNull;
+import java.time.Instant;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ItineraryQuery {
+
+    public enum Optimization {
+        EARLIEST_ARRIVAL,
+        FEWEST_HOPS
+    }
+
+    @NotNull
+    @Valid
+    private CityInfo from;
+
+    @NotNull
+    @Valid
+    private CityInfo to;
+
+    // Note: the first leg departs at or after it, absent means any departure.
+    private Instant departureAfter;
+
+    @NotNull
+    private Optimization optimization = Optimization.EARLIEST_ARRIVAL;
+}
@@ -1,5 +1,6 @@
 package com.adidas.chriniko.routesservice.dto;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -12,4 +13,12 @@ import java.util.List;
 public class RouteInfoResult {
 
     private List<RouteInfo> results;
+
+    // Note: opaque keyset cursor of the next page, absent on the last page (or when not paginated).
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String nextCursor;
+
+    public RouteInfoResult(List<RouteInfo> results) {
+        this.results = results;
+    }
 }
@@ -1,6 +1,7 @@
 package com.adidas.chriniko.routesservice.entity;
 
 import lombok.Data;
+import org.hibernate.annotations.Type;
 
 import javax.persistence.Id;
 import javax.persistence.MappedSuperclass;
@@ -9,15 +10,16 @@ import java.io.Serializable;
 import java.lang.management.ManagementFactory;
 import java.time.Clock;
 import java.time.Instant;
-import java.util.UUID;
 
 @Data
 
 @MappedSuperclass
 public abstract class BaseEntity implements Serializable {
 
+    // Note: time ordered (see TimeOrderedIds), stored as binary(16).
     @Id
-    protected String id = UUID.randomUUID().toString();
+    @Type(type = UuidBinaryStringType.NAME)
+    protected String id = TimeOrderedIds.next().toString();
 
     protected String createdBy = who();
     protected Instant createdDate = when();
@@ -19,11 +19,50 @@ import java.time.Instant;
 
 @NamedQueries(
         value = {
+                @NamedQuery(
+                        name = "RouteEntity.findAll",
+                        query = "SELECT rE FROM RouteEntity rE WHERE rE.deleted = false"
+                ),
+                @NamedQuery(
+                        name = "RouteEntity.findByIds",
+                        query = "SELECT rE FROM RouteEntity rE WHERE rE.id IN :ids AND rE.deleted = false"
+                ),
+                @NamedQuery(
+                        name = "RouteEntity.softDeleteByIds",
+                        query = "UPDATE RouteEntity rE " +
+                                "SET rE.deleted = true, rE.version = rE.version + 1, rE.updatedBy = :updatedBy, rE.updatedDate = :updatedDate " +
+                                "WHERE rE.id IN :ids AND rE.deleted = false"
+                ),
                 @NamedQuery(
                         name = "RouteEntity.findByOriginCityNameAndOriginCountry",
                         query = "SELECT rE FROM RouteEntity rE " +
                                 "WHERE rE.originCityName = :originCityName " +
-                                "AND rE.originCountry = :originCountry"
+                                "AND rE.originCountry = :originCountry " +
+                                "AND rE.deleted = false"
+                ),
+                @NamedQuery(
+                        name = "RouteEntity.findByDestinyCityNameAndDestinyCountry",
+                        query = "SELECT rE FROM RouteEntity rE " +
+                                "WHERE rE.destinyCityName = :destinyCityName " +
+                                "AND rE.destinyCountry = :destinyCountry " +
+                                "AND rE.deleted = false"
+                ),
+                @NamedQuery(
+                        name = "RouteEntity.findFirstPageByOriginCityNameAndOriginCountry",
+                        query = "SELECT rE FROM RouteEntity rE " +
+                                "WHERE rE.originCityName = :originCityName " +
+                                "AND rE.originCountry = :originCountry " +
+                                "AND rE.deleted = false " +
+                                "ORDER BY rE.departureTime, rE.id"
+                ),
+                @NamedQuery(
+                        name = "RouteEntity.findNextPageByOriginCityNameAndOriginCountry",
+                        query = "SELECT rE FROM RouteEntity rE " +
+                                "WHERE rE.originCityName = :originCityName " +
+                                "AND rE.originCountry = :originCountry " +
+                                "AND rE.deleted = false " +
+                                "AND (rE.departureTime > :departureTime OR (rE.departureTime = :departureTime AND rE.id > :id)) " +
+                                "ORDER BY rE.departureTime, rE.id"
                 )
         }
 )
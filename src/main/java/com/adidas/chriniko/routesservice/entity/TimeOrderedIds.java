@@ -0,0 +1,83 @@
+package com.adidas.chriniko.routesservice.entity;
+
+import java.nio.ByteBuffer;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Time ordered ids, uuid version 7 layout:
+ * <pre>
+ * unix epoch millis (48 bits) | version 7 (4 bits) | sequence (12 bits) | variant (2 bits) | random (62 bits)
+ * </pre>
+ * Ids of this process are strictly increasing (the sequence counts within a millisecond, and borrows the next millisecond
+ * when it overflows), so inserts append to the right end of the clustered (primary key) index instead of splitting random pages.
+ * <p>
+ * Note: the canonical uuid string stays the id of the rest api and of the cache keys, only the db stores the 16 bytes
+ * (see {@link UuidBinaryStringType}).
+ */
+public final class TimeOrderedIds {
+
+    private static final int SEQUENCE_BITS = 12;
+
+    // Note: (epoch millis << SEQUENCE_BITS) | sequence of the last generated id.
+    private static final AtomicLong LAST = new AtomicLong();
+
+    private TimeOrderedIds() {
+    }
+
+    public static UUID next() {
+        final long now = System.currentTimeMillis() << SEQUENCE_BITS;
+
+        long last;
+        long next;
+        do {
+            last = LAST.get();
+            next = now > last ? now : last + 1;
+        } while (!LAST.compareAndSet(last, next));
+
+        return of(next >>> SEQUENCE_BITS, (int) (next & 0xFFFL), ThreadLocalRandom.current().nextLong());
+    }
+
+    /**
+     * The id of the given millisecond and sequence (low 12 bits), with the low 62 bits of random as the random part,
+     * so a seeded dataset gets the same ids on every run (see SyntheticRoutes).
+     */
+    public static UUID of(long epochMillis, int sequence, long random) {
+        final long mostSigBits = (epochMillis << 16) | 0x7000L | (sequence & 0xFFFL);
+        final long leastSigBits = (random & 0x3FFFFFFFFFFFFFFFL) | 0x8000000000000000L;
+        return new UUID(mostSigBits, leastSigBits);
+    }
+
+    // Note: only canonical (lower case) uuid strings, so an id survives the round trip through the db unchanged.
+    public static boolean isValid(String id) {
+        if (id == null || id.length() != 36) {
+            return false;
+        }
+        try {
+            return UUID.fromString(id).toString().equals(id);
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    public static byte[] toBytes(String id) {
+        if (!isValid(id)) {
+            throw new IllegalArgumentException("not a canonical uuid: " + id);
+        }
+        final UUID uuid = UUID.fromString(id);
+        return ByteBuffer
+                .allocate(16)
+                .putLong(uuid.getMostSignificantBits())
+                .putLong(uuid.getLeastSignificantBits())
+                .array();
+    }
+
+    public static String fromBytes(byte[] bytes) {
+        if (bytes.length != 16) {
+            throw new IllegalArgumentException("uuid should be 16 bytes, found: " + bytes.length);
+        }
+        final ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        return new UUID(buffer.getLong(), buffer.getLong()).toString();
+    }
+}
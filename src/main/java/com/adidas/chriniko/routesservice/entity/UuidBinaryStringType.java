@@ -0,0 +1,72 @@
+package com.adidas.chriniko.routesservice.entity;
+
+import org.hibernate.type.AbstractSingleColumnStandardBasicType;
+import org.hibernate.type.descriptor.WrapperOptions;
+import org.hibernate.type.descriptor.java.AbstractTypeDescriptor;
+import org.hibernate.type.descriptor.sql.BinaryTypeDescriptor;
+
+/**
+ * String uuid in the entity, binary(16) in the db: 16 bytes instead of 36 (up to 255) characters in the primary key,
+ * and so in every secondary index entry too.
+ */
+public class UuidBinaryStringType extends AbstractSingleColumnStandardBasicType<String> {
+
+    public static final String NAME = "com.adidas.chriniko.routesservice.entity.UuidBinaryStringType";
+
+    public UuidBinaryStringType() {
+        super(BinaryTypeDescriptor.INSTANCE, UuidStringTypeDescriptor.INSTANCE);
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    private static final class UuidStringTypeDescriptor extends AbstractTypeDescriptor<String> {
+
+        static final UuidStringTypeDescriptor INSTANCE = new UuidStringTypeDescriptor();
+
+        private UuidStringTypeDescriptor() {
+            super(String.class);
+        }
+
+        @Override
+        public String toString(String value) {
+            return value;
+        }
+
+        @Override
+        public String fromString(String string) {
+            return string;
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        public <X> X unwrap(String value, Class<X> type, WrapperOptions options) {
+            if (value == null) {
+                return null;
+            }
+            if (byte[].class.isAssignableFrom(type)) {
+                return (X) TimeOrderedIds.toBytes(value);
+            }
+            if (String.class.isAssignableFrom(type)) {
+                return (X) value;
+            }
+            throw unknownUnwrap(type);
+        }
+
+        @Override
+        public <X> String wrap(X value, WrapperOptions options) {
+            if (value == null) {
+                return null;
+            }
+            if (value instanceof byte[]) {
+                return TimeOrderedIds.fromBytes((byte[]) value);
+            }
+            if (value instanceof String) {
+                return (String) value;
+            }
+            throw unknownWrap(value.getClass());
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package com.adidas.chriniko.routesservice.graph;
+
+import com.adidas.chriniko.routesservice.dto.CityInfo;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Append only interning of cities to dense int ids (0, 1, 2...), so the graph can index plain arrays by city.
+ * <p>
+ * Note: ids are never reused or removed, a city without routes simply has no edges.
+ */
+final class CityIds {
+
+    static final int UNKNOWN = -1;
+
+    private final ConcurrentMap<CityInfo, Integer> ids = new ConcurrentHashMap<>();
+
+    private volatile CityInfo[] cities = new CityInfo[1024];
+    private volatile int size;
+
+    synchronized int intern(CityInfo cityInfo) {
+        final Integer id = ids.get(cityInfo);
+        if (id != null) {
+            return id;
+        }
+
+        if (size == cities.length) {
+            cities = Arrays.copyOf(cities, size * 2);
+        }
+
+        // Note: own copy, city infos are mutable and this one is used as a key.
+        final CityInfo city = new CityInfo(cityInfo.getName(), cityInfo.getCountry());
+        cities[size] = city;
+        ids.put(city, size);
+        return size++;
+    }
+
+    int id(CityInfo cityInfo) {
+        return ids.getOrDefault(cityInfo, UNKNOWN);
+    }
+
+    CityInfo city(int id) {
+        return cities[id];
+    }
+
+    int size() {
+        return size;
+    }
+}
@@ -0,0 +1,383 @@
+package com.adidas.chriniko.routesservice.graph;
+
+import com.adidas.chriniko.routesservice.dto.RouteInfo;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Every route as an elementary connection, in a struct of arrays sorted by departure (then arrival):
+ * <pre>
+ * connection c: departureCities[c] | arrivalCities[c] | departureTimes[c] | arrivalTimes[c] (epoch millis) | routeIds[c]
+ * </pre>
+ * Queries are connection scans (CSA): one linear pass over a contiguous slice of the arrays, no priority queue and no
+ * adjacency lookups, a connection can be taken if it departs at or after the arrival at its departure city.
+ * <p>
+ * The arrays are built with the CSR of the {@link RouteGraph} and shared by the tables of its overlay snapshots, which
+ * only add a bitset of removed connections and the (few) added ones, sorted the same way and merged into the scan.
+ * Connection c &gt;= routeIds.length is the added connection c - routeIds.length.
+ */
+final class ConnectionTable {
+
+    private static final int NONE = -1;
+
+    private static final Comparator<RouteGraph.Edge> BY_DEPARTURE =
+            Comparator.<RouteGraph.Edge>comparingLong(edge -> edge.departure).thenComparingLong(edge -> edge.arrival);
+
+    private static final RouteGraph.Edge[] NO_EDGES = new RouteGraph.Edge[0];
+
+    private final CityIds cityIds;
+
+    private final int[] departureCities;
+    private final int[] arrivalCities;
+    private final long[] departureTimes;
+    private final long[] arrivalTimes;
+    private final String[] routeIds;
+
+    // Note: csr edge e is connection connectionOfEdge[e].
+    private final int[] connectionOfEdge;
+
+    private final long[] removed;
+    private final RouteGraph.Edge[] added;
+
+    private ConnectionTable(CityIds cityIds,
+                            int[] departureCities,
+                            int[] arrivalCities,
+                            long[] departureTimes,
+                            long[] arrivalTimes,
+                            String[] routeIds,
+                            int[] connectionOfEdge,
+                            long[] removed,
+                            RouteGraph.Edge[] added) {
+        this.cityIds = cityIds;
+        this.departureCities = departureCities;
+        this.arrivalCities = arrivalCities;
+        this.departureTimes = departureTimes;
+        this.arrivalTimes = arrivalTimes;
+        this.routeIds = routeIds;
+        this.connectionOfEdge = connectionOfEdge;
+        this.removed = removed;
+        this.added = added;
+    }
+
+    /**
+     * @param edges in csr order, the index of an edge is its csr index.
+     */
+    static ConnectionTable build(CityIds cityIds, List<RouteGraph.Edge> edges) {
+        final int size = edges.size();
+
+        final Integer[] order = new Integer[size];
+        for (int e = 0; e < size; e++) {
+            order[e] = e;
+        }
+        Arrays.sort(order, Comparator.comparing(edges::get, BY_DEPARTURE));
+
+        final int[] departureCities = new int[size];
+        final int[] arrivalCities = new int[size];
+        final long[] departureTimes = new long[size];
+        final long[] arrivalTimes = new long[size];
+        final String[] routeIds = new String[size];
+        final int[] connectionOfEdge = new int[size];
+
+        for (int c = 0; c < size; c++) {
+            final RouteGraph.Edge edge = edges.get(order[c]);
+            departureCities[c] = edge.origin;
+            arrivalCities[c] = edge.target;
+            departureTimes[c] = edge.departure;
+            arrivalTimes[c] = edge.arrival;
+            routeIds[c] = edge.routeId;
+            connectionOfEdge[order[c]] = c;
+        }
+
+        return new ConnectionTable(cityIds, departureCities, arrivalCities, departureTimes, arrivalTimes, routeIds,
+                connectionOfEdge, new long[(size + 63) >>> 6], NO_EDGES);
+    }
+
+    /**
+     * The table of an overlay snapshot, O(removed words + added log added), the connection arrays are not copied.
+     *
+     * @param removedEdges bitset of the removed csr edges.
+     * @param addedEdges   the overlay edges.
+     */
+    ConnectionTable with(long[] removedEdges, Collection<RouteGraph.Edge[]> addedEdges) {
+        final long[] newRemoved = new long[removed.length];
+        for (int word = 0; word < removedEdges.length; word++) {
+            for (long bits = removedEdges[word]; bits != 0; bits &= bits - 1) {
+                final int c = connectionOfEdge[(word << 6) + Long.numberOfTrailingZeros(bits)];
+                newRemoved[c >>> 6] |= 1L << c;
+            }
+        }
+
+        final List<RouteGraph.Edge> newAdded = new ArrayList<>();
+        for (RouteGraph.Edge[] edges : addedEdges) {
+            Collections.addAll(newAdded, edges);
+        }
+        newAdded.sort(BY_DEPARTURE);
+
+        return new ConnectionTable(cityIds, departureCities, arrivalCities, departureTimes, arrivalTimes, routeIds,
+                connectionOfEdge, newRemoved, newAdded.toArray(NO_EDGES));
+    }
+
+    int size() {
+        int size = routeIds.length + added.length;
+        for (long word : removed) {
+            size -= Long.bitCount(word);
+        }
+        return size;
+    }
+
+    /**
+     * Scans the connections departing at or after departureAfter, and stops at the first one departing after the best
+     * arrival at the target found so far.
+     * <p>
+     * Note: an arrival which is already before the departure of the scanned connection can not improve later in the scan,
+     * so the connection kept per city (to rebuild the journey) is always consistent.
+     */
+    Optional<List<RouteInfo>> earliestArrival(int source, int target, long departureAfter) {
+        final int cityCount = cityIds.size();
+        final long[] arrival = new long[cityCount];
+        Arrays.fill(arrival, Long.MAX_VALUE);
+        final int[] reachedBy = new int[cityCount];
+        Arrays.fill(reachedBy, NONE);
+
+        arrival[source] = departureAfter;
+
+        int b = firstDeparture(departureAfter);
+        int a = firstAdded(departureAfter);
+        while (true) {
+            final int c;
+            if (a < added.length && (b == routeIds.length || precedes(added[a], b))) {
+                c = routeIds.length + a++;
+            } else if (b < routeIds.length) {
+                c = b++;
+                if (isRemoved(c)) {
+                    continue;
+                }
+            } else {
+                break;
+            }
+
+            if (departureTime(c) >= arrival[target]) {
+                break;
+            }
+            if (arrival[departureCity(c)] <= departureTime(c) && arrivalTime(c) < arrival[arrivalCity(c)]) {
+                arrival[arrivalCity(c)] = arrivalTime(c);
+                reachedBy[arrivalCity(c)] = c;
+            }
+        }
+
+        if (reachedBy[target] == NONE) {
+            return Optional.empty();
+        }
+
+        final List<RouteInfo> legs = new ArrayList<>();
+        for (int city = target; city != source; city = departureCity(reachedBy[city])) {
+            legs.add(routeInfo(reachedBy[city]));
+        }
+        Collections.reverse(legs);
+        return Optional.of(legs);
+    }
+
+    /**
+     * Profile query: all the pareto optimal journeys departing within [departureFrom, departureTo), ie: no other journey
+     * departs later and arrives earlier, ordered by departure.
+     * <p>
+     * Connections are scanned once by decreasing departure, every city keeps its profile (departure, earliest arrival at
+     * the target) as a list of decreasing departures and strictly decreasing arrivals, so a connection only needs the
+     * profile of its arrival city evaluated at its arrival time.
+     * <p>
+     * Note: journeys may continue with connections departing after departureTo, only the first leg is bound to the window.
+     */
+    List<List<RouteInfo>> profile(int source, int target, long departureFrom, long departureTo) {
+        final int cityCount = cityIds.size();
+        final int[] head = new int[cityCount];
+        Arrays.fill(head, NONE);
+
+        final Entries entries = new Entries(64);
+
+        final int firstBase = firstDeparture(departureFrom);
+        final int firstAdded = firstAdded(departureFrom);
+        int b = routeIds.length - 1;
+        int a = added.length - 1;
+        while (true) {
+            final int c;
+            if (a >= firstAdded && (b < firstBase || !precedes(added[a], b))) {
+                c = routeIds.length + a--;
+            } else if (b >= firstBase) {
+                c = b--;
+                if (isRemoved(c)) {
+                    continue;
+                }
+            } else {
+                break;
+            }
+
+            final int from = departureCity(c);
+            if (from == target) {
+                continue;
+            }
+
+            long arrival = Long.MAX_VALUE;
+            int next = NONE;
+            if (arrivalCity(c) == target) {
+                arrival = arrivalTime(c);
+            } else {
+                final int entry = evaluate(entries, head[arrivalCity(c)], arrivalTime(c));
+                if (entry != NONE) {
+                    arrival = entries.arrival[entry];
+                    next = entry;
+                }
+            }
+            if (arrival == Long.MAX_VALUE) {
+                continue;
+            }
+
+            final int last = head[from];
+            if (last != NONE && entries.arrival[last] <= arrival) {
+                // Note: dominated, the last entry departs at or after this connection and arrives no later.
+                continue;
+            }
+            if (last != NONE && entries.departure[last] == departureTime(c)) {
+                // Note: same departure, earlier arrival, the previous entry is dominated.
+                head[from] = entries.previous[last];
+            }
+            head[from] = entries.append(departureTime(c), arrival, c, next, head[from]);
+        }
+
+        final List<List<RouteInfo>> journeys = new ArrayList<>();
+        for (int entry = head[source]; entry != NONE; entry = entries.previous[entry]) {
+            if (entries.departure[entry] >= departureTo) {
+                break;
+            }
+
+            final List<RouteInfo> legs = new ArrayList<>();
+            for (int leg = entry; leg != NONE; leg = entries.next[leg]) {
+                legs.add(routeInfo(entries.connection[leg]));
+            }
+            journeys.add(legs);
+        }
+        return journeys;
+    }
+
+    // Note: the entry with the earliest departure at or after the provided time, profiles are linked from the earliest departure.
+    private int evaluate(Entries entries, int entry, long time) {
+        while (entry != NONE && entries.departure[entry] < time) {
+            entry = entries.previous[entry];
+        }
+        return entry;
+    }
+
+    private int firstDeparture(long time) {
+        int low = 0;
+        int high = departureTimes.length;
+        while (low < high) {
+            final int mid = (low + high) >>> 1;
+            if (departureTimes[mid] < time) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private int firstAdded(long time) {
+        int low = 0;
+        int high = added.length;
+        while (low < high) {
+            final int mid = (low + high) >>> 1;
+            if (added[mid].departure < time) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    // Note: the scan order, by departure then arrival.
+    private boolean precedes(RouteGraph.Edge edge, int c) {
+        return edge.departure < departureTimes[c] || (edge.departure == departureTimes[c] && edge.arrival < arrivalTimes[c]);
+    }
+
+    private boolean isRemoved(int c) {
+        return (removed[c >>> 6] & (1L << c)) != 0;
+    }
+
+    private int departureCity(int c) {
+        return c < routeIds.length ? departureCities[c] : added[c - routeIds.length].origin;
+    }
+
+    private int arrivalCity(int c) {
+        return c < routeIds.length ? arrivalCities[c] : added[c - routeIds.length].target;
+    }
+
+    private long departureTime(int c) {
+        return c < routeIds.length ? departureTimes[c] : added[c - routeIds.length].departure;
+    }
+
+    private long arrivalTime(int c) {
+        return c < routeIds.length ? arrivalTimes[c] : added[c - routeIds.length].arrival;
+    }
+
+    private String routeId(int c) {
+        return c < routeIds.length ? routeIds[c] : added[c - routeIds.length].routeId;
+    }
+
+    private RouteInfo routeInfo(int c) {
+        return new RouteInfo(
+                routeId(c),
+                cityIds.city(departureCity(c)),
+                cityIds.city(arrivalCity(c)),
+                Instant.ofEpochMilli(departureTime(c)),
+                Instant.ofEpochMilli(arrivalTime(c))
+        );
+    }
+
+    /**
+     * Profile entries of a single query: (departure, arrival at the target) by taking connection, then the entry it
+     * continues with (none if it reaches the target) and the previous entry (later departure) of the same city.
+     */
+    private static final class Entries {
+
+        long[] departure;
+        long[] arrival;
+        int[] connection;
+        int[] next;
+        int[] previous;
+
+        private int size;
+
+        Entries(int initialCapacity) {
+            departure = new long[initialCapacity];
+            arrival = new long[initialCapacity];
+            connection = new int[initialCapacity];
+            next = new int[initialCapacity];
+            previous = new int[initialCapacity];
+        }
+
+        int append(long departure, long arrival, int connection, int next, int previous) {
+            if (size == this.departure.length) {
+                final int capacity = size * 2;
+                this.departure = Arrays.copyOf(this.departure, capacity);
+                this.arrival = Arrays.copyOf(this.arrival, capacity);
+                this.connection = Arrays.copyOf(this.connection, capacity);
+                this.next = Arrays.copyOf(this.next, capacity);
+                this.previous = Arrays.copyOf(this.previous, capacity);
+            }
+
+            this.departure[size] = departure;
+            this.arrival[size] = arrival;
+            this.connection[size] = connection;
+            this.next[size] = next;
+            this.previous[size] = previous;
+            return size++;
+        }
+    }
+}
@@ -0,0 +1,391 @@
+package com.adidas.chriniko.routesservice.graph;
+
+import com.adidas.chriniko.routesservice.dto.RouteInfo;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Immutable snapshot of all the routes as a time dependent graph in compressed sparse row (CSR) form:
+ * <pre>
+ * edges of city c: [offsets[c], offsets[c + 1]), sorted by departure
+ * edge e: targets[e] | departures[e] | arrivals[e] (epoch millis) | routeIds[e]
+ * </pre>
+ * Writes after the build go to a small overlay (added edges by origin, bitset of removed edges) and return a new
+ * snapshot, so readers never lock. {@link #compact()} folds the overlay into a new CSR.
+ * <p>
+ * The adjacency serves the round based (fewest legs) search, earliest arrival and profile queries scan the
+ * {@link ConnectionTable} of the same snapshot.
+ * <p>
+ * Note: a leg can only follow another if it departs at or after the arrival of the previous one (no minimum transfer time).
+ */
+final class RouteGraph {
+
+    private static final Edge[] NO_EDGES = new Edge[0];
+
+    private final CityIds cityIds;
+
+    private final int[] offsets;
+    private final int[] targets;
+    private final long[] departures;
+    private final long[] arrivals;
+    private final String[] routeIds;
+
+    private final long[] removed;
+    private final Map<Integer, Edge[]> added;
+    private final int overlaySize;
+
+    // Note: built with the csr, the snapshots of its overlay derive theirs from it (see: ConnectionTable#with).
+    private final ConnectionTable csrConnections;
+    private volatile ConnectionTable connections;
+
+    private RouteGraph(CityIds cityIds,
+                       int[] offsets,
+                       int[] targets,
+                       long[] departures,
+                       long[] arrivals,
+                       String[] routeIds,
+                       long[] removed,
+                       Map<Integer, Edge[]> added,
+                       int overlaySize,
+                       ConnectionTable csrConnections) {
+        this.cityIds = cityIds;
+        this.offsets = offsets;
+        this.targets = targets;
+        this.departures = departures;
+        this.arrivals = arrivals;
+        this.routeIds = routeIds;
+        this.removed = removed;
+        this.added = added;
+        this.overlaySize = overlaySize;
+        this.csrConnections = csrConnections;
+    }
+
+    static RouteGraph build(CityIds cityIds, List<Edge> edges) {
+        final List<Edge> sorted = new ArrayList<>(edges);
+        sorted.sort(Comparator.<Edge>comparingInt(edge -> edge.origin).thenComparingLong(edge -> edge.departure));
+
+        final int cityCount = cityIds.size();
+        final int edgeCount = sorted.size();
+
+        final int[] offsets = new int[cityCount + 1];
+        final int[] targets = new int[edgeCount];
+        final long[] departures = new long[edgeCount];
+        final long[] arrivals = new long[edgeCount];
+        final String[] routeIds = new String[edgeCount];
+
+        for (int e = 0; e < edgeCount; e++) {
+            final Edge edge = sorted.get(e);
+            offsets[edge.origin + 1]++;
+            targets[e] = edge.target;
+            departures[e] = edge.departure;
+            arrivals[e] = edge.arrival;
+            routeIds[e] = edge.routeId;
+        }
+        for (int city = 0; city < cityCount; city++) {
+            offsets[city + 1] += offsets[city];
+        }
+
+        return new RouteGraph(cityIds, offsets, targets, departures, arrivals, routeIds,
+                new long[(edgeCount + 63) >>> 6], Collections.emptyMap(), 0, ConnectionTable.build(cityIds, sorted));
+    }
+
+    static Edge edge(CityIds cityIds, RouteInfo routeInfo) {
+        return new Edge(
+                cityIds.intern(routeInfo.getCity()),
+                cityIds.intern(routeInfo.getDestinyCity()),
+                routeInfo.getDepartureTime().toEpochMilli(),
+                routeInfo.getArrivalTime().toEpochMilli(),
+                routeInfo.getId()
+        );
+    }
+
+    // Note: routes without both ends or without consistent times can not be part of a journey.
+    static boolean isTraversable(RouteInfo routeInfo) {
+        return routeInfo.getId() != null
+                && routeInfo.getCity() != null
+                && routeInfo.getDestinyCity() != null
+                && routeInfo.getDepartureTime() != null
+                && routeInfo.getArrivalTime() != null
+                && !routeInfo.getArrivalTime().isBefore(routeInfo.getDepartureTime());
+    }
+
+    int overlaySize() {
+        return overlaySize;
+    }
+
+    int edgeCount() {
+        int count = targets.length;
+        for (long word : removed) {
+            count -= Long.bitCount(word);
+        }
+        for (Edge[] edges : added.values()) {
+            count += edges.length;
+        }
+        return count;
+    }
+
+    RouteGraph with(Edge edge) {
+        final Map<Integer, Edge[]> newAdded = new HashMap<>(added);
+        final Edge[] edges = newAdded.getOrDefault(edge.origin, NO_EDGES);
+        final Edge[] newEdges = Arrays.copyOf(edges, edges.length + 1);
+        newEdges[edges.length] = edge;
+        newAdded.put(edge.origin, newEdges);
+
+        return new RouteGraph(cityIds, offsets, targets, departures, arrivals, routeIds, removed, newAdded, overlaySize + 1, csrConnections);
+    }
+
+    RouteGraph with(List<Edge> edges) {
+        final Map<Integer, List<Edge>> edgesByOrigin = new HashMap<>();
+        for (Edge edge : edges) {
+            edgesByOrigin.computeIfAbsent(edge.origin, origin -> new ArrayList<>()).add(edge);
+        }
+
+        final Map<Integer, Edge[]> newAdded = new HashMap<>(added);
+        for (Map.Entry<Integer, List<Edge>> entry : edgesByOrigin.entrySet()) {
+            final Edge[] current = newAdded.getOrDefault(entry.getKey(), NO_EDGES);
+            final Edge[] newEdges = Arrays.copyOf(current, current.length + entry.getValue().size());
+            for (int i = 0; i < entry.getValue().size(); i++) {
+                newEdges[current.length + i] = entry.getValue().get(i);
+            }
+            newAdded.put(entry.getKey(), newEdges);
+        }
+
+        return new RouteGraph(cityIds, offsets, targets, departures, arrivals, routeIds, removed, newAdded, overlaySize + edges.size(), csrConnections);
+    }
+
+    RouteGraph without(int origin, String routeId) {
+        if (origin < offsets.length - 1) {
+            for (int e = offsets[origin]; e < offsets[origin + 1]; e++) {
+                if (routeIds[e].equals(routeId) && !isRemoved(e)) {
+                    final long[] newRemoved = removed.clone();
+                    newRemoved[e >>> 6] |= 1L << e;
+
+                    return new RouteGraph(cityIds, offsets, targets, departures, arrivals, routeIds, newRemoved, added, overlaySize + 1, csrConnections);
+                }
+            }
+        }
+
+        final Edge[] edges = added.getOrDefault(origin, NO_EDGES);
+        for (int i = 0; i < edges.length; i++) {
+            if (edges[i].routeId.equals(routeId)) {
+                final Map<Integer, Edge[]> newAdded = new HashMap<>(added);
+                final Edge[] newEdges = new Edge[edges.length - 1];
+                System.arraycopy(edges, 0, newEdges, 0, i);
+                System.arraycopy(edges, i + 1, newEdges, i, edges.length - i - 1);
+                if (newEdges.length == 0) {
+                    newAdded.remove(origin);
+                } else {
+                    newAdded.put(origin, newEdges);
+                }
+
+                return new RouteGraph(cityIds, offsets, targets, departures, arrivals, routeIds, removed, newAdded, overlaySize - 1, csrConnections);
+            }
+        }
+
+        return this;
+    }
+
+    RouteGraph compact() {
+        return build(cityIds, liveEdges());
+    }
+
+    // Note: derived on first use from the table of the csr (no sort of all the routes, only of the overlay), a snapshot
+    //       is immutable so its table never goes stale (writes create a new snapshot).
+    ConnectionTable connections() {
+        if (overlaySize == 0) {
+            return csrConnections;
+        }
+
+        ConnectionTable table = connections;
+        if (table == null) {
+            table = csrConnections.with(removed, added.values());
+            connections = table;
+        }
+        return table;
+    }
+
+    private List<Edge> liveEdges() {
+        final List<Edge> edges = new ArrayList<>(targets.length + overlaySize);
+        for (int origin = 0; origin < offsets.length - 1; origin++) {
+            for (int e = offsets[origin]; e < offsets[origin + 1]; e++) {
+                if (!isRemoved(e)) {
+                    edges.add(new Edge(origin, targets[e], departures[e], arrivals[e], routeIds[e]));
+                }
+            }
+        }
+        for (Edge[] overlayEdges : added.values()) {
+            Collections.addAll(edges, overlayEdges);
+        }
+        return edges;
+    }
+
+    /**
+     * Round based search (as in RAPTOR): round k relaxes only the cities improved in round k - 1, so the first round
+     * which reaches the target gives the fewest legs, and among those the earliest arrival.
+     * <p>
+     * Note: a city keeps improving in later rounds (more legs but earlier arrival can open connections), labels are
+     * never overwritten so every journey is rebuilt exactly as it was found.
+     */
+    Optional<List<RouteInfo>> fewestHops(int source, int target, long departureAfter) {
+        final int cityCount = cityIds.size();
+        final long[] best = new long[cityCount];
+        Arrays.fill(best, Long.MAX_VALUE);
+        final int[] labelOf = new int[cityCount];
+
+        final Labels labels = new Labels(64);
+
+        best[source] = departureAfter;
+        labelOf[source] = labels.append(source, Labels.NONE, null, departureAfter, departureAfter);
+
+        int[] frontier = {labelOf[source]};
+        int frontierSize = 1;
+
+        while (frontierSize > 0) {
+            final int roundStart = labels.size();
+
+            for (int i = 0; i < frontierSize; i++) {
+                final int label = frontier[i];
+                final int city = labels.city[label];
+                final long time = labels.arrival[label];
+
+                if (city < offsets.length - 1) {
+                    for (int e = firstDeparture(city, time); e < offsets[city + 1]; e++) {
+                        final int next = targets[e];
+                        if (arrivals[e] < best[next] && !isRemoved(e)) {
+                            best[next] = arrivals[e];
+                            labelOf[next] = labels.append(next, label, routeIds[e], departures[e], arrivals[e]);
+                        }
+                    }
+                }
+                for (Edge edge : added.getOrDefault(city, NO_EDGES)) {
+                    if (edge.departure >= time && edge.arrival < best[edge.target]) {
+                        best[edge.target] = edge.arrival;
+                        labelOf[edge.target] = labels.append(edge.target, label, edge.routeId, edge.departure, edge.arrival);
+                    }
+                }
+            }
+
+            if (best[target] != Long.MAX_VALUE) {
+                return Optional.of(legs(labels, labelOf[target]));
+            }
+
+            // Note: a city improved twice in the same round continues only from its last (best) label.
+            frontier = new int[labels.size() - roundStart];
+            frontierSize = 0;
+            for (int label = roundStart; label < labels.size(); label++) {
+                if (labelOf[labels.city[label]] == label) {
+                    frontier[frontierSize++] = label;
+                }
+            }
+        }
+
+        return Optional.empty();
+    }
+
+    private boolean isRemoved(int e) {
+        return (removed[e >>> 6] & (1L << e)) != 0;
+    }
+
+    // Note: first edge of the city departing at or after the provided time.
+    private int firstDeparture(int city, long time) {
+        int low = offsets[city];
+        int high = offsets[city + 1];
+        while (low < high) {
+            final int mid = (low + high) >>> 1;
+            if (departures[mid] < time) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private List<RouteInfo> legs(Labels labels, int label) {
+        final List<RouteInfo> legs = new ArrayList<>();
+        while (labels.parent[label] != Labels.NONE) {
+            final int parent = labels.parent[label];
+            legs.add(new RouteInfo(
+                    labels.routeId[label],
+                    cityIds.city(labels.city[parent]),
+                    cityIds.city(labels.city[label]),
+                    Instant.ofEpochMilli(labels.departure[label]),
+                    Instant.ofEpochMilli(labels.arrival[label])
+            ));
+            label = parent;
+        }
+        Collections.reverse(legs);
+        return legs;
+    }
+
+    static final class Edge {
+
+        final int origin;
+        final int target;
+        final long departure;
+        final long arrival;
+        final String routeId;
+
+        Edge(int origin, int target, long departure, long arrival, String routeId) {
+            this.origin = origin;
+            this.target = target;
+            this.departure = departure;
+            this.arrival = arrival;
+            this.routeId = routeId;
+        }
+    }
+
+    /**
+     * Append only log of the labels (city reached, by which leg, from which label) of a single query.
+     */
+    private static final class Labels {
+
+        static final int NONE = -1;
+
+        int[] city;
+        int[] parent;
+        String[] routeId;
+        long[] departure;
+        long[] arrival;
+
+        private int size;
+
+        Labels(int initialCapacity) {
+            city = new int[initialCapacity];
+            parent = new int[initialCapacity];
+            routeId = new String[initialCapacity];
+            departure = new long[initialCapacity];
+            arrival = new long[initialCapacity];
+        }
+
+        int append(int city, int parent, String routeId, long departure, long arrival) {
+            if (size == this.city.length) {
+                final int capacity = size * 2;
+                this.city = Arrays.copyOf(this.city, capacity);
+                this.parent = Arrays.copyOf(this.parent, capacity);
+                this.routeId = Arrays.copyOf(this.routeId, capacity);
+                this.departure = Arrays.copyOf(this.departure, capacity);
+                this.arrival = Arrays.copyOf(this.arrival, capacity);
+            }
+
+            this.city[size] = city;
+            this.parent[size] = parent;
+            this.routeId[size] = routeId;
+            this.departure[size] = departure;
+            this.arrival[size] = arrival;
+            return size++;
+        }
+
+        int size() {
+            return size;
+        }
+    }
+}
@@ -0,0 +1,221 @@
+package com.adidas.chriniko.routesservice.graph;
+
+import com.adidas.chriniko.routesservice.dto.CityInfo;
+import com.adidas.chriniko.routesservice.dto.RouteInfo;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.UnaryOperator;
+import java.util.stream.Collectors;
+
+/**
+ * In memory route graph of all the routes (see {@link RouteGraph} and {@link ConnectionTable}), loaded once at startup
+ * and then kept up to date with every create, update and delete, so itinerary queries never touch the db.
+ * <p>
+ * Note: queries read the current (immutable) snapshot without locking, writes are serialized and swap the snapshot.
+ */
+@Log4j2
+
+@Component
+public class RouteGraphIndex {
+
+    private final int compactionThreshold;
+
+    private final CityIds cityIds = new CityIds();
+
+    private volatile RouteGraph graph;
+    private volatile boolean loaded;
+
+    // Note: writes which happen before the initial load read the db (the service is up while the routes are seeded),
+    //       replayed on the loaded graph (writes are idempotent).
+    private List<UnaryOperator<RouteGraph>> journal = new ArrayList<>();
+
+    public RouteGraphIndex(@Value("${route-graph.compaction-threshold}") int compactionThreshold) {
+        this.compactionThreshold = compactionThreshold;
+        this.graph = RouteGraph.build(cityIds, Collections.emptyList());
+    }
+
+    public synchronized void beginLoad() {
+        if (journal == null) {
+            journal = new ArrayList<>();
+        }
+    }
+
+    public synchronized void cancelLoad() {
+        journal = null;
+    }
+
+    public void load(Collection<RouteInfo> routeInfos) {
+        final List<RouteGraph.Edge> edges = routeInfos
+                .stream()
+                .filter(RouteGraph::isTraversable)
+                .map(routeInfo -> RouteGraph.edge(cityIds, routeInfo))
+                .collect(Collectors.toList());
+
+        RouteGraph loadedGraph = RouteGraph.build(cityIds, edges);
+
+        synchronized (this) {
+            if (journal != null) {
+                for (UnaryOperator<RouteGraph> write : journal) {
+                    loadedGraph = write.apply(loadedGraph);
+                }
+                journal = null;
+            }
+
+            graph = loadedGraph.overlaySize() > 0 ? loadedGraph.compact() : loadedGraph;
+            loaded = true;
+        }
+
+        log.info("route graph loaded, cities: {}, routes: {}, connections: {}",
+                cityIds.size(), graph.edgeCount(), graph.connections().size());
+    }
+
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    public void add(RouteInfo routeInfo) {
+        if (!RouteGraph.isTraversable(routeInfo)) {
+            return;
+        }
+        final RouteGraph.Edge edge = RouteGraph.edge(cityIds, routeInfo);
+
+        write(current -> current.without(edge.origin, edge.routeId).with(edge));
+    }
+
+    /**
+     * Adds (or replaces, same id and origin) the routes.
+     * <p>
+     * Note: one snapshot (and at most one compaction) for all the routes, instead of one per route.
+     */
+    public void addAll(Collection<RouteInfo> routeInfos) {
+        final List<RouteGraph.Edge> edges = routeInfos
+                .stream()
+                .filter(RouteGraph::isTraversable)
+                .map(routeInfo -> RouteGraph.edge(cityIds, routeInfo))
+                .collect(Collectors.toList());
+        if (edges.isEmpty()) {
+            return;
+        }
+
+        write(current -> {
+            RouteGraph newGraph = current;
+            for (RouteGraph.Edge edge : edges) {
+                newGraph = newGraph.without(edge.origin, edge.routeId);
+            }
+            return newGraph.with(edges);
+        });
+    }
+
+    public void update(String routeId, CityInfo previousOrigin, RouteInfo routeInfo) {
+        final int previous = cityIds.intern(previousOrigin);
+        if (!RouteGraph.isTraversable(routeInfo)) {
+            write(current -> current.without(previous, routeId));
+            return;
+        }
+        final RouteGraph.Edge edge = RouteGraph.edge(cityIds, routeInfo);
+
+        write(current -> current.without(previous, routeId).without(edge.origin, routeId).with(edge));
+    }
+
+    // Note: interned even when unknown, the write is journaled so a route loaded meanwhile (see load) is removed too.
+    public void remove(String routeId, CityInfo origin) {
+        final int city = cityIds.intern(origin);
+
+        write(current -> current.without(city, routeId));
+    }
+
+    // Note: same as addAll, one snapshot for all the routes (by id and origin).
+    public void removeAll(Collection<RouteInfo> routeInfos) {
+        final List<RouteInfo> removed = routeInfos
+                .stream()
+                .filter(routeInfo -> routeInfo.getCity() != null)
+                .collect(Collectors.toList());
+        if (removed.isEmpty()) {
+            return;
+        }
+
+        final int[] origins = removed.stream().mapToInt(routeInfo -> cityIds.intern(routeInfo.getCity())).toArray();
+        final String[] routeIds = removed.stream().map(RouteInfo::getId).toArray(String[]::new);
+
+        write(current -> {
+            RouteGraph newGraph = current;
+            for (int i = 0; i < routeIds.length; i++) {
+                newGraph = newGraph.without(origins[i], routeIds[i]);
+            }
+            return newGraph;
+        });
+    }
+
+    /**
+     * @param departureAfter the earliest departure of the first leg, or null for any.
+     * @return the legs of the journey which arrives first, or empty if the destination can not be reached.
+     */
+    public Optional<List<RouteInfo>> earliestArrival(CityInfo from, CityInfo to, Instant departureAfter) {
+        final int source = cityIds.id(from);
+        final int target = cityIds.id(to);
+        if (source == CityIds.UNKNOWN || target == CityIds.UNKNOWN) {
+            return Optional.empty();
+        }
+        return graph
+                .connections()
+                .earliestArrival(source, target, departureAfter == null ? Long.MIN_VALUE : departureAfter.toEpochMilli());
+    }
+
+    /**
+     * @param departureFrom the earliest departure of the first leg, or null for any.
+     * @param departureTo   the first leg departs before it, or null for any.
+     * @return the pareto optimal journeys (no other one departs later and arrives earlier), ordered by departure.
+     */
+    public List<List<RouteInfo>> profile(CityInfo from, CityInfo to, Instant departureFrom, Instant departureTo) {
+        final int source = cityIds.id(from);
+        final int target = cityIds.id(to);
+        if (source == CityIds.UNKNOWN || target == CityIds.UNKNOWN) {
+            return Collections.emptyList();
+        }
+        return graph
+                .connections()
+                .profile(
+                        source,
+                        target,
+                        departureFrom == null ? Long.MIN_VALUE : departureFrom.toEpochMilli(),
+                        departureTo == null ? Long.MAX_VALUE : departureTo.toEpochMilli()
+                );
+    }
+
+    /**
+     * @param departureAfter the earliest departure of the first leg, or null for any.
+     * @return the legs of the journey with the fewest legs (earliest arrival among those), or empty if the destination
+     * can not be reached.
+     */
+    public Optional<List<RouteInfo>> fewestHops(CityInfo from, CityInfo to, Instant departureAfter) {
+        final int source = cityIds.id(from);
+        final int target = cityIds.id(to);
+        if (source == CityIds.UNKNOWN || target == CityIds.UNKNOWN) {
+            return Optional.empty();
+        }
+        return graph.fewestHops(source, target, departureAfter == null ? Long.MIN_VALUE : departureAfter.toEpochMilli());
+    }
+
+    private synchronized void write(UnaryOperator<RouteGraph> write) {
+        RouteGraph newGraph = write.apply(graph);
+
+        // Note: the overlay costs a map lookup per relaxed city and a copy of the removed bitset per write, so once it grows
+        //       we pay for one rebuild of the csr.
+        if (newGraph.overlaySize() > compactionThreshold) {
+            newGraph = newGraph.compact();
+        }
+        graph = newGraph;
+
+        if (journal != null) {
+            journal.add(write);
+        }
+    }
+}
@@ -0,0 +1,202 @@
+package com.adidas.chriniko.routesservice.init;
+
+import com.adidas.chriniko.routesservice.error.ProcessingException;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Streaming loader of the world cities csv (same result as {@link CitiesCsvProcessor}): scans the bytes once through a fixed
+ * buffer, keeps only the city_ascii and country columns, and interns the names on their bytes, so a name seen before
+ * allocates nothing (no record, no string per column).
+ */
+@Log4j2
+
+@Component
+public class CitiesCsvLoader {
+
+    private static final int CITY_ASCII_COLUMN = 1;
+    private static final int COUNTRY_COLUMN = 4;
+
+    public CityTables load() {
+        try (InputStream csv = new ClassPathResource(CitiesCsvProcessor.CITIES_CSV).getInputStream()) {
+
+            final CityTables cityTables = load(csv);
+            log.debug("countries: {}", cityTables.countries());
+            return cityTables;
+
+        } catch (Exception error) {
+            String msg = "error occurred during reading of world cities csv";
+            log.error(msg, error);
+            throw new ProcessingException(msg, error);
+        }
+    }
+
+    // Note: rfc 4180, fields optionally quoted, a quote within a quoted field is escaped as "", the first record is the header.
+    static CityTables load(InputStream csv) throws IOException {
+        final CityTables.Builder cityTables = new CityTables.Builder();
+
+        final Field city = new Field();
+        final Field country = new Field();
+        final Interner cities = new Interner();
+        final Interner countries = new Interner();
+
+        final byte[] buffer = new byte[64 * 1024];
+
+        boolean header = true;
+        int column = 0;
+        boolean quoted = false;
+        boolean closingQuote = false;
+
+        int read;
+        while ((read = csv.read(buffer)) != -1) {
+            for (int i = 0; i < read; i++) {
+                final byte b = buffer[i];
+
+                if (quoted) {
+                    if (b == '"') {
+                        quoted = false;
+                        closingQuote = true;
+                    } else {
+                        append(column, b, city, country);
+                    }
+                    continue;
+                }
+
+                if (b == '"') {
+                    if (closingQuote) {
+                        append(column, b, city, country);
+                    }
+                    quoted = true;
+                    closingQuote = false;
+                    continue;
+                }
+                closingQuote = false;
+
+                if (b == ',') {
+                    column++;
+                } else if (b == '\n') {
+                    if (column >= COUNTRY_COLUMN) {
+                        if (!header) {
+                            cityTables.add(countries.intern(country), cities.intern(city));
+                        }
+                        header = false;
+                    }
+
+                    column = 0;
+                    city.length = 0;
+                    country.length = 0;
+                } else if (b != '\r') {
+                    append(column, b, city, country);
+                }
+            }
+        }
+
+        // Note: no line break after the last record.
+        if (column >= COUNTRY_COLUMN && !header) {
+            cityTables.add(countries.intern(country), cities.intern(city));
+        }
+
+        return cityTables.build();
+    }
+
+    private static void append(int column, byte b, Field city, Field country) {
+        if (column == CITY_ASCII_COLUMN) {
+            city.append(b);
+        } else if (column == COUNTRY_COLUMN) {
+            country.append(b);
+        }
+    }
+
+    // Note: the (utf-8) bytes of a column, reused for every record.
+    private static final class Field {
+
+        private byte[] bytes = new byte[128];
+        private int length;
+
+        void append(byte b) {
+            if (length == bytes.length) {
+                bytes = Arrays.copyOf(bytes, bytes.length * 2);
+            }
+            bytes[length++] = b;
+        }
+
+        int hash() {
+            int hash = 0x811c9dc5;
+            for (int i = 0; i < length; i++) {
+                hash = (hash ^ bytes[i]) * 0x01000193;
+            }
+            return hash ^ (hash >>> 16);
+        }
+
+        boolean matches(byte[] other) {
+            if (other.length != length) {
+                return false;
+            }
+            for (int i = 0; i < length; i++) {
+                if (other[i] != bytes[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    // Note: open addressing (linear probing) table of the names seen so far, keyed by their bytes.
+    private static final class Interner {
+
+        private byte[][] keys = new byte[1024][];
+        private String[] names = new String[1024];
+        private int size;
+
+        String intern(Field field) {
+            final int hash = field.hash();
+
+            int slot = hash & (keys.length - 1);
+            while (keys[slot] != null) {
+                if (field.matches(keys[slot])) {
+                    return names[slot];
+                }
+                slot = (slot + 1) & (keys.length - 1);
+            }
+
+            final String name = new String(field.bytes, 0, field.length, StandardCharsets.UTF_8);
+            keys[slot] = Arrays.copyOf(field.bytes, field.length);
+            names[slot] = name;
+
+            if (++size * 2 > keys.length) {
+                resize();
+            }
+            return name;
+        }
+
+        private void resize() {
+            final byte[][] oldKeys = keys;
+            final String[] oldNames = names;
+
+            keys = new byte[oldKeys.length * 2][];
+            names = new String[oldNames.length * 2];
+
+            final Field field = new Field();
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] == null) {
+                    continue;
+                }
+                field.bytes = oldKeys[i];
+                field.length = oldKeys[i].length;
+
+                int slot = field.hash() & (keys.length - 1);
+                while (keys[slot] != null) {
+                    slot = (slot + 1) & (keys.length - 1);
+                }
+                keys[slot] = oldKeys[i];
+                names[slot] = oldNames[i];
+            }
+        }
+    }
+}
@@ -10,6 +10,7 @@ import org.springframework.stereotype.Component;
 
 import java.io.BufferedReader;
 import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
 import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
@@ -20,6 +21,8 @@ import java.util.Map;
 @Component
 public class CitiesCsvProcessor {
 
+    public static final String CITIES_CSV = "cities/worldcities.csv";
+
     private static final String[] HEADERS = {"city", "city_ascii", "lat", "lng", "country", "iso2", "iso3", "admin_name", "capital", "population", "id"};
 
     @Value("${cities-csv-processor.display-parsing-info}")
@@ -30,7 +33,8 @@ public class CitiesCsvProcessor {
         try {
             try (BufferedReader bufferedReader = new BufferedReader(
                     new InputStreamReader(
-                            new ClassPathResource("cities/worldcities.csv").getInputStream()
+                            new ClassPathResource(CITIES_CSV).getInputStream(),
+                            StandardCharsets.UTF_8
                     ))) {
 
                 Iterable<CSVRecord> records = CSVFormat.DEFAULT
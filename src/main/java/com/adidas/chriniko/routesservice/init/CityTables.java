@@ -0,0 +1,82 @@
+package com.adidas.chriniko.routesservice.init;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The world cities per country (see {@link CitiesCsvLoader}), array backed (random access) and interned (one string
+ * instance per distinct name), countries and cities in the order of the csv.
+ */
+public final class CityTables {
+
+    private final String[] countries;
+    private final String[][] cities;
+
+    private CityTables(String[] countries, String[][] cities) {
+        this.countries = countries;
+        this.cities = cities;
+    }
+
+    public int countries() {
+        return countries.length;
+    }
+
+    public String country(int country) {
+        return countries[country];
+    }
+
+    public List<String> cities(int country) {
+        return Collections.unmodifiableList(Arrays.asList(cities[country]));
+    }
+
+    // Note: read only views of the tables, no copy.
+    public Map<String, List<String>> citiesByCountry() {
+        final Map<String, List<String>> citiesByCountry = new LinkedHashMap<>();
+        for (int country = 0; country < countries.length; country++) {
+            citiesByCountry.put(countries[country], cities(country));
+        }
+        return citiesByCountry;
+    }
+
+    static final class Builder {
+
+        // Note: the names are interned, so identity is equality.
+        private final Map<String, Integer> countryIndexes = new IdentityHashMap<>();
+        private final List<String> countries = new ArrayList<>();
+        private final List<String[]> cities = new ArrayList<>();
+
+        private int[] size = new int[256];
+
+        void add(String country, String city) {
+            final int index = countryIndexes.computeIfAbsent(country, c -> {
+                countries.add(c);
+                cities.add(new String[16]);
+                return countries.size() - 1;
+            });
+
+            if (index == size.length) {
+                size = Arrays.copyOf(size, size.length * 2);
+            }
+
+            String[] countryCities = cities.get(index);
+            if (size[index] == countryCities.length) {
+                countryCities = Arrays.copyOf(countryCities, countryCities.length * 2);
+                cities.set(index, countryCities);
+            }
+            countryCities[size[index]++] = city;
+        }
+
+        CityTables build() {
+            final String[][] tables = new String[countries.size()][];
+            for (int country = 0; country < tables.length; country++) {
+                tables[country] = Arrays.copyOf(cities.get(country), size[country]);
+            }
+            return new CityTables(countries.toArray(new String[0]), tables);
+        }
+    }
+}
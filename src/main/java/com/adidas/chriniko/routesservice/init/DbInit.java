@@ -5,6 +5,7 @@ import com.zaxxer.hikari.HikariDataSource;
 import lombok.extern.log4j.Log4j2;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.context.event.ContextRefreshedEvent;
 import org.springframework.context.event.EventListener;
 import org.springframework.core.io.ClassPathResource;
@@ -13,8 +14,6 @@ import org.springframework.stereotype.Component;
 
 import java.sql.Connection;
 import java.sql.SQLException;
-import java.util.List;
-import java.util.Map;
 
 @Log4j2
 
@@ -22,37 +21,78 @@ import java.util.Map;
 public class DbInit {
 
     private final HikariDataSource dataSource;
-    private final CitiesCsvProcessor citiesCsvProcessor;
+    private final CitiesCsvLoader citiesCsvLoader;
     private final RouteGenerator routeGenerator;
+    private final ApplicationEventPublisher eventPublisher;
 
     @Value("${generate.routes}")
     private boolean generateRoutes;
 
+    @Value("${generate.routes-mode}")
+    private String generateRoutesMode;
+
     @Autowired
-    public DbInit(HikariDataSource dataSource, CitiesCsvProcessor citiesCsvProcessor, RouteGenerator routeGenerator) {
+    public DbInit(HikariDataSource dataSource,
+                  CitiesCsvLoader citiesCsvLoader,
+                  RouteGenerator routeGenerator,
+                  ApplicationEventPublisher eventPublisher) {
         this.dataSource = dataSource;
-        this.citiesCsvProcessor = citiesCsvProcessor;
+        this.citiesCsvLoader = citiesCsvLoader;
         this.routeGenerator = routeGenerator;
+        this.eventPublisher = eventPublisher;
     }
 
     @EventListener
     public void createSchema(ContextRefreshedEvent event) {
         log.debug("will create schema now...");
 
-        try (Connection connection = dataSource.getConnection()) {
+        final boolean loadData = generateRoutes && RouteGenerator.LOAD_DATA_MODE.equals(generateRoutesMode);
+
+        // Note: setup table, a bulk load maintains no indexes (they are created once, after it).
+        executeSqlScript("sql/setup.sql");
+        if (!loadData) {
+            executeSqlScript("sql/indexes.sql");
+        }
+
+        if (!generateRoutes) {
+            eventPublisher.publishEvent(new RoutesSeededEvent(0, false));
+            return;
+        }
+
+        // Note: seeding runs in the background, so the service starts serving meanwhile (see RouteGraphIndex journal).
+        Thread routeSeeder = new Thread(() -> seedRoutes(loadData));
+        routeSeeder.setName("route-seeder");
+        routeSeeder.setDaemon(true);
+        routeSeeder.start();
+    }
 
-            // Note: setup table.
-            ScriptUtils.executeSqlScript(connection, new ClassPathResource("sql/setup.sql"));
+    private void seedRoutes(boolean loadData) {
+        long seededRoutes = 0;
+        try {
+            seededRoutes = routeGenerator.generate(() -> citiesCsvLoader.load().citiesByCountry());
+        } catch (RuntimeException e) {
+            log.error("error occurred during seeding of routes", e);
+        }
 
-            if (generateRoutes) {
-                Map<String, List<String>> citiesByCountry = citiesCsvProcessor.getCitiesByCountry();
-                routeGenerator.generate(citiesByCountry);
+        if (loadData) {
+            log.debug("will create indexes now...");
+            try {
+                executeSqlScript("sql/indexes.sql");
+            } catch (RuntimeException e) {
+                log.error("error occurred during creation of indexes", e);
             }
+        }
 
+        // Note: also after a failure, so what has been stored is served.
+        eventPublisher.publishEvent(new RoutesSeededEvent(seededRoutes, true));
+    }
+
+    private void executeSqlScript(String script) {
+        try (Connection connection = dataSource.getConnection()) {
+            ScriptUtils.executeSqlScript(connection, new ClassPathResource(script));
         } catch (SQLException e) {
             log.error("error occurred during initialization of schema", e);
             throw new ProcessingException(e);
         }
     }
-
 }
@@ -1,6 +1,7 @@
 package com.adidas.chriniko.routesservice.init;
 
 import com.adidas.chriniko.routesservice.entity.RouteEntity;
+import com.adidas.chriniko.routesservice.error.ProcessingException;
 import com.google.common.collect.Lists;
 import lombok.Getter;
 import lombok.extern.log4j.Log4j2;
@@ -8,13 +9,24 @@ import org.javatuples.Pair;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
-import java.security.SecureRandom;
 import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 @Log4j2
@@ -29,92 +41,252 @@ public class RouteDataGenerator {
     @Value("${route-data-generator.display-storing-info}")
     private boolean displayStoringInfo;
 
+    @Value("${route-data-generator.seed}")
+    private long seed;
+
+    @Value("${route-data-generator.target-routes}")
+    private long targetRoutes;
+
+    @Value("${route-data-generator.fan-out}")
+    private int fanOut;
+
+    @Value("${route-data-generator.zipf-exponent}")
+    private double zipfExponent;
+
+    @Value("${route-data-generator.departures-from}")
+    private String departuresFrom;
+
+    @Value("${route-data-generator.departure-days}")
+    private int departureDays;
+
+    @Value("${route-data-generator.parallelism}")
+    private int parallelism;
+
     @Getter
     public static class RouteDataGeneratorResult {
         private Map<String, List<List<RouteEntity>>> itinerariesInfoByCountry = new LinkedHashMap<>();
         private int countriesWhichNotSatisfyNoOfItinerariesForSelectedRootCity = 0;
     }
 
+    // Note: everything the generated routes depend on (besides the cities), see RouteSnapshot. The itineraries depart from
+    //       the wall clock at generation time (the synthetic routes from departures-from), so their snapshot is only fresh
+    //       on the (utc) day it was generated, a later run would read routes which all departed in the past.
+    public String configuration() {
+        return "no-of-itineraries-for-selected-root-city=" + noOfItinerariesForSelectedRootCity
+                + ",seed=" + seed
+                + ",target-routes=" + targetRoutes
+                + ",fan-out=" + fanOut
+                + ",zipf-exponent=" + zipfExponent
+                + ",departures-from=" + departuresFrom
+                + ",departure-days=" + departureDays
+                + (targetRoutes > 0 ? "" : ",generated-on=" + LocalDate.now(ZoneOffset.UTC));
+    }
+
     public RouteDataGeneratorResult invoke(Map<String, List<String>> citiesByCountry) {
 
         final RouteDataGeneratorResult result = new RouteDataGeneratorResult();
 
-        final SecureRandom random = new SecureRandom();
+        final SplittableRandom random = new SplittableRandom(seed);
 
         for (Map.Entry<String, List<String>> citiesByCountryRecord : citiesByCountry.entrySet()) {
 
-            String country = citiesByCountryRecord.getKey();
-            List<String> cities = citiesByCountryRecord.getValue();
-
-            if (cities.size() <= noOfItinerariesForSelectedRootCity) {
+            final List<List<RouteEntity>> itineraries = itineraries(citiesByCountryRecord.getKey(), citiesByCountryRecord.getValue(), random);
+            if (itineraries == null) {
                 result.countriesWhichNotSatisfyNoOfItinerariesForSelectedRootCity++;
                 continue;
             }
 
-            // first pick a random root city
-            final int rootCityIdx = random.nextInt(cities.size());
-            final String rootCity = cities.get(rootCityIdx);
-            cities.remove(rootCity);
-
-            log.trace("noOfItinerariesForSelectedRootCity: {} --- cities.size(): {}", noOfItinerariesForSelectedRootCity, cities.size());
-            if (noOfItinerariesForSelectedRootCity > cities.size()) {
-                throw new IllegalStateException("not enough cities to apply the request number of itineraries for selected root city (partition could not be applied), "
-                        + "noOfItinerariesForSelectedRootCity="
-                        + noOfItinerariesForSelectedRootCity
-                        + ", cities.size()="
-                        + cities.size());
+            result.itinerariesInfoByCountry.put(citiesByCountryRecord.getKey(), itineraries);
+        }
+
+
+        return result;
+    }
+
+    /**
+     * Same routes as {@link #invoke(Map)}, or with target-routes set exactly that many {@link SyntheticRoutes}, but handed
+     * over in chunks of (at most) chunkSize routes as soon as they are generated, so memory does not grow with the dataset.
+     *
+     * @return the countries which do not satisfy noOfItinerariesForSelectedRootCity (no routes for them).
+     */
+    public int generate(Map<String, List<String>> citiesByCountry, int chunkSize, Consumer<List<RouteEntity>> chunkConsumer) {
+
+        if (targetRoutes > 0) {
+            generateSynthetic(citiesByCountry, chunkSize, chunkConsumer);
+            return 0;
+        }
+
+        int countriesWhichNotSatisfyNoOfItinerariesForSelectedRootCity = 0;
+
+        final SplittableRandom random = new SplittableRandom(seed);
+
+        List<RouteEntity> chunk = new ArrayList<>(chunkSize);
+
+        for (Map.Entry<String, List<String>> citiesByCountryRecord : citiesByCountry.entrySet()) {
+
+            final List<List<RouteEntity>> itineraries = itineraries(citiesByCountryRecord.getKey(), citiesByCountryRecord.getValue(), random);
+            if (itineraries == null) {
+                countriesWhichNotSatisfyNoOfItinerariesForSelectedRootCity++;
+                continue;
             }
 
-            List<List<String>> partitionedCities = Lists.partition(cities, cities.size() / noOfItinerariesForSelectedRootCity);
+            for (List<RouteEntity> itinerary : itineraries) {
+                for (RouteEntity route : itinerary) {
+                    chunk.add(route);
 
-            final List<List<RouteEntity>> itineraries = new ArrayList<>(noOfItinerariesForSelectedRootCity);
+                    if (chunk.size() == chunkSize) {
+                        chunkConsumer.accept(chunk);
+                        chunk = new ArrayList<>(chunkSize);
+                    }
+                }
+            }
+        }
 
-            for (int k = 1; k <= noOfItinerariesForSelectedRootCity; k++) {
+        if (!chunk.isEmpty()) {
+            chunkConsumer.accept(chunk);
+        }
 
-                List<String> citiesToChooseFrom = partitionedCities.get(k - 1);
+        return countriesWhichNotSatisfyNoOfItinerariesForSelectedRootCity;
+    }
 
-                // calculate size of itinerary, eg: a --> b --> c--> ... (size == 3)
-                int maxItinerarySize = citiesToChooseFrom.size(); /* [city a, city b, city c] === [(a,b), (b,c)] === 2 records in db */
-                int itinerarySize = random.nextInt(maxItinerarySize);
+    private void generateSynthetic(Map<String, List<String>> citiesByCountry, int chunkSize, Consumer<List<RouteEntity>> chunkConsumer) {
 
-                // calculate next city idx and do the 'binding'
-                String previousCity = rootCity;
-                Instant previousArrivalTime = Instant.now();
+        final SyntheticRoutes syntheticRoutes = new SyntheticRoutes(
+                citiesByCountry, seed, fanOut, zipfExponent, Instant.parse(departuresFrom), departureDays
+        );
 
-                List<RouteEntity> routes = new ArrayList<>(itinerarySize);
+        final long blocks = SyntheticRoutes.blocks(targetRoutes);
+        final int generatorThreads = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
 
-                for (int i = 1; i <= itinerarySize; i++) {
+        log.debug("target routes: {}, blocks: {}, generator threads: {}, seed: {}", targetRoutes, blocks, generatorThreads, seed);
 
-                    String nextCity = citiesToChooseFrom.get(i - 1);
+        ExecutorService generators = Executors.newFixedThreadPool(generatorThreads, new ThreadFactory() {
+            private final AtomicInteger id = new AtomicInteger(0);
 
-                    Instant departureTime = previousArrivalTime;
-                    Instant arrivalTime = departureTime.plusSeconds(TimeUnit.SECONDS.convert(random.nextInt(4) + 1, TimeUnit.HOURS));
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread t = new Thread(runnable);
+                t.setName("route-data-generator-" + id.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            }
+        });
 
-                    previousArrivalTime = arrivalTime;
+        try {
+            // Note: a window of blocks in flight, taken in block order, so the chunks are the same on every run and at
+            //       most the window is held in memory (the consumer blocks when storing falls behind).
+            final Deque<Future<List<RouteEntity>>> window = new ArrayDeque<>();
+            long nextBlock = 0;
 
-                    RouteEntity route = new RouteEntity(
-                            previousCity,
-                            country,
-                            nextCity,
-                            country,
-                            departureTime,
-                            arrivalTime
-                    );
+            List<RouteEntity> chunk = new ArrayList<>(chunkSize);
 
-                    routes.add(route);
-                    previousCity = nextCity;
+            while (nextBlock < blocks || !window.isEmpty()) {
+                while (nextBlock < blocks && window.size() < 2 * generatorThreads) {
+                    final long block = nextBlock++;
+                    window.add(generators.submit(() -> syntheticRoutes.block(block, targetRoutes)));
                 }
 
-                itineraries.add(routes);
+                for (RouteEntity route : get(window.poll())) {
+                    chunk.add(route);
 
-                log(country, routes);
+                    if (chunk.size() == chunkSize) {
+                        chunkConsumer.accept(chunk);
+                        chunk = new ArrayList<>(chunkSize);
+                    }
+                }
+            }
+
+            if (!chunk.isEmpty()) {
+                chunkConsumer.accept(chunk);
             }
 
-            result.itinerariesInfoByCountry.put(country, itineraries);
+        } finally {
+            generators.shutdownNow();
+        }
+    }
+
+    private static List<RouteEntity> get(Future<List<RouteEntity>> block) {
+        try {
+            return block.get();
+        } catch (InterruptedException error) {
+            Thread.currentThread().interrupt();
+            throw new ProcessingException(error);
+        } catch (ExecutionException error) {
+            throw new ProcessingException(error.getCause());
         }
+    }
 
+    // Note: null if the country has not enough cities for the requested number of itineraries.
+    private List<List<RouteEntity>> itineraries(String country, List<String> cities, SplittableRandom random) {
 
-        return result;
+        if (cities.size() <= noOfItinerariesForSelectedRootCity) {
+            return null;
+        }
+
+        // first pick a random root city (the other cities are copied, the cities of the country are read only)
+        final int rootCityIdx = random.nextInt(cities.size());
+        final String rootCity = cities.get(rootCityIdx);
+
+        final List<String> otherCities = new ArrayList<>(cities.size() - 1);
+        otherCities.addAll(cities.subList(0, rootCityIdx));
+        otherCities.addAll(cities.subList(rootCityIdx + 1, cities.size()));
+        cities = otherCities;
+
+        log.trace("noOfItinerariesForSelectedRootCity: {} --- cities.size(): {}", noOfItinerariesForSelectedRootCity, cities.size());
+        if (noOfItinerariesForSelectedRootCity > cities.size()) {
+            throw new IllegalStateException("not enough cities to apply the request number of itineraries for selected root city (partition could not be applied), "
+                    + "noOfItinerariesForSelectedRootCity="
+                    + noOfItinerariesForSelectedRootCity
+                    + ", cities.size()="
+                    + cities.size());
+        }
+
+        List<List<String>> partitionedCities = Lists.partition(cities, cities.size() / noOfItinerariesForSelectedRootCity);
+
+        final List<List<RouteEntity>> itineraries = new ArrayList<>(noOfItinerariesForSelectedRootCity);
+
+        for (int k = 1; k <= noOfItinerariesForSelectedRootCity; k++) {
+
+            List<String> citiesToChooseFrom = partitionedCities.get(k - 1);
+
+            // calculate size of itinerary, eg: a --> b --> c--> ... (size == 3)
+            int maxItinerarySize = citiesToChooseFrom.size(); /* [city a, city b, city c] === [(a,b), (b,c)] === 2 records in db */
+            int itinerarySize = random.nextInt(maxItinerarySize);
+
+            // calculate next city idx and do the 'binding'
+            String previousCity = rootCity;
+            Instant previousArrivalTime = Instant.now();
+
+            List<RouteEntity> routes = new ArrayList<>(itinerarySize);
+
+            for (int i = 1; i <= itinerarySize; i++) {
+
+                String nextCity = citiesToChooseFrom.get(i - 1);
+
+                Instant departureTime = previousArrivalTime;
+                Instant arrivalTime = departureTime.plusSeconds(TimeUnit.SECONDS.convert(random.nextInt(4) + 1, TimeUnit.HOURS));
+
+                previousArrivalTime = arrivalTime;
+
+                RouteEntity route = new RouteEntity(
+                        previousCity,
+                        country,
+                        nextCity,
+                        country,
+                        departureTime,
+                        arrivalTime
+                );
+
+                routes.add(route);
+                previousCity = nextCity;
+            }
+
+            itineraries.add(routes);
+
+            log(country, routes);
+        }
+
+        return itineraries;
     }
 
     private void log(String country, List<RouteEntity> routes) {
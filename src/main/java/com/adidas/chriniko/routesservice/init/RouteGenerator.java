@@ -3,51 +3,198 @@ package com.adidas.chriniko.routesservice.init;
 import com.adidas.chriniko.routesservice.entity.RouteEntity;
 import com.adidas.chriniko.routesservice.error.ProcessingException;
 import com.adidas.chriniko.routesservice.repository.RouteRepository;
+import com.codahale.metrics.Meter;
 import lombok.extern.log4j.Log4j2;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 import org.springframework.transaction.TransactionStatus;
 import org.springframework.transaction.support.TransactionCallbackWithoutResult;
 import org.springframework.transaction.support.TransactionTemplate;
 
-import java.util.Collection;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.IntSummaryStatistics;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
-import java.util.stream.Collectors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
+/**
+ * Seeds the generated routes with a bounded producer/consumer pipeline: the generation (producer) hands over chunks of
+ * routes to a bounded queue (so it blocks when the db falls behind, memory stays flat), a fixed number of workers (at
+ * most the connection pool size) drain it, one jdbc batch insert (and transaction) per chunk, or in load-data mode one
+ * LOAD DATA LOCAL INFILE per (larger) chunk, see {@link RouteLoadDataWriter}.
+ * <p>
+ * With the snapshot enabled the chunks come from the {@link RouteSnapshot} of a previous run when it is fresh, otherwise the
+ * generated chunks are also written to it.
+ */
 @Log4j2
 
 @Component
 public class RouteGenerator {
 
+    public static final String LOAD_DATA_MODE = "load-data";
+
+    // Note: marks the end of the chunks, one per worker.
+    private static final List<RouteEntity> NO_MORE_CHUNKS = Collections.emptyList();
+
+    private static final long REPORT_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(5);
+
     private final RouteRepository routeRepository;
     private final TransactionTemplate transactionTemplate;
     private final RouteDataGenerator routeDataGenerator;
+    private final RouteLoadDataWriter routeLoadDataWriter;
+    private final RouteSnapshot routeSnapshot;
+    private final Meter seededRoutes;
+    private final boolean loadData;
+    private final int workers;
+    private final int chunkSize;
+    private final int queueCapacity;
 
     @Autowired
     public RouteGenerator(RouteRepository routeRepository,
                           TransactionTemplate transactionTemplate,
-                          RouteDataGenerator routeDataGenerator) {
+                          RouteDataGenerator routeDataGenerator,
+                          RouteLoadDataWriter routeLoadDataWriter,
+                          RouteSnapshot routeSnapshot,
+                          Meter seededRoutes,
+                          @Value("${generate.routes-mode}") String mode,
+                          @Value("${route-generator.workers}") int workers,
+                          @Value("${spring.datasource.hikari.maximum-pool-size}") int connectionPoolSize,
+                          @Value("${route-generator.chunk-size}") int chunkSize,
+                          @Value("${route-generator.load-data-chunk-size}") int loadDataChunkSize,
+                          @Value("${route-generator.queue-capacity}") int queueCapacity) {
         this.routeRepository = routeRepository;
         this.transactionTemplate = transactionTemplate;
         this.routeDataGenerator = routeDataGenerator;
+        this.routeLoadDataWriter = routeLoadDataWriter;
+        this.routeSnapshot = routeSnapshot;
+        this.seededRoutes = seededRoutes;
+        this.loadData = LOAD_DATA_MODE.equals(mode);
+        this.workers = Math.max(1, Math.min(workers, connectionPoolSize));
+        this.chunkSize = loadData ? loadDataChunkSize : chunkSize;
+        this.queueCapacity = queueCapacity;
     }
 
-    public void generate(Map<String, List<String>> citiesByCountry) {
+    /**
+     * @param citiesByCountry only parsed when the routes are generated (not read from the snapshot).
+     * @return the number of stored routes.
+     */
+    public long generate(Supplier<Map<String, List<String>>> citiesByCountry) {
+        log.debug("load data: {}, total db workers: {}, chunk size: {}, queue capacity: {}", loadData, workers, chunkSize, queueCapacity);
+
+        final BlockingQueue<List<RouteEntity>> chunks = new ArrayBlockingQueue<>(queueCapacity);
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        final Progress progress = new Progress();
+
+        ExecutorService routeStoreWorkers = Executors.newFixedThreadPool(workers, new ThreadFactory() {
+            private final AtomicInteger id = new AtomicInteger(0);
+
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread t = new Thread(runnable);
+                t.setName("route-store-worker-" + id.incrementAndGet());
+                return t;
+            }
+        });
+
+        final List<Future<?>> results = new ArrayList<>(workers);
+        for (int i = 0; i < workers; i++) {
+            results.add(routeStoreWorkers.submit(() -> drain(chunks, failure, progress)));
+        }
+
+        try {
+            produce(citiesByCountry, chunk -> {
+                // Note: stop producing, the workers only drain the queue from now on.
+                if (failure.get() != null) {
+                    throw new ProcessingException(failure.get());
+                }
+                put(chunks, chunk);
+            });
+
+        } catch (RuntimeException error) {
+            failure.compareAndSet(null, error);
+        } finally {
+            for (int i = 0; i < workers; i++) {
+                put(chunks, NO_MORE_CHUNKS);
+            }
+            await(results);
+            routeStoreWorkers.shutdown();
+        }
+
+        if (failure.get() != null) {
+            log.error("error occurred during storing of generated routes, stored routes: {}", progress.routes.get(), failure.get());
+            throw new ProcessingException(failure.get());
+        }
+
+        log.info("generated routes stored, routes: {}, elapsed: {} ms, rows/sec: {}",
+                progress.routes.get(), progress.elapsedMillis(), progress.rowsPerSecond());
+
+        return progress.routes.get();
+    }
+
+    private void produce(Supplier<Map<String, List<String>>> citiesByCountry, Consumer<List<RouteEntity>> chunks) {
+        if (!routeSnapshot.isEnabled()) {
+            produce(citiesByCountry.get(), chunks);
+            return;
+        }
+
+        final byte[] fingerprint = routeSnapshot.fingerprint(routeDataGenerator.configuration());
+        if (routeSnapshot.isFresh(fingerprint)) {
+            routeSnapshot.read(chunkSize, chunks);
+            return;
+        }
+
+        // Note: a chunk is written to the snapshot before it is handed over to the workers (which change it on persist).
+        try (RouteSnapshot.Writer writer = routeSnapshot.writer(fingerprint)) {
+            produce(citiesByCountry.get(), chunk -> {
+                writer.write(chunk);
+                chunks.accept(chunk);
+            });
+            writer.commit();
+        }
+    }
+
+    private void produce(Map<String, List<String>> citiesByCountry, Consumer<List<RouteEntity>> chunks) {
         displayDataSizeInfo(citiesByCountry);
 
-        RouteDataGenerator.RouteDataGeneratorResult dataGeneratorResult = routeDataGenerator.invoke(citiesByCountry);
+        int countriesWhichNotSatisfyNoOfItinerariesForSelectedRootCity = routeDataGenerator.generate(citiesByCountry, chunkSize, chunks);
+
+        log.debug("countries which not satisfy noOfItinerariesForSelectedRootCity: {}", countriesWhichNotSatisfyNoOfItinerariesForSelectedRootCity);
+    }
 
-        Map<String, List<List<RouteEntity>>> itinerariesInfoByCountry = dataGeneratorResult.getItinerariesInfoByCountry();
-        int countriesWhichNotSatisfyNoOfItinerariesForSelectedRootCity = dataGeneratorResult.getCountriesWhichNotSatisfyNoOfItinerariesForSelectedRootCity();
+    private void drain(BlockingQueue<List<RouteEntity>> chunks, AtomicReference<Throwable> failure, Progress progress) {
+        while (true) {
+            final List<RouteEntity> chunk = take(chunks);
+            if (chunk == NO_MORE_CHUNKS) {
+                return;
+            }
 
-        saveData(itinerariesInfoByCountry, countriesWhichNotSatisfyNoOfItinerariesForSelectedRootCity);
+            // Note: keep taking (so the producer never blocks on a full queue) but store nothing after a failure.
+            if (failure.get() != null) {
+                continue;
+            }
+
+            try {
+                store(chunk);
+                seededRoutes.mark(chunk.size());
+                progress.stored(chunk.size());
+            } catch (RuntimeException error) {
+                failure.compareAndSet(null, error);
+            }
+        }
     }
 
     private void displayDataSizeInfo(Map<String, List<String>> citiesByCountry) {
@@ -68,59 +215,73 @@ public class RouteGenerator {
                 totalCountries, averageCitiesPerCountry, maxCitiesPerCountry, minCitiesPerCountry, sumOfCities);
     }
 
-    private void saveData(Map<String, List<List<RouteEntity>>> itinerariesInfoByCountry, int countriesWhichNotSatisfyNoOfItinerariesForSelectedRootCity) {
-        log.debug("countries which not satisfy noOfItinerariesForSelectedRootCity: {}", countriesWhichNotSatisfyNoOfItinerariesForSelectedRootCity);
-
-        int accurateNumberOfRecordsInDbAfterExecution = itinerariesInfoByCountry
-                .values()
-                .stream()
-                .flatMap(Collection::stream)
-                .mapToInt(Collection::size).sum();
-
-        log.debug("accurateNumberOfRecordsInDbAfterExecution: {}", accurateNumberOfRecordsInDbAfterExecution);
-
-        int noOfWorkers = itinerariesInfoByCountry.size();
-        log.debug("total db workers: {}", noOfWorkers);
-
-        ExecutorService routeStoreWorkers = Executors.newFixedThreadPool(itinerariesInfoByCountry.size(), new ThreadFactory() {
-            private final AtomicInteger id = new AtomicInteger(0);
+    private void store(List<RouteEntity> routes) {
+        if (loadData) {
+            routeLoadDataWriter.load(routes);
+            return;
+        }
 
+        transactionTemplate.execute(new TransactionCallbackWithoutResult() {
             @Override
-            public Thread newThread(Runnable runnable) {
-                Thread t = new Thread(runnable);
-                t.setName("route-store-worker-" + id.incrementAndGet());
-                return t;
+            protected void doInTransactionWithoutResult(TransactionStatus status) {
+                routeRepository.batchInsert(routes);
             }
         });
+    }
 
-        final CountDownLatch rendezvous = new CountDownLatch(noOfWorkers);
-
-        for (Map.Entry<String, List<List<RouteEntity>>> itineraryInfoRecord : itinerariesInfoByCountry.entrySet()) {
-
-            routeStoreWorkers.submit(() -> {
-
-                List<List<RouteEntity>> itineraries = itineraryInfoRecord.getValue();
-                List<RouteEntity> routes = itineraries.stream().flatMap(Collection::stream).collect(Collectors.toList());
-                store(routes);
+    private static void put(BlockingQueue<List<RouteEntity>> chunks, List<RouteEntity> chunk) {
+        try {
+            chunks.put(chunk);
+        } catch (InterruptedException error) {
+            Thread.currentThread().interrupt();
+            throw new ProcessingException(error);
+        }
+    }
 
-                rendezvous.countDown();
-            });
+    private static List<RouteEntity> take(BlockingQueue<List<RouteEntity>> chunks) {
+        try {
+            return chunks.take();
+        } catch (InterruptedException error) {
+            Thread.currentThread().interrupt();
+            throw new ProcessingException(error);
         }
+    }
 
+    private static void await(List<Future<?>> results) {
         try {
-            rendezvous.await();
+            for (Future<?> result : results) {
+                result.get();
+            }
         } catch (InterruptedException error) {
+            Thread.currentThread().interrupt();
             throw new ProcessingException(error);
+        } catch (ExecutionException error) {
+            throw new ProcessingException(error.getCause());
         }
-        routeStoreWorkers.shutdown();
     }
 
-    private void store(List<RouteEntity> routes) {
-        transactionTemplate.execute(new TransactionCallbackWithoutResult() {
-            @Override
-            protected void doInTransactionWithoutResult(TransactionStatus status) {
-                routeRepository.batchInsert(routes);
+    private static class Progress {
+
+        private final long startNanos = System.nanoTime();
+        private final AtomicLong routes = new AtomicLong();
+        private final AtomicLong lastReportNanos = new AtomicLong(startNanos);
+
+        void stored(int chunkRoutes) {
+            final long totalRoutes = routes.addAndGet(chunkRoutes);
+
+            final long now = System.nanoTime();
+            final long lastReport = lastReportNanos.get();
+            if (now - lastReport >= REPORT_INTERVAL_NANOS && lastReportNanos.compareAndSet(lastReport, now)) {
+                log.info("storing generated routes, routes: {}, rows/sec: {}", totalRoutes, rowsPerSecond());
             }
-        });
+        }
+
+        long elapsedMillis() {
+            return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+        }
+
+        long rowsPerSecond() {
+            return routes.get() * 1000 / Math.max(1, elapsedMillis());
+        }
     }
 }
@@ -0,0 +1,140 @@
+package com.adidas.chriniko.routesservice.init;
+
+import com.adidas.chriniko.routesservice.entity.RouteEntity;
+import com.adidas.chriniko.routesservice.error.ProcessingException;
+import com.mysql.cj.conf.PropertyKey;
+import com.mysql.cj.jdbc.JdbcStatement;
+import com.zaxxer.hikari.HikariDataSource;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * Writes generated routes with MySQL's bulk loader: the routes are encoded as tab separated values (the default format of
+ * LOAD DATA) and handed to the driver as the stream of a LOAD DATA LOCAL INFILE, so no file and no per row statement.
+ * <p>
+ * Note: needs local_infile=ON on the server. With allowLoadLocalInfile the server can ask the driver for any client file,
+ * so it stays off on the pooled connections and is only set on the loader's own (one per chunk, not pooled) connections.
+ */
+@Log4j2
+
+@Component
+public class RouteLoadDataWriter {
+
+    // Note: the file name is ignored, the driver sends the stream set on the statement instead.
+    private static final String LOAD_DATA_STATEMENT = "LOAD DATA LOCAL INFILE 'routes.tsv' INTO TABLE routes CHARACTER SET utf8mb4 "
+            + "(@id, created_by, created_date, updated_by, updated_date, version, "
+            + "arrival_time, departure_time, destiny_city_name, destiny_country, origin_city_name, origin_country) "
+            + "SET id = UNHEX(REPLACE(@id, '-', ''))";
+
+    private static final String NULL = "\\N";
+
+    private final DataSource loadDataSource;
+
+    @Autowired
+    public RouteLoadDataWriter(HikariDataSource dataSource) {
+        final Properties connectionProperties = new Properties();
+        connectionProperties.setProperty(PropertyKey.allowLoadLocalInfile.getKeyName(), "true");
+
+        final DriverManagerDataSource loadDataSource = new DriverManagerDataSource(dataSource.getJdbcUrl(), dataSource.getUsername(), dataSource.getPassword());
+        loadDataSource.setConnectionProperties(connectionProperties);
+        this.loadDataSource = loadDataSource;
+    }
+
+    /**
+     * @return the number of loaded routes.
+     */
+    public long load(List<RouteEntity> routes) {
+        final byte[] tsv = encode(routes);
+
+        try (Connection connection = loadDataSource.getConnection();
+             Statement statement = connection.createStatement()) {
+
+            statement.unwrap(JdbcStatement.class).setLocalInfileInputStream(new ByteArrayInputStream(tsv));
+            return statement.executeLargeUpdate(LOAD_DATA_STATEMENT);
+
+        } catch (SQLException e) {
+            log.error("error occurred during load data of routes", e);
+            throw new ProcessingException(e);
+        }
+    }
+
+    static byte[] encode(List<RouteEntity> routes) {
+        final ByteArrayOutputStream tsv = new ByteArrayOutputStream(routes.size() * 160);
+
+        try (Writer writer = new OutputStreamWriter(tsv, StandardCharsets.UTF_8)) {
+            for (RouteEntity route : routes) {
+                writer.write(route.getId());
+                field(writer, route.getCreatedBy());
+                field(writer, route.getCreatedDate());
+                field(writer, route.getUpdatedBy());
+                field(writer, route.getUpdatedDate());
+
+                // Note: what hibernate sets on persist.
+                field(writer, route.getVersion() == null ? "0" : String.valueOf(route.getVersion()));
+
+                field(writer, route.getArrivalTime());
+                field(writer, route.getDepartureTime());
+                field(writer, route.getDestinyCityName());
+                field(writer, route.getDestinyCountry());
+                field(writer, route.getOriginCityName());
+                field(writer, route.getOriginCountry());
+                writer.write('\n');
+            }
+        } catch (IOException e) {
+            throw new ProcessingException(e);
+        }
+
+        return tsv.toByteArray();
+    }
+
+    // Note: as hibernate binds instants (a timestamp in the jvm time zone).
+    private static void field(Writer writer, Instant value) throws IOException {
+        field(writer, value == null ? null : Timestamp.from(value).toString());
+    }
+
+    private static void field(Writer writer, String value) throws IOException {
+        writer.write('\t');
+
+        if (value == null) {
+            writer.write(NULL);
+            return;
+        }
+
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            switch (c) {
+                case '\\':
+                    writer.write("\\\\");
+                    break;
+                case '\t':
+                    writer.write("\\t");
+                    break;
+                case '\n':
+                    writer.write("\\n");
+                    break;
+                case '\r':
+                    writer.write("\\r");
+                    break;
+                default:
+                    writer.write(c);
+            }
+        }
+    }
+}
@@ -0,0 +1,330 @@
+package com.adidas.chriniko.routesservice.init;
+
+import com.adidas.chriniko.routesservice.entity.RouteEntity;
+import com.adidas.chriniko.routesservice.entity.TimeOrderedIds;
+import com.adidas.chriniko.routesservice.error.ProcessingException;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * Binary snapshot of the generated routes: written while the routes are generated (first run), and on the next runs read
+ * back memory mapped, instead of parsing the cities csv and generating the routes again, as long as its fingerprint
+ * (sha-256 of the cities csv and of the generator configuration) matches.
+ * <pre>
+ * header:     magic (int) | format version (int) | fingerprint (32 bytes) | routes (long) | dictionary offset (long)
+ * route:      id (16 bytes) | origin city, origin country, destiny city, destiny country (int, dictionary index)
+ *             | departure, arrival (long, epoch millis) | created by, updated by (int, dictionary index)
+ *             | created, updated (long, epoch millis)
+ * dictionary: strings (int) | per string: length (int) | utf-8 bytes
+ * </pre>
+ */
+@Log4j2
+
+@Component
+public class RouteSnapshot {
+
+    private static final int MAGIC = 0x52534e50;
+    private static final int FORMAT_VERSION = 1;
+
+    private static final int FINGERPRINT_BYTES = 32;
+    private static final int HEADER_BYTES = 4 + 4 + FINGERPRINT_BYTES + 8 + 8;
+    private static final int ROUTE_BYTES = 16 + 4 * 4 + 8 + 8 + 4 + 4 + 8 + 8;
+
+    // Note: a mapped region is at most 2GB, so the routes are mapped in windows of whole routes.
+    private static final long ROUTES_PER_WINDOW = (1 << 30) / ROUTE_BYTES;
+
+    private final boolean enabled;
+    private final Path path;
+
+    @Autowired
+    public RouteSnapshot(@Value("${route-snapshot.enabled}") boolean enabled,
+                         @Value("${route-snapshot.path}") String path) {
+        this.enabled = enabled;
+        this.path = Paths.get(path);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public byte[] fingerprint(String generatorConfiguration) {
+        try (InputStream csv = new ClassPathResource(CitiesCsvProcessor.CITIES_CSV).getInputStream()) {
+            final MessageDigest digest = MessageDigest.getInstance("SHA-256");
+
+            final byte[] buffer = new byte[64 * 1024];
+            int read;
+            while ((read = csv.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+
+            digest.update(generatorConfiguration.getBytes(StandardCharsets.UTF_8));
+            return digest.digest();
+
+        } catch (IOException | NoSuchAlgorithmException e) {
+            log.error("error occurred during fingerprint of route snapshot", e);
+            throw new ProcessingException(e);
+        }
+    }
+
+    public boolean isFresh(byte[] fingerprint) {
+        if (!Files.isRegularFile(path)) {
+            return false;
+        }
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_BYTES) {
+                return false;
+            }
+
+            final ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_BYTES);
+            if (header.getInt() != MAGIC || header.getInt() != FORMAT_VERSION) {
+                return false;
+            }
+
+            final byte[] snapshotFingerprint = new byte[FINGERPRINT_BYTES];
+            header.get(snapshotFingerprint);
+            return Arrays.equals(snapshotFingerprint, fingerprint);
+
+        } catch (IOException e) {
+            log.warn("route snapshot could not be checked, path: {}", path, e);
+            return false;
+        }
+    }
+
+    /**
+     * Hands over the routes of the snapshot in chunks of (at most) chunkSize routes, in the order they were written.
+     *
+     * @return the number of read routes.
+     */
+    public long read(int chunkSize, Consumer<List<RouteEntity>> chunkConsumer) {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+
+            final ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_BYTES);
+            header.position(4 + 4 + FINGERPRINT_BYTES);
+            final long routes = header.getLong();
+            final long dictionaryOffset = header.getLong();
+
+            final String[] dictionary = dictionary(channel.map(FileChannel.MapMode.READ_ONLY, dictionaryOffset, channel.size() - dictionaryOffset));
+
+            List<RouteEntity> chunk = new ArrayList<>(chunkSize);
+
+            for (long first = 0; first < routes; first += ROUTES_PER_WINDOW) {
+                final long windowRoutes = Math.min(ROUTES_PER_WINDOW, routes - first);
+                final MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_BYTES + first * ROUTE_BYTES, windowRoutes * ROUTE_BYTES);
+
+                for (long i = 0; i < windowRoutes; i++) {
+                    chunk.add(route(window, dictionary));
+
+                    if (chunk.size() == chunkSize) {
+                        chunkConsumer.accept(chunk);
+                        chunk = new ArrayList<>(chunkSize);
+                    }
+                }
+            }
+
+            if (!chunk.isEmpty()) {
+                chunkConsumer.accept(chunk);
+            }
+
+            log.info("route snapshot read, routes: {}, path: {}", routes, path);
+            return routes;
+
+        } catch (IOException e) {
+            log.error("error occurred during read of route snapshot", e);
+            throw new ProcessingException(e);
+        }
+    }
+
+    /**
+     * The snapshot is written to a temporary file next to it, which replaces it on {@link Writer#commit()}, a writer which is
+     * closed without commit (generation failed) leaves the previous snapshot in place.
+     */
+    public Writer writer(byte[] fingerprint) {
+        return new Writer(path, fingerprint);
+    }
+
+    private static RouteEntity route(ByteBuffer buffer, String[] dictionary) {
+        final String id = new UUID(buffer.getLong(), buffer.getLong()).toString();
+
+        final RouteEntity route = new RouteEntity(
+                dictionary[buffer.getInt()],
+                dictionary[buffer.getInt()],
+                dictionary[buffer.getInt()],
+                dictionary[buffer.getInt()],
+                Instant.ofEpochMilli(buffer.getLong()),
+                Instant.ofEpochMilli(buffer.getLong())
+        );
+
+        route.setId(id);
+        route.setCreatedBy(dictionary[buffer.getInt()]);
+        route.setUpdatedBy(dictionary[buffer.getInt()]);
+        route.setCreatedDate(Instant.ofEpochMilli(buffer.getLong()));
+        route.setUpdatedDate(Instant.ofEpochMilli(buffer.getLong()));
+        return route;
+    }
+
+    // Note: every name is one string instance for all the routes.
+    private static String[] dictionary(ByteBuffer buffer) {
+        final String[] dictionary = new String[buffer.getInt()];
+        for (int i = 0; i < dictionary.length; i++) {
+            final byte[] bytes = new byte[buffer.getInt()];
+            buffer.get(bytes);
+            dictionary[i] = new String(bytes, StandardCharsets.UTF_8);
+        }
+        return dictionary;
+    }
+
+    public static final class Writer implements Closeable {
+
+        private final Path path;
+        private final Path temporaryPath;
+
+        private final Map<String, Integer> dictionaryIndexes = new HashMap<>();
+        private final List<String> dictionary = new ArrayList<>();
+
+        private DataOutputStream out;
+        private long routes;
+        private boolean failed;
+        private boolean committed;
+
+        private Writer(Path path, byte[] fingerprint) {
+            this.path = path;
+            this.temporaryPath = path.resolveSibling(path.getFileName() + ".tmp");
+
+            try {
+                if (path.getParent() != null) {
+                    Files.createDirectories(path.getParent());
+                }
+
+                out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporaryPath), 1 << 16));
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT_VERSION);
+                out.write(fingerprint);
+
+                // Note: routes and dictionary offset, known on commit.
+                out.writeLong(0);
+                out.writeLong(0);
+
+            } catch (IOException e) {
+                fail(e);
+            }
+        }
+
+        // Note: a snapshot which can not be written is skipped (logged), the generation goes on.
+        public void write(List<RouteEntity> chunk) {
+            if (failed) {
+                return;
+            }
+
+            try {
+                for (RouteEntity route : chunk) {
+                    final byte[] id = TimeOrderedIds.toBytes(route.getId());
+                    out.write(id);
+                    out.writeInt(index(route.getOriginCityName()));
+                    out.writeInt(index(route.getOriginCountry()));
+                    out.writeInt(index(route.getDestinyCityName()));
+                    out.writeInt(index(route.getDestinyCountry()));
+                    out.writeLong(route.getDepartureTime().toEpochMilli());
+                    out.writeLong(route.getArrivalTime().toEpochMilli());
+                    out.writeInt(index(route.getCreatedBy()));
+                    out.writeInt(index(route.getUpdatedBy()));
+                    out.writeLong(route.getCreatedDate().toEpochMilli());
+                    out.writeLong(route.getUpdatedDate().toEpochMilli());
+                }
+                routes += chunk.size();
+
+            } catch (IOException e) {
+                fail(e);
+            }
+        }
+
+        public void commit() {
+            if (failed) {
+                return;
+            }
+
+            try {
+                final long dictionaryOffset = HEADER_BYTES + routes * ROUTE_BYTES;
+
+                out.writeInt(dictionary.size());
+                for (String string : dictionary) {
+                    final byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+                    out.writeInt(bytes.length);
+                    out.write(bytes);
+                }
+                out.close();
+
+                try (FileChannel channel = FileChannel.open(temporaryPath, StandardOpenOption.WRITE)) {
+                    final ByteBuffer counts = ByteBuffer.allocate(16).putLong(routes).putLong(dictionaryOffset);
+                    counts.flip();
+                    channel.write(counts, 4 + 4 + FINGERPRINT_BYTES);
+                    channel.force(true);
+                }
+
+                Files.move(temporaryPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                committed = true;
+
+                log.info("route snapshot written, routes: {}, path: {}", routes, path);
+
+            } catch (IOException e) {
+                fail(e);
+            }
+        }
+
+        @Override
+        public void close() {
+            if (committed) {
+                return;
+            }
+
+            try {
+                if (out != null) {
+                    out.close();
+                }
+                Files.deleteIfExists(temporaryPath);
+            } catch (IOException e) {
+                log.warn("route snapshot could not be cleaned up, path: {}", temporaryPath, e);
+            }
+        }
+
+        private int index(String string) {
+            return dictionaryIndexes.computeIfAbsent(string, s -> {
+                dictionary.add(s);
+                return dictionary.size() - 1;
+            });
+        }
+
+        private void fail(IOException e) {
+            log.warn("route snapshot could not be written, path: {}", path, e);
+            failed = true;
+        }
+    }
+}
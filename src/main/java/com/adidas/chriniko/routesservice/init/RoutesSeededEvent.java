@@ -0,0 +1,19 @@
+package com.adidas.chriniko.routesservice.init;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * Published once the schema is in place and the generated routes (if any) are stored, see {@link DbInit}.
+ */
+@Getter
+@ToString
+@AllArgsConstructor
+public class RoutesSeededEvent {
+
+    private final long seededRoutes;
+
+    // Note: false when the route generation is disabled, the routes of the db are kept as they are.
+    private final boolean generated;
+}
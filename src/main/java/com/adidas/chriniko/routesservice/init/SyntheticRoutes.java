@@ -0,0 +1,175 @@
+package com.adidas.chriniko.routesservice.init;
+
+import com.adidas.chriniko.routesservice.entity.RouteEntity;
+import com.adidas.chriniko.routesservice.entity.TimeOrderedIds;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A seeded synthetic dataset of routes between the world cities:
+ * <ul>
+ * <li>origins are zipf distributed, the city of popularity rank r (a seeded shuffle of the cities) has weight 1 / r^zipfExponent,</li>
+ * <li>every origin has fanOut destinations (cities of its own country, any city for single city countries),</li>
+ * <li>departures are spread (per minute) over departureDays from departuresFrom, 1 to 4 hours per route.</li>
+ * </ul>
+ * Route i only depends on the seed and its block (i / BLOCK_SIZE, a SplittableRandom of its own), so blocks can be generated
+ * in parallel and in any order, and the dataset (ids included) is the same on every run.
+ */
+public final class SyntheticRoutes {
+
+    public static final int BLOCK_SIZE = 4096;
+
+    private static final String CREATED_BY = "route-data-generator";
+
+    private final long seed;
+    private final int fanOut;
+    private final Instant departuresFrom;
+    private final int departureMinutes;
+
+    // Note: the cities of a country are contiguous (citiesByCountry order), so a country is a [start, start + size) range.
+    private final String[] cities;
+    private final String[] countries;
+    private final int[] countryStart;
+    private final int[] countrySize;
+
+    private final int[] cityByRank;
+    private final double[] cumulativeWeightByRank;
+
+    public SyntheticRoutes(Map<String, List<String>> citiesByCountry,
+                           long seed,
+                           int fanOut,
+                           double zipfExponent,
+                           Instant departuresFrom,
+                           int departureDays) {
+        if (fanOut < 1 || departureDays < 1) {
+            throw new IllegalArgumentException("fanOut and departureDays should be positive, fanOut=" + fanOut + ", departureDays=" + departureDays);
+        }
+
+        this.seed = seed;
+        this.fanOut = fanOut;
+        this.departuresFrom = departuresFrom;
+        this.departureMinutes = (int) TimeUnit.DAYS.toMinutes(departureDays);
+
+        final int noOfCities = citiesByCountry.values().stream().mapToInt(List::size).sum();
+        if (noOfCities < 2) {
+            throw new IllegalArgumentException("at least two cities are needed, found: " + noOfCities);
+        }
+
+        cities = new String[noOfCities];
+        countries = new String[noOfCities];
+        countryStart = new int[noOfCities];
+        countrySize = new int[noOfCities];
+
+        int city = 0;
+        for (Map.Entry<String, List<String>> citiesByCountryRecord : citiesByCountry.entrySet()) {
+            final int start = city;
+            for (String cityName : citiesByCountryRecord.getValue()) {
+                cities[city] = cityName;
+                countries[city] = citiesByCountryRecord.getKey();
+                countryStart[city] = start;
+                countrySize[city] = citiesByCountryRecord.getValue().size();
+                city++;
+            }
+        }
+
+        // Note: fisher-yates shuffle, so the popular origins are spread over the countries.
+        final SplittableRandom random = new SplittableRandom(seed);
+        cityByRank = new int[noOfCities];
+        for (int i = 0; i < noOfCities; i++) {
+            cityByRank[i] = i;
+        }
+        for (int i = noOfCities - 1; i > 0; i--) {
+            final int j = random.nextInt(i + 1);
+            final int swap = cityByRank[i];
+            cityByRank[i] = cityByRank[j];
+            cityByRank[j] = swap;
+        }
+
+        cumulativeWeightByRank = new double[noOfCities];
+        double totalWeight = 0;
+        for (int rank = 0; rank < noOfCities; rank++) {
+            totalWeight += 1 / Math.pow(rank + 1, zipfExponent);
+            cumulativeWeightByRank[rank] = totalWeight;
+        }
+        for (int rank = 0; rank < noOfCities; rank++) {
+            cumulativeWeightByRank[rank] /= totalWeight;
+        }
+    }
+
+    public static long blocks(long targetRoutes) {
+        return (targetRoutes + BLOCK_SIZE - 1) / BLOCK_SIZE;
+    }
+
+    /**
+     * @return the routes [block * BLOCK_SIZE, min((block + 1) * BLOCK_SIZE, targetRoutes)), in order.
+     */
+    public List<RouteEntity> block(long block, long targetRoutes) {
+        final long first = block * BLOCK_SIZE;
+        final int size = (int) Math.min(BLOCK_SIZE, targetRoutes - first);
+
+        final SplittableRandom random = new SplittableRandom(mix64(seed ^ mix64(block)));
+        final long departuresFromMillis = departuresFrom.toEpochMilli();
+
+        final List<RouteEntity> routes = new ArrayList<>(size);
+        for (long i = first; i < first + size; i++) {
+
+            final int origin = origin(random.nextDouble());
+            final int destiny = destiny(origin, random.nextInt(fanOut));
+
+            final Instant departureTime = departuresFrom.plusSeconds(TimeUnit.MINUTES.toSeconds(random.nextInt(departureMinutes)));
+            final Instant arrivalTime = departureTime.plusSeconds(TimeUnit.HOURS.toSeconds(random.nextInt(4) + 1));
+
+            final RouteEntity route = new RouteEntity(
+                    cities[origin],
+                    countries[origin],
+                    cities[destiny],
+                    countries[destiny],
+                    departureTime,
+                    arrivalTime
+            );
+
+            // Note: 4096 ids per millisecond from departuresFrom, so they are time ordered (in route order) and older than
+            //       the ids of the routes created at runtime.
+            route.setId(TimeOrderedIds.of(departuresFromMillis + (i >>> 12), (int) (i & 0xFFF), random.nextLong()).toString());
+            route.setCreatedBy(CREATED_BY);
+            route.setCreatedDate(departuresFrom);
+            route.setUpdatedBy(CREATED_BY);
+            route.setUpdatedDate(departuresFrom);
+
+            routes.add(route);
+        }
+        return routes;
+    }
+
+    private int origin(double u) {
+        int rank = Arrays.binarySearch(cumulativeWeightByRank, u);
+        if (rank < 0) {
+            rank = -rank - 1;
+        }
+        return cityByRank[Math.min(rank, cityByRank.length - 1)];
+    }
+
+    // Note: the slot-th destination of the origin, never the origin itself.
+    private int destiny(int origin, int slot) {
+        final boolean withinCountry = countrySize[origin] > 1;
+        final int start = withinCountry ? countryStart[origin] : 0;
+        final int size = withinCountry ? countrySize[origin] : cities.length;
+
+        final long hash = mix64(seed ^ mix64(((long) origin << 32) | slot));
+        final int offset = 1 + (int) Long.remainderUnsigned(hash, size - 1);
+        return start + (origin - start + offset) % size;
+    }
+
+    // Note: murmur3 finalizer, spreads consecutive inputs (blocks, origins) over unrelated seeds.
+    private static long mix64(long z) {
+        z = (z ^ (z >>> 33)) * 0xff51afd7ed558ccdL;
+        z = (z ^ (z >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        return z ^ (z >>> 33);
+    }
+}
@@ -1,25 +1,48 @@
 package com.adidas.chriniko.routesservice.repository;
 
+import com.adidas.chriniko.routesservice.entity.BaseEntity;
 import com.adidas.chriniko.routesservice.entity.RouteEntity;
+import com.adidas.chriniko.routesservice.entity.TimeOrderedIds;
+import org.hibernate.jpa.QueryHints;
+import org.javatuples.Pair;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Repository;
 
 import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.LockModeType;
 import javax.persistence.PersistenceContext;
+import javax.persistence.PersistenceUnit;
+import javax.persistence.Query;
 import javax.persistence.TypedQuery;
+
+import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 
 @Repository
 public class RouteRepository {
 
-    private static final int BATCH_SIZE = 25;
+    // Note: ids per IN list of the set based statements, keeps every statement (and its parameters) bounded.
+    private static final int IN_CLAUSE_SIZE = 1000;
+
+    // Note: flush (one jdbc batch per statement type) and clear the persistence context every hibernate.jdbc.batch_size entities.
+    @Value("${spring.jpa.properties.hibernate.jdbc.batch_size}")
+    private int batchSize;
 
     @PersistenceContext
     private EntityManager em;
 
+    @PersistenceUnit
+    private EntityManagerFactory emf;
+
     public Optional<List<RouteEntity>> findByOrigin(String originCityName, String originCountry) {
 
         TypedQuery<RouteEntity> tq = em.createNamedQuery("RouteEntity.findByOriginCityNameAndOriginCountry", RouteEntity.class);
@@ -29,25 +52,182 @@ public class RouteRepository {
         return Optional.ofNullable(tq.getResultList());
     }
 
+    // Note: equality on all the columns of the destiny_info_idx (destiny_city_name, destiny_country), deleted is filtered on the row.
+    public List<RouteEntity> findByDestiny(String destinyCityName, String destinyCountry) {
+
+        TypedQuery<RouteEntity> tq = em.createNamedQuery("RouteEntity.findByDestinyCityNameAndDestinyCountry", RouteEntity.class);
+        tq.setParameter("destinyCityName", destinyCityName);
+        tq.setParameter("destinyCountry", destinyCountry);
+
+        return tq.getResultList();
+    }
+
+    /**
+     * Routes of an origin departing within [departureFrom, departureTo), a null bound is unbounded.
+     * <p>
+     * Note: equality on the origin and range on departure_time, so it is a single range scan of the
+     * origin_info_idx (origin_city_name, origin_country, departure_time, id), deleted is filtered on the row.
+     */
+    public List<RouteEntity> findByOriginAndDepartureTime(String originCityName,
+                                                          String originCountry,
+                                                          Instant departureFrom,
+                                                          Instant departureTo) {
+
+        final StringBuilder jpql = new StringBuilder("SELECT rE FROM RouteEntity rE " +
+                "WHERE rE.originCityName = :originCityName " +
+                "AND rE.originCountry = :originCountry " +
+                "AND rE.deleted = false");
+        if (departureFrom != null) {
+            jpql.append(" AND rE.departureTime >= :departureFrom");
+        }
+        if (departureTo != null) {
+            jpql.append(" AND rE.departureTime < :departureTo");
+        }
+        jpql.append(" ORDER BY rE.departureTime, rE.id");
+
+        final TypedQuery<RouteEntity> tq = em.createQuery(jpql.toString(), RouteEntity.class);
+        tq.setParameter("originCityName", originCityName);
+        tq.setParameter("originCountry", originCountry);
+        if (departureFrom != null) {
+            tq.setParameter("departureFrom", departureFrom);
+        }
+        if (departureTo != null) {
+            tq.setParameter("departureTo", departureTo);
+        }
+
+        return tq.getResultList();
+    }
+
+    /**
+     * Keyset pagination: the page after the provided (departureTime, id) position, or the first page if it is null.
+     * <p>
+     * Note: seeks straight into the origin_info_idx (origin_city_name, origin_country, departure_time, id),
+     * so the cost of a page does not depend on how deep it is (unlike OFFSET).
+     */
+    public List<RouteEntity> findPageByOrigin(String originCityName,
+                                              String originCountry,
+                                              Instant afterDepartureTime,
+                                              String afterId,
+                                              int maxResults) {
+
+        final TypedQuery<RouteEntity> tq;
+        if (afterDepartureTime == null) {
+            tq = em.createNamedQuery("RouteEntity.findFirstPageByOriginCityNameAndOriginCountry", RouteEntity.class);
+        } else {
+            tq = em.createNamedQuery("RouteEntity.findNextPageByOriginCityNameAndOriginCountry", RouteEntity.class);
+            tq.setParameter("departureTime", afterDepartureTime);
+            tq.setParameter("id", afterId);
+        }
+        tq.setParameter("originCityName", originCityName);
+        tq.setParameter("originCountry", originCountry);
+        tq.setMaxResults(maxResults);
+
+        return tq.getResultList();
+    }
+
+    /**
+     * Streams the routes of an origin through a cursor, the caller must close the stream (it owns an entity manager,
+     * a read only transaction and so a db connection until then).
+     * <p>
+     * Note: rows are fetched from the db in chunks of fetch size (with mysql, server side cursor via useCursorFetch=true)
+     * and every entity is detached once read, so memory does not grow with the result size.
+     */
+    public Stream<RouteEntity> streamByOrigin(String originCityName, String originCountry, int fetchSize) {
+        return stream(streamEm -> {
+            TypedQuery<RouteEntity> tq = streamEm.createNamedQuery("RouteEntity.findByOriginCityNameAndOriginCountry", RouteEntity.class);
+            tq.setParameter("originCityName", originCityName);
+            tq.setParameter("originCountry", originCountry);
+            return tq;
+        }, fetchSize);
+    }
+
+    // Note: same contract as streamByOrigin, used to build in memory indexes of all the routes.
+    public Stream<RouteEntity> streamAll(int fetchSize) {
+        return stream(streamEm -> streamEm.createNamedQuery("RouteEntity.findAll", RouteEntity.class), fetchSize);
+    }
+
+    private Stream<RouteEntity> stream(Function<EntityManager, TypedQuery<RouteEntity>> queryFactory, int fetchSize) {
+        final EntityManager streamEm = emf.createEntityManager();
+        try {
+            streamEm.getTransaction().begin();
+
+            TypedQuery<RouteEntity> tq = queryFactory.apply(streamEm);
+            tq.setHint(QueryHints.HINT_FETCH_SIZE, fetchSize);
+            tq.setHint(QueryHints.HINT_READONLY, true);
+
+            return tq
+                    .getResultStream()
+                    .peek(streamEm::detach)
+                    .onClose(() -> close(streamEm));
+
+        } catch (RuntimeException e) {
+            close(streamEm);
+            throw e;
+        }
+    }
+
+    // Note: one query for many origins, the row constructor IN uses the origin_info_idx (origin_city_name, origin_country).
+    @SuppressWarnings("unchecked")
+    public List<RouteEntity> findByOrigins(List<Pair<String, String>> origins) {
+        if (origins.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        final StringBuilder sql = new StringBuilder("SELECT * FROM routes WHERE (origin_city_name, origin_country) IN (");
+        for (int i = 0; i < origins.size(); i++) {
+            if (i > 0) {
+                sql.append(", ");
+            }
+            sql.append("(?").append(2 * i + 1).append(", ?").append(2 * i + 2).append(")");
+        }
+        sql.append(") AND deleted = 0");
+
+        final Query query = em.createNativeQuery(sql.toString(), RouteEntity.class);
+        for (int i = 0; i < origins.size(); i++) {
+            query.setParameter(2 * i + 1, origins.get(i).getValue0());
+            query.setParameter(2 * i + 2, origins.get(i).getValue1());
+        }
+
+        return query.getResultList();
+    }
+
+    private void close(EntityManager streamEm) {
+        try {
+            if (streamEm.getTransaction().isActive()) {
+                streamEm.getTransaction().rollback();
+            }
+        } finally {
+            streamEm.close();
+        }
+    }
+
+    // Note: a soft deleted route (or a malformed id, which can not be a key) is not found.
     public Optional<RouteEntity> find(String id) {
-        return Optional.ofNullable(em.find(RouteEntity.class, id));
+        if (!TimeOrderedIds.isValid(id)) {
+            return Optional.empty();
+        }
+        return Optional
+                .ofNullable(em.find(RouteEntity.class, id))
+                .filter(routeEntity -> !Boolean.TRUE.equals(routeEntity.getDeleted()));
     }
 
     public void insert(RouteEntity routeEntity) {
         em.persist(routeEntity);
     }
 
+    /**
+     * Writes the routes in jdbc batches of hibernate.jdbc.batch_size, with order_inserts and (mysql) rewriteBatchedStatements=true
+     * every batch goes to the db as one multi row insert, the caller owns the transaction.
+     */
     public void batchInsert(Collection<RouteEntity> routes) {
-        final List<RouteEntity> savedEntities = new ArrayList<>(routes.size());
-
         int i = 0;
 
         for (RouteEntity route : routes) {
 
-            savedEntities.add(persistOrMerge(route));
+            persistOrMerge(route);
             i++;
 
-            if (i % BATCH_SIZE == 0) {
+            if (i % batchSize == 0) {
                 em.flush();
                 em.clear();
             }
@@ -57,16 +237,125 @@ public class RouteRepository {
         em.clear();
     }
 
+    /**
+     * Reads and locks (select ... for update) the routes, until the end of the caller's transaction, so a following
+     * set based write touches exactly the routes read here.
+     */
+    public List<RouteEntity> findByIdsForUpdate(List<String> ids) {
+        final List<RouteEntity> routeEntities = new ArrayList<>(ids.size());
+        for (List<String> chunk : chunks(validIds(ids))) {
+            TypedQuery<RouteEntity> tq = em.createNamedQuery("RouteEntity.findByIds", RouteEntity.class);
+            tq.setParameter("ids", chunk);
+            tq.setLockMode(LockModeType.PESSIMISTIC_WRITE);
+
+            routeEntities.addAll(tq.getResultList());
+        }
+        return routeEntities;
+    }
+
+    // Note: same contract as findByIdsForUpdate, a range scan (and range lock) of the origin_info_idx.
+    public List<RouteEntity> findByOriginForUpdate(String originCityName, String originCountry) {
+        TypedQuery<RouteEntity> tq = em.createNamedQuery("RouteEntity.findByOriginCityNameAndOriginCountry", RouteEntity.class);
+        tq.setParameter("originCityName", originCityName);
+        tq.setParameter("originCountry", originCountry);
+        tq.setLockMode(LockModeType.PESSIMISTIC_WRITE);
+
+        return tq.getResultList();
+    }
+
+    /**
+     * One update statement per IN_CLAUSE_SIZE ids: shifts departure and arrival time by shiftSeconds (if not null)
+     * and/or reassigns the destination (if destinyCityName is not null), bumps the version.
+     * <p>
+     * Note: bypasses the persistence context, entities of these routes read before in the same transaction are stale.
+     *
+     * @return the number of updated routes.
+     */
+    public int bulkUpdate(List<String> ids, Long shiftSeconds, String destinyCityName, String destinyCountry) {
+        final StringBuilder sql = new StringBuilder("UPDATE routes SET version = version + 1, updated_by = :updatedBy, updated_date = :updatedDate");
+        if (shiftSeconds != null) {
+            sql.append(", departure_time = TIMESTAMPADD(SECOND, :shiftSeconds, departure_time)");
+            sql.append(", arrival_time = TIMESTAMPADD(SECOND, :shiftSeconds, arrival_time)");
+        }
+        if (destinyCityName != null) {
+            sql.append(", destiny_city_name = :destinyCityName, destiny_country = :destinyCountry");
+        }
+        sql.append(" WHERE id IN (:ids) AND deleted = 0");
+
+        int updated = 0;
+        for (List<String> chunk : chunks(ids)) {
+            final Query query = em.createNativeQuery(sql.toString());
+            query.setParameter("updatedBy", BaseEntity.who());
+            query.setParameter("updatedDate", BaseEntity.when());
+            if (shiftSeconds != null) {
+                query.setParameter("shiftSeconds", shiftSeconds);
+            }
+            if (destinyCityName != null) {
+                query.setParameter("destinyCityName", destinyCityName);
+                query.setParameter("destinyCountry", destinyCountry);
+            }
+            // Note: a native query binds the raw column type, binary(16).
+            query.setParameter("ids", chunk.stream().map(TimeOrderedIds::toBytes).collect(Collectors.toList()));
+
+            updated += query.executeUpdate();
+        }
+        return updated;
+    }
+
+    // Note: soft deletes (see delete), one update statement per IN_CLAUSE_SIZE ids, same persistence context caveat as bulkUpdate.
+    public int bulkDelete(List<String> ids) {
+        int deleted = 0;
+        for (List<String> chunk : chunks(validIds(ids))) {
+            Query query = em.createNamedQuery("RouteEntity.softDeleteByIds");
+            query.setParameter("updatedBy", BaseEntity.who());
+            query.setParameter("updatedDate", BaseEntity.when());
+            query.setParameter("ids", chunk);
+
+            deleted += query.executeUpdate();
+        }
+        return deleted;
+    }
+
+    private static List<String> validIds(List<String> ids) {
+        return ids.stream().filter(TimeOrderedIds::isValid).collect(Collectors.toList());
+    }
+
+    private static List<List<String>> chunks(List<String> ids) {
+        final List<List<String>> chunks = new ArrayList<>((ids.size() + IN_CLAUSE_SIZE - 1) / IN_CLAUSE_SIZE);
+        for (int from = 0; from < ids.size(); from += IN_CLAUSE_SIZE) {
+            chunks.add(ids.subList(from, Math.min(from + IN_CLAUSE_SIZE, ids.size())));
+        }
+        return chunks;
+    }
+
+    /**
+     * Soft delete: a single column update, which moves only the deleted_idx entry of the row (the origin and destiny
+     * indexes do not have the column), reads skip the row from now on and {@link #purge(int)} removes it later.
+     */
     public void delete(RouteEntity routeEntity) {
-        em.remove(em.merge(routeEntity));
+        bulkDelete(Collections.singletonList(routeEntity.getId()));
+    }
+
+    /**
+     * Hard deletes up to batchSize soft deleted rows (through the deleted_idx), the caller owns the transaction.
+     *
+     * @return the number of purged rows, less than batchSize when there is nothing more to purge.
+     */
+    public int purge(int batchSize) {
+        final Query query = em.createNativeQuery("DELETE FROM routes WHERE deleted = 1 LIMIT :batchSize");
+        query.setParameter("batchSize", batchSize);
+
+        return query.executeUpdate();
     }
 
     public RouteEntity update(RouteEntity routeEntity) {
         return em.merge(routeEntity);
     }
 
+    // Note: ids are assigned on construction (see BaseEntity), so only a version tells a new entity apart, merging
+    //       a new entity costs a select per row and breaks the jdbc batch.
     private RouteEntity persistOrMerge(RouteEntity route) {
-        if (route.getId() == null) {
+        if (route.getVersion() == null) {
             em.persist(route);
             return route;
         } else {
@@ -1,16 +1,34 @@
 package com.adidas.chriniko.routesservice.resource;
 
+import com.adidas.chriniko.routesservice.configuration.WebConfiguration;
+import com.adidas.chriniko.routesservice.dto.BulkIngestProgress;
+import com.adidas.chriniko.routesservice.dto.BulkOperationResult;
+import com.adidas.chriniko.routesservice.dto.BulkRouteDelete;
+import com.adidas.chriniko.routesservice.dto.BulkRouteUpdate;
 import com.adidas.chriniko.routesservice.dto.CityInfo;
+import com.adidas.chriniko.routesservice.dto.CityInfoBatch;
+import com.adidas.chriniko.routesservice.dto.CityRouteInfoResult;
+import com.adidas.chriniko.routesservice.dto.Itinerary;
+import com.adidas.chriniko.routesservice.dto.ItineraryProfile;
+import com.adidas.chriniko.routesservice.dto.ItineraryProfileQuery;
+import com.adidas.chriniko.routesservice.dto.ItineraryQuery;
 import com.adidas.chriniko.routesservice.dto.RouteInfo;
+import com.adidas.chriniko.routesservice.dto.RouteInfoBatchResult;
 import com.adidas.chriniko.routesservice.dto.RouteInfoResult;
+import com.adidas.chriniko.routesservice.service.ItineraryService;
 import com.adidas.chriniko.routesservice.service.RouteService;
 import lombok.extern.log4j.Log4j2;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 import javax.validation.Valid;
+import java.time.Instant;
+import java.util.stream.Collectors;
 
 @Log4j2
 
@@ -19,10 +37,12 @@ import javax.validation.Valid;
 public class RouteResource {
 
     private final RouteService routeService;
+    private final ItineraryService itineraryService;
 
     @Autowired
-    public RouteResource(RouteService routeService) {
+    public RouteResource(RouteService routeService, ItineraryService itineraryService) {
         this.routeService = routeService;
+        this.itineraryService = itineraryService;
     }
 
     @PostMapping(
@@ -31,9 +51,85 @@ public class RouteResource {
             produces = MediaType.APPLICATION_JSON_UTF8_VALUE
     )
     public @ResponseBody
-    Mono<RouteInfoResult> find(@RequestBody @Valid CityInfo input) {
-        log.debug("  >> search: {}", input);
-        return routeService.find(input).map(RouteInfoResult::new);
+    Mono<RouteInfoResult> find(@RequestBody @Valid CityInfo input,
+                               @RequestParam(name = "limit", required = false) Integer limit,
+                               @RequestParam(name = "cursor", required = false) String cursor,
+                               @RequestParam(name = "departureFrom", required = false) Instant departureFrom,
+                               @RequestParam(name = "departureTo", required = false) Instant departureTo) {
+        log.debug("  >> search: {}, limit: {}, cursor: {}, departureFrom: {}, departureTo: {}",
+                input, limit, cursor, departureFrom, departureTo);
+
+        // Note: paginated (keyset) only if asked for, so existing clients keep getting all the routes.
+        if (limit == null && cursor == null) {
+            return routeService.find(input, departureFrom, departureTo).map(RouteInfoResult::new);
+        }
+        if (departureFrom != null || departureTo != null) {
+            return Mono.error(new ResponseStatusException(HttpStatus.BAD_REQUEST, "departure time window is not supported with pagination"));
+        }
+        return routeService.find(input, cursor, limit);
+    }
+
+    @PostMapping(
+            path = "/search/inbound",
+            consumes = MediaType.APPLICATION_JSON_UTF8_VALUE,
+            produces = MediaType.APPLICATION_JSON_UTF8_VALUE
+    )
+    public @ResponseBody
+    Mono<RouteInfoResult> findByDestiny(@RequestBody @Valid CityInfo input) {
+        log.debug("  >> inbound search: {}", input);
+        return routeService.findByDestiny(input).map(RouteInfoResult::new);
+    }
+
+    @PostMapping(
+            path = "/search/stream",
+            consumes = MediaType.APPLICATION_JSON_UTF8_VALUE,
+            produces = {WebConfiguration.APPLICATION_NDJSON_VALUE, MediaType.TEXT_EVENT_STREAM_VALUE}
+    )
+    public @ResponseBody
+    Flux<RouteInfo> stream(@RequestBody @Valid CityInfo input) {
+        log.debug("  >> stream search: {}", input);
+        return routeService.stream(input);
+    }
+
+    @PostMapping(
+            path = "/search/batch",
+            consumes = MediaType.APPLICATION_JSON_UTF8_VALUE,
+            produces = MediaType.APPLICATION_JSON_UTF8_VALUE
+    )
+    public @ResponseBody
+    Mono<RouteInfoBatchResult> find(@RequestBody @Valid CityInfoBatch input) {
+        log.debug("  >> batch search: {}", input);
+        return routeService
+                .find(input.getCities())
+                .map(results -> results
+                        .entrySet()
+                        .stream()
+                        .map(entry -> new CityRouteInfoResult(entry.getKey(), entry.getValue()))
+                        .collect(Collectors.toList())
+                )
+                .map(RouteInfoBatchResult::new);
+    }
+
+    @PostMapping(
+            path = "/itinerary",
+            consumes = MediaType.APPLICATION_JSON_UTF8_VALUE,
+            produces = MediaType.APPLICATION_JSON_UTF8_VALUE
+    )
+    public @ResponseBody
+    Mono<Itinerary> find(@RequestBody @Valid ItineraryQuery input) {
+        log.debug("  >> itinerary: {}", input);
+        return itineraryService.find(input);
+    }
+
+    @PostMapping(
+            path = "/itinerary/profile",
+            consumes = MediaType.APPLICATION_JSON_UTF8_VALUE,
+            produces = MediaType.APPLICATION_JSON_UTF8_VALUE
+    )
+    public @ResponseBody
+    Mono<ItineraryProfile> find(@RequestBody @Valid ItineraryProfileQuery input) {
+        log.debug("  >> itinerary profile: {}", input);
+        return itineraryService.find(input);
     }
 
     @PostMapping(
@@ -46,6 +142,39 @@ public class RouteResource {
         return routeService.create(input);
     }
 
+    @PostMapping(
+            path = "/bulk",
+            consumes = WebConfiguration.APPLICATION_NDJSON_VALUE,
+            produces = WebConfiguration.APPLICATION_NDJSON_VALUE
+    )
+    public @ResponseBody
+    Flux<BulkIngestProgress> ingest(@RequestBody Flux<RouteInfo> input) {
+        log.debug("  >> bulk ingest");
+        return routeService.ingest(input);
+    }
+
+    @PostMapping(
+            path = "/bulk/update",
+            consumes = MediaType.APPLICATION_JSON_UTF8_VALUE,
+            produces = MediaType.APPLICATION_JSON_UTF8_VALUE
+    )
+    public @ResponseBody
+    Mono<BulkOperationResult> update(@RequestBody @Valid BulkRouteUpdate input) {
+        log.debug("  >> bulk update: {}", input);
+        return routeService.update(input);
+    }
+
+    @PostMapping(
+            path = "/bulk/delete",
+            consumes = MediaType.APPLICATION_JSON_UTF8_VALUE,
+            produces = MediaType.APPLICATION_JSON_UTF8_VALUE
+    )
+    public @ResponseBody
+    Mono<BulkOperationResult> delete(@RequestBody @Valid BulkRouteDelete input) {
+        log.debug("  >> bulk delete: {}", input);
+        return routeService.delete(input);
+    }
+
     @PutMapping(
             path = "/{id}",
             consumes = MediaType.APPLICATION_JSON_UTF8_VALUE,
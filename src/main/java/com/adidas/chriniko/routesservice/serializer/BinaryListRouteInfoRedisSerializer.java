@@ -0,0 +1,60 @@
+package com.adidas.chriniko.routesservice.serializer;
+
+import com.adidas.chriniko.routesservice.dto.RouteInfo;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Writes {@link RouteInfoBinaryCodec} payloads, reads both binary and (old) json payloads so a rolling deploy is safe.
+ */
+@Log4j2
+
+@Component
+public class BinaryListRouteInfoRedisSerializer implements RedisSerializer<List<RouteInfo>> {
+
+    private final ListRouteInfoRedisSerializer jsonListRouteInfoRedisSerializer;
+
+    @Autowired
+    public BinaryListRouteInfoRedisSerializer(ListRouteInfoRedisSerializer jsonListRouteInfoRedisSerializer) {
+        this.jsonListRouteInfoRedisSerializer = jsonListRouteInfoRedisSerializer;
+    }
+
+    @Override
+    public byte[] serialize(List<RouteInfo> routeInfos) throws SerializationException {
+        if (routeInfos == null) {
+            return null;
+        }
+
+        try {
+            return RouteInfoBinaryCodec.encode(routeInfos);
+        } catch (RuntimeException e) {
+            String msg = "could not serialize route infos";
+            log.error(msg, e);
+            throw new SerializationException(msg, e);
+        }
+    }
+
+    @Override
+    public List<RouteInfo> deserialize(byte[] bytes) throws SerializationException {
+        if (bytes == null) {
+            return null;
+        }
+
+        if (!RouteInfoBinaryCodec.isBinary(bytes)) {
+            return jsonListRouteInfoRedisSerializer.deserialize(bytes);
+        }
+
+        try {
+            return RouteInfoBinaryCodec.decodeList(bytes);
+        } catch (RuntimeException e) {
+            String msg = "could not deserialize route infos";
+            log.error(msg, e);
+            throw new SerializationException(msg, e);
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.adidas.chriniko.routesservice.serializer;
+
+import com.adidas.chriniko.routesservice.dto.RouteInfo;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+import org.springframework.stereotype.Component;
+
+/**
+ * Writes {@link RouteInfoBinaryCodec} payloads, reads both binary and (old) json payloads so a rolling deploy is safe.
+ */
+@Log4j2
+
+@Component
+public class BinaryRouteInfoRedisSerializer implements RedisSerializer<RouteInfo> {
+
+    private final RouteInfoRedisSerializer jsonRouteInfoRedisSerializer;
+
+    @Autowired
+    public BinaryRouteInfoRedisSerializer(RouteInfoRedisSerializer jsonRouteInfoRedisSerializer) {
+        this.jsonRouteInfoRedisSerializer = jsonRouteInfoRedisSerializer;
+    }
+
+    @Override
+    public byte[] serialize(RouteInfo routeInfo) throws SerializationException {
+        if (routeInfo == null) {
+            return null;
+        }
+
+        try {
+            return RouteInfoBinaryCodec.encode(routeInfo);
+        } catch (RuntimeException e) {
+            String msg = "could not serialize route info";
+            log.error(msg, e);
+            throw new SerializationException(msg, e);
+        }
+    }
+
+    @Override
+    public RouteInfo deserialize(byte[] bytes) throws SerializationException {
+        if (bytes == null) {
+            return null;
+        }
+
+        if (!RouteInfoBinaryCodec.isBinary(bytes)) {
+            return jsonRouteInfoRedisSerializer.deserialize(bytes);
+        }
+
+        try {
+            return RouteInfoBinaryCodec.decode(bytes);
+        } catch (RuntimeException e) {
+            String msg = "could not deserialize route info";
+            log.error(msg, e);
+            throw new SerializationException(msg, e);
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.adidas.chriniko.routesservice.serializer;
+
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Every cache key lives under: routes-cache:v{generation}:{type}:
+ * <p>
+ * The generation is shared by all the instances (GENERATION_KEY), every instance follows it, only a reset of the routes
+ * (seeding) bumps it, so keys of previous generations are no longer visible and expire on their own.
+ */
+@Component
+public class CacheKeyNamespace {
+
+    public static final String GENERATION_KEY = "routes-cache:generation";
+    public static final String SCAN_PATTERN = "routes-cache:v*";
+
+    // Note: the generation a fresh redis starts with, INCR of a missing key would also give 1.
+    public static final String FIRST_GENERATION = "1";
+
+    private static final String PREFIX = "routes-cache:v";
+    private static final byte[] PREFIX_BYTES = PREFIX.getBytes(StandardCharsets.UTF_8);
+
+    private volatile long generation;
+
+    public long getGeneration() {
+        return generation;
+    }
+
+    public void setGeneration(long generation) {
+        this.generation = generation;
+    }
+
+    byte[] prefix(String type) {
+        return (PREFIX + generation + ":" + type + ":").getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return true if the (raw) key belongs to a generation older than the current one, keys of newer generations (bumped
+     *         meanwhile by another instance) and keys which are not namespaced are kept.
+     */
+    public boolean isStale(byte[] key) {
+        if (key.length <= PREFIX_BYTES.length) {
+            return false;
+        }
+        for (int i = 0; i < PREFIX_BYTES.length; i++) {
+            if (key[i] != PREFIX_BYTES[i]) {
+                return false;
+            }
+        }
+
+        long keyGeneration = 0;
+        int i = PREFIX_BYTES.length;
+        for (; i < key.length && key[i] >= '0' && key[i] <= '9'; i++) {
+            keyGeneration = keyGeneration * 10 + (key[i] - '0');
+        }
+
+        final boolean namespaced = i > PREFIX_BYTES.length && i < key.length && key[i] == ':';
+        return namespaced && keyGeneration < generation;
+    }
+}
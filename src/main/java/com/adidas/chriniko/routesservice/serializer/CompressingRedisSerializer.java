@@ -0,0 +1,136 @@
+package com.adidas.chriniko.routesservice.serializer;
+
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Timer;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.io.ByteArrayOutputStream;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Deflates values which are bigger than the threshold:
+ * <pre>
+ * header(1) | uncompressed length(4) | deflate data
+ * </pre>
+ * Smaller values are written as they are, json payloads start with '{' or '[' and binary ones with
+ * {@link RouteInfoBinaryCodec#MAGIC}, so compressed and uncompressed values can live side by side.
+ */
+@Log4j2
+public class CompressingRedisSerializer<T> implements RedisSerializer<T> {
+
+    static final byte DEFLATE_HEADER = (byte) 0xC1;
+
+    private static final int HEADER_LENGTH = 5;
+
+    private final RedisSerializer<T> delegate;
+    private final int thresholdBytes;
+    private final int level;
+
+    private final Timer compressionTime;
+    private final Timer decompressionTime;
+    // Note: compressed size as percentage of the uncompressed size.
+    private final Histogram compressionRatio;
+
+    public CompressingRedisSerializer(RedisSerializer<T> delegate,
+                                      int thresholdBytes,
+                                      int level,
+                                      Timer compressionTime,
+                                      Timer decompressionTime,
+                                      Histogram compressionRatio) {
+        this.delegate = delegate;
+        this.thresholdBytes = thresholdBytes;
+        this.level = level;
+        this.compressionTime = compressionTime;
+        this.decompressionTime = decompressionTime;
+        this.compressionRatio = compressionRatio;
+    }
+
+    @Override
+    public byte[] serialize(T t) throws SerializationException {
+        final byte[] bytes = delegate.serialize(t);
+        if (bytes == null || bytes.length < thresholdBytes) {
+            return bytes;
+        }
+
+        try (Timer.Context ignored = compressionTime.time()) {
+            final byte[] compressed = deflate(bytes);
+            compressionRatio.update(compressed.length * 100L / bytes.length);
+            return compressed;
+        }
+    }
+
+    @Override
+    public T deserialize(byte[] bytes) throws SerializationException {
+        if (bytes == null || bytes.length == 0 || bytes[0] != DEFLATE_HEADER) {
+            return delegate.deserialize(bytes);
+        }
+
+        final byte[] uncompressed;
+        try (Timer.Context ignored = decompressionTime.time()) {
+            uncompressed = inflate(bytes);
+        }
+        return delegate.deserialize(uncompressed);
+    }
+
+    private byte[] deflate(byte[] bytes) {
+        final Deflater deflater = new Deflater(level);
+        try {
+            deflater.setInput(bytes);
+            deflater.finish();
+
+            final ByteArrayOutputStream output = new ByteArrayOutputStream(HEADER_LENGTH + bytes.length / 2);
+            output.write(DEFLATE_HEADER);
+            output.write(bytes.length >>> 24);
+            output.write(bytes.length >>> 16);
+            output.write(bytes.length >>> 8);
+            output.write(bytes.length);
+
+            final byte[] buffer = new byte[4096];
+            while (!deflater.finished()) {
+                int count = deflater.deflate(buffer);
+                output.write(buffer, 0, count);
+            }
+            return output.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private byte[] inflate(byte[] bytes) {
+        if (bytes.length < HEADER_LENGTH) {
+            throw new SerializationException("could not decompress value, truncated header");
+        }
+
+        final int length = ((bytes[1] & 0xFF) << 24) | ((bytes[2] & 0xFF) << 16) | ((bytes[3] & 0xFF) << 8) | (bytes[4] & 0xFF);
+
+        final Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(bytes, HEADER_LENGTH, bytes.length - HEADER_LENGTH);
+
+            final byte[] uncompressed = new byte[length];
+            int offset = 0;
+            while (offset < length && !inflater.finished()) {
+                int count = inflater.inflate(uncompressed, offset, length - offset);
+                if (count == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                offset += count;
+            }
+
+            if (offset != length) {
+                throw new SerializationException("could not decompress value, expected bytes: " + length + ", found: " + offset);
+            }
+            return uncompressed;
+        } catch (DataFormatException e) {
+            String msg = "could not decompress value";
+            log.error(msg, e);
+            throw new SerializationException(msg, e);
+        } finally {
+            inflater.end();
+        }
+    }
+}
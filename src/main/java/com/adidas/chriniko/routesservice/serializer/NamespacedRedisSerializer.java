@@ -0,0 +1,57 @@
+package com.adidas.chriniko.routesservice.serializer;
+
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.util.Arrays;
+
+/**
+ * Key serializer which prepends the current {@link CacheKeyNamespace} prefix, eg: routes-cache:v3:route:{routeId}
+ */
+public class NamespacedRedisSerializer<T> implements RedisSerializer<T> {
+
+    private final CacheKeyNamespace cacheKeyNamespace;
+    private final String type;
+    private final RedisSerializer<T> delegate;
+
+    public NamespacedRedisSerializer(CacheKeyNamespace cacheKeyNamespace, String type, RedisSerializer<T> delegate) {
+        this.cacheKeyNamespace = cacheKeyNamespace;
+        this.type = type;
+        this.delegate = delegate;
+    }
+
+    @Override
+    public byte[] serialize(T t) throws SerializationException {
+        if (t == null) {
+            return null;
+        }
+
+        final byte[] prefix = cacheKeyNamespace.prefix(type);
+        final byte[] key = delegate.serialize(t);
+
+        final byte[] namespacedKey = Arrays.copyOf(prefix, prefix.length + key.length);
+        System.arraycopy(key, 0, namespacedKey, prefix.length, key.length);
+        return namespacedKey;
+    }
+
+    @Override
+    public T deserialize(byte[] bytes) throws SerializationException {
+        if (bytes == null) {
+            return null;
+        }
+
+        // Note: routes-cache:v{generation}:{type}:{key}, the key itself could contain ':' so we skip exactly three of them.
+        int separators = 0;
+        int idx = 0;
+        while (idx < bytes.length && separators < 3) {
+            if (bytes[idx++] == ':') {
+                separators++;
+            }
+        }
+        if (separators < 3) {
+            throw new SerializationException("could not deserialize key, not namespaced");
+        }
+
+        return delegate.deserialize(Arrays.copyOfRange(bytes, idx, bytes.length));
+    }
+}
@@ -0,0 +1,331 @@
+package com.adidas.chriniko.routesservice.serializer;
+
+import com.adidas.chriniko.routesservice.dto.CityInfo;
+import com.adidas.chriniko.routesservice.dto.RouteInfo;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Compact binary format of route infos (version 1):
+ * <pre>
+ * magic(1) | version(1) | dictionary: count(varint), [length(varint) utf8]... | routes: count(varint), [route]...
+ *
+ * route: flags(1) | id | city: name(ref) country(ref) | destiny city: name(ref) country(ref) | departure | arrival
+ *
+ * id: 16 bytes (uuid) or length(varint) utf8, ref: dictionary index(varint),
+ * instant: epoch seconds(zigzag varlong) nanos(varint)
+ * </pre>
+ * Null fields are recorded in the flags and not written.
+ * <p>
+ * Json payloads start with '{' or '[', so the magic byte is enough to tell the two formats apart.
+ */
+public final class RouteInfoBinaryCodec {
+
+    static final byte MAGIC = (byte) 0xB1;
+    static final byte VERSION = 1;
+
+    private static final int FLAG_ID = 1;
+    private static final int FLAG_UUID_ID = 1 << 1;
+    private static final int FLAG_CITY = 1 << 2;
+    private static final int FLAG_DESTINY_CITY = 1 << 3;
+    private static final int FLAG_DEPARTURE_TIME = 1 << 4;
+    private static final int FLAG_ARRIVAL_TIME = 1 << 5;
+
+    private RouteInfoBinaryCodec() {
+    }
+
+    public static boolean isBinary(byte[] bytes) {
+        return bytes.length >= 2 && bytes[0] == MAGIC;
+    }
+
+    public static byte[] encode(List<RouteInfo> routeInfos) {
+
+        final Map<String, Integer> dictionary = new HashMap<>();
+        final List<String> entries = new ArrayList<>();
+        for (RouteInfo routeInfo : routeInfos) {
+            addToDictionary(routeInfo.getCity(), dictionary, entries);
+            addToDictionary(routeInfo.getDestinyCity(), dictionary, entries);
+        }
+
+        final Writer writer = new Writer(64 + routeInfos.size() * 48);
+        writer.writeByte(MAGIC);
+        writer.writeByte(VERSION);
+
+        writer.writeVarInt(entries.size());
+        for (String entry : entries) {
+            writer.writeString(entry);
+        }
+
+        writer.writeVarInt(routeInfos.size());
+        for (RouteInfo routeInfo : routeInfos) {
+            writeRouteInfo(writer, routeInfo, dictionary);
+        }
+
+        return writer.toByteArray();
+    }
+
+    public static byte[] encode(RouteInfo routeInfo) {
+        return encode(Collections.singletonList(routeInfo));
+    }
+
+    public static List<RouteInfo> decodeList(byte[] bytes) {
+        final Reader reader = new Reader(bytes);
+
+        if (reader.readByte() != MAGIC) {
+            throw new IllegalArgumentException("not a binary route info payload");
+        }
+        final byte version = reader.readByte();
+        if (version != VERSION) {
+            throw new IllegalArgumentException("unsupported binary route info version: " + version);
+        }
+
+        final int dictionarySize = reader.readVarInt();
+        final String[] dictionary = new String[dictionarySize];
+        for (int i = 0; i < dictionarySize; i++) {
+            dictionary[i] = reader.readString();
+        }
+
+        final int size = reader.readVarInt();
+        final List<RouteInfo> routeInfos = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            routeInfos.add(readRouteInfo(reader, dictionary));
+        }
+        return routeInfos;
+    }
+
+    public static RouteInfo decode(byte[] bytes) {
+        final List<RouteInfo> routeInfos = decodeList(bytes);
+        if (routeInfos.size() != 1) {
+            throw new IllegalArgumentException("expected exactly one route info, found: " + routeInfos.size());
+        }
+        return routeInfos.get(0);
+    }
+
+    private static void addToDictionary(CityInfo cityInfo, Map<String, Integer> dictionary, List<String> entries) {
+        if (cityInfo == null) {
+            return;
+        }
+        for (String value : Arrays.asList(cityInfo.getName(), cityInfo.getCountry())) {
+            if (value != null && !dictionary.containsKey(value)) {
+                dictionary.put(value, entries.size());
+                entries.add(value);
+            }
+        }
+    }
+
+    private static void writeRouteInfo(Writer writer, RouteInfo routeInfo, Map<String, Integer> dictionary) {
+        final UUID uuid = asUuid(routeInfo.getId());
+
+        int flags = 0;
+        if (routeInfo.getId() != null) {
+            flags |= FLAG_ID;
+        }
+        if (uuid != null) {
+            flags |= FLAG_UUID_ID;
+        }
+        if (routeInfo.getCity() != null) {
+            flags |= FLAG_CITY;
+        }
+        if (routeInfo.getDestinyCity() != null) {
+            flags |= FLAG_DESTINY_CITY;
+        }
+        if (routeInfo.getDepartureTime() != null) {
+            flags |= FLAG_DEPARTURE_TIME;
+        }
+        if (routeInfo.getArrivalTime() != null) {
+            flags |= FLAG_ARRIVAL_TIME;
+        }
+        writer.writeByte((byte) flags);
+
+        if (uuid != null) {
+            writer.writeLong(uuid.getMostSignificantBits());
+            writer.writeLong(uuid.getLeastSignificantBits());
+        } else if (routeInfo.getId() != null) {
+            writer.writeString(routeInfo.getId());
+        }
+
+        if (routeInfo.getCity() != null) {
+            writeCityInfo(writer, routeInfo.getCity(), dictionary);
+        }
+        if (routeInfo.getDestinyCity() != null) {
+            writeCityInfo(writer, routeInfo.getDestinyCity(), dictionary);
+        }
+        if (routeInfo.getDepartureTime() != null) {
+            writeInstant(writer, routeInfo.getDepartureTime());
+        }
+        if (routeInfo.getArrivalTime() != null) {
+            writeInstant(writer, routeInfo.getArrivalTime());
+        }
+    }
+
+    private static RouteInfo readRouteInfo(Reader reader, String[] dictionary) {
+        final int flags = reader.readByte();
+        final RouteInfo routeInfo = new RouteInfo();
+
+        if ((flags & FLAG_UUID_ID) != 0) {
+            routeInfo.setId(new UUID(reader.readLong(), reader.readLong()).toString());
+        } else if ((flags & FLAG_ID) != 0) {
+            routeInfo.setId(reader.readString());
+        }
+
+        if ((flags & FLAG_CITY) != 0) {
+            routeInfo.setCity(readCityInfo(reader, dictionary));
+        }
+        if ((flags & FLAG_DESTINY_CITY) != 0) {
+            routeInfo.setDestinyCity(readCityInfo(reader, dictionary));
+        }
+        if ((flags & FLAG_DEPARTURE_TIME) != 0) {
+            routeInfo.setDepartureTime(readInstant(reader));
+        }
+        if ((flags & FLAG_ARRIVAL_TIME) != 0) {
+            routeInfo.setArrivalTime(readInstant(reader));
+        }
+        return routeInfo;
+    }
+
+    // Note: ref 0 is null, so dictionary indexes are shifted by one.
+    private static void writeCityInfo(Writer writer, CityInfo cityInfo, Map<String, Integer> dictionary) {
+        writer.writeVarInt(cityInfo.getName() == null ? 0 : dictionary.get(cityInfo.getName()) + 1);
+        writer.writeVarInt(cityInfo.getCountry() == null ? 0 : dictionary.get(cityInfo.getCountry()) + 1);
+    }
+
+    private static CityInfo readCityInfo(Reader reader, String[] dictionary) {
+        final int name = reader.readVarInt();
+        final int country = reader.readVarInt();
+        return new CityInfo(name == 0 ? null : dictionary[name - 1], country == 0 ? null : dictionary[country - 1]);
+    }
+
+    private static void writeInstant(Writer writer, Instant instant) {
+        final long epochSecond = instant.getEpochSecond();
+        writer.writeVarLong((epochSecond << 1) ^ (epochSecond >> 63));
+        writer.writeVarInt(instant.getNano());
+    }
+
+    private static Instant readInstant(Reader reader) {
+        final long zigZag = reader.readVarLong();
+        final long epochSecond = (zigZag >>> 1) ^ -(zigZag & 1);
+        return Instant.ofEpochSecond(epochSecond, reader.readVarInt());
+    }
+
+    // Note: only canonical (lower case) uuids, so the string survives the round trip unchanged.
+    private static UUID asUuid(String id) {
+        if (id == null || id.length() != 36) {
+            return null;
+        }
+        try {
+            UUID uuid = UUID.fromString(id);
+            return uuid.toString().equals(id) ? uuid : null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static final class Writer {
+
+        private byte[] buffer;
+        private int position;
+
+        Writer(int initialCapacity) {
+            buffer = new byte[initialCapacity];
+        }
+
+        void writeByte(byte b) {
+            ensureCapacity(1);
+            buffer[position++] = b;
+        }
+
+        void writeVarInt(int value) {
+            writeVarLong(value & 0xFFFFFFFFL);
+        }
+
+        void writeVarLong(long value) {
+            ensureCapacity(10);
+            while ((value & ~0x7FL) != 0) {
+                buffer[position++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            buffer[position++] = (byte) value;
+        }
+
+        void writeLong(long value) {
+            ensureCapacity(8);
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                buffer[position++] = (byte) (value >>> shift);
+            }
+        }
+
+        void writeString(String value) {
+            final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            writeVarInt(bytes.length);
+            ensureCapacity(bytes.length);
+            System.arraycopy(bytes, 0, buffer, position, bytes.length);
+            position += bytes.length;
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(buffer, position);
+        }
+
+        private void ensureCapacity(int extra) {
+            if (position + extra > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, position + extra));
+            }
+        }
+    }
+
+    private static final class Reader {
+
+        private final byte[] buffer;
+        private int position;
+
+        Reader(byte[] buffer) {
+            this.buffer = buffer;
+        }
+
+        byte readByte() {
+            return buffer[position++];
+        }
+
+        int readVarInt() {
+            return (int) readVarLong();
+        }
+
+        long readVarLong() {
+            long value = 0;
+            int shift = 0;
+            byte b;
+            do {
+                if (shift > 63) {
+                    throw new IllegalArgumentException("malformed varint");
+                }
+                b = buffer[position++];
+                value |= (long) (b & 0x7F) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0);
+            return value;
+        }
+
+        long readLong() {
+            long value = 0;
+            for (int i = 0; i < 8; i++) {
+                value = (value << 8) | (buffer[position++] & 0xFF);
+            }
+            return value;
+        }
+
+        String readString() {
+            final int length = readVarInt();
+            final String value = new String(buffer, position, length, StandardCharsets.UTF_8);
+            position += length;
+            return value;
+        }
+    }
+}
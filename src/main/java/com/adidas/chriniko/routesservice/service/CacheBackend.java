@@ -0,0 +1,190 @@
+package com.adidas.chriniko.routesservice.service;
+
+import com.adidas.chriniko.routesservice.dto.CityInfo;
+import com.adidas.chriniko.routesservice.dto.RouteInfo;
+import org.springframework.data.redis.core.DefaultTypedTuple;
+import org.springframework.data.redis.core.ZSetOperations;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Redis tier of the {@link CacheService}, the backend is selected with property: cache-service.backend
+ */
+public interface CacheBackend {
+
+    /**
+     * Reads the shared cache generation (initialized when missing) and switches to it, so every instance reads and writes
+     * the keys of the same generation.
+     *
+     * @return the current generation.
+     */
+    Mono<Long> currentGeneration();
+
+    /**
+     * Bumps the shared cache generation (see: {@link com.adidas.chriniko.routesservice.serializer.CacheKeyNamespace}),
+     * keys of previous generations are no longer visible.
+     *
+     * @return the new generation.
+     */
+    Mono<Long> nextGeneration();
+
+    /**
+     * Incrementally (cursor based SCAN) unlinks, in batches, the keys of generations older than the current one.
+     *
+     * @return the number of unlinked keys.
+     */
+    Mono<Long> removeStaleGenerations();
+
+    Mono<CacheEntry<List<RouteInfo>>> get(CityInfo cityInfo);
+
+    Mono<CacheEntry<RouteInfo>> get(String routeId);
+
+    /**
+     * Slices the city entry by departure time (through its departures sorted set), only the routes of the window are read.
+     *
+     * @param departureFrom inclusive, null for unbounded.
+     * @param departureTo   exclusive, null for unbounded.
+     * @return the routes of the window ordered by departure time, or empty on a miss.
+     */
+    Mono<CacheEntry<List<RouteInfo>>> get(CityInfo cityInfo, Instant departureFrom, Instant departureTo);
+
+    /**
+     * Fetches many city entries in one round trip.
+     *
+     * @return the found entries (misses are absent).
+     */
+    Mono<Map<CityInfo, CacheEntry<List<RouteInfo>>>> getAll(List<CityInfo> cityInfos);
+
+    Mono<Boolean> remove(CityInfo cityInfo);
+
+    Mono<Boolean> remove(String routeId);
+
+    /**
+     * Removes many route entries in a single operation.
+     *
+     * @return the number of removed entries.
+     */
+    Mono<Long> removeAll(Collection<String> routeIds);
+
+    /**
+     * Shortens the time to live of the city entry, so it is served stale until it is refreshed.
+     *
+     * @return true if the entry exists.
+     */
+    Mono<Boolean> expire(CityInfo cityInfo, Duration timeToLive);
+
+    /**
+     * Adds or replaces (by route id) the provided routes of the city entry (and of its departures sorted set) and resets
+     * their time to live, in a single atomic operation.
+     *
+     * @return the provided routes.
+     */
+    Mono<List<RouteInfo>> upsert(CityInfo cityInfo, List<RouteInfo> routeInfos);
+
+    /**
+     * Replaces (by route id) the route of the city entry (and of its departures sorted set), only if the entry exists,
+     * in a single atomic operation. The entry keeps its time to live.
+     *
+     * @return true if the entry exists.
+     */
+    Mono<Boolean> replace(CityInfo cityInfo, RouteInfo routeInfo);
+
+    Mono<RouteInfo> upsert(String routeId, RouteInfo routeInfo);
+
+    /**
+     * @param pageKey identifies the page of the city, eg: {limit}:{cursor}
+     */
+    Mono<List<RouteInfo>> getPage(CityInfo cityInfo, String pageKey);
+
+    Mono<List<RouteInfo>> upsertPage(CityInfo cityInfo, String pageKey, List<RouteInfo> routeInfos);
+
+    /**
+     * Removes all the cached pages of the city, in a single operation.
+     */
+    Mono<Boolean> removePages(CityInfo cityInfo);
+
+    /**
+     * Inbound routes of a destination city, cached as a whole (plain value) and removed on every change of them.
+     */
+    Mono<List<RouteInfo>> getInbound(CityInfo cityInfo);
+
+    Mono<List<RouteInfo>> upsertInbound(CityInfo cityInfo, List<RouteInfo> routeInfos);
+
+    Mono<Boolean> removeInbound(CityInfo cityInfo);
+
+    // Note: city entries are redis hashes, routeId ---> RouteInfo
+    static Map<String, RouteInfo> byRouteId(List<RouteInfo> routeInfos) {
+        final Map<String, RouteInfo> routeInfosById = new LinkedHashMap<>(routeInfos.size());
+        for (RouteInfo routeInfo : routeInfos) {
+            routeInfosById.put(routeInfo.getId(), routeInfo);
+        }
+        return routeInfosById;
+    }
+
+    // Note: departures sorted set, routeId scored by departure epoch millis (routes without departure time can not be in a window).
+    static Set<ZSetOperations.TypedTuple<String>> byDepartureTime(List<RouteInfo> routeInfos) {
+        final Set<ZSetOperations.TypedTuple<String>> departures = new LinkedHashSet<>(routeInfos.size());
+        for (RouteInfo routeInfo : routeInfos) {
+            if (routeInfo.getDepartureTime() != null) {
+                departures.add(new DefaultTypedTuple<>(routeInfo.getId(), (double) routeInfo.getDepartureTime().toEpochMilli()));
+            }
+        }
+        return departures;
+    }
+
+    // Note: ARGV of redis/city-upsert.lua, the departures sorted set members are the route ids (hash fields) of the city hash.
+    static List<byte[]> cityUpsertArgs(List<RouteInfo> routeInfos,
+                                       Duration timeToLive,
+                                       Function<String, byte[]> routeIdWriter,
+                                       Function<RouteInfo, byte[]> routeInfoWriter) {
+        final Map<String, RouteInfo> routeInfosById = byRouteId(routeInfos);
+        final Set<ZSetOperations.TypedTuple<String>> departures = byDepartureTime(routeInfos);
+
+        final List<byte[]> args = new ArrayList<>(2 + 2 * routeInfosById.size() + 2 * departures.size());
+        args.add(String.valueOf(timeToLive.toMillis()).getBytes(StandardCharsets.UTF_8));
+        args.add(String.valueOf(routeInfosById.size()).getBytes(StandardCharsets.UTF_8));
+
+        for (Map.Entry<String, RouteInfo> routeInfoById : routeInfosById.entrySet()) {
+            args.add(routeIdWriter.apply(routeInfoById.getKey()));
+            args.add(routeInfoWriter.apply(routeInfoById.getValue()));
+        }
+        for (ZSetOperations.TypedTuple<String> departure : departures) {
+            args.add(String.valueOf(departure.getScore().longValue()).getBytes(StandardCharsets.UTF_8));
+            args.add(routeIdWriter.apply(departure.getValue()));
+        }
+        return args;
+    }
+
+    // Note: ARGV of redis/city-replace.lua
+    static List<byte[]> cityReplaceArgs(RouteInfo routeInfo,
+                                        Function<String, byte[]> routeIdWriter,
+                                        Function<RouteInfo, byte[]> routeInfoWriter) {
+        final String departure = routeInfo.getDepartureTime() == null ? "" : String.valueOf(routeInfo.getDepartureTime().toEpochMilli());
+
+        final List<byte[]> args = new ArrayList<>(3);
+        args.add(routeIdWriter.apply(routeInfo.getId()));
+        args.add(routeInfoWriter.apply(routeInfo));
+        args.add(departure.getBytes(StandardCharsets.UTF_8));
+        return args;
+    }
+
+    // Note: ZRANGEBYSCORE bounds, departureFrom inclusive and departureTo exclusive.
+    static String minScore(Instant departureFrom) {
+        return departureFrom == null ? "-inf" : String.valueOf(departureFrom.toEpochMilli());
+    }
+
+    static String maxScore(Instant departureTo) {
+        return departureTo == null ? "+inf" : "(" + departureTo.toEpochMilli();
+    }
+}
@@ -0,0 +1,13 @@
+package com.adidas.chriniko.routesservice.service;
+
+import lombok.Value;
+
+/**
+ * A value read from the redis tier together with its remaining time to live (-1 when unknown or without ttl).
+ */
+@Value
+public class CacheEntry<V> {
+
+    private final V value;
+    private final long timeToLiveMillis;
+}
@@ -2,132 +2,472 @@ package com.adidas.chriniko.routesservice.service;
 
 import com.adidas.chriniko.routesservice.dto.CityInfo;
 import com.adidas.chriniko.routesservice.dto.RouteInfo;
+import com.adidas.chriniko.routesservice.init.RoutesSeededEvent;
 import com.codahale.metrics.Meter;
+import com.codahale.metrics.Timer;
+import com.github.benmanes.caffeine.cache.Cache;
 import lombok.extern.log4j.Log4j2;
 import org.javatuples.Pair;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.ApplicationListener;
 import org.springframework.context.event.ContextRefreshedEvent;
-import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Mono;
 
 import java.time.Duration;
+import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Set;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
 @Log4j2
 
 @Service
 public class CacheService implements ApplicationListener<ContextRefreshedEvent> {
 
-    private final RedisTemplate<CityInfo, List<RouteInfo>> cityInfoToRouteInfos;
-    private final RedisTemplate<String, RouteInfo> routeIdToRouteInfo;
+    // Note: redis tier, see property: cache-service.backend
+    private final CacheBackend cacheBackend;
+
+    // Note: near cache tier, consulted before going to redis.
+    private final Cache<CityInfo, List<RouteInfo>> nearCacheCityInfoToRouteInfos;
+    private final Cache<String, RouteInfo> nearCacheRouteIdToRouteInfo;
 
     private final Meter cacheHitFindByCityInfo;
     private final Meter cacheMissFindByCityInfo;
     private final Meter cacheHitFindByRouteId;
     private final Meter cacheMissFindByRouteId;
 
+    private final Meter nearCacheHitFindByCityInfo;
+    private final Meter nearCacheMissFindByCityInfo;
+    private final Meter nearCacheHitFindByRouteId;
+    private final Meter nearCacheMissFindByRouteId;
+
+    private final Timer cacheLatencyFindByCityInfo;
+    private final Timer cacheLatencyFindByRouteId;
+
+    // Note: stale-while-revalidate and probabilistic early refresh (XFetch), see properties: cache-service.stale-ttl-seconds, cache-service.early-refresh-beta
+    private final Timer loadFindByCityInfo;
+    private final Timer loadFindByRouteId;
+
+    private final Meter staleHitFindByCityInfo;
+    private final Meter staleHitFindByRouteId;
+    private final Meter earlyRefreshFindByCityInfo;
+    private final Meter earlyRefreshFindByRouteId;
+
+    private final long staleTtlMillis;
+    private final double earlyRefreshBeta;
+
+    // Note: pages of the keyset paginated search, invalidated as a whole (per city) on every change of the city.
+    private final Meter cacheHitFindPageByCityInfo;
+    private final Meter cacheMissFindPageByCityInfo;
+
+    // Note: inbound routes of a destination city, removed on every change of them.
+    private final Meter cacheHitFindByDestiny;
+    private final Meter cacheMissFindByDestiny;
+    private final Timer cacheLatencyFindByDestiny;
+
+    // Note: the cache generation this instance follows, near cache entries of a previous one are dropped on a change.
+    private volatile long generation;
 
     @Autowired
-    public CacheService(RedisTemplate<CityInfo, List<RouteInfo>> cityInfoToRouteInfos,
-                        RedisTemplate<String, RouteInfo> routeIdToRouteInfo,
+    public CacheService(CacheBackend cacheBackend,
+                        Cache<CityInfo, List<RouteInfo>> nearCacheCityInfoToRouteInfos,
+                        Cache<String, RouteInfo> nearCacheRouteIdToRouteInfo,
                         Meter cacheHitFindByCityInfo,
                         Meter cacheMissFindByCityInfo,
                         Meter cacheHitFindByRouteId,
-                        Meter cacheMissFindByRouteId) {
-        this.cityInfoToRouteInfos = cityInfoToRouteInfos;
-        this.routeIdToRouteInfo = routeIdToRouteInfo;
+                        Meter cacheMissFindByRouteId,
+                        Meter nearCacheHitFindByCityInfo,
+                        Meter nearCacheMissFindByCityInfo,
+                        Meter nearCacheHitFindByRouteId,
+                        Meter nearCacheMissFindByRouteId,
+                        Timer cacheLatencyFindByCityInfo,
+                        Timer cacheLatencyFindByRouteId,
+                        Timer loadFindByCityInfo,
+                        Timer loadFindByRouteId,
+                        Meter staleHitFindByCityInfo,
+                        Meter staleHitFindByRouteId,
+                        Meter earlyRefreshFindByCityInfo,
+                        Meter earlyRefreshFindByRouteId,
+                        Meter cacheHitFindPageByCityInfo,
+                        Meter cacheMissFindPageByCityInfo,
+                        Meter cacheHitFindByDestiny,
+                        Meter cacheMissFindByDestiny,
+                        Timer cacheLatencyFindByDestiny,
+                        @Value("${cache-service.stale-ttl-seconds}") long staleTtlSeconds,
+                        @Value("${cache-service.early-refresh-beta}") double earlyRefreshBeta) {
+        this.cacheBackend = cacheBackend;
+        this.nearCacheCityInfoToRouteInfos = nearCacheCityInfoToRouteInfos;
+        this.nearCacheRouteIdToRouteInfo = nearCacheRouteIdToRouteInfo;
         this.cacheHitFindByCityInfo = cacheHitFindByCityInfo;
         this.cacheMissFindByCityInfo = cacheMissFindByCityInfo;
         this.cacheHitFindByRouteId = cacheHitFindByRouteId;
         this.cacheMissFindByRouteId = cacheMissFindByRouteId;
+        this.nearCacheHitFindByCityInfo = nearCacheHitFindByCityInfo;
+        this.nearCacheMissFindByCityInfo = nearCacheMissFindByCityInfo;
+        this.nearCacheHitFindByRouteId = nearCacheHitFindByRouteId;
+        this.nearCacheMissFindByRouteId = nearCacheMissFindByRouteId;
+        this.cacheLatencyFindByCityInfo = cacheLatencyFindByCityInfo;
+        this.cacheLatencyFindByRouteId = cacheLatencyFindByRouteId;
+        this.loadFindByCityInfo = loadFindByCityInfo;
+        this.loadFindByRouteId = loadFindByRouteId;
+        this.staleHitFindByCityInfo = staleHitFindByCityInfo;
+        this.staleHitFindByRouteId = staleHitFindByRouteId;
+        this.earlyRefreshFindByCityInfo = earlyRefreshFindByCityInfo;
+        this.earlyRefreshFindByRouteId = earlyRefreshFindByRouteId;
+        this.staleTtlMillis = TimeUnit.MILLISECONDS.convert(staleTtlSeconds, TimeUnit.SECONDS);
+        this.earlyRefreshBeta = earlyRefreshBeta;
+        this.cacheHitFindPageByCityInfo = cacheHitFindPageByCityInfo;
+        this.cacheMissFindPageByCityInfo = cacheMissFindPageByCityInfo;
+        this.cacheHitFindByDestiny = cacheHitFindByDestiny;
+        this.cacheMissFindByDestiny = cacheMissFindByDestiny;
+        this.cacheLatencyFindByDestiny = cacheLatencyFindByDestiny;
     }
 
+    // Note: the cache generation is shared by all the instances, so they read and write (and invalidate) the same keys.
     @Override
     public void onApplicationEvent(ContextRefreshedEvent event) {
-        Set<CityInfo> cityInfoKeys = cityInfoToRouteInfos.opsForValue().getOperations().keys(new CityInfo("*", "*"));
-        log.debug("will clear redis [cache(CityInfo) ---> RouteInfo], keys: {}", cityInfoKeys);
-        cityInfoToRouteInfos.opsForValue().getOperations().delete(cityInfoKeys);
+        followGeneration();
+    }
+
+    // Note: another instance may have bumped the generation (seeding), see property: cache-service.generation-refresh-millis
+    @Scheduled(initialDelayString = "${cache-service.generation-refresh-millis}", fixedDelayString = "${cache-service.generation-refresh-millis}")
+    public void refreshGeneration() {
+        try {
+            followGeneration();
+        } catch (Exception e) {
+            log.warn("could not refresh cache generation", e);
+        }
+    }
+
+    // Note: the routes are seeded in the background (see DbInit), whatever was cached meanwhile is partial, so start over.
+    @EventListener
+    public void onRoutesSeeded(RoutesSeededEvent event) {
+        log.debug("routes seeded, seeded routes: {}, generated: {}", event.getSeededRoutes(), event.isGenerated());
+        if (event.isGenerated()) {
+            nextGeneration();
+        }
+    }
+
+    private void followGeneration() {
+        final Long current = cacheBackend.currentGeneration().block();
+        if (current != null && current != generation) {
+            nearCacheCityInfoToRouteInfos.invalidateAll();
+            nearCacheRouteIdToRouteInfo.invalidateAll();
+
+            generation = current;
+            log.info("cache generation: {}", current);
+        }
+    }
+
+    private void nextGeneration() {
+        nearCacheCityInfoToRouteInfos.invalidateAll();
+        nearCacheRouteIdToRouteInfo.invalidateAll();
+
+        // Note: O(1), previous generations are no longer visible so we can take traffic right away.
+        cacheBackend.nextGeneration()
+                .doOnNext(next -> {
+                    generation = next;
+                    log.info("cache generation: {}", next);
+                })
+                .block();
 
-        Set<String> routeIdKeys = routeIdToRouteInfo.opsForValue().getOperations().keys("*");
-        log.debug("will clear redis [cache(routeId:String) ---> RouteInfo], keys: {}", routeIdKeys);
-        routeIdToRouteInfo.opsForValue().getOperations().delete(routeIdKeys);
+        // Note: previous generations expire on their own, this just gives the memory back sooner.
+        cacheBackend.removeStaleGenerations()
+                .subscribe(
+                        unlinked -> log.info("removed stale cache generations, unlinked keys: {}", unlinked),
+                        error -> log.warn("could not remove stale cache generations", error)
+                );
     }
 
     Mono<List<RouteInfo>> get(CityInfo cityInfo) {
-        return Mono
-                .<List<RouteInfo>>create(sink -> {
-                    try {
-                        List<RouteInfo> results = cityInfoToRouteInfos.opsForValue().get(cityInfo);
+        return get(cityInfo, Mono::empty);
+    }
+
+    /**
+     * @param refresher reloads (and upserts) the entry, it runs in the background when the entry is stale or about to expire.
+     */
+    Mono<List<RouteInfo>> get(CityInfo cityInfo, Supplier<Mono<List<RouteInfo>>> refresher) {
+        return Mono.defer(() -> {
+            List<RouteInfo> nearResults = nearCacheCityInfoToRouteInfos.getIfPresent(cityInfo);
+            if (nearResults != null) {
+                log.debug("near cache hit(cityInfo), result: {}", nearResults);
+                nearCacheHitFindByCityInfo.mark();
+                return Mono.just(nearResults);
+            }
+
+            nearCacheMissFindByCityInfo.mark();
+            return _get(cityInfo, refresher);
+        });
+    }
+
+    /**
+     * Routes of the city departing within the window, sliced from the near cache entry or else (without reading the whole entry)
+     * from redis. The whole entry is refreshed in the background when it is stale or about to expire.
+     *
+     * @param departureFrom inclusive, null for unbounded.
+     * @param departureTo   exclusive, null for unbounded.
+     */
+    Mono<List<RouteInfo>> get(CityInfo cityInfo,
+                              Instant departureFrom,
+                              Instant departureTo,
+                              Supplier<Mono<List<RouteInfo>>> refresher) {
+        return Mono.defer(() -> {
+            List<RouteInfo> nearResults = nearCacheCityInfoToRouteInfos.getIfPresent(cityInfo);
+            if (nearResults != null) {
+                log.debug("near cache hit(cityInfo window), result: {}", nearResults);
+                nearCacheHitFindByCityInfo.mark();
+                return Mono.just(departingWithin(nearResults, departureFrom, departureTo));
+            }
+
+            nearCacheMissFindByCityInfo.mark();
+            return timed(cacheLatencyFindByCityInfo, cacheBackend.get(cityInfo, departureFrom, departureTo))
+                    .map(entry -> {
+                        log.debug("cache hit(cityInfo window), result: {}", entry.getValue());
+                        cacheHitFindByCityInfo.mark();
+
+                        revalidateIfNeeded(entry, loadFindByCityInfo, staleHitFindByCityInfo, earlyRefreshFindByCityInfo, refresher);
+                        return Collections.unmodifiableList(entry.getValue());
+                    })
+                    .switchIfEmpty(Mono.fromRunnable(() -> {
+                        log.debug("cache miss(cityInfo window), cityInfo: {}", cityInfo);
+                        cacheMissFindByCityInfo.mark();
+                    }))
+                    .doOnError(e -> log.error("cache get(cityInfo,window) operation failed", e))
+                    .retryBackoff(3, Duration.ofMillis(5), Duration.ofMillis(12));
+        });
+    }
+
+    /**
+     * Resolves many city entries, near cache first and then the rest from redis in one round trip.
+     *
+     * @return the found entries (misses are absent).
+     */
+    Mono<Map<CityInfo, List<RouteInfo>>> get(List<CityInfo> cityInfos, Function<CityInfo, Mono<List<RouteInfo>>> refresher) {
+        return Mono.defer(() -> {
+            final Map<CityInfo, List<RouteInfo>> results = new LinkedHashMap<>();
+            final List<CityInfo> nearMisses = new ArrayList<>();
+
+            for (CityInfo cityInfo : cityInfos) {
+                List<RouteInfo> nearResults = nearCacheCityInfoToRouteInfos.getIfPresent(cityInfo);
+                if (nearResults != null) {
+                    nearCacheHitFindByCityInfo.mark();
+                    results.put(cityInfo, nearResults);
+                } else {
+                    nearCacheMissFindByCityInfo.mark();
+                    nearMisses.add(cityInfo);
+                }
+            }
+
+            if (nearMisses.isEmpty()) {
+                return Mono.just(results);
+            }
+
+            return timed(cacheLatencyFindByCityInfo, cacheBackend.getAll(nearMisses))
+                    .map(entries -> {
+                        for (CityInfo cityInfo : nearMisses) {
+                            CacheEntry<List<RouteInfo>> entry = entries.get(cityInfo);
+                            if (entry == null) {
+                                log.debug("cache miss(cityInfo), cityInfo: {}", cityInfo);
+                                cacheMissFindByCityInfo.mark();
+                                continue;
+                            }
 
-                        if (results != null) {
-                            log.debug("cache hit(cityInfo), result: {}", results);
                             cacheHitFindByCityInfo.mark();
-                        } else {
-                            log.debug("cache miss(cityInfo), cityInfo: {}", cityInfo);
-                            cacheMissFindByCityInfo.mark();
+                            revalidateIfNeeded(entry, loadFindByCityInfo, staleHitFindByCityInfo, earlyRefreshFindByCityInfo,
+                                    () -> refresher.apply(cityInfo));
+
+                            List<RouteInfo> unmodifiableResults = Collections.unmodifiableList(entry.getValue());
+                            nearCacheCityInfoToRouteInfos.put(cityInfo, unmodifiableResults);
+                            results.put(cityInfo, unmodifiableResults);
                         }
+                        return results;
+                    })
+                    .doOnError(e -> log.error("cache get(cityInfos) operation failed", e))
+                    .retryBackoff(3, Duration.ofMillis(5), Duration.ofMillis(12));
+        });
+    }
 
-                        sink.success(results);
-                    } catch (Exception e) {
-                        log.error("cache get(cityInfo) operation failed", e);
-                        sink.error(e);
-                    }
+    Mono<RouteInfo> get(String routeId) {
+        return get(routeId, Mono::empty);
+    }
+
+    /**
+     * @param refresher reloads (and upserts) the entry, it runs in the background when the entry is stale or about to expire.
+     */
+    Mono<RouteInfo> get(String routeId, Supplier<Mono<RouteInfo>> refresher) {
+        return Mono.defer(() -> {
+            RouteInfo nearResult = nearCacheRouteIdToRouteInfo.getIfPresent(routeId);
+            if (nearResult != null) {
+                log.debug("near cache hit(routeId), result: {}", nearResult);
+                nearCacheHitFindByRouteId.mark();
+                return Mono.just(nearResult);
+            }
+
+            nearCacheMissFindByRouteId.mark();
+            return _get(routeId, refresher);
+        });
+    }
+
+    Mono<List<RouteInfo>> getPage(CityInfo cityInfo, String pageKey) {
+        return timed(cacheLatencyFindByCityInfo, cacheBackend.getPage(cityInfo, pageKey))
+                .doOnNext(results -> {
+                    log.debug("cache hit(cityInfo page), pageKey: {}, result: {}", pageKey, results);
+                    cacheHitFindPageByCityInfo.mark();
                 })
+                .switchIfEmpty(Mono.fromRunnable(() -> {
+                    log.debug("cache miss(cityInfo page), cityInfo: {}, pageKey: {}", cityInfo, pageKey);
+                    cacheMissFindPageByCityInfo.mark();
+                }))
+                .doOnError(e -> log.error("cache getPage(cityInfo) operation failed", e))
                 .retryBackoff(3, Duration.ofMillis(5), Duration.ofMillis(12));
     }
 
-    Mono<RouteInfo> get(String routeId) {
-        return Mono
-                .<RouteInfo>create(sink -> {
-                    try {
-                        RouteInfo result = routeIdToRouteInfo.opsForValue().get(routeId);
-
-                        if (result != null) {
-                            log.debug("cache hit(routeId), result: {}", result);
-                            cacheHitFindByRouteId.mark();
-                        } else {
-                            log.debug("cache miss(routeId), routeId: {}", routeId);
-                            cacheMissFindByRouteId.mark();
-                        }
+    Mono<List<RouteInfo>> getInbound(CityInfo cityInfo) {
+        return timed(cacheLatencyFindByDestiny, cacheBackend.getInbound(cityInfo))
+                .doOnNext(results -> {
+                    log.debug("cache hit(destiny cityInfo), result: {}", results);
+                    cacheHitFindByDestiny.mark();
+                })
+                .switchIfEmpty(Mono.fromRunnable(() -> {
+                    log.debug("cache miss(destiny cityInfo), cityInfo: {}", cityInfo);
+                    cacheMissFindByDestiny.mark();
+                }))
+                .doOnError(e -> log.error("cache getInbound(cityInfo) operation failed", e))
+                .retryBackoff(3, Duration.ofMillis(5), Duration.ofMillis(12));
+    }
+
+    private Mono<List<RouteInfo>> _get(CityInfo cityInfo, Supplier<Mono<List<RouteInfo>>> refresher) {
+        return timed(cacheLatencyFindByCityInfo, cacheBackend.get(cityInfo))
+                .map(entry -> {
+                    List<RouteInfo> results = entry.getValue();
+                    log.debug("cache hit(cityInfo), result: {}", results);
+                    cacheHitFindByCityInfo.mark();
 
-                        sink.success(result);
-                    } catch (Exception e) {
-                        log.error("cache get(routeId) operation failed", e);
-                        sink.error(e);
-                    }
+                    revalidateIfNeeded(entry, loadFindByCityInfo, staleHitFindByCityInfo, earlyRefreshFindByCityInfo, refresher);
+
+                    List<RouteInfo> unmodifiableResults = Collections.unmodifiableList(results);
+                    nearCacheCityInfoToRouteInfos.put(cityInfo, unmodifiableResults);
+                    return unmodifiableResults;
+                })
+                .switchIfEmpty(Mono.fromRunnable(() -> {
+                    log.debug("cache miss(cityInfo), cityInfo: {}", cityInfo);
+                    cacheMissFindByCityInfo.mark();
+                }))
+                .doOnError(e -> log.error("cache get(cityInfo) operation failed", e))
+                .retryBackoff(3, Duration.ofMillis(5), Duration.ofMillis(12));
+    }
+
+    private Mono<RouteInfo> _get(String routeId, Supplier<Mono<RouteInfo>> refresher) {
+        return timed(cacheLatencyFindByRouteId, cacheBackend.get(routeId))
+                .map(entry -> {
+                    RouteInfo result = entry.getValue();
+                    log.debug("cache hit(routeId), result: {}", result);
+                    cacheHitFindByRouteId.mark();
+
+                    revalidateIfNeeded(entry, loadFindByRouteId, staleHitFindByRouteId, earlyRefreshFindByRouteId, refresher);
+
+                    nearCacheRouteIdToRouteInfo.put(routeId, result);
+                    return result;
                 })
+                .switchIfEmpty(Mono.fromRunnable(() -> {
+                    log.debug("cache miss(routeId), routeId: {}", routeId);
+                    cacheMissFindByRouteId.mark();
+                }))
+                .doOnError(e -> log.error("cache get(routeId) operation failed", e))
                 .retryBackoff(3, Duration.ofMillis(5), Duration.ofMillis(12));
     }
 
+    /*
+     * Note: an entry is fresh until the last stale-ttl of its (physical) ttl, during that window it is served stale
+     *       and refreshed in the background. Before that, every reader refreshes early with probability given by XFetch:
+     *       -delta * beta * ln(random) >= time to expiry, where delta is how long a load takes (mean).
+     */
+    private <V> void revalidateIfNeeded(CacheEntry<V> entry,
+                                        Timer loadTime,
+                                        Meter staleHit,
+                                        Meter earlyRefresh,
+                                        Supplier<Mono<V>> refresher) {
+        if (entry.getTimeToLiveMillis() < 0) {
+            return;
+        }
+
+        final long timeToExpiryMillis = entry.getTimeToLiveMillis() - staleTtlMillis;
+        if (timeToExpiryMillis <= 0) {
+            staleHit.mark();
+        } else {
+            double deltaMillis = loadTime.getSnapshot().getMean() / 1_000_000D;
+            double random = ThreadLocalRandom.current().nextDouble();
+            if (random == 0D || -deltaMillis * earlyRefreshBeta * Math.log(random) < timeToExpiryMillis) {
+                return;
+            }
+            earlyRefresh.mark();
+        }
+
+        refresher.get().subscribe(
+                refreshed -> log.debug("refreshed cache entry: {}", refreshed),
+                error -> log.warn("could not refresh cache entry", error)
+        );
+    }
+
     Mono<Boolean> remove(CityInfo cityInfo) {
         return Mono
-                .<Boolean>create(sink -> {
-                    try {
-                        Boolean removed = cityInfoToRouteInfos.opsForValue().getOperations().delete(cityInfo);
-                        sink.success(removed);
-                    } catch (Exception e) {
-                        log.error("cache remove(cityInfo) operation failed", e);
-                        sink.error(e);
-                    }
-                })
+                .fromRunnable(() -> nearCacheCityInfoToRouteInfos.invalidate(cityInfo))
+                .then(cacheBackend.remove(cityInfo))
+                .doOnError(e -> log.error("cache remove(cityInfo) operation failed", e))
                 .retryBackoff(3, Duration.ofMillis(5), Duration.ofMillis(12));
     }
 
     Mono<Boolean> remove(String routeId) {
         return Mono
-                .<Boolean>create(sink -> {
-                    try {
-                        Boolean removed = routeIdToRouteInfo.opsForValue().getOperations().delete(routeId);
-                        sink.success(removed);
-                    } catch (Exception e) {
-                        log.error("cache remove(routeId) operation failed", e);
-                        sink.error(e);
-                    }
-                })
+                .fromRunnable(() -> nearCacheRouteIdToRouteInfo.invalidate(routeId))
+                .then(cacheBackend.remove(routeId))
+                .doOnError(e -> log.error("cache remove(routeId) operation failed", e))
+                .retryBackoff(3, Duration.ofMillis(5), Duration.ofMillis(12));
+    }
+
+    Mono<Long> removeAll(Collection<String> routeIds) {
+        return Mono
+                .fromRunnable(() -> nearCacheRouteIdToRouteInfo.invalidateAll(routeIds))
+                .then(cacheBackend.removeAll(routeIds))
+                .doOnError(e -> log.error("cache removeAll(routeIds) operation failed", e))
+                .retryBackoff(3, Duration.ofMillis(5), Duration.ofMillis(12));
+    }
+
+    Mono<Boolean> removePages(CityInfo cityInfo) {
+        return cacheBackend
+                .removePages(cityInfo)
+                .doOnError(e -> log.error("cache removePages(cityInfo) operation failed", e))
+                .retryBackoff(3, Duration.ofMillis(5), Duration.ofMillis(12));
+    }
+
+    Mono<Boolean> removeInbound(CityInfo cityInfo) {
+        return cacheBackend
+                .removeInbound(cityInfo)
+                .doOnError(e -> log.error("cache removeInbound(cityInfo) operation failed", e))
+                .retryBackoff(3, Duration.ofMillis(5), Duration.ofMillis(12));
+    }
+
+    /**
+     * Keeps serving the city entry (stale) until the next read refreshes it, instead of removing it.
+     */
+    Mono<Boolean> markStale(CityInfo cityInfo) {
+        return Mono
+                .fromRunnable(() -> nearCacheCityInfoToRouteInfos.invalidate(cityInfo))
+                .then(cacheBackend.expire(cityInfo, Duration.ofMillis(staleTtlMillis)))
+                .doOnError(e -> log.error("cache markStale(cityInfo) operation failed", e))
                 .retryBackoff(3, Duration.ofMillis(5), Duration.ofMillis(12));
     }
 
@@ -138,45 +478,68 @@ public class CacheService implements ApplicationListener<ContextRefreshedEvent>
     }
 
     Mono<Pair<CityInfo, List<RouteInfo>>> upsert(CityInfo cityInfo, List<RouteInfo> routeInfos) {
-        return Mono
-                .<Pair<CityInfo, List<RouteInfo>>>create(sink -> {
-                    try {
-                        List<RouteInfo> existingRouteInfos = cityInfoToRouteInfos.opsForValue().get(cityInfo);
-
-                        if (existingRouteInfos != null) { // Note: if entries already exists then...
-
-                            existingRouteInfos.removeAll(routeInfos);
-                            existingRouteInfos.addAll(routeInfos);
-
-                            cityInfoToRouteInfos.opsForValue().set(cityInfo, existingRouteInfos);
-
-                            sink.success(Pair.with(cityInfo, existingRouteInfos));
+        return cacheBackend
+                .upsert(cityInfo, routeInfos)
+                .map(storedRouteInfos -> {
+                    // Note: we only know the upserted routes and not the whole city entry.
+                    nearCacheCityInfoToRouteInfos.invalidate(cityInfo);
+                    return Pair.with(cityInfo, storedRouteInfos);
+                })
+                .doOnError(e -> log.error("cache upsert(cityInfo,routeInfo) operation failed", e))
+                .retryBackoff(3, Duration.ofMillis(5), Duration.ofMillis(12));
+    }
 
-                        } else {
+    /**
+     * Replaces the route in the city entry only if it is cached, a missing entry stays missing (see: redis/city-replace.lua).
+     */
+    Mono<Boolean> replace(CityInfo cityInfo, RouteInfo routeInfo) {
+        return Mono
+                .fromRunnable(() -> nearCacheCityInfoToRouteInfos.invalidate(cityInfo))
+                .then(cacheBackend.replace(cityInfo, routeInfo))
+                .doOnError(e -> log.error("cache replace(cityInfo,routeInfo) operation failed", e))
+                .retryBackoff(3, Duration.ofMillis(5), Duration.ofMillis(12));
+    }
 
-                            cityInfoToRouteInfos.opsForValue().set(cityInfo, routeInfos);
-                            sink.success(Pair.with(cityInfo, routeInfos));
-                        }
+    Mono<List<RouteInfo>> upsertPage(CityInfo cityInfo, String pageKey, List<RouteInfo> routeInfos) {
+        return cacheBackend
+                .upsertPage(cityInfo, pageKey, routeInfos)
+                .doOnError(e -> log.error("cache upsertPage(cityInfo,routeInfos) operation failed", e))
+                .retryBackoff(3, Duration.ofMillis(5), Duration.ofMillis(12));
+    }
 
-                    } catch (Exception e) {
-                        log.error("cache upsert(cityInfo,routeInfo) operation failed", e);
-                        sink.error(e);
-                    }
-                })
+    Mono<List<RouteInfo>> upsertInbound(CityInfo cityInfo, List<RouteInfo> routeInfos) {
+        return cacheBackend
+                .upsertInbound(cityInfo, routeInfos)
+                .doOnError(e -> log.error("cache upsertInbound(cityInfo,routeInfos) operation failed", e))
                 .retryBackoff(3, Duration.ofMillis(5), Duration.ofMillis(12));
     }
 
     Mono<Pair<String, RouteInfo>> upsert(String routeId, RouteInfo routeInfo) {
-        return Mono
-                .<Pair<String, RouteInfo>>create(sink -> {
-                    try {
-                        routeIdToRouteInfo.opsForValue().set(routeId, routeInfo);
-                        sink.success(Pair.with(routeId, routeInfo));
-                    } catch (Exception e) {
-                        log.error("cache upsert(routeId,routeInfo) operation failed", e);
-                        sink.error(e);
-                    }
+        return cacheBackend
+                .upsert(routeId, routeInfo)
+                .map(storedRouteInfo -> {
+                    nearCacheRouteIdToRouteInfo.put(routeId, storedRouteInfo);
+                    return Pair.with(routeId, storedRouteInfo);
                 })
+                .doOnError(e -> log.error("cache upsert(routeId,routeInfo) operation failed", e))
                 .retryBackoff(3, Duration.ofMillis(5), Duration.ofMillis(12));
     }
+
+    // Note: same order and bounds as the redis slice, departure time ascending, departureFrom inclusive and departureTo exclusive.
+    private static List<RouteInfo> departingWithin(List<RouteInfo> routeInfos, Instant departureFrom, Instant departureTo) {
+        return routeInfos
+                .stream()
+                .filter(routeInfo -> routeInfo.getDepartureTime() != null)
+                .filter(routeInfo -> departureFrom == null || !routeInfo.getDepartureTime().isBefore(departureFrom))
+                .filter(routeInfo -> departureTo == null || routeInfo.getDepartureTime().isBefore(departureTo))
+                .sorted(Comparator.comparing(RouteInfo::getDepartureTime).thenComparing(RouteInfo::getId))
+                .collect(Collectors.toList());
+    }
+
+    private <T> Mono<T> timed(Timer timer, Mono<T> operation) {
+        return Mono.defer(() -> {
+            Timer.Context context = timer.time();
+            return operation.doFinally(signal -> context.stop());
+        });
+    }
 }
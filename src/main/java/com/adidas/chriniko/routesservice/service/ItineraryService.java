@@ -0,0 +1,103 @@
+package com.adidas.chriniko.routesservice.service;
+
+import com.adidas.chriniko.routesservice.dto.CityInfo;
+import com.adidas.chriniko.routesservice.dto.Itinerary;
+import com.adidas.chriniko.routesservice.dto.ItineraryProfile;
+import com.adidas.chriniko.routesservice.dto.ItineraryProfileQuery;
+import com.adidas.chriniko.routesservice.dto.ItineraryQuery;
+import com.adidas.chriniko.routesservice.dto.RouteInfo;
+import com.adidas.chriniko.routesservice.graph.RouteGraphIndex;
+import com.adidas.chriniko.routesservice.init.RoutesSeededEvent;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+@Log4j2
+
+@Service
+public class ItineraryService {
+
+    private final RouteService routeService;
+    private final RouteGraphIndex routeGraphIndex;
+
+    @Autowired
+    public ItineraryService(RouteService routeService, RouteGraphIndex routeGraphIndex) {
+        this.routeService = routeService;
+        this.routeGraphIndex = routeGraphIndex;
+    }
+
+    // Note: after the schema and the generated routes are in place (see DbInit), the service is up meanwhile.
+    @EventListener
+    public void loadRouteGraph(RoutesSeededEvent event) {
+        log.debug("will load route graph now, seeded routes: {}", event.getSeededRoutes());
+
+        routeGraphIndex.beginLoad();
+
+        routeService
+                .stream()
+                .collectList()
+                .subscribe(
+                        routeGraphIndex::load,
+                        error -> {
+                            log.error("error occurred during load of route graph", error);
+                            routeGraphIndex.cancelLoad();
+                        }
+                );
+    }
+
+    /**
+     * Answered from the in memory route graph only (no db or cache round trip).
+     */
+    public Mono<Itinerary> find(ItineraryQuery query) {
+        return Mono.fromCallable(() -> {
+            validate(query.getFrom(), query.getTo());
+
+            final Optional<List<RouteInfo>> legs = query.getOptimization() == ItineraryQuery.Optimization.FEWEST_HOPS
+                    ? routeGraphIndex.fewestHops(query.getFrom(), query.getTo(), query.getDepartureAfter())
+                    : routeGraphIndex.earliestArrival(query.getFrom(), query.getTo(), query.getDepartureAfter());
+
+            return legs
+                    .map(Itinerary::new)
+                    .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "no itinerary exists for: " + query));
+        });
+    }
+
+    /**
+     * Every itinerary worth taking within the departure window (a connection scan over all routes, no db round trip).
+     */
+    public Mono<ItineraryProfile> find(ItineraryProfileQuery query) {
+        return Mono.fromCallable(() -> {
+            validate(query.getFrom(), query.getTo());
+            if (query.getDepartureFrom() != null
+                    && query.getDepartureTo() != null
+                    && !query.getDepartureFrom().isBefore(query.getDepartureTo())) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "departureFrom should be before departureTo");
+            }
+
+            final List<Itinerary> itineraries = routeGraphIndex
+                    .profile(query.getFrom(), query.getTo(), query.getDepartureFrom(), query.getDepartureTo())
+                    .stream()
+                    .map(Itinerary::new)
+                    .collect(Collectors.toList());
+
+            return new ItineraryProfile(itineraries);
+        });
+    }
+
+    private void validate(CityInfo from, CityInfo to) {
+        if (!routeGraphIndex.isLoaded()) {
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "route graph is loading, please retry later");
+        }
+        if (from.equals(to)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "from and to should be different cities");
+        }
+    }
+}
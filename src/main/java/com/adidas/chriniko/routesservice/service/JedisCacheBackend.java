@@ -0,0 +1,385 @@
+package com.adidas.chriniko.routesservice.service;
+
+import com.adidas.chriniko.routesservice.dto.CityInfo;
+import com.adidas.chriniko.routesservice.dto.RouteInfo;
+import com.adidas.chriniko.routesservice.error.ProcessingException;
+import com.adidas.chriniko.routesservice.serializer.CacheKeyNamespace;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Blocking (jedis) redis backend, every call is shifted to the elastic scheduler so it does not park event loop threads.
+ */
+@Log4j2
+
+@Component
+@ConditionalOnProperty(name = "cache-service.backend", havingValue = "jedis", matchIfMissing = true)
+public class JedisCacheBackend implements CacheBackend {
+
+    private final RedisTemplate<CityInfo, List<RouteInfo>> cityInfoToRouteInfos;
+    private final RedisTemplate<String, RouteInfo> routeIdToRouteInfo;
+    private final RedisTemplate<CityInfo, List<RouteInfo>> cityInfoToRoutePages;
+    private final RedisTemplate<CityInfo, String> cityInfoToDepartures;
+    private final RedisTemplate<CityInfo, List<RouteInfo>> cityInfoToInboundRoutes;
+
+    private final byte[] departureWindowScript;
+    private final byte[] cityUpsertScript;
+    private final byte[] cityReplaceScript;
+
+    private final CacheKeyNamespace cacheKeyNamespace;
+    private final long entryTtlSeconds;
+    private final int cleanupBatchSize;
+
+    @Autowired
+    public JedisCacheBackend(@Qualifier("redisTemplateCityInfoToRouteInfo") RedisTemplate<CityInfo, List<RouteInfo>> cityInfoToRouteInfos,
+                             RedisTemplate<String, RouteInfo> routeIdToRouteInfo,
+                             @Qualifier("redisTemplateCityInfoToRoutePages") RedisTemplate<CityInfo, List<RouteInfo>> cityInfoToRoutePages,
+                             RedisTemplate<CityInfo, String> cityInfoToDepartures,
+                             @Qualifier("redisTemplateCityInfoToInboundRoutes") RedisTemplate<CityInfo, List<RouteInfo>> cityInfoToInboundRoutes,
+                             @SuppressWarnings("rawtypes") RedisScript<List> departureWindowScript,
+                             RedisScript<Long> cityUpsertScript,
+                             RedisScript<Boolean> cityReplaceScript,
+                             CacheKeyNamespace cacheKeyNamespace,
+                             @Value("${cache-service.entry-ttl-seconds}") long entryTtlSeconds,
+                             @Value("${cache-service.cleanup-batch-size}") int cleanupBatchSize) {
+        this.cityInfoToRouteInfos = cityInfoToRouteInfos;
+        this.routeIdToRouteInfo = routeIdToRouteInfo;
+        this.cityInfoToRoutePages = cityInfoToRoutePages;
+        this.cityInfoToDepartures = cityInfoToDepartures;
+        this.cityInfoToInboundRoutes = cityInfoToInboundRoutes;
+        this.departureWindowScript = departureWindowScript.getScriptAsString().getBytes(StandardCharsets.UTF_8);
+        this.cityUpsertScript = cityUpsertScript.getScriptAsString().getBytes(StandardCharsets.UTF_8);
+        this.cityReplaceScript = cityReplaceScript.getScriptAsString().getBytes(StandardCharsets.UTF_8);
+        this.cacheKeyNamespace = cacheKeyNamespace;
+        this.entryTtlSeconds = entryTtlSeconds;
+        this.cleanupBatchSize = cleanupBatchSize;
+    }
+
+    @Override
+    public Mono<Long> currentGeneration() {
+        return Mono
+                .fromCallable(() -> {
+                    Long generation = routeIdToRouteInfo.execute((RedisCallback<Long>) connection -> {
+                        final byte[] generationKey = CacheKeyNamespace.GENERATION_KEY.getBytes(StandardCharsets.UTF_8);
+
+                        connection.setNX(generationKey, CacheKeyNamespace.FIRST_GENERATION.getBytes(StandardCharsets.UTF_8));
+                        return Long.valueOf(new String(connection.get(generationKey), StandardCharsets.UTF_8));
+                    });
+                    cacheKeyNamespace.setGeneration(generation);
+                    return generation;
+                })
+                .subscribeOn(Schedulers.elastic());
+    }
+
+    @Override
+    public Mono<Long> nextGeneration() {
+        return Mono
+                .fromCallable(() -> {
+                    Long generation = routeIdToRouteInfo.execute((RedisCallback<Long>) connection ->
+                            connection.incr(CacheKeyNamespace.GENERATION_KEY.getBytes(StandardCharsets.UTF_8)));
+                    cacheKeyNamespace.setGeneration(generation);
+                    return generation;
+                })
+                .subscribeOn(Schedulers.elastic());
+    }
+
+    @Override
+    public Mono<Long> removeStaleGenerations() {
+        return Mono
+                .fromCallable(() -> routeIdToRouteInfo.execute((RedisCallback<Long>) connection -> {
+
+                    final ScanOptions scanOptions = ScanOptions.scanOptions()
+                            .match(CacheKeyNamespace.SCAN_PATTERN)
+                            .count(cleanupBatchSize)
+                            .build();
+
+                    long unlinked = 0;
+                    final List<byte[]> batch = new ArrayList<>(cleanupBatchSize);
+
+                    try (Cursor<byte[]> cursor = connection.scan(scanOptions)) {
+                        while (cursor.hasNext()) {
+                            byte[] key = cursor.next();
+                            if (cacheKeyNamespace.isStale(key)) {
+                                batch.add(key);
+                            }
+
+                            if (batch.size() == cleanupBatchSize) {
+                                unlinked += connection.unlink(batch.toArray(new byte[0][]));
+                                batch.clear();
+                            }
+                        }
+                    } catch (IOException e) {
+                        throw new ProcessingException(e);
+                    }
+
+                    if (!batch.isEmpty()) {
+                        unlinked += connection.unlink(batch.toArray(new byte[0][]));
+                    }
+                    return unlinked;
+                }))
+                .subscribeOn(Schedulers.elastic());
+    }
+
+    // Note: value and ttl are fetched in parallel, so a read still costs one round trip.
+    @Override
+    public Mono<CacheEntry<List<RouteInfo>>> get(CityInfo cityInfo) {
+        Mono<List<RouteInfo>> value = Mono
+                .fromCallable(() -> {
+                    List<RouteInfo> results = cityInfoToRouteInfos.<String, RouteInfo>opsForHash().values(cityInfo);
+                    return results.isEmpty() ? null : results;
+                })
+                .subscribeOn(Schedulers.elastic());
+
+        return Mono
+                .zip(value, timeToLiveMillis(cityInfoToRouteInfos, cityInfo))
+                .map(entry -> new CacheEntry<>(entry.getT1(), entry.getT2()));
+    }
+
+    @Override
+    public Mono<CacheEntry<RouteInfo>> get(String routeId) {
+        Mono<RouteInfo> value = Mono
+                .fromCallable(() -> routeIdToRouteInfo.opsForValue().get(routeId))
+                .subscribeOn(Schedulers.elastic());
+
+        return Mono
+                .zip(value, timeToLiveMillis(routeIdToRouteInfo, routeId))
+                .map(entry -> new CacheEntry<>(entry.getT1(), entry.getT2()));
+    }
+
+    // Note: one script call, ids of the window from the departures sorted set and then only their routes from the city hash.
+    @Override
+    @SuppressWarnings("unchecked")
+    public Mono<CacheEntry<List<RouteInfo>>> get(CityInfo cityInfo, Instant departureFrom, Instant departureTo) {
+        return Mono
+                .fromCallable(() -> {
+                    final byte[] cityKey = ((RedisSerializer<CityInfo>) cityInfoToRouteInfos.getKeySerializer()).serialize(cityInfo);
+                    final byte[] departuresKey = ((RedisSerializer<CityInfo>) cityInfoToDepartures.getKeySerializer()).serialize(cityInfo);
+
+                    final List<Object> results = cityInfoToRouteInfos.execute((RedisCallback<List<Object>>) connection ->
+                            connection.eval(
+                                    departureWindowScript,
+                                    ReturnType.MULTI,
+                                    2,
+                                    cityKey,
+                                    departuresKey,
+                                    CacheBackend.minScore(departureFrom).getBytes(StandardCharsets.UTF_8),
+                                    CacheBackend.maxScore(departureTo).getBytes(StandardCharsets.UTF_8)
+                            ));
+
+                    final long timeToLive = (Long) results.get(0);
+                    if (timeToLive == -2L) {
+                        return null;
+                    }
+
+                    final RedisSerializer<RouteInfo> routeInfoSerializer = (RedisSerializer<RouteInfo>) cityInfoToRouteInfos.getHashValueSerializer();
+                    final List<RouteInfo> routeInfos = new ArrayList<>(results.size() - 1);
+                    for (Object result : results.subList(1, results.size())) {
+                        routeInfos.add(routeInfoSerializer.deserialize((byte[]) result));
+                    }
+                    return new CacheEntry<>(routeInfos, timeToLive < 0 ? -1L : timeToLive);
+                })
+                .subscribeOn(Schedulers.elastic());
+    }
+
+    // Note: HVALS and PTTL of every city are pipelined, so the whole batch costs one round trip.
+    @Override
+    @SuppressWarnings("unchecked")
+    public Mono<Map<CityInfo, CacheEntry<List<RouteInfo>>>> getAll(List<CityInfo> cityInfos) {
+        return Mono
+                .fromCallable(() -> {
+                    final RedisSerializer<CityInfo> keySerializer = (RedisSerializer<CityInfo>) cityInfoToRouteInfos.getKeySerializer();
+
+                    final List<Object> results = cityInfoToRouteInfos.executePipelined((RedisCallback<Object>) connection -> {
+                        for (CityInfo cityInfo : cityInfos) {
+                            byte[] key = keySerializer.serialize(cityInfo);
+                            connection.hVals(key);
+                            connection.pTtl(key);
+                        }
+                        return null;
+                    }, cityInfoToRouteInfos.getHashValueSerializer());
+
+                    final Map<CityInfo, CacheEntry<List<RouteInfo>>> entries = new LinkedHashMap<>();
+                    for (int i = 0; i < cityInfos.size(); i++) {
+                        List<RouteInfo> routeInfos = (List<RouteInfo>) results.get(2 * i);
+                        Long timeToLive = (Long) results.get(2 * i + 1);
+
+                        if (routeInfos != null && !routeInfos.isEmpty()) {
+                            entries.put(cityInfos.get(i), new CacheEntry<>(routeInfos, timeToLive == null || timeToLive < 0 ? -1L : timeToLive));
+                        }
+                    }
+                    return entries;
+                })
+                .subscribeOn(Schedulers.elastic());
+    }
+
+    @Override
+    public Mono<Boolean> remove(CityInfo cityInfo) {
+        return Mono
+                .fromCallable(() -> {
+                    cityInfoToDepartures.delete(cityInfo);
+                    return cityInfoToRouteInfos.opsForValue().getOperations().delete(cityInfo);
+                })
+                .subscribeOn(Schedulers.elastic());
+    }
+
+    @Override
+    public Mono<Boolean> remove(String routeId) {
+        return Mono
+                .fromCallable(() -> routeIdToRouteInfo.opsForValue().getOperations().delete(routeId))
+                .subscribeOn(Schedulers.elastic());
+    }
+
+    @Override
+    public Mono<Long> removeAll(Collection<String> routeIds) {
+        return Mono
+                .fromCallable(() -> routeIdToRouteInfo.delete(routeIds))
+                .subscribeOn(Schedulers.elastic());
+    }
+
+    @Override
+    public Mono<Boolean> expire(CityInfo cityInfo, Duration timeToLive) {
+        return Mono
+                .fromCallable(() -> {
+                    cityInfoToDepartures.expire(cityInfo, timeToLive.toMillis(), TimeUnit.MILLISECONDS);
+                    return cityInfoToRouteInfos.expire(cityInfo, timeToLive.toMillis(), TimeUnit.MILLISECONDS);
+                })
+                .subscribeOn(Schedulers.elastic());
+    }
+
+    // Note: one script call, routes and departures are written together with their ttl (see: redis/city-upsert.lua).
+    @Override
+    @SuppressWarnings("unchecked")
+    public Mono<List<RouteInfo>> upsert(CityInfo cityInfo, List<RouteInfo> routeInfos) {
+        return Mono
+                .fromCallable(() -> {
+                    final RedisSerializer<String> routeIdSerializer = (RedisSerializer<String>) cityInfoToRouteInfos.getHashKeySerializer();
+                    final RedisSerializer<RouteInfo> routeInfoSerializer = (RedisSerializer<RouteInfo>) cityInfoToRouteInfos.getHashValueSerializer();
+
+                    final List<byte[]> keysAndArgs = new ArrayList<>();
+                    keysAndArgs.add(((RedisSerializer<CityInfo>) cityInfoToRouteInfos.getKeySerializer()).serialize(cityInfo));
+                    keysAndArgs.add(((RedisSerializer<CityInfo>) cityInfoToDepartures.getKeySerializer()).serialize(cityInfo));
+                    keysAndArgs.addAll(CacheBackend.cityUpsertArgs(
+                            routeInfos,
+                            Duration.ofSeconds(entryTtlSeconds),
+                            routeIdSerializer::serialize,
+                            routeInfoSerializer::serialize
+                    ));
+
+                    cityInfoToRouteInfos.execute((RedisCallback<Long>) connection ->
+                            connection.eval(cityUpsertScript, ReturnType.INTEGER, 2, keysAndArgs.toArray(new byte[0][])));
+                    return routeInfos;
+                })
+                .subscribeOn(Schedulers.elastic());
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public Mono<Boolean> replace(CityInfo cityInfo, RouteInfo routeInfo) {
+        return Mono
+                .fromCallable(() -> {
+                    final RedisSerializer<String> routeIdSerializer = (RedisSerializer<String>) cityInfoToRouteInfos.getHashKeySerializer();
+                    final RedisSerializer<RouteInfo> routeInfoSerializer = (RedisSerializer<RouteInfo>) cityInfoToRouteInfos.getHashValueSerializer();
+
+                    final List<byte[]> keysAndArgs = new ArrayList<>();
+                    keysAndArgs.add(((RedisSerializer<CityInfo>) cityInfoToRouteInfos.getKeySerializer()).serialize(cityInfo));
+                    keysAndArgs.add(((RedisSerializer<CityInfo>) cityInfoToDepartures.getKeySerializer()).serialize(cityInfo));
+                    keysAndArgs.addAll(CacheBackend.cityReplaceArgs(routeInfo, routeIdSerializer::serialize, routeInfoSerializer::serialize));
+
+                    return cityInfoToRouteInfos.execute((RedisCallback<Boolean>) connection ->
+                            connection.eval(cityReplaceScript, ReturnType.BOOLEAN, 2, keysAndArgs.toArray(new byte[0][])));
+                })
+                .subscribeOn(Schedulers.elastic());
+    }
+
+    @Override
+    public Mono<RouteInfo> upsert(String routeId, RouteInfo routeInfo) {
+        return Mono
+                .fromCallable(() -> {
+                    routeIdToRouteInfo.opsForValue().set(routeId, routeInfo, entryTtlSeconds, TimeUnit.SECONDS);
+                    return routeInfo;
+                })
+                .subscribeOn(Schedulers.elastic());
+    }
+
+    @Override
+    public Mono<List<RouteInfo>> getPage(CityInfo cityInfo, String pageKey) {
+        return Mono
+                .fromCallable(() -> cityInfoToRoutePages.<String, List<RouteInfo>>opsForHash().get(cityInfo, pageKey))
+                .subscribeOn(Schedulers.elastic());
+    }
+
+    @Override
+    public Mono<List<RouteInfo>> upsertPage(CityInfo cityInfo, String pageKey, List<RouteInfo> routeInfos) {
+        return Mono
+                .fromCallable(() -> {
+                    cityInfoToRoutePages.<String, List<RouteInfo>>opsForHash().put(cityInfo, pageKey, routeInfos);
+                    cityInfoToRoutePages.expire(cityInfo, entryTtlSeconds, TimeUnit.SECONDS);
+                    return routeInfos;
+                })
+                .subscribeOn(Schedulers.elastic());
+    }
+
+    @Override
+    public Mono<Boolean> removePages(CityInfo cityInfo) {
+        return Mono
+                .fromCallable(() -> cityInfoToRoutePages.delete(cityInfo))
+                .subscribeOn(Schedulers.elastic());
+    }
+
+    @Override
+    public Mono<List<RouteInfo>> getInbound(CityInfo cityInfo) {
+        return Mono
+                .fromCallable(() -> cityInfoToInboundRoutes.opsForValue().get(cityInfo))
+                .subscribeOn(Schedulers.elastic());
+    }
+
+    @Override
+    public Mono<List<RouteInfo>> upsertInbound(CityInfo cityInfo, List<RouteInfo> routeInfos) {
+        return Mono
+                .fromCallable(() -> {
+                    cityInfoToInboundRoutes.opsForValue().set(cityInfo, routeInfos, entryTtlSeconds, TimeUnit.SECONDS);
+                    return routeInfos;
+                })
+                .subscribeOn(Schedulers.elastic());
+    }
+
+    @Override
+    public Mono<Boolean> removeInbound(CityInfo cityInfo) {
+        return Mono
+                .fromCallable(() -> cityInfoToInboundRoutes.delete(cityInfo))
+                .subscribeOn(Schedulers.elastic());
+    }
+
+    private <K> Mono<Long> timeToLiveMillis(RedisTemplate<K, ?> redisTemplate, K key) {
+        return Mono
+                .fromCallable(() -> {
+                    Long timeToLive = redisTemplate.getExpire(key, TimeUnit.MILLISECONDS);
+                    return timeToLive == null || timeToLive < 0 ? -1L : timeToLive;
+                })
+                .subscribeOn(Schedulers.elastic());
+    }
+}
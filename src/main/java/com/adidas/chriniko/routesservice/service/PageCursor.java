@@ -0,0 +1,55 @@
+package com.adidas.chriniko.routesservice.service;
+
+import com.adidas.chriniko.routesservice.entity.TimeOrderedIds;
+import lombok.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.nio.charset.StandardCharsets;
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.util.Base64;
+
+/**
+ * Keyset position (departureTime, id) of the last route of a page, handed out to clients as an opaque string.
+ */
+@Value
+class PageCursor {
+
+    private static final char SEPARATOR = ':';
+
+    private final Instant departureTime;
+    private final String id;
+
+    String encode() {
+        String position = departureTime.getEpochSecond() + "." + departureTime.getNano() + SEPARATOR + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(position.getBytes(StandardCharsets.UTF_8));
+    }
+
+    static PageCursor decode(String cursor) {
+        try {
+            String position = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+
+            int separatorIdx = position.indexOf(SEPARATOR);
+            int dotIdx = position.indexOf('.');
+            if (separatorIdx < 0 || dotIdx < 0 || dotIdx > separatorIdx) {
+                throw new IllegalArgumentException("malformed position: " + position);
+            }
+
+            Instant departureTime = Instant.ofEpochSecond(
+                    Long.parseLong(position.substring(0, dotIdx)),
+                    Long.parseLong(position.substring(dotIdx + 1, separatorIdx))
+            );
+
+            // Note: the id is bound as binary(16) in the keyset query, so it is checked here (400) and not there (500).
+            String id = position.substring(separatorIdx + 1);
+            if (!TimeOrderedIds.isValid(id)) {
+                throw new IllegalArgumentException("malformed id: " + id);
+            }
+            return new PageCursor(departureTime, id);
+
+        } catch (IllegalArgumentException | DateTimeException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "invalid cursor: " + cursor, e);
+        }
+    }
+}
@@ -0,0 +1,307 @@
+package com.adidas.chriniko.routesservice.service;
+
+import com.adidas.chriniko.routesservice.dto.CityInfo;
+import com.adidas.chriniko.routesservice.dto.RouteInfo;
+import com.adidas.chriniko.routesservice.serializer.CacheKeyNamespace;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.serializer.RedisSerializationContext;
+import org.springframework.data.redis.util.ByteUtils;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.function.Tuple2;
+import reactor.util.function.Tuples;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Non blocking (lettuce) redis backend, no thread is parked while waiting for redis.
+ */
+@Log4j2
+
+@Component
+@ConditionalOnProperty(name = "cache-service.backend", havingValue = "reactive")
+public class ReactiveCacheBackend implements CacheBackend {
+
+    private final ReactiveRedisTemplate<CityInfo, List<RouteInfo>> cityInfoToRouteInfos;
+    private final ReactiveRedisTemplate<String, RouteInfo> routeIdToRouteInfo;
+    private final ReactiveRedisTemplate<CityInfo, List<RouteInfo>> cityInfoToRoutePages;
+    private final ReactiveRedisTemplate<CityInfo, String> cityInfoToDepartures;
+    private final ReactiveRedisTemplate<CityInfo, List<RouteInfo>> cityInfoToInboundRoutes;
+
+    private final ByteBuffer departureWindowScript;
+    private final ByteBuffer cityUpsertScript;
+    private final ByteBuffer cityReplaceScript;
+
+    private final CacheKeyNamespace cacheKeyNamespace;
+    private final Duration entryTtl;
+    private final int cleanupBatchSize;
+
+    @Autowired
+    public ReactiveCacheBackend(@Qualifier("reactiveRedisTemplateCityInfoToRouteInfo") ReactiveRedisTemplate<CityInfo, List<RouteInfo>> cityInfoToRouteInfos,
+                                ReactiveRedisTemplate<String, RouteInfo> routeIdToRouteInfo,
+                                @Qualifier("reactiveRedisTemplateCityInfoToRoutePages") ReactiveRedisTemplate<CityInfo, List<RouteInfo>> cityInfoToRoutePages,
+                                ReactiveRedisTemplate<CityInfo, String> cityInfoToDepartures,
+                                @Qualifier("reactiveRedisTemplateCityInfoToInboundRoutes") ReactiveRedisTemplate<CityInfo, List<RouteInfo>> cityInfoToInboundRoutes,
+                                @SuppressWarnings("rawtypes") RedisScript<List> departureWindowScript,
+                                RedisScript<Long> cityUpsertScript,
+                                RedisScript<Boolean> cityReplaceScript,
+                                CacheKeyNamespace cacheKeyNamespace,
+                                @Value("${cache-service.entry-ttl-seconds}") long entryTtlSeconds,
+                                @Value("${cache-service.cleanup-batch-size}") int cleanupBatchSize) {
+        this.cityInfoToRouteInfos = cityInfoToRouteInfos;
+        this.routeIdToRouteInfo = routeIdToRouteInfo;
+        this.cityInfoToRoutePages = cityInfoToRoutePages;
+        this.cityInfoToDepartures = cityInfoToDepartures;
+        this.cityInfoToInboundRoutes = cityInfoToInboundRoutes;
+        this.departureWindowScript = ByteBuffer.wrap(departureWindowScript.getScriptAsString().getBytes(StandardCharsets.UTF_8));
+        this.cityUpsertScript = ByteBuffer.wrap(cityUpsertScript.getScriptAsString().getBytes(StandardCharsets.UTF_8));
+        this.cityReplaceScript = ByteBuffer.wrap(cityReplaceScript.getScriptAsString().getBytes(StandardCharsets.UTF_8));
+        this.cacheKeyNamespace = cacheKeyNamespace;
+        this.entryTtl = Duration.ofSeconds(entryTtlSeconds);
+        this.cleanupBatchSize = cleanupBatchSize;
+    }
+
+    @Override
+    public Mono<Long> currentGeneration() {
+        final ByteBuffer generationKey = ByteBuffer.wrap(CacheKeyNamespace.GENERATION_KEY.getBytes(StandardCharsets.UTF_8));
+        final ByteBuffer firstGeneration = ByteBuffer.wrap(CacheKeyNamespace.FIRST_GENERATION.getBytes(StandardCharsets.UTF_8));
+
+        return routeIdToRouteInfo
+                .execute(connection -> connection.stringCommands()
+                        .setNX(generationKey.duplicate(), firstGeneration)
+                        .then(connection.stringCommands().get(generationKey.duplicate())))
+                .next()
+                .map(generation -> Long.valueOf(StandardCharsets.UTF_8.decode(generation).toString()))
+                .doOnNext(cacheKeyNamespace::setGeneration);
+    }
+
+    @Override
+    public Mono<Long> nextGeneration() {
+        final ByteBuffer generationKey = ByteBuffer.wrap(CacheKeyNamespace.GENERATION_KEY.getBytes(StandardCharsets.UTF_8));
+
+        return routeIdToRouteInfo
+                .execute(connection -> connection.numberCommands().incr(generationKey))
+                .next()
+                .doOnNext(cacheKeyNamespace::setGeneration);
+    }
+
+    @Override
+    public Mono<Long> removeStaleGenerations() {
+        final ScanOptions scanOptions = ScanOptions.scanOptions()
+                .match(CacheKeyNamespace.SCAN_PATTERN)
+                .count(cleanupBatchSize)
+                .build();
+
+        return routeIdToRouteInfo
+                .execute(connection -> connection.keyCommands()
+                        .scan(scanOptions)
+                        .filter(key -> cacheKeyNamespace.isStale(ByteUtils.getBytes(key)))
+                        .buffer(cleanupBatchSize)
+                        .concatMap(batch -> connection.keyCommands().mUnlink(batch)))
+                .reduce(0L, Long::sum);
+    }
+
+    @Override
+    public Mono<CacheEntry<List<RouteInfo>>> get(CityInfo cityInfo) {
+        Mono<List<RouteInfo>> value = cityInfoToRouteInfos.<String, RouteInfo>opsForHash()
+                .values(cityInfo)
+                .collectList()
+                .filter(results -> !results.isEmpty());
+
+        return Mono
+                .zip(value, timeToLiveMillis(cityInfoToRouteInfos.getExpire(cityInfo)))
+                .map(entry -> new CacheEntry<>(entry.getT1(), entry.getT2()));
+    }
+
+    @Override
+    public Mono<CacheEntry<RouteInfo>> get(String routeId) {
+        return Mono
+                .zip(routeIdToRouteInfo.opsForValue().get(routeId), timeToLiveMillis(routeIdToRouteInfo.getExpire(routeId)))
+                .map(entry -> new CacheEntry<>(entry.getT1(), entry.getT2()));
+    }
+
+    // Note: one script call, ids of the window from the departures sorted set and then only their routes from the city hash.
+    @Override
+    public Mono<CacheEntry<List<RouteInfo>>> get(CityInfo cityInfo, Instant departureFrom, Instant departureTo) {
+        final ByteBuffer cityKey = cityInfoToRouteInfos.getSerializationContext().getKeySerializationPair().write(cityInfo);
+        final ByteBuffer departuresKey = cityInfoToDepartures.getSerializationContext().getKeySerializationPair().write(cityInfo);
+        final RedisSerializationContext.SerializationPair<RouteInfo> routeInfoPair
+                = cityInfoToRouteInfos.getSerializationContext().getHashValueSerializationPair();
+
+        return cityInfoToRouteInfos
+                .execute(connection -> connection.scriptingCommands().<Object>eval(
+                        departureWindowScript.duplicate(),
+                        ReturnType.MULTI,
+                        2,
+                        cityKey.duplicate(),
+                        departuresKey.duplicate(),
+                        ByteUtils.getByteBuffer(CacheBackend.minScore(departureFrom)),
+                        ByteUtils.getByteBuffer(CacheBackend.maxScore(departureTo))
+                ))
+                .flatMapIterable(result -> result instanceof List ? (List<?>) result : Collections.singletonList(result))
+                .collectList()
+                .filter(results -> !results.isEmpty() && (Long) results.get(0) != -2L)
+                .map(results -> {
+                    final long timeToLive = (Long) results.get(0);
+
+                    final List<RouteInfo> routeInfos = new ArrayList<>(results.size() - 1);
+                    for (Object result : results.subList(1, results.size())) {
+                        routeInfos.add(routeInfoPair.read((ByteBuffer) result));
+                    }
+                    return new CacheEntry<>(routeInfos, timeToLive < 0 ? -1L : timeToLive);
+                });
+    }
+
+    // Note: lettuce pipelines the commands on the shared connection, so the batch costs about one round trip.
+    @Override
+    public Mono<Map<CityInfo, CacheEntry<List<RouteInfo>>>> getAll(List<CityInfo> cityInfos) {
+        return Flux
+                .fromIterable(cityInfos)
+                .flatMapSequential(cityInfo -> get(cityInfo).map(entry -> Tuples.of(cityInfo, entry)))
+                .collectMap(Tuple2::getT1, Tuple2::getT2, LinkedHashMap::new);
+    }
+
+    @Override
+    public Mono<Boolean> remove(CityInfo cityInfo) {
+        return cityInfoToDepartures
+                .delete(cityInfo)
+                .then(cityInfoToRouteInfos.delete(cityInfo))
+                .map(removed -> removed > 0);
+    }
+
+    @Override
+    public Mono<Boolean> remove(String routeId) {
+        return routeIdToRouteInfo.delete(routeId).map(removed -> removed > 0);
+    }
+
+    @Override
+    public Mono<Long> removeAll(Collection<String> routeIds) {
+        return routeIdToRouteInfo.delete(Flux.fromIterable(routeIds));
+    }
+
+    @Override
+    public Mono<Boolean> expire(CityInfo cityInfo, Duration timeToLive) {
+        return cityInfoToDepartures
+                .expire(cityInfo, timeToLive)
+                .then(cityInfoToRouteInfos.expire(cityInfo, timeToLive));
+    }
+
+    // Note: one script call, routes and departures are written together with their ttl (see: redis/city-upsert.lua).
+    @Override
+    public Mono<List<RouteInfo>> upsert(CityInfo cityInfo, List<RouteInfo> routeInfos) {
+        final RedisSerializationContext<CityInfo, List<RouteInfo>> serializationContext = cityInfoToRouteInfos.getSerializationContext();
+        final RedisSerializationContext.SerializationPair<String> routeIdPair = serializationContext.getHashKeySerializationPair();
+        final RedisSerializationContext.SerializationPair<RouteInfo> routeInfoPair = serializationContext.getHashValueSerializationPair();
+
+        final List<ByteBuffer> keysAndArgs = new ArrayList<>();
+        keysAndArgs.add(serializationContext.getKeySerializationPair().write(cityInfo));
+        keysAndArgs.add(cityInfoToDepartures.getSerializationContext().getKeySerializationPair().write(cityInfo));
+        for (byte[] arg : CacheBackend.cityUpsertArgs(
+                routeInfos,
+                entryTtl,
+                routeId -> ByteUtils.getBytes(routeIdPair.write(routeId)),
+                routeInfo -> ByteUtils.getBytes(routeInfoPair.write(routeInfo)))) {
+            keysAndArgs.add(ByteBuffer.wrap(arg));
+        }
+
+        return cityInfoToRouteInfos
+                .execute(connection -> connection.scriptingCommands().<Long>eval(
+                        cityUpsertScript.duplicate(),
+                        ReturnType.INTEGER,
+                        2,
+                        keysAndArgs.toArray(new ByteBuffer[0])
+                ))
+                .then()
+                .thenReturn(routeInfos);
+    }
+
+    @Override
+    public Mono<Boolean> replace(CityInfo cityInfo, RouteInfo routeInfo) {
+        final RedisSerializationContext<CityInfo, List<RouteInfo>> serializationContext = cityInfoToRouteInfos.getSerializationContext();
+        final RedisSerializationContext.SerializationPair<String> routeIdPair = serializationContext.getHashKeySerializationPair();
+        final RedisSerializationContext.SerializationPair<RouteInfo> routeInfoPair = serializationContext.getHashValueSerializationPair();
+
+        final List<ByteBuffer> keysAndArgs = new ArrayList<>();
+        keysAndArgs.add(serializationContext.getKeySerializationPair().write(cityInfo));
+        keysAndArgs.add(cityInfoToDepartures.getSerializationContext().getKeySerializationPair().write(cityInfo));
+        for (byte[] arg : CacheBackend.cityReplaceArgs(
+                routeInfo,
+                routeId -> ByteUtils.getBytes(routeIdPair.write(routeId)),
+                value -> ByteUtils.getBytes(routeInfoPair.write(value)))) {
+            keysAndArgs.add(ByteBuffer.wrap(arg));
+        }
+
+        return cityInfoToRouteInfos
+                .execute(connection -> connection.scriptingCommands().<Boolean>eval(
+                        cityReplaceScript.duplicate(),
+                        ReturnType.BOOLEAN,
+                        2,
+                        keysAndArgs.toArray(new ByteBuffer[0])
+                ))
+                .next()
+                .defaultIfEmpty(false);
+    }
+
+    @Override
+    public Mono<RouteInfo> upsert(String routeId, RouteInfo routeInfo) {
+        return routeIdToRouteInfo.opsForValue().set(routeId, routeInfo, entryTtl).thenReturn(routeInfo);
+    }
+
+    @Override
+    public Mono<List<RouteInfo>> getPage(CityInfo cityInfo, String pageKey) {
+        return cityInfoToRoutePages.<String, List<RouteInfo>>opsForHash().get(cityInfo, pageKey);
+    }
+
+    @Override
+    public Mono<List<RouteInfo>> upsertPage(CityInfo cityInfo, String pageKey, List<RouteInfo> routeInfos) {
+        return cityInfoToRoutePages.<String, List<RouteInfo>>opsForHash()
+                .put(cityInfo, pageKey, routeInfos)
+                .then(cityInfoToRoutePages.expire(cityInfo, entryTtl))
+                .thenReturn(routeInfos);
+    }
+
+    @Override
+    public Mono<Boolean> removePages(CityInfo cityInfo) {
+        return cityInfoToRoutePages.delete(cityInfo).map(removed -> removed > 0);
+    }
+
+    @Override
+    public Mono<List<RouteInfo>> getInbound(CityInfo cityInfo) {
+        return cityInfoToInboundRoutes.opsForValue().get(cityInfo);
+    }
+
+    @Override
+    public Mono<List<RouteInfo>> upsertInbound(CityInfo cityInfo, List<RouteInfo> routeInfos) {
+        return cityInfoToInboundRoutes.opsForValue().set(cityInfo, routeInfos, entryTtl).thenReturn(routeInfos);
+    }
+
+    @Override
+    public Mono<Boolean> removeInbound(CityInfo cityInfo) {
+        return cityInfoToInboundRoutes.delete(cityInfo).map(removed -> removed > 0);
+    }
+
+    // Note: Duration.ZERO means no ttl, empty means no key.
+    private Mono<Long> timeToLiveMillis(Mono<Duration> timeToLive) {
+        return timeToLive
+                .map(ttl -> ttl.isZero() ? -1L : ttl.toMillis())
+                .defaultIfEmpty(-1L);
+    }
+}
@@ -0,0 +1,96 @@
+package com.adidas.chriniko.routesservice.service;
+
+import com.adidas.chriniko.routesservice.repository.RouteRepository;
+import com.codahale.metrics.Meter;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Deletes are soft (see {@link RouteRepository#delete}), this compactor hard deletes the soft deleted routes in the
+ * background: small batches, one short transaction each, with a pause between them and a bound per run, so the index
+ * maintenance of the deletes is spread out and never competes with requests for long.
+ */
+@Log4j2
+
+@Component
+public class RoutePurgeCompactor {
+
+    private final RouteRepository routeRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final Meter purgedRoutes;
+
+    private final boolean enabled;
+    private final int batchSize;
+    private final int maxBatchesPerRun;
+    private final long pauseMillis;
+
+    @Autowired
+    public RoutePurgeCompactor(RouteRepository routeRepository,
+                               TransactionTemplate transactionTemplate,
+                               Meter purgedRoutes,
+                               @Value("${route-purge.enabled}") boolean enabled,
+                               @Value("${route-purge.batch-size}") int batchSize,
+                               @Value("${route-purge.max-batches-per-run}") int maxBatchesPerRun,
+                               @Value("${route-purge.pause-millis}") long pauseMillis) {
+        this.routeRepository = routeRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.purgedRoutes = purgedRoutes;
+        this.enabled = enabled;
+        this.batchSize = batchSize;
+        this.maxBatchesPerRun = maxBatchesPerRun;
+        this.pauseMillis = pauseMillis;
+    }
+
+    @Scheduled(initialDelayString = "${route-purge.interval-millis}", fixedDelayString = "${route-purge.interval-millis}")
+    public void purge() {
+        if (!enabled) {
+            return;
+        }
+
+        try {
+            final long purged = run();
+            if (purged > 0) {
+                log.info("purged soft deleted routes: {}", purged);
+            }
+        } catch (Exception e) {
+            log.error("error occurred during purge of soft deleted routes", e);
+        }
+    }
+
+    // Note: stops at the first batch which is not full (nothing more to purge) or after maxBatchesPerRun.
+    long run() {
+        long purged = 0;
+
+        for (int batch = 0; batch < maxBatchesPerRun; batch++) {
+            if (batch > 0 && !pause()) {
+                break;
+            }
+
+            final Integer batchPurged = transactionTemplate.execute(transactionStatus -> routeRepository.purge(batchSize));
+            final int count = batchPurged == null ? 0 : batchPurged;
+
+            purgedRoutes.mark(count);
+            purged += count;
+
+            if (count < batchSize) {
+                break;
+            }
+        }
+
+        return purged;
+    }
+
+    private boolean pause() {
+        try {
+            Thread.sleep(pauseMillis);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
@@ -1,25 +1,51 @@
 package com.adidas.chriniko.routesservice.service;
 
+import com.adidas.chriniko.routesservice.dto.BulkIngestProgress;
+import com.adidas.chriniko.routesservice.dto.BulkOperationResult;
+import com.adidas.chriniko.routesservice.dto.BulkRouteDelete;
+import com.adidas.chriniko.routesservice.dto.BulkRouteUpdate;
 import com.adidas.chriniko.routesservice.dto.CityInfo;
 import com.adidas.chriniko.routesservice.dto.RouteInfo;
+import com.adidas.chriniko.routesservice.dto.RouteInfoResult;
 import com.adidas.chriniko.routesservice.entity.RouteEntity;
+import com.adidas.chriniko.routesservice.graph.RouteGraphIndex;
 import com.adidas.chriniko.routesservice.repository.RouteRepository;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.Timer;
 import lombok.extern.log4j.Log4j2;
 import org.javatuples.Pair;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.TransactionStatus;
 import org.springframework.transaction.support.TransactionCallbackWithoutResult;
 import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
 import reactor.core.scheduler.Schedulers;
 
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 
 @Log4j2
@@ -30,21 +56,217 @@ public class RouteService {
     private final RouteRepository routeRepository;
     private final TransactionTemplate transactionTemplate;
     private final CacheService cacheService;
+    private final RouteGraphIndex routeGraphIndex;
+    private final Scheduler jdbcScheduler;
+
+    // Note: concurrent cache misses for the same key share one db load and one cache fill.
+    private final SingleFlight<CityInfo, List<RouteInfo>> cityInfoLoads;
+    private final SingleFlight<String, RouteInfo> routeIdLoads;
+
+    private final Timer loadFindByCityInfo;
+    private final Timer loadFindByRouteId;
+
+    private final int streamFetchSize;
+
+    // Note: every open stream holds a db connection (and a jdbc scheduler thread) until it is drained or cancelled.
+    private final Semaphore streamPermits;
+
+    private final int defaultPageSize;
+    private final int maxPageSize;
+
+    private final int bulkChunkSize;
 
     @Autowired
     public RouteService(RouteRepository routeRepository,
                         TransactionTemplate transactionTemplate,
-                        CacheService cacheService) {
+                        CacheService cacheService,
+                        RouteGraphIndex routeGraphIndex,
+                        Scheduler jdbcScheduler,
+                        Meter coalescedFindByCityInfo,
+                        Meter coalescedFindByRouteId,
+                        Timer loadFindByCityInfo,
+                        Timer loadFindByRouteId,
+                        @Value("${route-service.stream-fetch-size}") int streamFetchSize,
+                        @Value("${route-service.max-concurrent-streams}") int maxConcurrentStreams,
+                        @Value("${route-service.default-page-size}") int defaultPageSize,
+                        @Value("${route-service.max-page-size}") int maxPageSize,
+                        @Value("${route-service.bulk-chunk-size}") int bulkChunkSize) {
         this.routeRepository = routeRepository;
         this.transactionTemplate = transactionTemplate;
         this.cacheService = cacheService;
+        this.routeGraphIndex = routeGraphIndex;
+        this.jdbcScheduler = jdbcScheduler;
+        this.cityInfoLoads = new SingleFlight<>(coalescedFindByCityInfo);
+        this.routeIdLoads = new SingleFlight<>(coalescedFindByRouteId);
+        this.loadFindByCityInfo = loadFindByCityInfo;
+        this.loadFindByRouteId = loadFindByRouteId;
+        this.streamFetchSize = streamFetchSize;
+        this.streamPermits = new Semaphore(maxConcurrentStreams);
+        this.defaultPageSize = defaultPageSize;
+        this.maxPageSize = maxPageSize;
+        this.bulkChunkSize = bulkChunkSize;
     }
 
     public Mono<List<RouteInfo>> find(CityInfo cityInfo) {
+        // Note: used for misses and for background refreshes (stale or early) of the cache entry.
+        final Supplier<Mono<List<RouteInfo>>> load
+                = () -> cityInfoLoads.execute(cityInfo, () -> timed(loadFindByCityInfo, _find(cityInfo)));
+
         return cacheService
-                .get(cityInfo)
-                .subscribeOn(Schedulers.parallel())
-                .switchIfEmpty(_find(cityInfo));
+                .get(cityInfo, load)
+                .switchIfEmpty(Mono.defer(load));
+    }
+
+    /**
+     * Routes of an origin city departing within [departureFrom, departureTo), ordered by departure time.
+     * <p>
+     * Note: on a cache miss only the window is read from the db, and the whole city entry is loaded (once, coalesced)
+     *       in the background, so the next windows are sliced from the cache.
+     */
+    public Mono<List<RouteInfo>> find(CityInfo cityInfo, Instant departureFrom, Instant departureTo) {
+        if (departureFrom == null && departureTo == null) {
+            return find(cityInfo);
+        }
+        if (departureFrom != null && departureTo != null && !departureFrom.isBefore(departureTo)) {
+            return Mono.error(new ResponseStatusException(HttpStatus.BAD_REQUEST, "departureFrom should be before departureTo"));
+        }
+
+        final Supplier<Mono<List<RouteInfo>>> load
+                = () -> cityInfoLoads.execute(cityInfo, () -> timed(loadFindByCityInfo, _find(cityInfo)));
+
+        return cacheService
+                .get(cityInfo, departureFrom, departureTo, load)
+                .switchIfEmpty(Mono.defer(() -> {
+                    load.get().subscribe(
+                            loaded -> log.debug("loaded cache entry: {}", cityInfo),
+                            error -> log.warn("could not load cache entry", error)
+                    );
+                    return _find(cityInfo, departureFrom, departureTo);
+                }));
+    }
+
+    /**
+     * Inbound routes of a destination city, the whole list is cached and removed on every change of it.
+     */
+    public Mono<List<RouteInfo>> findByDestiny(CityInfo cityInfo) {
+        return cacheService
+                .getInbound(cityInfo)
+                .switchIfEmpty(Mono.defer(() -> _findByDestiny(cityInfo)
+                        .flatMap(routeInfos -> cacheService.upsertInbound(cityInfo, routeInfos))));
+    }
+
+    /**
+     * Keyset pagination of the routes of an origin city, ordered by departure time and id.
+     *
+     * @param cursor the next cursor of the previous page, or null for the first page.
+     * @param limit  page size, or null for the default one.
+     */
+    public Mono<RouteInfoResult> find(CityInfo cityInfo, String cursor, Integer limit) {
+        return Mono.defer(() -> {
+            final int pageSize = limit == null ? defaultPageSize : limit;
+            if (pageSize < 1 || pageSize > maxPageSize) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "limit should be between 1 and " + maxPageSize);
+            }
+            final PageCursor after = cursor == null ? null : PageCursor.decode(cursor);
+            final String pageKey = pageSize + ":" + (cursor == null ? "" : cursor);
+
+            // Note: one extra route is fetched (and cached) only to know if there is a next page.
+            return cacheService
+                    .getPage(cityInfo, pageKey)
+                    .switchIfEmpty(Mono.defer(() -> _findPage(cityInfo, after, pageSize + 1)
+                            .flatMap(routeInfos -> cacheService.upsertPage(cityInfo, pageKey, routeInfos))))
+                    .map(routeInfos -> {
+                        if (routeInfos.size() <= pageSize) {
+                            return new RouteInfoResult(routeInfos);
+                        }
+
+                        List<RouteInfo> results = routeInfos.subList(0, pageSize);
+                        RouteInfo last = results.get(pageSize - 1);
+                        return new RouteInfoResult(results, new PageCursor(last.getDepartureTime(), last.getId()).encode());
+                    });
+        });
+    }
+
+    /**
+     * Streams the routes of an origin city straight from a db cursor (bypasses the cache, which holds whole lists),
+     * so time to first byte and memory per request do not grow with the result size.
+     * <p>
+     * Note: at most route-service.max-concurrent-streams streams are open at once, so slow clients can not hold all the
+     *       connections of the pool, the next ones are rejected fast with HTTP 503.
+     */
+    public Flux<RouteInfo> stream(CityInfo cityInfo) {
+        return Flux.defer(() -> {
+            if (!streamPermits.tryAcquire()) {
+                return Flux.error(new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "too many concurrent streams, please retry later"));
+            }
+
+            return Flux
+                    .using(
+                            () -> {
+                                log.debug("will stream entries with origin: {}", cityInfo);
+                                return routeRepository.streamByOrigin(cityInfo.getName(), cityInfo.getCountry(), streamFetchSize);
+                            },
+                            Flux::fromStream,
+                            Stream::close
+                    )
+                    .map(this::map)
+                    .doOnError(e -> log.error("error occurred during stream city info operation", e))
+                    .transform(this::onJdbcScheduler)
+                    .doFinally(signal -> streamPermits.release());
+        });
+    }
+
+    // Note: every route, straight from a db cursor (eg: to build in memory indexes).
+    public Flux<RouteInfo> stream() {
+        return Flux
+                .using(
+                        () -> {
+                            log.debug("will stream all entries");
+                            return routeRepository.streamAll(streamFetchSize);
+                        },
+                        Flux::fromStream,
+                        Stream::close
+                )
+                .map(this::map)
+                .doOnError(e -> log.error("error occurred during stream all operation", e))
+                .transform(this::onJdbcScheduler);
+    }
+
+    /**
+     * Resolves many origin cities: one redis round trip for the cached ones and one db query for all the misses.
+     *
+     * @return the routes of each (distinct) city in request order, cities without routes map to an empty list.
+     */
+    public Mono<Map<CityInfo, List<RouteInfo>>> find(List<CityInfo> cityInfos) {
+        final List<CityInfo> distinctCityInfos = cityInfos.stream().distinct().collect(Collectors.toList());
+
+        final Function<CityInfo, Mono<List<RouteInfo>>> refresher
+                = cityInfo -> cityInfoLoads.execute(cityInfo, () -> timed(loadFindByCityInfo, _find(cityInfo)));
+
+        return cacheService
+                .get(distinctCityInfos, refresher)
+                .flatMap(cached -> {
+                    final List<CityInfo> misses = distinctCityInfos
+                            .stream()
+                            .filter(cityInfo -> !cached.containsKey(cityInfo))
+                            .collect(Collectors.toList());
+
+                    final Mono<Map<CityInfo, List<RouteInfo>>> loaded = misses.isEmpty()
+                            ? Mono.just(Collections.emptyMap())
+                            : timed(loadFindByCityInfo, _find(misses));
+
+                    return loaded.map(loadedResults -> {
+                        final Map<CityInfo, List<RouteInfo>> results = new LinkedHashMap<>();
+                        for (CityInfo cityInfo : distinctCityInfos) {
+                            List<RouteInfo> routeInfos = cached.get(cityInfo);
+                            if (routeInfos == null) {
+                                routeInfos = loadedResults.getOrDefault(cityInfo, Collections.emptyList());
+                            }
+                            results.put(cityInfo, routeInfos);
+                        }
+                        return results;
+                    });
+                });
     }
 
     public Mono<RouteInfo> create(RouteInfo routeInfo) {
@@ -63,6 +285,15 @@ public class RouteService {
                                 routeRepository.insert(routeEntity);
                             }
                         });
+
+                        routeGraphIndex.add(routeInfo);
+
+                        cacheService
+                                .removePages(extractOrigin(routeEntity))
+                                .then(cacheService.removeInbound(extractDestiny(routeEntity)))
+                                .subscribeOn(Schedulers.parallel())
+                                .subscribe();
+
                         sink.success(routeInfo);
 
                     } catch (Exception e) {
@@ -70,7 +301,35 @@ public class RouteService {
                         sink.error(e);
                     }
                 })
-                .subscribeOn(Schedulers.parallel());
+                .transform(this::onJdbcScheduler);
+    }
+
+    /**
+     * Bulk ingest: the routes are written in chunks of bulk-chunk-size, one transaction (and jdbc batches, see
+     * {@link RouteRepository#batchInsert(java.util.Collection)}) per chunk, in order and one chunk at a time.
+     * <p>
+     * Note: the cache is invalidated once per chunk (every distinct origin and destiny of it), not once per route. A failed
+     *       chunk fails the ingest, the chunks reported before it are committed.
+     *
+     * @return the progress after every committed chunk.
+     */
+    public Flux<BulkIngestProgress> ingest(Flux<RouteInfo> routeInfos) {
+        return Flux.defer(() -> {
+            final long start = System.currentTimeMillis();
+            final AtomicInteger chunks = new AtomicInteger();
+            final AtomicLong total = new AtomicLong();
+
+            return routeInfos
+                    .buffer(bulkChunkSize)
+                    .concatMap(chunk -> _ingest(chunk)
+                            .map(ingested -> new BulkIngestProgress(
+                                    chunks.incrementAndGet(),
+                                    ingested.size(),
+                                    total.addAndGet(ingested.size()),
+                                    System.currentTimeMillis() - start
+                            )))
+                    .doOnNext(progress -> log.info("bulk ingest progress: {}", progress));
+        });
     }
 
     public Mono<RouteInfo> update(String routeId, RouteInfo routeInfo) {
@@ -82,12 +341,8 @@ public class RouteService {
                         log.debug("will update entry with id: {} and info: {}", routeId, routeInfo);
 
                         RouteEntity routeEntity = result.get();
-
-                        cacheService
-                                .remove(routeId)
-                                .then(cacheService.remove(extractOrigin(routeEntity)))
-                                .subscribeOn(Schedulers.parallel())
-                                .subscribe();
+                        CityInfo previousOrigin = extractOrigin(routeEntity);
+                        CityInfo previousDestiny = extractDestiny(routeEntity);
 
                         mutateState().accept(routeInfo, routeEntity);
 
@@ -98,9 +353,24 @@ public class RouteService {
                             }
                         });
 
+                        routeGraphIndex.update(routeId, previousOrigin, routeInfo);
+
+                        /*
+                         * Note: only after the db write, the route is replaced in place if the city entry is cached (readers never
+                         *       miss, and a missing entry is not created with this route only) and the entry is marked stale, so the
+                         *       next read refreshes it in the background.
+                         */
+                        CityInfo origin = extractOrigin(routeEntity);
+                        CityInfo destiny = extractDestiny(routeEntity);
                         cacheService
                                 .upsert(routeId, routeInfo)
-                                .then(cacheService.upsert(extractOrigin(routeEntity), routeInfo))
+                                .then(previousOrigin.equals(origin) ? Mono.just(true) : cacheService.remove(previousOrigin))
+                                .then(previousOrigin.equals(origin) ? Mono.just(true) : cacheService.removePages(previousOrigin))
+                                .then(cacheService.replace(origin, routeInfo))
+                                .then(cacheService.markStale(origin))
+                                .then(cacheService.removePages(origin))
+                                .then(cacheService.removeInbound(previousDestiny))
+                                .then(previousDestiny.equals(destiny) ? Mono.just(true) : cacheService.removeInbound(destiny))
                                 .subscribeOn(Schedulers.parallel())
                                 .subscribe();
 
@@ -110,22 +380,12 @@ public class RouteService {
     }
 
     public Mono<RouteInfo> find(String routeId) {
+        final Supplier<Mono<RouteInfo>> load
+                = () -> routeIdLoads.execute(routeId, () -> timed(loadFindByRouteId, _find(routeId)));
+
         return cacheService
-                .get(routeId)
-                .subscribeOn(Schedulers.parallel())
-                .switchIfEmpty(
-                        searchById(routeId)
-                                .publishOn(Schedulers.elastic())
-                                .map(result -> {
-                                    if (!result.isPresent()) {
-                                        throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "no record exists with id: " + routeId);
-                                    } else {
-                                        return map(result.get());
-                                    }
-                                })
-                                .publishOn(Schedulers.parallel())
-                                .flatMap(routeInfo -> cacheService.upsert(routeId, routeInfo).map(Pair::getValue1))
-                );
+                .get(routeId, load)
+                .switchIfEmpty(Mono.defer(load));
     }
 
     public Mono<RouteInfo> delete(String routeId) {
@@ -145,8 +405,12 @@ public class RouteService {
 
                         CityInfo cityInfo = extractOrigin(routeEntity);
 
+                        routeGraphIndex.remove(routeEntity.getId(), cityInfo);
+
                         cacheService
                                 .remove(cityInfo)
+                                .then(cacheService.removePages(cityInfo))
+                                .then(cacheService.removeInbound(extractDestiny(routeEntity)))
                                 .then(cacheService.remove(routeEntity.getId()))
                                 .subscribeOn(Schedulers.parallel())
                                 .subscribe();
@@ -156,6 +420,135 @@ public class RouteService {
                 });
     }
 
+    /**
+     * Set based update of the selected routes (by ids or by origin): one select (locking the rows) and one update
+     * statement per 1000 routes, in a single transaction.
+     * <p>
+     * Note: the cache is invalidated once per affected origin and destiny city, and the route entries with one operation.
+     */
+    public Mono<BulkOperationResult> update(BulkRouteUpdate bulkUpdate) {
+        return Mono
+                .<BulkOperationResult>create(sink -> {
+                    try {
+                        validateSelection(bulkUpdate.getIds(), bulkUpdate.getOrigin());
+                        if (bulkUpdate.getShiftSeconds() == null && bulkUpdate.getDestinyCity() == null) {
+                            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "either shiftSeconds or destinyCity should be provided");
+                        }
+                        log.debug("will bulk update entries with: {}", bulkUpdate);
+
+                        final CityInfo destinyCity = bulkUpdate.getDestinyCity();
+                        final List<RouteEntity> routeEntities = transactionTemplate.execute(transactionStatus -> {
+                            List<RouteEntity> selected = selectForUpdate(bulkUpdate.getIds(), bulkUpdate.getOrigin());
+                            routeRepository.bulkUpdate(
+                                    ids(selected),
+                                    bulkUpdate.getShiftSeconds(),
+                                    destinyCity == null ? null : destinyCity.getName(),
+                                    destinyCity == null ? null : destinyCity.getCountry()
+                            );
+                            return selected;
+                        });
+
+                        final List<RouteInfo> previous = routeEntities.stream().map(this::map).collect(Collectors.toList());
+                        final List<RouteInfo> current = previous
+                                .stream()
+                                .map(routeInfo -> new RouteInfo(
+                                        routeInfo.getId(),
+                                        routeInfo.getCity(),
+                                        destinyCity == null ? routeInfo.getDestinyCity() : destinyCity,
+                                        shift(routeInfo.getDepartureTime(), bulkUpdate.getShiftSeconds()),
+                                        shift(routeInfo.getArrivalTime(), bulkUpdate.getShiftSeconds())
+                                ))
+                                .collect(Collectors.toList());
+
+                        // Note: origins do not change, so adding replaces every route in place.
+                        routeGraphIndex.addAll(current);
+
+                        invalidate(previous, current);
+
+                        sink.success(new BulkOperationResult(routeEntities.size()));
+
+                    } catch (Exception e) {
+                        log.error("error occurred during bulk update operation", e);
+                        sink.error(e);
+                    }
+                })
+                .transform(this::onJdbcScheduler);
+    }
+
+    // Note: same as the bulk update, one delete statement per 1000 routes and grouped cache invalidation.
+    public Mono<BulkOperationResult> delete(BulkRouteDelete bulkDelete) {
+        return Mono
+                .<BulkOperationResult>create(sink -> {
+                    try {
+                        validateSelection(bulkDelete.getIds(), bulkDelete.getOrigin());
+                        log.debug("will bulk delete entries with: {}", bulkDelete);
+
+                        final List<RouteEntity> routeEntities = transactionTemplate.execute(transactionStatus -> {
+                            List<RouteEntity> selected = selectForUpdate(bulkDelete.getIds(), bulkDelete.getOrigin());
+                            routeRepository.bulkDelete(ids(selected));
+                            return selected;
+                        });
+
+                        final List<RouteInfo> previous = routeEntities.stream().map(this::map).collect(Collectors.toList());
+
+                        routeGraphIndex.removeAll(previous);
+
+                        invalidate(previous, Collections.emptyList());
+
+                        sink.success(new BulkOperationResult(routeEntities.size()));
+
+                    } catch (Exception e) {
+                        log.error("error occurred during bulk delete operation", e);
+                        sink.error(e);
+                    }
+                })
+                .transform(this::onJdbcScheduler);
+    }
+
+    private void validateSelection(List<String> ids, CityInfo origin) {
+        if ((ids == null || ids.isEmpty()) == (origin == null)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "either ids or origin should be provided");
+        }
+    }
+
+    private List<RouteEntity> selectForUpdate(List<String> ids, CityInfo origin) {
+        return origin != null
+                ? routeRepository.findByOriginForUpdate(origin.getName(), origin.getCountry())
+                : routeRepository.findByIdsForUpdate(ids.stream().distinct().collect(Collectors.toList()));
+    }
+
+    private List<String> ids(List<RouteEntity> routeEntities) {
+        return routeEntities.stream().map(RouteEntity::getId).collect(Collectors.toList());
+    }
+
+    private Instant shift(Instant time, Long shiftSeconds) {
+        return time == null || shiftSeconds == null ? time : time.plusSeconds(shiftSeconds);
+    }
+
+    // Note: once per distinct origin and destiny (before and after the change), all the route entries at once.
+    private void invalidate(List<RouteInfo> previous, List<RouteInfo> current) {
+        if (previous.isEmpty()) {
+            return;
+        }
+
+        final Set<CityInfo> origins = new HashSet<>();
+        final Set<CityInfo> destinies = new HashSet<>();
+        for (List<RouteInfo> routeInfos : Arrays.asList(previous, current)) {
+            for (RouteInfo routeInfo : routeInfos) {
+                origins.add(routeInfo.getCity());
+                destinies.add(routeInfo.getDestinyCity());
+            }
+        }
+        final List<String> routeIds = previous.stream().map(RouteInfo::getId).collect(Collectors.toList());
+
+        cacheService
+                .removeAll(routeIds)
+                .thenMany(Flux.fromIterable(origins).concatMap(origin -> cacheService.remove(origin).then(cacheService.removePages(origin))))
+                .thenMany(Flux.fromIterable(destinies).concatMap(cacheService::removeInbound))
+                .subscribeOn(Schedulers.parallel())
+                .subscribe();
+    }
+
     private Mono<List<RouteInfo>> _find(CityInfo cityInfo) {
         return Mono
                 .<List<RouteEntity>>create(sink -> {
@@ -171,7 +564,7 @@ public class RouteService {
                         sink.error(e);
                     }
                 })
-                .subscribeOn(Schedulers.parallel())
+                .transform(this::onJdbcScheduler)
                 .publishOn(Schedulers.elastic())
                 .map(routeEntities -> {
 
@@ -185,6 +578,183 @@ public class RouteService {
                 .flatMap(infos -> cacheService.upsert(cityInfo, infos).map(Pair::getValue1));
     }
 
+    private Mono<Map<CityInfo, List<RouteInfo>>> _find(List<CityInfo> cityInfos) {
+        return Mono
+                .<List<RouteEntity>>create(sink -> {
+                    try {
+                        List<Pair<String, String>> origins = cityInfos
+                                .stream()
+                                .map(cityInfo -> Pair.with(cityInfo.getName(), cityInfo.getCountry()))
+                                .collect(Collectors.toList());
+
+                        sink.success(routeRepository.findByOrigins(origins));
+
+                    } catch (Exception e) {
+                        log.error("error occurred during find city infos operation", e);
+                        sink.error(e);
+                    }
+                })
+                .transform(this::onJdbcScheduler)
+                .publishOn(Schedulers.elastic())
+                .<Map<CityInfo, List<RouteInfo>>>map(routeEntities -> {
+
+                    return routeEntities
+                            .stream()
+                            .map(this::map)
+                            .collect(Collectors.groupingBy(RouteInfo::getCity, LinkedHashMap::new, Collectors.toList()));
+
+                })
+                .publishOn(Schedulers.parallel())
+                .doOnNext(results -> Flux
+                        .fromIterable(results.entrySet())
+                        .flatMap(entry -> cacheService.upsert(entry.getKey(), entry.getValue()))
+                        .subscribe()
+                );
+    }
+
+    private Mono<List<RouteInfo>> _ingest(List<RouteInfo> chunk) {
+        return Mono
+                .<List<RouteInfo>>create(sink -> {
+                    try {
+                        final List<RouteEntity> routeEntities = new ArrayList<>(chunk.size());
+                        for (RouteInfo routeInfo : chunk) {
+                            if (routeInfo.getCity() == null || routeInfo.getDestinyCity() == null) {
+                                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "route without origin or destiny: " + routeInfo);
+                            }
+
+                            RouteEntity routeEntity = new RouteEntity();
+                            mutateState().accept(routeInfo, routeEntity);
+                            routeEntities.add(routeEntity);
+                        }
+
+                        transactionTemplate.execute(new TransactionCallbackWithoutResult() {
+                            @Override
+                            protected void doInTransactionWithoutResult(TransactionStatus transactionStatus) {
+                                routeRepository.batchInsert(routeEntities);
+                            }
+                        });
+
+                        routeGraphIndex.addAll(chunk);
+
+                        final Set<CityInfo> origins = chunk.stream().map(RouteInfo::getCity).collect(Collectors.toSet());
+                        final Set<CityInfo> destinies = chunk.stream().map(RouteInfo::getDestinyCity).collect(Collectors.toSet());
+
+                        // Note: as on update, city entries are kept (stale) so the next read refreshes them in the background.
+                        Flux
+                                .fromIterable(origins)
+                                .concatMap(origin -> cacheService.markStale(origin).then(cacheService.removePages(origin)))
+                                .thenMany(Flux.fromIterable(destinies).concatMap(cacheService::removeInbound))
+                                .subscribeOn(Schedulers.parallel())
+                                .subscribe();
+
+                        sink.success(chunk);
+
+                    } catch (Exception e) {
+                        log.error("error occurred during bulk ingest operation", e);
+                        sink.error(e);
+                    }
+                })
+                .transform(this::onJdbcScheduler);
+    }
+
+    private Mono<List<RouteInfo>> _find(CityInfo cityInfo, Instant departureFrom, Instant departureTo) {
+        return Mono
+                .<List<RouteEntity>>create(sink -> {
+                    try {
+                        List<RouteEntity> results = routeRepository.findByOriginAndDepartureTime(
+                                cityInfo.getName(),
+                                cityInfo.getCountry(),
+                                departureFrom,
+                                departureTo
+                        );
+
+                        sink.success(results);
+
+                    } catch (Exception e) {
+                        log.error("error occurred during find city info window operation", e);
+                        sink.error(e);
+                    }
+                })
+                .transform(this::onJdbcScheduler)
+                .publishOn(Schedulers.parallel())
+                .map(routeEntities -> routeEntities
+                        .stream()
+                        .map(this::map)
+                        .collect(Collectors.toList())
+                );
+    }
+
+    private Mono<List<RouteInfo>> _findByDestiny(CityInfo cityInfo) {
+        return Mono
+                .<List<RouteEntity>>create(sink -> {
+                    try {
+                        List<RouteEntity> results = routeRepository.findByDestiny(cityInfo.getName(), cityInfo.getCountry());
+
+                        sink.success(results);
+
+                    } catch (Exception e) {
+                        log.error("error occurred during find destiny city info operation", e);
+                        sink.error(e);
+                    }
+                })
+                .transform(this::onJdbcScheduler)
+                .publishOn(Schedulers.parallel())
+                .map(routeEntities -> routeEntities
+                        .stream()
+                        .map(this::map)
+                        .collect(Collectors.toList())
+                );
+    }
+
+    private Mono<List<RouteInfo>> _findPage(CityInfo cityInfo, PageCursor after, int maxResults) {
+        return Mono
+                .<List<RouteEntity>>create(sink -> {
+                    try {
+                        List<RouteEntity> results = routeRepository.findPageByOrigin(
+                                cityInfo.getName(),
+                                cityInfo.getCountry(),
+                                after == null ? null : after.getDepartureTime(),
+                                after == null ? null : after.getId(),
+                                maxResults
+                        );
+
+                        sink.success(results);
+
+                    } catch (Exception e) {
+                        log.error("error occurred during find city info page operation", e);
+                        sink.error(e);
+                    }
+                })
+                .transform(this::onJdbcScheduler)
+                .publishOn(Schedulers.parallel())
+                .map(routeEntities -> routeEntities
+                        .stream()
+                        .map(this::map)
+                        .collect(Collectors.toList())
+                );
+    }
+
+    private Mono<RouteInfo> _find(String routeId) {
+        return searchById(routeId)
+                .publishOn(Schedulers.elastic())
+                .map(result -> {
+                    if (!result.isPresent()) {
+                        throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "no record exists with id: " + routeId);
+                    } else {
+                        return map(result.get());
+                    }
+                })
+                .publishOn(Schedulers.parallel())
+                .flatMap(routeInfo -> cacheService.upsert(routeId, routeInfo).map(Pair::getValue1));
+    }
+
+    private <T> Mono<T> timed(Timer timer, Mono<T> operation) {
+        return Mono.defer(() -> {
+            Timer.Context context = timer.time();
+            return operation.doFinally(signal -> context.stop());
+        });
+    }
+
     private Mono<Optional<RouteEntity>> searchById(String routeId) {
         return Mono
                 .<Optional<RouteEntity>>create(sink -> {
@@ -200,7 +770,27 @@ public class RouteService {
                         sink.error(e);
                     }
                 })
-                .subscribeOn(Schedulers.parallel());
+                .transform(this::onJdbcScheduler);
+    }
+
+    // Note: blocking jdbc work runs on the bounded jdbc scheduler, when it is saturated we reject fast.
+    private <T> Mono<T> onJdbcScheduler(Mono<T> blockingWork) {
+        return blockingWork
+                .subscribeOn(jdbcScheduler)
+                .onErrorMap(
+                        RejectedExecutionException.class,
+                        error -> new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "database is busy, please retry later", error)
+                );
+    }
+
+    // Note: the cursor is read on the jdbc scheduler, every request of the subscriber is also served there.
+    private <T> Flux<T> onJdbcScheduler(Flux<T> blockingWork) {
+        return blockingWork
+                .subscribeOn(jdbcScheduler)
+                .onErrorMap(
+                        RejectedExecutionException.class,
+                        error -> new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "database is busy, please retry later", error)
+                );
     }
 
     private BiConsumer<RouteInfo, RouteEntity> mutateState() {
@@ -0,0 +1,59 @@
+package com.adidas.chriniko.routesservice.service;
+
+import com.codahale.metrics.Meter;
+import reactor.core.publisher.Mono;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * In flight deduplication of loads: concurrent callers for the same key share one load (and its result or error),
+ * the key is released as soon as the load terminates so the next caller starts a fresh one.
+ */
+class SingleFlight<K, V> {
+
+    private final ConcurrentMap<K, Mono<V>> inFlight = new ConcurrentHashMap<>();
+
+    private final Meter coalesced;
+
+    SingleFlight(Meter coalesced) {
+        this.coalesced = coalesced;
+    }
+
+    Mono<V> execute(K key, Supplier<Mono<V>> loader) {
+        return Mono.defer(() -> {
+            Mono<V> flight = inFlight.get(key);
+            if (flight != null) {
+                coalesced.mark();
+                return flight;
+            }
+
+            Mono<V> newFlight = newFlight(key, loader);
+            flight = inFlight.putIfAbsent(key, newFlight);
+            if (flight != null) {
+                coalesced.mark();
+                return flight;
+            }
+            return newFlight;
+        });
+    }
+
+    int inFlight() {
+        return inFlight.size();
+    }
+
+    private Mono<V> newFlight(K key, Supplier<Mono<V>> loader) {
+        final AtomicReference<Mono<V>> self = new AtomicReference<>();
+
+        // Note: cache() so the load runs once, no matter how many callers subscribe.
+        Mono<V> flight = Mono
+                .defer(loader)
+                .doFinally(signal -> inFlight.remove(key, self.get()))
+                .cache();
+
+        self.set(flight);
+        return flight;
+    }
+}
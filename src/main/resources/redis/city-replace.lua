@@ -0,0 +1,28 @@
+-- Replaces (by route id) a route of a city entry only if the entry exists, a missing entry is never created with a
+-- single route (it would be served as the whole city). The entry keeps its ttl.
+--
+-- KEYS[1]: city hash (routeId ---> route), KEYS[2]: departures sorted set (routeId scored by departure epoch millis)
+-- ARGV[1]: routeId, ARGV[2]: route, ARGV[3]: departure epoch millis (empty for a route without departure time)
+--
+-- returns: 1 if the route was replaced, 0 if the city entry does not exist.
+
+local ttl = redis.call('PTTL', KEYS[1])
+if ttl == -2 then
+    return 0
+end
+
+redis.call('HSET', KEYS[1], ARGV[1], ARGV[2])
+
+if ARGV[3] == '' then
+    redis.call('ZREM', KEYS[2], ARGV[1])
+    return 1
+end
+
+redis.call('ZADD', KEYS[2], ARGV[3], ARGV[1])
+
+-- Note: ZADD creates a missing sorted set (none of the routes had a departure time), it gets the ttl of the city hash.
+if ttl > 0 and redis.call('PTTL', KEYS[2]) == -1 then
+    redis.call('PEXPIRE', KEYS[2], ttl)
+end
+
+return 1
@@ -0,0 +1,32 @@
+-- Adds or replaces (by route id) routes of a city entry and resets its ttl, atomically, so a failure half way can not
+-- leave a key without ttl (which would never be refreshed, nor expire).
+--
+-- KEYS[1]: city hash (routeId ---> route), KEYS[2]: departures sorted set (routeId scored by departure epoch millis)
+-- ARGV[1]: ttl in millis, ARGV[2]: number of routes n
+-- ARGV[3 .. 2 + 2n]: routeId, route pairs
+-- ARGV[3 + 2n ..]: departure epoch millis, routeId pairs (routes without departure time are absent)
+--
+-- returns: the number of routes.
+
+local ttl = ARGV[1]
+local routes = tonumber(ARGV[2])
+local lastRoute = 2 + 2 * routes
+
+-- Note: HSET and ZADD in chunks of pairs, unpack is bounded by the lua stack size.
+local chunk = 1000
+
+if routes > 0 then
+    for first = 3, lastRoute, chunk do
+        redis.call('HSET', KEYS[1], unpack(ARGV, first, math.min(first + chunk - 1, lastRoute)))
+    end
+    redis.call('PEXPIRE', KEYS[1], ttl)
+end
+
+if #ARGV > lastRoute then
+    for first = lastRoute + 1, #ARGV, chunk do
+        redis.call('ZADD', KEYS[2], unpack(ARGV, first, math.min(first + chunk - 1, #ARGV)))
+    end
+    redis.call('PEXPIRE', KEYS[2], ttl)
+end
+
+return routes
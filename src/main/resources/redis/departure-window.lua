@@ -0,0 +1,28 @@
+-- Routes of a city departing within a window, in one round trip and without reading the whole city entry.
+--
+-- KEYS[1]: city hash (routeId ---> route), KEYS[2]: departures sorted set (routeId scored by departure epoch millis)
+-- ARGV[1], ARGV[2]: min and max score, ZRANGEBYSCORE syntax (eg: 1552262400000, (1552348800000, -inf, +inf)
+--
+-- returns: {-2} on a miss, otherwise {ttl in millis of the city hash, route...} ordered by departure time.
+
+local ttl = redis.call('PTTL', KEYS[1])
+if ttl == -2 or redis.call('EXISTS', KEYS[2]) == 0 then
+    return {-2}
+end
+
+local result = {ttl}
+
+local ids = redis.call('ZRANGEBYSCORE', KEYS[2], ARGV[1], ARGV[2])
+
+-- Note: HMGET in chunks, unpack is bounded by the lua stack size.
+local chunk = 1000
+for first = 1, #ids, chunk do
+    local routes = redis.call('HMGET', KEYS[1], unpack(ids, first, math.min(first + chunk - 1, #ids)))
+    for i = 1, #routes do
+        if routes[i] then
+            result[#result + 1] = routes[i]
+        end
+    end
+end
+
+return result
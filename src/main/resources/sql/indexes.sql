@@ -0,0 +1,16 @@
+-- Note: separate from setup.sql, so a bulk load (see generate.routes-mode=load-data) can create them once, after the load.
+
+-- Note: also serves the departure time windows and the keyset pagination of routes per origin (ordered by departure_time, id),
+--       as a range scan with no filesort. deleted is not part of it: reads read the clustered row anyway and filter out the
+--       soft deleted rows (deleted = 0) there, so a soft delete does not move an entry of it.
+create index origin_info_idx on routes (origin_city_name, origin_country, departure_time, id);
+
+-- Note: routes into a city (inbound search), soft deleted rows are filtered on the row, as above.
+create index destiny_info_idx on routes (destiny_city_name, destiny_country);
+
+-- Note: the purge compactor finds the soft deleted rows through it, the only index entry a soft delete moves.
+create index deleted_idx on routes (deleted);
+
+create index origin_country_idx on routes (origin_country);
+create index destiny_country_idx on routes (destiny_country);
+
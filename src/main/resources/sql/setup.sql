@@ -1,13 +1,15 @@
 
 drop table if exists routes;
 
+-- Note: ids are time ordered uuids (version 7) as 16 bytes, so inserts append to the clustered index (no random page splits)
+--       and every secondary index entry carries a 16 byte primary key instead of a 36 character one.
 create table if not exists routes
 (
-  id                varchar(255) not null
+  id                binary(16)   not null
     primary key,
   created_by        varchar(255) null,
   created_date      datetime     null,
-  deleted           bit          null,
+  deleted           bit          not null default 0,
   updated_by        varchar(255) null,
   updated_date      datetime     null,
   version           bigint       null,
@@ -18,10 +20,3 @@ create table if not exists routes
   origin_city_name  varchar(255) null,
   origin_country    varchar(255) null
 );
-
-
-create index origin_info_idx on routes (origin_city_name, origin_country);
-
-create index origin_country_idx on routes (origin_country);
-create index destiny_country_idx on routes (destiny_country);
-
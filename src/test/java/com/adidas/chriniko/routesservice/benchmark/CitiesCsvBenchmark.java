@@ -0,0 +1,65 @@
+package com.adidas.chriniko.routesservice.benchmark;
+
+import com.adidas.chriniko.routesservice.init.CitiesCsvLoader;
+import com.adidas.chriniko.routesservice.init.CitiesCsvProcessor;
+import com.adidas.chriniko.routesservice.init.CityTables;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Commons-csv processor vs streaming loader of the worldcities csv, with the gc profiler (gc.alloc.rate.norm is the
+ * allocated bytes per load).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CitiesCsvBenchmark {
+
+    private CitiesCsvProcessor citiesCsvProcessor;
+    private CitiesCsvLoader citiesCsvLoader;
+
+    @Setup
+    public void setup() {
+        citiesCsvProcessor = new CitiesCsvProcessor();
+        ReflectionTestUtils.setField(citiesCsvProcessor, "displayParsingInfo", false);
+
+        citiesCsvLoader = new CitiesCsvLoader();
+    }
+
+    @Benchmark
+    public Map<String, List<String>> processor() {
+        return citiesCsvProcessor.getCitiesByCountry();
+    }
+
+    @Benchmark
+    public CityTables loader() {
+        return citiesCsvLoader.load();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(CitiesCsvBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
@@ -0,0 +1,43 @@
+package com.adidas.chriniko.routesservice.benchmark;
+
+import com.adidas.chriniko.routesservice.entity.RouteEntity;
+import com.adidas.chriniko.routesservice.init.CitiesCsvProcessor;
+import com.adidas.chriniko.routesservice.init.RouteDataGenerator;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The itineraries of the whole worldcities dataset, generated as on startup
+ * (route-data-generator.no-of-itineraries-for-selected-root-city=10).
+ */
+final class GeneratedRoutes {
+
+    private GeneratedRoutes() {
+    }
+
+    static List<List<RouteEntity>> itineraries() {
+        final CitiesCsvProcessor citiesCsvProcessor = new CitiesCsvProcessor();
+        ReflectionTestUtils.setField(citiesCsvProcessor, "displayParsingInfo", false);
+
+        final RouteDataGenerator routeDataGenerator = new RouteDataGenerator();
+        ReflectionTestUtils.setField(routeDataGenerator, "noOfItinerariesForSelectedRootCity", 10);
+        ReflectionTestUtils.setField(routeDataGenerator, "displayStoringInfo", false);
+        ReflectionTestUtils.setField(routeDataGenerator, "seed", 42L);
+
+        final List<List<RouteEntity>> itineraries = new ArrayList<>();
+        routeDataGenerator
+                .invoke(citiesCsvProcessor.getCitiesByCountry())
+                .getItinerariesInfoByCountry()
+                .values()
+                .forEach(itineraries::addAll);
+        return itineraries;
+    }
+
+    static List<RouteEntity> routes() {
+        final List<RouteEntity> routes = new ArrayList<>();
+        itineraries().forEach(routes::addAll);
+        return routes;
+    }
+}
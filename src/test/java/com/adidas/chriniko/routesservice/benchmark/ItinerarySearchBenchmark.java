@@ -0,0 +1,121 @@
+package com.adidas.chriniko.routesservice.benchmark;
+
+import com.adidas.chriniko.routesservice.dto.CityInfo;
+import com.adidas.chriniko.routesservice.dto.RouteInfo;
+import com.adidas.chriniko.routesservice.entity.RouteEntity;
+import com.adidas.chriniko.routesservice.graph.RouteGraphIndex;
+import org.javatuples.Pair;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Itinerary queries over the route graph of the whole worldcities dataset (see {@link GeneratedRoutes}), repeated once
+ * per day of the timetable.
+ * Queries go from a root city to a random city of one of its itineraries, so every one of them has an answer.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ItinerarySearchBenchmark {
+
+    private static final int NO_OF_QUERIES = 1024;
+
+    @Param({"1", "30"})
+    private int days;
+
+    private RouteGraphIndex routeGraphIndex;
+
+    private List<Pair<CityInfo, CityInfo>> queries;
+    private int nextQuery;
+
+    @Setup
+    public void setup() {
+        final List<List<RouteEntity>> itineraries = GeneratedRoutes.itineraries();
+
+        final List<RouteInfo> routeInfos = new ArrayList<>();
+        for (int day = 0; day < days; day++) {
+            for (List<RouteEntity> itinerary : itineraries) {
+                for (RouteEntity route : itinerary) {
+                    routeInfos.add(new RouteInfo(
+                            UUID.randomUUID().toString(),
+                            new CityInfo(route.getOriginCityName(), route.getOriginCountry()),
+                            new CityInfo(route.getDestinyCityName(), route.getDestinyCountry()),
+                            route.getDepartureTime().plus(day, ChronoUnit.DAYS),
+                            route.getArrivalTime().plus(day, ChronoUnit.DAYS)
+                    ));
+                }
+            }
+        }
+
+        routeGraphIndex = new RouteGraphIndex(Integer.MAX_VALUE);
+        routeGraphIndex.load(routeInfos);
+
+        final Random random = new Random(42);
+        queries = new ArrayList<>(NO_OF_QUERIES);
+        while (queries.size() < NO_OF_QUERIES) {
+            final List<RouteEntity> itinerary = itineraries.get(random.nextInt(itineraries.size()));
+            if (itinerary.isEmpty()) {
+                continue;
+            }
+            final RouteEntity first = itinerary.get(0);
+            final RouteEntity last = itinerary.get(random.nextInt(itinerary.size()));
+            queries.add(Pair.with(
+                    new CityInfo(first.getOriginCityName(), first.getOriginCountry()),
+                    new CityInfo(last.getDestinyCityName(), last.getDestinyCountry())
+            ));
+        }
+
+        System.out.println(String.format("days: %d, routes: %d, queries: %d", days, routeInfos.size(), queries.size()));
+    }
+
+    @Benchmark
+    public Optional<List<RouteInfo>> earliestArrival() {
+        final Pair<CityInfo, CityInfo> query = nextQuery();
+        return routeGraphIndex.earliestArrival(query.getValue0(), query.getValue1(), null);
+    }
+
+    @Benchmark
+    public Optional<List<RouteInfo>> fewestHops() {
+        final Pair<CityInfo, CityInfo> query = nextQuery();
+        return routeGraphIndex.fewestHops(query.getValue0(), query.getValue1(), null);
+    }
+
+    @Benchmark
+    public List<List<RouteInfo>> profile() {
+        final Pair<CityInfo, CityInfo> query = nextQuery();
+        return routeGraphIndex.profile(query.getValue0(), query.getValue1(), null, null);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(ItinerarySearchBenchmark.class.getSimpleName()).build()).run();
+    }
+
+    private Pair<CityInfo, CityInfo> nextQuery() {
+        final Pair<CityInfo, CityInfo> query = queries.get(nextQuery);
+        nextQuery = (nextQuery + 1) % NO_OF_QUERIES;
+        return query;
+    }
+}
@@ -0,0 +1,207 @@
+package com.adidas.chriniko.routesservice.benchmark;
+
+import com.adidas.chriniko.routesservice.entity.RouteEntity;
+import com.adidas.chriniko.routesservice.entity.TimeOrderedIds;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Inserts of the generated dataset (see {@link GeneratedRoutes}, copies times, every copy with new ids) into a table shaped
+ * as routes (same secondary indexes), with random uuid strings as varchar(255) vs time ordered uuids as binary(16) primary
+ * keys. After every iteration the rows/sec and the data and index sizes (innodb pages) are printed.
+ * <p>
+ * Note: needs a mysql, by default the one of docker-compose, else: -Dbenchmark.jdbc-url=... -Dbenchmark.username=...
+ * -Dbenchmark.password=... The table is routes_id_benchmark, it is dropped at the end.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RouteIdInsertBenchmark {
+
+    private static final String TABLE = "routes_id_benchmark";
+
+    private static final int BATCH_SIZE = 50;
+    private static final int COMMIT_SIZE = 1000;
+
+    public enum IdType {
+        RANDOM_VARCHAR("varchar(255)"),
+        TIME_ORDERED_BINARY("binary(16)");
+
+        private final String columnType;
+
+        IdType(String columnType) {
+            this.columnType = columnType;
+        }
+    }
+
+    @Param({"RANDOM_VARCHAR", "TIME_ORDERED_BINARY"})
+    private IdType idType;
+
+    @Param({"1", "10"})
+    private int copies;
+
+    private Connection connection;
+    private List<RouteEntity> routes;
+
+    // Note: generated before every iteration, so only the inserts are measured.
+    private List<Object> ids;
+
+    private long insertNanos;
+
+    @Setup(Level.Trial)
+    public void setupTrial() throws SQLException {
+        connection = DriverManager.getConnection(
+                System.getProperty("benchmark.jdbc-url", "jdbc:mysql://localhost:3306/db?rewriteBatchedStatements=true"),
+                System.getProperty("benchmark.username", "user"),
+                System.getProperty("benchmark.password", "user")
+        );
+        connection.setAutoCommit(false);
+
+        routes = GeneratedRoutes.routes();
+    }
+
+    @Setup(Level.Iteration)
+    public void setupIteration() throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("drop table if exists " + TABLE);
+            statement.execute("create table " + TABLE + " (" +
+                    "id " + idType.columnType + " not null primary key, " +
+                    "created_by varchar(255) null, created_date datetime null, " +
+                    "deleted bit not null default 0, " +
+                    "updated_by varchar(255) null, updated_date datetime null, " +
+                    "version bigint null, " +
+                    "arrival_time datetime null, departure_time datetime null, " +
+                    "destiny_city_name varchar(255) null, destiny_country varchar(255) null, " +
+                    "origin_city_name varchar(255) null, origin_country varchar(255) null)");
+            statement.execute("create index origin_info_idx on " + TABLE + " (origin_city_name, origin_country, departure_time, id)");
+            statement.execute("create index destiny_info_idx on " + TABLE + " (destiny_city_name, destiny_country)");
+            statement.execute("create index origin_country_idx on " + TABLE + " (origin_country)");
+            statement.execute("create index destiny_country_idx on " + TABLE + " (destiny_country)");
+            statement.execute("create index deleted_idx on " + TABLE + " (deleted)");
+        }
+        connection.commit();
+
+        ids = new ArrayList<>(routes.size() * copies);
+        for (int i = 0; i < routes.size() * copies; i++) {
+            ids.add(idType == IdType.RANDOM_VARCHAR
+                    ? UUID.randomUUID().toString()
+                    : TimeOrderedIds.toBytes(TimeOrderedIds.next().toString()));
+        }
+    }
+
+    @Benchmark
+    public int insert() throws SQLException {
+        final long start = System.nanoTime();
+
+        int inserted = 0;
+        try (PreparedStatement statement = connection.prepareStatement("insert into " + TABLE + " " +
+                "(id, created_by, created_date, deleted, updated_by, updated_date, version, arrival_time, departure_time, " +
+                "destiny_city_name, destiny_country, origin_city_name, origin_country) " +
+                "values (?, ?, ?, 0, ?, ?, 0, ?, ?, ?, ?, ?, ?)")) {
+
+            for (int copy = 0; copy < copies; copy++) {
+                for (RouteEntity route : routes) {
+                    statement.setObject(1, ids.get(inserted));
+                    statement.setString(2, route.getCreatedBy());
+                    statement.setTimestamp(3, Timestamp.from(route.getCreatedDate()));
+                    statement.setString(4, route.getUpdatedBy());
+                    statement.setTimestamp(5, Timestamp.from(route.getUpdatedDate()));
+                    statement.setTimestamp(6, Timestamp.from(route.getArrivalTime()));
+                    statement.setTimestamp(7, Timestamp.from(route.getDepartureTime()));
+                    statement.setString(8, route.getDestinyCityName());
+                    statement.setString(9, route.getDestinyCountry());
+                    statement.setString(10, route.getOriginCityName());
+                    statement.setString(11, route.getOriginCountry());
+                    statement.addBatch();
+                    inserted++;
+
+                    if (inserted % BATCH_SIZE == 0) {
+                        statement.executeBatch();
+                    }
+                    if (inserted % COMMIT_SIZE == 0) {
+                        connection.commit();
+                    }
+                }
+            }
+            statement.executeBatch();
+            connection.commit();
+        }
+
+        insertNanos = System.nanoTime() - start;
+        return inserted;
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDownIteration() throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            // Note: refreshes the persistent statistics, which the sizes below are read from.
+            statement.execute("analyze table " + TABLE);
+
+            final StringBuilder report = new StringBuilder(String.format(
+                    "%n%s, copies: %d, rows: %d, rows/sec: %.0f",
+                    idType, copies, ids.size(), ids.size() / (insertNanos / 1e9)));
+
+            try (ResultSet resultSet = statement.executeQuery("select data_length, index_length from information_schema.tables " +
+                    "where table_schema = database() and table_name = '" + TABLE + "'")) {
+                if (resultSet.next()) {
+                    report.append(String.format(", data: %.1f MB, indexes: %.1f MB",
+                            resultSet.getLong(1) / 1048576.0, resultSet.getLong(2) / 1048576.0));
+                }
+            }
+
+            try (ResultSet resultSet = statement.executeQuery("select index_name, stat_value * @@innodb_page_size " +
+                    "from mysql.innodb_index_stats " +
+                    "where database_name = database() and table_name = '" + TABLE + "' and stat_name = 'size' " +
+                    "order by index_name")) {
+                while (resultSet.next()) {
+                    report.append(String.format("%n  %s: %.1f MB", resultSet.getString(1), resultSet.getLong(2) / 1048576.0));
+                }
+            }
+
+            System.out.println(report);
+        }
+        connection.commit();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDownTrial() throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("drop table if exists " + TABLE);
+        } finally {
+            connection.close();
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(RouteIdInsertBenchmark.class.getSimpleName()).build()).run();
+    }
+}
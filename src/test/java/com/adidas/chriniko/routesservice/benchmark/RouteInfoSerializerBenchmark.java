@@ -0,0 +1,126 @@
+package com.adidas.chriniko.routesservice.benchmark;
+
+import com.adidas.chriniko.routesservice.dto.CityInfo;
+import com.adidas.chriniko.routesservice.dto.RouteInfo;
+import com.adidas.chriniko.routesservice.serializer.BinaryListRouteInfoRedisSerializer;
+import com.adidas.chriniko.routesservice.serializer.ListRouteInfoRedisSerializer;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Json vs binary format of a city entry (CityInfo ---> [RouteInfo]), size is printed before the run.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RouteInfoSerializerBenchmark {
+
+    @Param({"10", "100", "500"})
+    private int noOfRoutes;
+
+    private ListRouteInfoRedisSerializer json;
+    private BinaryListRouteInfoRedisSerializer binary;
+
+    private List<RouteInfo> routeInfos;
+    private byte[] jsonBytes;
+    private byte[] binaryBytes;
+
+    @Setup
+    public void setup() {
+        json = new ListRouteInfoRedisSerializer(objectMapper());
+        binary = new BinaryListRouteInfoRedisSerializer(json);
+
+        routeInfos = routeInfos(noOfRoutes);
+        jsonBytes = json.serialize(routeInfos);
+        binaryBytes = binary.serialize(routeInfos);
+    }
+
+    @Benchmark
+    public byte[] serializeJson() {
+        return json.serialize(routeInfos);
+    }
+
+    @Benchmark
+    public byte[] serializeBinary() {
+        return binary.serialize(routeInfos);
+    }
+
+    @Benchmark
+    public List<RouteInfo> deserializeJson() {
+        return json.deserialize(jsonBytes);
+    }
+
+    @Benchmark
+    public List<RouteInfo> deserializeBinary() {
+        return binary.deserialize(binaryBytes);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        ListRouteInfoRedisSerializer json = new ListRouteInfoRedisSerializer(objectMapper());
+        BinaryListRouteInfoRedisSerializer binary = new BinaryListRouteInfoRedisSerializer(json);
+
+        for (int noOfRoutes : new int[]{10, 100, 500}) {
+            List<RouteInfo> routeInfos = routeInfos(noOfRoutes);
+            System.out.println(String.format("routes: %d, json bytes: %d, binary bytes: %d",
+                    noOfRoutes, json.serialize(routeInfos).length, binary.serialize(routeInfos).length));
+        }
+
+        new Runner(new OptionsBuilder().include(RouteInfoSerializerBenchmark.class.getSimpleName()).build()).run();
+    }
+
+    private static ObjectMapper objectMapper() {
+        return new ObjectMapper()
+                .registerModule(new JavaTimeModule())
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+    }
+
+    // Note: as the route data generator does, all routes of an entry share the origin and destinations repeat.
+    private static List<RouteInfo> routeInfos(int noOfRoutes) {
+        final CityInfo origin = new CityInfo("Thessaloniki", "Greece");
+
+        final List<CityInfo> destinations = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            destinations.add(new CityInfo("Destiny City " + i, "Country " + (i % 5)));
+        }
+
+        final ThreadLocalRandom random = ThreadLocalRandom.current();
+        final List<RouteInfo> routeInfos = new ArrayList<>(noOfRoutes);
+        for (int i = 0; i < noOfRoutes; i++) {
+            Instant departureTime = Instant.now().plusSeconds(random.nextInt(86_400));
+            Instant arrivalTime = departureTime.plusSeconds(random.nextInt(1, 36_000));
+
+            routeInfos.add(new RouteInfo(
+                    UUID.randomUUID().toString(),
+                    origin,
+                    destinations.get(random.nextInt(destinations.size())),
+                    departureTime,
+                    arrivalTime));
+        }
+        return routeInfos;
+    }
+}
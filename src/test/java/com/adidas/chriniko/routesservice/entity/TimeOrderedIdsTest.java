@@ -0,0 +1,78 @@
+package com.adidas.chriniko.routesservice.entity;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+public class TimeOrderedIdsTest {
+
+    @Test
+    public void ids_are_strictly_increasing_case() {
+
+        // given
+        List<String> ids = new ArrayList<>();
+
+        // when
+        for (int i = 0; i < 100_000; i++) {
+            ids.add(TimeOrderedIds.next().toString());
+        }
+
+        // then
+        // Note: the sequence overflows (more than 4096 ids per millisecond) several times here.
+        for (int i = 1; i < ids.size(); i++) {
+            Assert.assertTrue(ids.get(i - 1).compareTo(ids.get(i)) < 0);
+            Assert.assertTrue(compareUnsigned(TimeOrderedIds.toBytes(ids.get(i - 1)), TimeOrderedIds.toBytes(ids.get(i))) < 0);
+        }
+    }
+
+    @Test
+    public void id_layout_case() {
+
+        // given
+        long before = System.currentTimeMillis();
+
+        // when
+        UUID id = TimeOrderedIds.next();
+
+        // then
+        Assert.assertEquals(7, id.version());
+        Assert.assertEquals(2, id.variant());
+        Assert.assertTrue((id.getMostSignificantBits() >>> 16) >= before);
+        Assert.assertTrue((id.getMostSignificantBits() >>> 16) <= System.currentTimeMillis() + 1);
+    }
+
+    @Test
+    public void binary_round_trip_case() {
+
+        // given
+        String id = TimeOrderedIds.next().toString();
+        String randomId = UUID.randomUUID().toString();
+        UuidBinaryStringType type = new UuidBinaryStringType();
+
+        // when - then
+        Assert.assertEquals(id, TimeOrderedIds.fromBytes(TimeOrderedIds.toBytes(id)));
+        Assert.assertEquals(randomId, TimeOrderedIds.fromBytes(TimeOrderedIds.toBytes(randomId)));
+
+        byte[] bytes = type.getJavaTypeDescriptor().unwrap(id, byte[].class, null);
+        Assert.assertEquals(16, bytes.length);
+        Assert.assertEquals(id, type.getJavaTypeDescriptor().wrap(bytes, null));
+
+        Assert.assertTrue(TimeOrderedIds.isValid(id));
+        Assert.assertFalse(TimeOrderedIds.isValid(id.toUpperCase()));
+        Assert.assertFalse(TimeOrderedIds.isValid("not-an-id"));
+        Assert.assertFalse(TimeOrderedIds.isValid(null));
+    }
+
+    private static int compareUnsigned(byte[] left, byte[] right) {
+        for (int i = 0; i < left.length; i++) {
+            int result = Integer.compare(left[i] & 0xFF, right[i] & 0xFF);
+            if (result != 0) {
+                return result;
+            }
+        }
+        return 0;
+    }
+}
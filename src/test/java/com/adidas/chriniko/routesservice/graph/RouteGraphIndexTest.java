@@ -0,0 +1,238 @@
+package com.adidas.chriniko.routesservice.graph;
+
+import com.adidas.chriniko.routesservice.dto.CityInfo;
+import com.adidas.chriniko.routesservice.dto.RouteInfo;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+public class RouteGraphIndexTest {
+
+    private static final Instant T0 = Instant.parse("2019-03-10T10:00:00Z");
+
+    private final CityInfo athens = new CityInfo("Athens", "Greece");
+    private final CityInfo patra = new CityInfo("Patra", "Greece");
+    private final CityInfo larisa = new CityInfo("Larisa", "Greece");
+    private final CityInfo volos = new CityInfo("Volos", "Greece");
+
+    private RouteGraphIndex routeGraphIndex;
+
+    @Before
+    public void setUp() {
+        routeGraphIndex = new RouteGraphIndex(2);
+    }
+
+    @Test
+    public void earliest_arrival_respects_connections_case() {
+
+        // given
+        routeGraphIndex.load(Arrays.asList(
+                route("a-p", athens, patra, 0, 2),
+                route("p-v-missed", patra, volos, 1, 3),
+                route("p-v", patra, volos, 2, 6),
+                route("a-l", athens, larisa, 0, 1),
+                route("l-v", larisa, volos, 1, 4)
+        ));
+
+        // when
+        Optional<List<RouteInfo>> result = routeGraphIndex.earliestArrival(athens, volos, null);
+
+        // then
+        Assert.assertEquals(Arrays.asList("a-l", "l-v"), ids(result));
+        Assert.assertEquals(athens, result.get().get(0).getCity());
+        Assert.assertEquals(T0.plusSeconds(4 * 3600), result.get().get(1).getArrivalTime());
+
+        Assert.assertEquals(Collections.singletonList("p-v"), ids(routeGraphIndex.earliestArrival(patra, volos, T0.plusSeconds(2 * 3600))));
+        Assert.assertFalse(routeGraphIndex.earliestArrival(volos, athens, null).isPresent());
+        Assert.assertFalse(routeGraphIndex.earliestArrival(athens, new CityInfo("Sparti", "Greece"), null).isPresent());
+    }
+
+    @Test
+    public void fewest_hops_case() {
+
+        // given
+        routeGraphIndex.load(Arrays.asList(
+                route("a-p", athens, patra, 0, 1),
+                route("p-l", patra, larisa, 1, 2),
+                route("l-v", larisa, volos, 2, 3),
+                route("a-v-late", athens, volos, 5, 9),
+                route("a-v-later", athens, volos, 6, 8)
+        ));
+
+        // when - then
+        Assert.assertEquals(Arrays.asList("a-p", "p-l", "l-v"), ids(routeGraphIndex.earliestArrival(athens, volos, null)));
+        Assert.assertEquals(Collections.singletonList("a-v-later"), ids(routeGraphIndex.fewestHops(athens, volos, null)));
+        Assert.assertEquals(Arrays.asList("p-l", "l-v"), ids(routeGraphIndex.fewestHops(patra, volos, null)));
+        Assert.assertFalse(routeGraphIndex.fewestHops(patra, volos, T0.plusSeconds(2 * 3600)).isPresent());
+    }
+
+    @Test
+    public void profile_keeps_pareto_optimal_journeys_case() {
+
+        // given
+        routeGraphIndex.load(Arrays.asList(
+                route("a-v-slow", athens, volos, 0, 5),
+                route("a-l", athens, larisa, 1, 2),
+                route("l-v", larisa, volos, 2, 3),
+                route("a-v", athens, volos, 4, 6),
+                route("a-v-same-departure", athens, volos, 4, 7),
+                route("a-p", athens, patra, 5, 6),
+                route("p-v", patra, volos, 7, 9)
+        ));
+
+        // when
+        List<List<RouteInfo>> result = routeGraphIndex.profile(athens, volos, null, null);
+
+        // then
+        Assert.assertEquals(
+                Arrays.asList(Arrays.asList("a-l", "l-v"), Collections.singletonList("a-v"), Arrays.asList("a-p", "p-v")),
+                result.stream().map(legs -> ids(Optional.of(legs))).collect(Collectors.toList())
+        );
+
+        Assert.assertEquals(
+                Collections.singletonList(Collections.singletonList("a-v")),
+                routeGraphIndex.profile(athens, volos, T0.plusSeconds(2 * 3600), T0.plusSeconds(5 * 3600))
+                        .stream().map(legs -> ids(Optional.of(legs))).collect(Collectors.toList())
+        );
+        Assert.assertTrue(routeGraphIndex.profile(volos, athens, null, null).isEmpty());
+    }
+
+    @Test
+    public void incremental_updates_case() {
+
+        // given
+        routeGraphIndex.load(Arrays.asList(
+                route("a-p", athens, patra, 0, 1),
+                route("p-v", patra, volos, 1, 5)
+        ));
+
+        // when - then
+        routeGraphIndex.add(route("a-v", athens, volos, 0, 3));
+        Assert.assertEquals(Collections.singletonList("a-v"), ids(routeGraphIndex.earliestArrival(athens, volos, null)));
+
+        routeGraphIndex.update("a-v", athens, route("a-v", athens, larisa, 0, 3));
+        Assert.assertEquals(Arrays.asList("a-p", "p-v"), ids(routeGraphIndex.earliestArrival(athens, volos, null)));
+
+        routeGraphIndex.remove("p-v", patra);
+        Assert.assertFalse(routeGraphIndex.earliestArrival(athens, volos, null).isPresent());
+
+        // Note: this write compacts the graph (threshold of 2), which should not change the answers.
+        routeGraphIndex.add(route("l-v", larisa, volos, 3, 4));
+        Assert.assertEquals(Arrays.asList("a-v", "l-v"), ids(routeGraphIndex.earliestArrival(athens, volos, null)));
+        Assert.assertEquals(Arrays.asList("a-v", "l-v"), ids(routeGraphIndex.fewestHops(athens, volos, null)));
+    }
+
+    @Test
+    public void connections_of_overlay_writes_case() {
+
+        // given
+        routeGraphIndex = new RouteGraphIndex(100);
+        routeGraphIndex.load(Arrays.asList(
+                route("a-l", athens, larisa, 1, 2),
+                route("l-v", larisa, volos, 2, 3),
+                route("a-v", athens, volos, 4, 6)
+        ));
+
+        // when
+        routeGraphIndex.remove("l-v", larisa);
+        routeGraphIndex.add(route("l-v-late", larisa, volos, 3, 5));
+        routeGraphIndex.add(route("a-p", athens, patra, 2, 2));
+        routeGraphIndex.add(route("p-v", patra, volos, 2, 4));
+
+        // then
+        Assert.assertEquals(Arrays.asList("a-p", "p-v"), ids(routeGraphIndex.earliestArrival(athens, volos, null)));
+        Assert.assertEquals(
+                Arrays.asList(Arrays.asList("a-p", "p-v"), Collections.singletonList("a-v")),
+                routeGraphIndex.profile(athens, volos, null, null)
+                        .stream().map(legs -> ids(Optional.of(legs))).collect(Collectors.toList())
+        );
+
+        routeGraphIndex.remove("p-v", patra);
+        Assert.assertEquals(Arrays.asList("a-l", "l-v-late"), ids(routeGraphIndex.earliestArrival(athens, volos, null)));
+    }
+
+    @Test
+    public void add_all_case() {
+
+        // given
+        routeGraphIndex.load(Collections.singletonList(route("a-p", athens, patra, 0, 1)));
+
+        // when
+        routeGraphIndex.addAll(Arrays.asList(
+                route("p-v", patra, volos, 1, 5),
+                route("p-l", patra, larisa, 1, 2),
+                route("l-v", larisa, volos, 2, 3),
+                route("a-p", athens, patra, 0, 1)
+        ));
+
+        // then
+        Assert.assertEquals(Arrays.asList("a-p", "p-l", "l-v"), ids(routeGraphIndex.earliestArrival(athens, volos, null)));
+        Assert.assertEquals(Arrays.asList("a-p", "p-v"), ids(routeGraphIndex.fewestHops(athens, volos, null)));
+
+        routeGraphIndex.removeAll(Arrays.asList(
+                route("p-l", patra, larisa, 1, 2),
+                route("p-v", patra, volos, 1, 5),
+                route("s-v", new CityInfo("Sparti", "Greece"), volos, 1, 5)
+        ));
+        Assert.assertFalse(routeGraphIndex.earliestArrival(athens, volos, null).isPresent());
+    }
+
+    @Test
+    public void writes_during_load_are_replayed_case() {
+
+        // given
+        routeGraphIndex.beginLoad();
+
+        routeGraphIndex.add(route("a-v", athens, volos, 0, 3));
+        routeGraphIndex.remove("a-p", athens);
+
+        // when
+        routeGraphIndex.load(Arrays.asList(
+                route("a-p", athens, patra, 0, 1),
+                route("a-v", athens, volos, 0, 3)
+        ));
+
+        // then
+        Assert.assertTrue(routeGraphIndex.isLoaded());
+        Assert.assertEquals(Collections.singletonList("a-v"), ids(routeGraphIndex.earliestArrival(athens, volos, null)));
+        Assert.assertFalse(routeGraphIndex.earliestArrival(athens, patra, null).isPresent());
+    }
+
+    @Test
+    public void removes_of_not_yet_known_cities_during_load_are_replayed_case() {
+
+        // given
+        routeGraphIndex.beginLoad();
+
+        routeGraphIndex.remove("a-p", athens);
+        routeGraphIndex.removeAll(Collections.singletonList(route("l-v", larisa, volos, 0, 1)));
+
+        // when
+        routeGraphIndex.load(Arrays.asList(
+                route("a-p", athens, patra, 0, 1),
+                route("l-v", larisa, volos, 0, 1),
+                route("a-v", athens, volos, 0, 3)
+        ));
+
+        // then
+        Assert.assertEquals(Collections.singletonList("a-v"), ids(routeGraphIndex.earliestArrival(athens, volos, null)));
+        Assert.assertFalse(routeGraphIndex.earliestArrival(athens, patra, null).isPresent());
+        Assert.assertFalse(routeGraphIndex.earliestArrival(larisa, volos, null).isPresent());
+    }
+
+    private RouteInfo route(String id, CityInfo from, CityInfo to, int departureHour, int arrivalHour) {
+        return new RouteInfo(id, from, to, T0.plusSeconds(departureHour * 3600L), T0.plusSeconds(arrivalHour * 3600L));
+    }
+
+    private List<String> ids(Optional<List<RouteInfo>> legs) {
+        Assert.assertTrue(legs.isPresent());
+        return legs.get().stream().map(RouteInfo::getId).collect(Collectors.toList());
+    }
+}
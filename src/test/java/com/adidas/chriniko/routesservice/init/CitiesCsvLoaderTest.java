@@ -0,0 +1,53 @@
+package com.adidas.chriniko.routesservice.init;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+public class CitiesCsvLoaderTest {
+
+    @Test
+    public void same_as_processor_case() {
+
+        // given
+        CitiesCsvProcessor citiesCsvProcessor = new CitiesCsvProcessor();
+        ReflectionTestUtils.setField(citiesCsvProcessor, "displayParsingInfo", false);
+
+        Map<String, List<String>> expected = citiesCsvProcessor.getCitiesByCountry();
+
+        // when
+        Map<String, List<String>> citiesByCountry = new CitiesCsvLoader().load().citiesByCountry();
+
+        // then
+        Assert.assertEquals(new ArrayList<>(expected.keySet()), new ArrayList<>(citiesByCountry.keySet()));
+        expected.forEach((country, cities) -> Assert.assertEquals(cities, citiesByCountry.get(country)));
+    }
+
+    @Test
+    public void quoted_fields_and_interning_case() throws IOException {
+
+        // given
+        String csv = "\"city\",\"city_ascii\",\"lat\",\"lng\",\"country\",\"iso2\"\r\n"
+                + "\"São Paulo\",\"Sao Paulo\",\"-23.5\",\"-46.6\",\"Brazil\",\"BR\"\r\n"
+                + "x,\"Say \"\"Hi\"\", Town\",1,2,Brazil,BR\r\n"
+                + "\"Paris\",Paris,\"48.8\",\"2.3\",\"France\",\"\"\r\n"
+                + "\"Paris\",\"Paris\",\"33.6\",\"-95.5\",\"United States\",\"US\"";
+
+        // when
+        CityTables cityTables = CitiesCsvLoader.load(new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)));
+
+        // then
+        Assert.assertEquals(3, cityTables.countries());
+        Assert.assertEquals(Arrays.asList("Brazil", "France", "United States"), new ArrayList<>(cityTables.citiesByCountry().keySet()));
+        Assert.assertEquals(Arrays.asList("Sao Paulo", "Say \"Hi\", Town"), cityTables.cities(0));
+        Assert.assertSame(cityTables.cities(1).get(0), cityTables.cities(2).get(0));
+    }
+}
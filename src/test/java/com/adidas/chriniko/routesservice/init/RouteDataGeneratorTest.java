@@ -0,0 +1,44 @@
+package com.adidas.chriniko.routesservice.init;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+
+public class RouteDataGeneratorTest {
+
+    @Test
+    public void itineraries_configuration_holds_generation_date_case() {
+
+        // given
+        RouteDataGenerator routeDataGenerator = new RouteDataGenerator();
+        ReflectionTestUtils.setField(routeDataGenerator, "targetRoutes", 0L);
+
+        LocalDate before = LocalDate.now(ZoneOffset.UTC);
+
+        // when
+        String configuration = routeDataGenerator.configuration();
+
+        // then
+        LocalDate after = LocalDate.now(ZoneOffset.UTC);
+        Assert.assertTrue(configuration.endsWith(",generated-on=" + before) || configuration.endsWith(",generated-on=" + after));
+    }
+
+    @Test
+    public void synthetic_configuration_does_not_depend_on_generation_date_case() {
+
+        // given
+        RouteDataGenerator routeDataGenerator = new RouteDataGenerator();
+        ReflectionTestUtils.setField(routeDataGenerator, "targetRoutes", 1000L);
+        ReflectionTestUtils.setField(routeDataGenerator, "departuresFrom", "2019-01-01T00:00:00Z");
+
+        // when
+        String configuration = routeDataGenerator.configuration();
+
+        // then
+        Assert.assertFalse(configuration.contains("generated-on"));
+        Assert.assertTrue(configuration.contains(",departures-from=2019-01-01T00:00:00Z"));
+    }
+}
@@ -0,0 +1,168 @@
+package com.adidas.chriniko.routesservice.init;
+
+import com.adidas.chriniko.routesservice.entity.RouteEntity;
+import com.adidas.chriniko.routesservice.error.ProcessingException;
+import com.adidas.chriniko.routesservice.repository.RouteRepository;
+import com.codahale.metrics.Meter;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+@RunWith(MockitoJUnitRunner.class)
+public class RouteGeneratorTest {
+
+    @Mock
+    private RouteRepository routeRepository;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    @Mock
+    private RouteDataGenerator routeDataGenerator;
+
+    @Mock
+    private RouteLoadDataWriter routeLoadDataWriter;
+
+    @Mock
+    private RouteSnapshot routeSnapshot;
+
+    private Meter seededRoutes;
+
+    private final Map<String, List<String>> citiesByCountry = Collections.singletonMap("Greece", new ArrayList<>());
+
+    @Before
+    public void setUp() {
+        seededRoutes = new Meter();
+
+        Mockito.when(transactionTemplate.execute(Mockito.any()))
+                .then(invocationOnMock -> invocationOnMock.<TransactionCallback<?>>getArgument(0).doInTransaction(null));
+    }
+
+    @Test
+    public void generate_stores_every_chunk_case() {
+
+        // given
+        RouteGenerator routeGenerator = new RouteGenerator(routeRepository, transactionTemplate, routeDataGenerator, routeLoadDataWriter, routeSnapshot, seededRoutes, "batch", 8, 3, 10, 1000, 2);
+
+        emitChunks(20, 10);
+
+        final Set<String> storingThreads = ConcurrentHashMap.newKeySet();
+        Mockito.doAnswer(invocationOnMock -> storingThreads.add(Thread.currentThread().getName()))
+                .when(routeRepository).batchInsert(Mockito.anyList());
+
+        // when
+        long stored = routeGenerator.generate(() -> citiesByCountry);
+
+        // then
+        Assert.assertEquals(200, stored);
+        Assert.assertEquals(200, seededRoutes.getCount());
+        Mockito.verify(routeRepository, Mockito.times(20)).batchInsert(Mockito.anyList());
+
+        // Note: the workers are bounded by the connection pool size.
+        Assert.assertTrue(storingThreads.size() <= 3);
+    }
+
+    @Test
+    public void generate_stops_on_store_failure_case() {
+
+        // given
+        RouteGenerator routeGenerator = new RouteGenerator(routeRepository, transactionTemplate, routeDataGenerator, routeLoadDataWriter, routeSnapshot, seededRoutes, "batch", 2, 12, 10, 1000, 1);
+
+        final AtomicInteger emitted = emitChunks(1000, 10);
+
+        Mockito.doThrow(new IllegalStateException("db is down"))
+                .when(routeRepository).batchInsert(Mockito.anyList());
+
+        // when - then
+        try {
+            routeGenerator.generate(() -> citiesByCountry);
+            Assert.fail();
+        } catch (ProcessingException expected) {
+            Assert.assertEquals(0, seededRoutes.getCount());
+            Assert.assertTrue(emitted.get() < 1000);
+        }
+    }
+
+    @Test
+    public void generate_with_load_data_case() {
+
+        // given
+        RouteGenerator routeGenerator = new RouteGenerator(routeRepository, transactionTemplate, routeDataGenerator, routeLoadDataWriter, routeSnapshot, seededRoutes, RouteGenerator.LOAD_DATA_MODE, 2, 12, 10, 1000, 2);
+
+        emitChunks(5, 1000);
+
+        // when
+        long stored = routeGenerator.generate(() -> citiesByCountry);
+
+        // then
+        Assert.assertEquals(5000, stored);
+        Mockito.verify(routeDataGenerator).generate(Mockito.eq(citiesByCountry), Mockito.eq(1000), Mockito.any());
+        Mockito.verify(routeLoadDataWriter, Mockito.times(5)).load(Mockito.anyList());
+        Mockito.verifyZeroInteractions(routeRepository);
+    }
+
+    @Test
+    public void generate_from_fresh_snapshot_case() {
+
+        // given
+        RouteGenerator routeGenerator = new RouteGenerator(routeRepository, transactionTemplate, routeDataGenerator, routeLoadDataWriter, routeSnapshot, seededRoutes, "batch", 2, 12, 10, 1000, 2);
+
+        byte[] fingerprint = {1, 2, 3};
+        Mockito.when(routeSnapshot.isEnabled()).thenReturn(true);
+        Mockito.when(routeDataGenerator.configuration()).thenReturn("seed=42");
+        Mockito.when(routeSnapshot.fingerprint("seed=42")).thenReturn(fingerprint);
+        Mockito.when(routeSnapshot.isFresh(fingerprint)).thenReturn(true);
+        Mockito.when(routeSnapshot.read(Mockito.eq(10), Mockito.any())).then(invocationOnMock -> {
+            Consumer<List<RouteEntity>> chunkConsumer = invocationOnMock.getArgument(1);
+            chunkConsumer.accept(Collections.singletonList(new RouteEntity("Athens", "Greece", "Patra", "Greece", Instant.now(), Instant.now())));
+            return 1L;
+        });
+
+        // when
+        long stored = routeGenerator.generate(() -> {
+            throw new AssertionError("cities should not be parsed");
+        });
+
+        // then
+        Assert.assertEquals(1, stored);
+        Mockito.verify(routeDataGenerator, Mockito.never()).generate(Mockito.any(), Mockito.anyInt(), Mockito.any());
+        Mockito.verify(routeRepository).batchInsert(Mockito.anyList());
+    }
+
+    private AtomicInteger emitChunks(int chunks, int chunkSize) {
+        final AtomicInteger emitted = new AtomicInteger();
+
+        Mockito.when(routeDataGenerator.generate(Mockito.eq(citiesByCountry), Mockito.anyInt(), Mockito.any()))
+                .then(invocationOnMock -> {
+                    Consumer<List<RouteEntity>> chunkConsumer = invocationOnMock.getArgument(2);
+
+                    for (int i = 0; i < chunks; i++) {
+                        List<RouteEntity> chunk = new ArrayList<>(chunkSize);
+                        for (int j = 0; j < chunkSize; j++) {
+                            chunk.add(new RouteEntity("Athens", "Greece", "Patra", "Greece", Instant.now(), Instant.now()));
+                        }
+                        chunkConsumer.accept(chunk);
+                        emitted.incrementAndGet();
+                    }
+                    return 0;
+                });
+
+        return emitted;
+    }
+}
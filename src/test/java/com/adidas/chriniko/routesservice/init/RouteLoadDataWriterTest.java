@@ -0,0 +1,45 @@
+package com.adidas.chriniko.routesservice.init;
+
+import com.adidas.chriniko.routesservice.entity.RouteEntity;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.Collections;
+
+public class RouteLoadDataWriterTest {
+
+    @Test
+    public void encode_case() {
+
+        // given
+        Instant departureTime = Instant.parse("2019-03-01T10:15:30Z");
+        Instant arrivalTime = Instant.parse("2019-03-01T12:15:30Z");
+
+        RouteEntity route = new RouteEntity("Athens", "Greece", "Ta\tb\\c\nd", "Greece", departureTime, arrivalTime);
+        route.setUpdatedBy(null);
+
+        // when
+        String tsv = new String(RouteLoadDataWriter.encode(Collections.singletonList(route)), StandardCharsets.UTF_8);
+
+        // then
+        Assert.assertEquals(
+                route.getId()
+                        + "\t" + route.getCreatedBy()
+                        + "\t" + Timestamp.from(route.getCreatedDate())
+                        + "\t\\N"
+                        + "\t" + Timestamp.from(route.getUpdatedDate())
+                        + "\t0"
+                        + "\t" + Timestamp.from(arrivalTime)
+                        + "\t" + Timestamp.from(departureTime)
+                        + "\tTa\\tb\\\\c\\nd"
+                        + "\tGreece"
+                        + "\tAthens"
+                        + "\tGreece"
+                        + "\n",
+                tsv
+        );
+    }
+}
@@ -0,0 +1,105 @@
+package com.adidas.chriniko.routesservice.init;
+
+import com.adidas.chriniko.routesservice.entity.RouteEntity;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+public class RouteSnapshotTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private File snapshotFile;
+    private RouteSnapshot routeSnapshot;
+
+    @Before
+    public void setUp() {
+        snapshotFile = new File(temporaryFolder.getRoot(), "snapshots/routes.snapshot");
+        routeSnapshot = new RouteSnapshot(true, snapshotFile.getPath());
+    }
+
+    @Test
+    public void write_read_case() {
+
+        // given
+        byte[] fingerprint = routeSnapshot.fingerprint("seed=42");
+        List<RouteEntity> routes = routes(2 * SyntheticRoutes.BLOCK_SIZE);
+
+        // when
+        try (RouteSnapshot.Writer writer = routeSnapshot.writer(fingerprint)) {
+            writer.write(routes.subList(0, 1000));
+            writer.write(routes.subList(1000, routes.size()));
+            writer.commit();
+        }
+
+        final List<List<RouteEntity>> chunks = new ArrayList<>();
+        long read = routeSnapshot.read(3000, chunks::add);
+
+        // then
+        Assert.assertTrue(routeSnapshot.isFresh(fingerprint));
+        Assert.assertFalse(routeSnapshot.isFresh(routeSnapshot.fingerprint("seed=43")));
+
+        Assert.assertEquals(routes.size(), read);
+        Assert.assertEquals(Arrays.asList(3000, 3000, 2192), chunks.stream().map(List::size).collect(Collectors.toList()));
+        Assert.assertEquals(
+                describe(routes),
+                describe(chunks.stream().flatMap(List::stream).collect(Collectors.toList()))
+        );
+    }
+
+    @Test
+    public void uncommitted_writer_case() {
+
+        // given
+        byte[] fingerprint = routeSnapshot.fingerprint("seed=42");
+
+        // when
+        try (RouteSnapshot.Writer writer = routeSnapshot.writer(fingerprint)) {
+            writer.write(routes(10));
+        }
+
+        // then
+        Assert.assertFalse(routeSnapshot.isFresh(fingerprint));
+        Assert.assertFalse(snapshotFile.exists());
+        Assert.assertEquals(Collections.emptyList(), Arrays.asList(snapshotFile.getParentFile().list()));
+    }
+
+    private static List<RouteEntity> routes(long targetRoutes) {
+        final Map<String, List<String>> citiesByCountry = new LinkedHashMap<>();
+        citiesByCountry.put("Greece", Arrays.asList("Athens", "Patra", "Thessaloniki"));
+        citiesByCountry.put("Deutschland", Arrays.asList("Berlin", "München", "Köln"));
+
+        final SyntheticRoutes syntheticRoutes = new SyntheticRoutes(citiesByCountry, 42, 2, 1.0, Instant.parse("2019-01-01T00:00:00Z"), 30);
+
+        final List<RouteEntity> routes = new ArrayList<>();
+        for (long block = 0; block < SyntheticRoutes.blocks(targetRoutes); block++) {
+            routes.addAll(syntheticRoutes.block(block, targetRoutes));
+        }
+        return routes;
+    }
+
+    private static List<String> describe(List<RouteEntity> routes) {
+        return routes.stream()
+                .map(route -> String.join("|",
+                        route.getId(),
+                        route.getOriginCityName(), route.getOriginCountry(),
+                        route.getDestinyCityName(), route.getDestinyCountry(),
+                        route.getDepartureTime().toString(), route.getArrivalTime().toString(),
+                        route.getCreatedBy(), route.getCreatedDate().toString(),
+                        route.getUpdatedBy(), route.getUpdatedDate().toString()))
+                .collect(Collectors.toList());
+    }
+}
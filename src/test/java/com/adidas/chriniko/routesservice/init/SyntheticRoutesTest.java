@@ -0,0 +1,125 @@
+package com.adidas.chriniko.routesservice.init;
+
+import com.adidas.chriniko.routesservice.entity.RouteEntity;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+public class SyntheticRoutesTest {
+
+    private static final Instant DEPARTURES_FROM = Instant.parse("2019-01-01T00:00:00Z");
+
+    @Test
+    public void same_seed_same_routes_case() {
+
+        // given
+        SyntheticRoutes syntheticRoutes = syntheticRoutes(42, 1.0);
+        SyntheticRoutes otherSyntheticRoutes = syntheticRoutes(42, 1.0);
+
+        long targetRoutes = 3 * SyntheticRoutes.BLOCK_SIZE + 5;
+
+        // when - blocks in reverse order on the other
+        List<String> routes = describe(syntheticRoutes, targetRoutes, false);
+        List<String> otherRoutes = describe(otherSyntheticRoutes, targetRoutes, true);
+
+        // then
+        Assert.assertEquals(targetRoutes, routes.size());
+        Assert.assertEquals(routes, otherRoutes);
+        Assert.assertNotEquals(routes, describe(syntheticRoutes(43, 1.0), targetRoutes, false));
+    }
+
+    @Test
+    public void routes_case() {
+
+        // given
+        SyntheticRoutes syntheticRoutes = syntheticRoutes(42, 1.0);
+
+        // when
+        List<RouteEntity> routes = syntheticRoutes.block(0, SyntheticRoutes.BLOCK_SIZE);
+
+        // then
+        Map<String, Set<String>> destiniesByOrigin = new HashMap<>();
+        for (RouteEntity route : routes) {
+            Assert.assertNotEquals(route.getOriginCityName(), route.getDestinyCityName());
+            Assert.assertEquals(route.getOriginCountry(), route.getDestinyCountry());
+            Assert.assertFalse(route.getDepartureTime().isBefore(DEPARTURES_FROM));
+            Assert.assertTrue(route.getArrivalTime().isAfter(route.getDepartureTime()));
+
+            destiniesByOrigin.computeIfAbsent(route.getOriginCityName(), origin -> new HashSet<>()).add(route.getDestinyCityName());
+        }
+
+        // Note: at most fan-out destinations per origin.
+        destiniesByOrigin.values().forEach(destinies -> Assert.assertTrue(destinies.size() <= 3));
+
+        // Note: ids follow the route order.
+        List<String> ids = routes.stream().map(RouteEntity::getId).collect(Collectors.toList());
+        Assert.assertEquals(ids.stream().sorted().collect(Collectors.toList()), ids);
+    }
+
+    @Test
+    public void zipf_skew_case() {
+
+        // given
+        long targetRoutes = 4 * SyntheticRoutes.BLOCK_SIZE;
+
+        // when
+        long skewedTopOrigin = topOriginRoutes(syntheticRoutes(42, 1.2), targetRoutes);
+        long uniformTopOrigin = topOriginRoutes(syntheticRoutes(42, 0), targetRoutes);
+
+        // then - 200 cities, uniform is about 80 routes per origin
+        Assert.assertTrue(skewedTopOrigin > 3000);
+        Assert.assertTrue(uniformTopOrigin < 200);
+    }
+
+    private static SyntheticRoutes syntheticRoutes(long seed, double zipfExponent) {
+        final Map<String, List<String>> citiesByCountry = new LinkedHashMap<>();
+        for (int country = 0; country < 10; country++) {
+            final int c = country;
+            citiesByCountry.put("country-" + c, IntStream.range(0, 20).mapToObj(city -> "city-" + c + "-" + city).collect(Collectors.toList()));
+        }
+        return new SyntheticRoutes(citiesByCountry, seed, 3, zipfExponent, DEPARTURES_FROM, 30);
+    }
+
+    private static List<String> describe(SyntheticRoutes syntheticRoutes, long targetRoutes, boolean reverse) {
+        final int blocks = (int) SyntheticRoutes.blocks(targetRoutes);
+
+        final List<RouteEntity>[] routesByBlock = new List[blocks];
+        for (int i = 0; i < blocks; i++) {
+            final int block = reverse ? blocks - 1 - i : i;
+            routesByBlock[block] = syntheticRoutes.block(block, targetRoutes);
+        }
+
+        final List<String> routes = new ArrayList<>();
+        Arrays.stream(routesByBlock)
+                .flatMap(List::stream)
+                .map(route -> String.join("|", route.getId(), route.getOriginCityName(), route.getDestinyCityName(),
+                        route.getDepartureTime().toString(), route.getArrivalTime().toString(), route.getCreatedDate().toString()))
+                .forEach(routes::add);
+        return routes;
+    }
+
+    private static long topOriginRoutes(SyntheticRoutes syntheticRoutes, long targetRoutes) {
+        final List<RouteEntity> routes = new ArrayList<>();
+        for (long block = 0; block < SyntheticRoutes.blocks(targetRoutes); block++) {
+            routes.addAll(syntheticRoutes.block(block, targetRoutes));
+        }
+        return routes.stream()
+                .collect(Collectors.groupingBy(RouteEntity::getOriginCityName, Collectors.counting()))
+                .values()
+                .stream()
+                .max(Long::compare)
+                .orElse(0L);
+    }
+}
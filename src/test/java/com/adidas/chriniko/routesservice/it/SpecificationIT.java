@@ -132,7 +132,7 @@ public class SpecificationIT {
                 .atMost(10, TimeUnit.SECONDS)
                 .untilAsserted(() -> {
                     assertNotNull(routeRepository.find(resultFromCreateNewRouteInfo.getId()));
-                    assertNull(cityInfoToRouteInfosCache.opsForValue().get(originCityInfo));
+                    assertTrue(cityInfoToRouteInfosCache.opsForHash().values(originCityInfo).isEmpty());
                 });
 
 
@@ -162,7 +162,7 @@ public class SpecificationIT {
 
         Awaitility.await().atMost(10, TimeUnit.SECONDS)
                 .untilAsserted(() -> {
-                    assertNotNull(cityInfoToRouteInfosCache.opsForValue().get(originCityInfo));
+                    assertFalse(cityInfoToRouteInfosCache.opsForHash().values(originCityInfo).isEmpty());
                 });
 
 
@@ -250,7 +250,7 @@ public class SpecificationIT {
                             resultUpdate.getCity().getName(),
                             resultUpdate.getCity().getCountry());
 
-                    List<RouteInfo> cityInfoToRouteInfosCacheResult = cityInfoToRouteInfosCache.opsForValue().get(cityInfo);
+                    List<RouteInfo> cityInfoToRouteInfosCacheResult = cityInfoToRouteInfosCache.<String, RouteInfo>opsForHash().values(cityInfo);
                     assertTrue(cityInfoToRouteInfosCacheResult.contains(resultUpdate));
 
                     Set<CityInfo> k1 = cityInfoToRouteInfosCache.opsForValue().getOperations().keys(new CityInfo("*", "*"));
@@ -294,7 +294,7 @@ public class SpecificationIT {
 
                     assertNull(routeIdToRouteInfoCache.opsForValue().get(resultDelete.getId()));
 
-                    assertNull(cityInfoToRouteInfosCache.opsForValue().get(resultDelete.getCity()));
+                    assertTrue(cityInfoToRouteInfosCache.opsForHash().values(resultDelete.getCity()).isEmpty());
 
                 });
 
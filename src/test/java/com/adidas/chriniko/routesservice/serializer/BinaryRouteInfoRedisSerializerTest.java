@@ -0,0 +1,89 @@
+package com.adidas.chriniko.routesservice.serializer;
+
+import com.adidas.chriniko.routesservice.dto.CityInfo;
+import com.adidas.chriniko.routesservice.dto.RouteInfo;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class BinaryRouteInfoRedisSerializerTest {
+
+    private RouteInfoRedisSerializer routeInfoRedisSerializer;
+    private ListRouteInfoRedisSerializer listRouteInfoRedisSerializer;
+
+    private BinaryRouteInfoRedisSerializer binaryRouteInfoRedisSerializer;
+    private BinaryListRouteInfoRedisSerializer binaryListRouteInfoRedisSerializer;
+
+    @Before
+    public void setUp() {
+        ObjectMapper objectMapper = new ObjectMapper()
+                .registerModule(new JavaTimeModule())
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+
+        routeInfoRedisSerializer = new RouteInfoRedisSerializer(objectMapper);
+        listRouteInfoRedisSerializer = new ListRouteInfoRedisSerializer(objectMapper);
+
+        binaryRouteInfoRedisSerializer = new BinaryRouteInfoRedisSerializer(routeInfoRedisSerializer);
+        binaryListRouteInfoRedisSerializer = new BinaryListRouteInfoRedisSerializer(listRouteInfoRedisSerializer);
+    }
+
+    @Test
+    public void list_round_trip_works_as_expected_and_is_smaller_than_json() {
+
+        // given
+        CityInfo origin = new CityInfo("Athens", "Greece");
+        List<RouteInfo> routeInfos = Arrays.asList(
+                routeInfo(UUID.randomUUID().toString(), origin, new CityInfo("Thessaloniki", "Greece")),
+                routeInfo("not-a-uuid", origin, new CityInfo("Madrid", "Spain")),
+                new RouteInfo(null, origin, null, Instant.ofEpochSecond(-5, 7), null)
+        );
+
+        // when
+        byte[] binary = binaryListRouteInfoRedisSerializer.serialize(routeInfos);
+
+        // then
+        assertEquals(routeInfos, binaryListRouteInfoRedisSerializer.deserialize(binary));
+        assertTrue(binary.length < listRouteInfoRedisSerializer.serialize(routeInfos).length / 2);
+    }
+
+    @Test
+    public void single_round_trip_works_as_expected() {
+
+        // given
+        RouteInfo routeInfo = routeInfo(UUID.randomUUID().toString(), new CityInfo("Athens", "Greece"), new CityInfo("Ελευσίνα", "Greece"));
+
+        // when - then
+        assertEquals(routeInfo, binaryRouteInfoRedisSerializer.deserialize(binaryRouteInfoRedisSerializer.serialize(routeInfo)));
+    }
+
+    @Test
+    public void reads_fall_back_to_json() {
+
+        // given
+        RouteInfo routeInfo = routeInfo(UUID.randomUUID().toString(), new CityInfo("Athens", "Greece"), new CityInfo("Madrid", "Spain"));
+        List<RouteInfo> routeInfos = Arrays.asList(routeInfo, routeInfo);
+
+        // when - then
+        assertEquals(routeInfo, binaryRouteInfoRedisSerializer.deserialize(routeInfoRedisSerializer.serialize(routeInfo)));
+        assertEquals(routeInfos, binaryListRouteInfoRedisSerializer.deserialize(listRouteInfoRedisSerializer.serialize(routeInfos)));
+    }
+
+    private RouteInfo routeInfo(String id, CityInfo origin, CityInfo destiny) {
+        Instant departureTime = Instant.now();
+        long timeToArrive = TimeUnit.SECONDS.convert(2, TimeUnit.HOURS);
+        Instant arrivalTime = departureTime.plusSeconds(timeToArrive);
+
+        return new RouteInfo(id, origin, destiny, departureTime, arrivalTime);
+    }
+}
@@ -0,0 +1,110 @@
+package com.adidas.chriniko.routesservice.serializer;
+
+import com.adidas.chriniko.routesservice.dto.CityInfo;
+import com.adidas.chriniko.routesservice.dto.RouteInfo;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Timer;
+import com.codahale.metrics.UniformReservoir;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.zip.Deflater;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class CompressingRedisSerializerTest {
+
+    private ListRouteInfoRedisSerializer listRouteInfoRedisSerializer;
+
+    private Timer compressionTime;
+    private Timer decompressionTime;
+    private Histogram compressionRatio;
+
+    private CompressingRedisSerializer<List<RouteInfo>> compressingRedisSerializer;
+
+    @Before
+    public void setUp() {
+        ObjectMapper objectMapper = new ObjectMapper()
+                .registerModule(new JavaTimeModule())
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+
+        listRouteInfoRedisSerializer = new ListRouteInfoRedisSerializer(objectMapper);
+
+        compressionTime = new Timer();
+        decompressionTime = new Timer();
+        compressionRatio = new Histogram(new UniformReservoir());
+
+        compressingRedisSerializer = new CompressingRedisSerializer<>(
+                listRouteInfoRedisSerializer, 1024, Deflater.BEST_SPEED, compressionTime, decompressionTime, compressionRatio);
+    }
+
+    @Test
+    public void values_above_threshold_are_compressed() {
+
+        // given
+        List<RouteInfo> routeInfos = routeInfos(50);
+
+        // when
+        byte[] bytes = compressingRedisSerializer.serialize(routeInfos);
+
+        // then
+        assertEquals(CompressingRedisSerializer.DEFLATE_HEADER, bytes[0]);
+        assertTrue(bytes.length < listRouteInfoRedisSerializer.serialize(routeInfos).length);
+        assertEquals(routeInfos, compressingRedisSerializer.deserialize(bytes));
+
+        assertEquals(1, compressionTime.getCount());
+        assertEquals(1, decompressionTime.getCount());
+        assertEquals(1, compressionRatio.getCount());
+        assertTrue(compressionRatio.getSnapshot().getMax() < 100);
+    }
+
+    @Test
+    public void values_below_threshold_are_stored_as_they_are() {
+
+        // given
+        List<RouteInfo> routeInfos = routeInfos(1);
+
+        // when
+        byte[] bytes = compressingRedisSerializer.serialize(routeInfos);
+
+        // then
+        assertArrayEquals(listRouteInfoRedisSerializer.serialize(routeInfos), bytes);
+        assertEquals(routeInfos, compressingRedisSerializer.deserialize(bytes));
+        assertEquals(0, compressionTime.getCount());
+        assertEquals(0, decompressionTime.getCount());
+    }
+
+    @Test
+    public void reads_uncompressed_values() {
+
+        // given
+        List<RouteInfo> routeInfos = routeInfos(50);
+        byte[] uncompressed = listRouteInfoRedisSerializer.serialize(routeInfos);
+
+        // when - then
+        assertEquals(routeInfos, compressingRedisSerializer.deserialize(uncompressed));
+        assertEquals(Collections.emptyList(), compressingRedisSerializer.deserialize(listRouteInfoRedisSerializer.serialize(Collections.emptyList())));
+    }
+
+    private List<RouteInfo> routeInfos(int noOfRoutes) {
+        CityInfo origin = new CityInfo("Athens", "Greece");
+
+        List<RouteInfo> routeInfos = new ArrayList<>(noOfRoutes);
+        for (int i = 0; i < noOfRoutes; i++) {
+            Instant departureTime = Instant.now();
+            routeInfos.add(new RouteInfo(UUID.randomUUID().toString(), origin, new CityInfo("Destiny " + (i % 5), "Greece"),
+                    departureTime, departureTime.plusSeconds(7200)));
+        }
+        return routeInfos;
+    }
+}
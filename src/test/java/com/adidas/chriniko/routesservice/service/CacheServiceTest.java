@@ -1,8 +1,16 @@
 package com.adidas.chriniko.routesservice.service;
 
+import com.adidas.chriniko.routesservice.configuration.RedisConfiguration;
 import com.adidas.chriniko.routesservice.dto.CityInfo;
 import com.adidas.chriniko.routesservice.dto.RouteInfo;
+import com.adidas.chriniko.routesservice.init.RoutesSeededEvent;
+import com.adidas.chriniko.routesservice.serializer.BinaryRouteInfoRedisSerializer;
+import com.adidas.chriniko.routesservice.serializer.CacheKeyNamespace;
+import com.adidas.chriniko.routesservice.serializer.RouteInfoBinaryCodec;
 import com.codahale.metrics.Meter;
+import com.codahale.metrics.Timer;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import org.javatuples.Pair;
 import org.junit.Before;
 import org.junit.Test;
@@ -10,17 +18,36 @@ import org.junit.runner.RunWith;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.HashOperations;
+import org.springframework.data.redis.core.RedisCallback;
 import org.springframework.data.redis.core.RedisOperations;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ScanOptions;
 import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.StringRedisSerializer;
+import reactor.core.publisher.Mono;
 import reactor.test.StepVerifier;
 
+import java.nio.charset.StandardCharsets;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.UUID;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.*;
 
 @RunWith(MockitoJUnitRunner.class)
@@ -32,10 +59,22 @@ public class CacheServiceTest {
     private ValueOperations<CityInfo, List<RouteInfo>> cityInfoToRouteInfosValueOps;
     @Mock
     private RedisOperations<CityInfo, List<RouteInfo>> cityInfoRouteInfosRedisOperations;
+    @Mock
+    private HashOperations<CityInfo, String, RouteInfo> cityInfoToRouteInfosHashOps;
 
     @Mock
     private RedisTemplate<String, RouteInfo> routeIdToRouteInfo;
     @Mock
+    private RedisTemplate<CityInfo, List<RouteInfo>> cityInfoToRoutePages;
+    @Mock
+    private RedisTemplate<CityInfo, String> cityInfoToDepartures;
+    @Mock
+    private ZSetOperations<CityInfo, String> cityInfoToDeparturesZSetOps;
+    @Mock
+    private RedisTemplate<CityInfo, List<RouteInfo>> cityInfoToInboundRoutes;
+    @Mock
+    private ValueOperations<CityInfo, List<RouteInfo>> cityInfoToInboundRoutesValueOps;
+    @Mock
     private ValueOperations<String, RouteInfo> routeIdToRouteInfoValueOps;
     @Mock
     private RedisOperations<String, RouteInfo> routeIdToRouteInfoRedisOperations;
@@ -49,22 +88,142 @@ public class CacheServiceTest {
     @Mock
     private Meter cacheMissFindByRouteId;
 
+    @Mock
+    private Meter nearCacheHitFindByCityInfo;
+    @Mock
+    private Meter nearCacheMissFindByCityInfo;
+    @Mock
+    private Meter nearCacheHitFindByRouteId;
+    @Mock
+    private Meter nearCacheMissFindByRouteId;
+
+    @Mock
+    private Meter cacheHitFindByDestiny;
+    @Mock
+    private Meter cacheMissFindByDestiny;
+
+    private Timer loadFindByCityInfo;
+    private Meter staleHitFindByCityInfo;
+    private Meter earlyRefreshFindByCityInfo;
+
+    private Cache<CityInfo, List<RouteInfo>> nearCacheCityInfoToRouteInfos;
+    private Cache<String, RouteInfo> nearCacheRouteIdToRouteInfo;
+
+    private CacheKeyNamespace cacheKeyNamespace;
+    private JedisCacheBackend jedisCacheBackend;
+
     private CacheService cacheService;
 
     @Before
     public void setUp() {
         MockitoAnnotations.initMocks(this);
 
+        nearCacheCityInfoToRouteInfos = Caffeine.newBuilder().maximumSize(100).build();
+        nearCacheRouteIdToRouteInfo = Caffeine.newBuilder().maximumSize(100).build();
+
+        loadFindByCityInfo = new Timer();
+        staleHitFindByCityInfo = new Meter();
+        earlyRefreshFindByCityInfo = new Meter();
+
+        cacheKeyNamespace = new CacheKeyNamespace();
+        jedisCacheBackend = new JedisCacheBackend(cityInfoToRouteInfos, routeIdToRouteInfo, cityInfoToRoutePages, cityInfoToDepartures,
+                cityInfoToInboundRoutes, new RedisConfiguration().departureWindowScript(), new RedisConfiguration().cityUpsertScript(),
+                new RedisConfiguration().cityReplaceScript(), cacheKeyNamespace, 3600, 2);
+
         cacheService = new CacheService(
-                cityInfoToRouteInfos,
-                routeIdToRouteInfo,
+                jedisCacheBackend,
+                nearCacheCityInfoToRouteInfos,
+                nearCacheRouteIdToRouteInfo,
                 cacheHitFindByCityInfo,
                 cacheMissFindByCityInfo,
                 cacheHitFindByRouteId,
-                cacheMissFindByRouteId
+                cacheMissFindByRouteId,
+                nearCacheHitFindByCityInfo,
+                nearCacheMissFindByCityInfo,
+                nearCacheHitFindByRouteId,
+                nearCacheMissFindByRouteId,
+                new Timer(),
+                new Timer(),
+                loadFindByCityInfo,
+                new Timer(),
+                staleHitFindByCityInfo,
+                new Meter(),
+                earlyRefreshFindByCityInfo,
+                new Meter(),
+                new Meter(),
+                new Meter(),
+                cacheHitFindByDestiny,
+                cacheMissFindByDestiny,
+                new Timer(),
+                300,
+                1.0
         );
     }
 
+    @Test
+    public void get_inbound_works_as_expected_hit_and_miss_case() {
+
+        // given
+        CityInfo cachedCityInfo = new CityInfo("cached city", "cached country");
+        CityInfo missedCityInfo = new CityInfo("missed city", "missed country");
+
+        RouteInfo routeInfo = new RouteInfo(UUID.randomUUID().toString(), new CityInfo("origin city", "origin country"),
+                cachedCityInfo, Instant.now(), Instant.now().plusSeconds(3600));
+
+        when(cityInfoToInboundRoutes.opsForValue()).thenReturn(cityInfoToInboundRoutesValueOps);
+        when(cityInfoToInboundRoutesValueOps.get(cachedCityInfo)).thenReturn(Collections.singletonList(routeInfo));
+        when(cityInfoToInboundRoutesValueOps.get(missedCityInfo)).thenReturn(null);
+
+        // when - then
+        StepVerifier
+                .create(cacheService.getInbound(cachedCityInfo))
+                .expectNext(Collections.singletonList(routeInfo))
+                .verifyComplete();
+
+        StepVerifier
+                .create(cacheService.getInbound(missedCityInfo))
+                .verifyComplete();
+
+        verify(cacheHitFindByDestiny).mark();
+        verify(cacheMissFindByDestiny).mark();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void get_cityinfos_works_as_expected_near_cache_redis_and_miss_case() {
+
+        // given
+        CityInfo nearCachedCityInfo = new CityInfo("near city", "near country");
+        CityInfo cachedCityInfo = new CityInfo("cached city", "cached country");
+        CityInfo missedCityInfo = new CityInfo("missed city", "missed country");
+
+        List<RouteInfo> nearCachedRouteInfos = Collections.singletonList(routeInfo(nearCachedCityInfo));
+        List<RouteInfo> cachedRouteInfos = Collections.singletonList(routeInfo(cachedCityInfo));
+
+        nearCacheCityInfoToRouteInfos.put(nearCachedCityInfo, nearCachedRouteInfos);
+
+        when(cityInfoToRouteInfos.executePipelined(any(RedisCallback.class), any()))
+                .thenReturn(Arrays.asList(cachedRouteInfos, TimeUnit.HOURS.toMillis(1), Collections.emptyList(), -2L));
+
+        // when - then
+        StepVerifier
+                .create(cacheService.get(Arrays.asList(nearCachedCityInfo, cachedCityInfo, missedCityInfo), cityInfo -> Mono.empty()))
+                .assertNext(results -> {
+                    assertEquals(2, results.size());
+                    assertEquals(nearCachedRouteInfos, results.get(nearCachedCityInfo));
+                    assertEquals(cachedRouteInfos, results.get(cachedCityInfo));
+                })
+                .verifyComplete();
+
+        // Note: one pipeline for the two near cache misses.
+        verify(cityInfoToRouteInfos, times(1)).executePipelined(any(RedisCallback.class), any());
+        verify(nearCacheHitFindByCityInfo, times(1)).mark();
+        verify(nearCacheMissFindByCityInfo, times(2)).mark();
+        verify(cacheHitFindByCityInfo, times(1)).mark();
+        verify(cacheMissFindByCityInfo, times(1)).mark();
+        assertEquals(cachedRouteInfos, nearCacheCityInfoToRouteInfos.getIfPresent(cachedCityInfo));
+    }
+
     @Test
     public void get_routeid_works_as_expected_cache_hit_case() {
 
@@ -97,6 +256,38 @@ public class CacheServiceTest {
 
     }
 
+    @Test
+    public void get_routeid_works_as_expected_near_cache_hit_case() {
+
+        // given
+        CityInfo originCityInfo = new CityInfo("origin city", "origin country");
+        CityInfo destinyCityInfo = new CityInfo("destiny city", "destiny country");
+
+        Instant departureTime = Instant.now();
+        long timeToArrive = TimeUnit.SECONDS.convert(2, TimeUnit.HOURS);
+        Instant arrivalTime = departureTime.plusSeconds(timeToArrive);
+
+        String routeId = "xyz";
+        RouteInfo result = new RouteInfo(routeId, originCityInfo, destinyCityInfo, departureTime, arrivalTime);
+
+        when(routeIdToRouteInfo.opsForValue())
+                .thenReturn(routeIdToRouteInfoValueOps);
+
+        when(routeIdToRouteInfoValueOps.get(routeId))
+                .thenReturn(result);
+
+        // when - then
+        StepVerifier
+                .create(cacheService.get(routeId).then(cacheService.get(routeId)))
+                .expectNext(result)
+                .verifyComplete();
+
+        verify(routeIdToRouteInfoValueOps, times(1)).get(routeId);
+        verify(nearCacheMissFindByRouteId, times(1)).mark();
+        verify(nearCacheHitFindByRouteId, times(1)).mark();
+        verify(cacheHitFindByRouteId, times(1)).mark();
+    }
+
     @Test
     public void get_routeid_works_as_expected_cache_miss_case() {
 
@@ -136,10 +327,10 @@ public class CacheServiceTest {
 
         CityInfo cityInfo = new CityInfo("origin-name", "origin-country");
 
-        when(cityInfoToRouteInfos.opsForValue())
-                .thenReturn(cityInfoToRouteInfosValueOps);
+        when(cityInfoToRouteInfos.<String, RouteInfo>opsForHash())
+                .thenReturn(cityInfoToRouteInfosHashOps);
 
-        when(cityInfoToRouteInfosValueOps.get(cityInfo))
+        when(cityInfoToRouteInfosHashOps.values(cityInfo))
                 .thenReturn(result);
 
 
@@ -156,11 +347,11 @@ public class CacheServiceTest {
         // given
         CityInfo cityInfo = new CityInfo("origin-name", "origin-country");
 
-        when(cityInfoToRouteInfos.opsForValue())
-                .thenReturn(cityInfoToRouteInfosValueOps);
+        when(cityInfoToRouteInfos.<String, RouteInfo>opsForHash())
+                .thenReturn(cityInfoToRouteInfosHashOps);
 
-        when(cityInfoToRouteInfosValueOps.get(cityInfo))
-                .thenReturn(null);
+        when(cityInfoToRouteInfosHashOps.values(cityInfo))
+                .thenReturn(Collections.emptyList());
 
         // when - then
         StepVerifier
@@ -193,6 +384,31 @@ public class CacheServiceTest {
         verify(cityInfoRouteInfosRedisOperations, times(1)).delete(cityInfo);
     }
 
+    @Test
+    public void remove_cityinfo_invalidates_near_cache() {
+
+        // given
+        CityInfo cityInfo = new CityInfo("origin-name", "origin-country");
+        nearCacheCityInfoToRouteInfos.put(cityInfo, Collections.emptyList());
+
+        when(cityInfoToRouteInfos.opsForValue())
+                .thenReturn(cityInfoToRouteInfosValueOps);
+
+        when(cityInfoToRouteInfosValueOps.getOperations())
+                .thenReturn(cityInfoRouteInfosRedisOperations);
+
+        when(cityInfoRouteInfosRedisOperations.delete(cityInfo))
+                .thenReturn(true);
+
+        // when
+        StepVerifier.create(cacheService.remove(cityInfo))
+                .expectNext(true)
+                .verifyComplete();
+
+        // then
+        assertNull(nearCacheCityInfoToRouteInfos.getIfPresent(cityInfo));
+    }
+
     @Test
     public void remove_routeid_works_as_expected() {
 
@@ -219,6 +435,7 @@ public class CacheServiceTest {
     }
 
     @Test
+    @SuppressWarnings("unchecked")
     public void upsert_cityinfo_routeinfo_works_as_expected() {
 
         // given
@@ -231,10 +448,29 @@ public class CacheServiceTest {
         long timeToArrive = TimeUnit.SECONDS.convert(2, TimeUnit.HOURS);
         Instant arrivalTime = departureTime.plusSeconds(timeToArrive);
 
-        RouteInfo routeInfo = new RouteInfo(null, originCityInfo, destinyCityInfo, departureTime, arrivalTime);
+        String routeId = UUID.randomUUID().toString();
+        RouteInfo routeInfo = new RouteInfo(routeId, originCityInfo, destinyCityInfo, departureTime, arrivalTime);
 
-        when(cityInfoToRouteInfos.opsForValue())
-                .thenReturn(cityInfoToRouteInfosValueOps);
+        RedisSerializer<CityInfo> cityKeySerializer = mock(RedisSerializer.class);
+        when(cityKeySerializer.serialize(cityInfo)).thenReturn("city".getBytes(StandardCharsets.UTF_8));
+        RedisSerializer<CityInfo> departuresKeySerializer = mock(RedisSerializer.class);
+        when(departuresKeySerializer.serialize(cityInfo)).thenReturn("departures".getBytes(StandardCharsets.UTF_8));
+
+        when(cityInfoToRouteInfos.getKeySerializer()).thenReturn((RedisSerializer) cityKeySerializer);
+        when(cityInfoToDepartures.getKeySerializer()).thenReturn((RedisSerializer) departuresKeySerializer);
+        when(cityInfoToRouteInfos.getHashKeySerializer()).thenReturn((RedisSerializer) new StringRedisSerializer());
+        when(cityInfoToRouteInfos.getHashValueSerializer()).thenReturn((RedisSerializer) new BinaryRouteInfoRedisSerializer(null));
+
+        RedisConnection redisConnection = mock(RedisConnection.class);
+        List<Object> evalArguments = new ArrayList<>();
+        when(redisConnection.eval(any(byte[].class), eq(ReturnType.INTEGER), eq(2), any()))
+                .thenAnswer(invocation -> {
+                    evalArguments.addAll(Arrays.asList(invocation.getArguments()).subList(3, invocation.getArguments().length));
+                    return 1L;
+                });
+
+        when(cityInfoToRouteInfos.execute(any(RedisCallback.class)))
+                .thenAnswer(invocation -> ((RedisCallback<Long>) invocation.getArgument(0)).doInRedis(redisConnection));
 
         List<RouteInfo> routeInfos = Collections.singletonList(routeInfo);
 
@@ -245,7 +481,49 @@ public class CacheServiceTest {
                 .expectNext(result)
                 .verifyComplete();
 
-        verify(cityInfoToRouteInfosValueOps).set(cityInfo, routeInfos);
+        // Note: hash, ttl and departures in one script call.
+        verify(cityInfoToRouteInfos, times(1)).execute(any(RedisCallback.class));
+        verify(cityInfoToRouteInfos, never()).opsForHash();
+        verify(cityInfoToDepartures, never()).opsForZSet();
+
+        assertEquals(8, evalArguments.size());
+        assertEquals("city", utf8(evalArguments.get(0)));
+        assertEquals("departures", utf8(evalArguments.get(1)));
+        assertEquals(String.valueOf(TimeUnit.HOURS.toMillis(1)), utf8(evalArguments.get(2)));
+        assertEquals("1", utf8(evalArguments.get(3)));
+        assertEquals(routeId, utf8(evalArguments.get(4)));
+        assertArrayEquals(RouteInfoBinaryCodec.encode(routeInfo), (byte[]) evalArguments.get(5));
+        assertEquals(String.valueOf(departureTime.toEpochMilli()), utf8(evalArguments.get(6)));
+        assertEquals(routeId, utf8(evalArguments.get(7)));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void replace_cityinfo_routeinfo_does_not_create_a_missing_entry() {
+
+        // given
+        CityInfo cityInfo = new CityInfo("origin city", "origin country");
+        RouteInfo routeInfo = routeInfo(cityInfo);
+
+        nearCacheCityInfoToRouteInfos.put(cityInfo, Collections.singletonList(routeInfo));
+
+        when(cityInfoToRouteInfos.getKeySerializer()).thenReturn(mock(RedisSerializer.class));
+        when(cityInfoToDepartures.getKeySerializer()).thenReturn(mock(RedisSerializer.class));
+        when(cityInfoToRouteInfos.getHashKeySerializer()).thenReturn((RedisSerializer) new StringRedisSerializer());
+        when(cityInfoToRouteInfos.getHashValueSerializer()).thenReturn((RedisSerializer) new BinaryRouteInfoRedisSerializer(null));
+
+        // Note: the script replies false when the city hash does not exist.
+        when(cityInfoToRouteInfos.execute(any(RedisCallback.class)))
+                .thenReturn(false);
+
+        // when - then
+        StepVerifier.create(cacheService.replace(cityInfo, routeInfo))
+                .expectNext(false)
+                .verifyComplete();
+
+        verify(cityInfoToRouteInfos, never()).opsForHash();
+        verify(cityInfoToDepartures, never()).opsForZSet();
+        assertNull(nearCacheCityInfoToRouteInfos.getIfPresent(cityInfo));
     }
 
     @Test
@@ -274,6 +552,263 @@ public class CacheServiceTest {
                 .expectNext(result)
                 .verifyComplete();
 
-        verify(routeIdToRouteInfoValueOps).set(routeId, routeInfo);
+        verify(routeIdToRouteInfoValueOps).set(routeId, routeInfo, 3600, TimeUnit.SECONDS);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void remove_stale_generations_unlinks_only_older_generation_keys_in_batches() {
+
+        // given
+        cacheKeyNamespace.setGeneration(3);
+
+        byte[] stale1 = "routes-cache:v1:route:a".getBytes(StandardCharsets.UTF_8);
+        byte[] stale2 = "routes-cache:v2:city:{\"name\":\"b\"}".getBytes(StandardCharsets.UTF_8);
+        byte[] current = "routes-cache:v3:route:c".getBytes(StandardCharsets.UTF_8);
+        byte[] newer = "routes-cache:v33:route:d".getBytes(StandardCharsets.UTF_8);
+        byte[] stale3 = "routes-cache:v0:route:e".getBytes(StandardCharsets.UTF_8);
+
+        Cursor<byte[]> cursor = mock(Cursor.class);
+        when(cursor.hasNext()).thenReturn(true, true, true, true, true, false);
+        when(cursor.next()).thenReturn(stale1, stale2, current, newer, stale3);
+
+        RedisConnection redisConnection = mock(RedisConnection.class);
+        when(redisConnection.scan(any(ScanOptions.class))).thenReturn(cursor);
+        when(redisConnection.unlink(any())).thenAnswer(invocation -> (long) invocation.getArguments().length);
+
+        when(routeIdToRouteInfo.execute(any(RedisCallback.class)))
+                .thenAnswer(invocation -> ((RedisCallback<Long>) invocation.getArgument(0)).doInRedis(redisConnection));
+
+        // when - then
+        StepVerifier.create(jedisCacheBackend.removeStaleGenerations())
+                .expectNext(3L)
+                .verifyComplete();
+
+        verify(redisConnection).unlink(stale1, stale2);
+        verify(redisConnection).unlink(stale3);
+        verify(redisConnection, never()).unlink(current);
+        verify(redisConnection, never()).unlink(newer);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void routes_seeded_starts_a_new_generation_and_invalidates_near_caches() {
+
+        // given
+        cacheKeyNamespace.setGeneration(3);
+
+        CityInfo cityInfo = new CityInfo("origin-name", "origin-country");
+        nearCacheCityInfoToRouteInfos.put(cityInfo, Collections.singletonList(routeInfo(cityInfo)));
+        nearCacheRouteIdToRouteInfo.put("route-id", routeInfo(cityInfo));
+
+        Cursor<byte[]> cursor = mock(Cursor.class);
+        when(cursor.hasNext()).thenReturn(false);
+
+        RedisConnection redisConnection = mock(RedisConnection.class);
+        when(redisConnection.incr(CacheKeyNamespace.GENERATION_KEY.getBytes(StandardCharsets.UTF_8))).thenReturn(4L);
+        when(redisConnection.scan(any(ScanOptions.class))).thenReturn(cursor);
+
+        when(routeIdToRouteInfo.execute(any(RedisCallback.class)))
+                .thenAnswer(invocation -> ((RedisCallback<Long>) invocation.getArgument(0)).doInRedis(redisConnection));
+
+        // when
+        cacheService.onRoutesSeeded(new RoutesSeededEvent(10, true));
+
+        // then
+        assertEquals(4, cacheKeyNamespace.getGeneration());
+        assertTrue(cacheKeyNamespace.isStale("routes-cache:v3:route:a".getBytes(StandardCharsets.UTF_8)));
+        assertNull(nearCacheCityInfoToRouteInfos.getIfPresent(cityInfo));
+        assertNull(nearCacheRouteIdToRouteInfo.getIfPresent("route-id"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void startup_and_routes_not_generated_follow_the_shared_generation_without_bumping_it() {
+
+        // given
+        byte[] generationKey = CacheKeyNamespace.GENERATION_KEY.getBytes(StandardCharsets.UTF_8);
+
+        RedisConnection redisConnection = mock(RedisConnection.class);
+        when(redisConnection.get(generationKey)).thenReturn("7".getBytes(StandardCharsets.UTF_8));
+
+        when(routeIdToRouteInfo.execute(any(RedisCallback.class)))
+                .thenAnswer(invocation -> ((RedisCallback<Long>) invocation.getArgument(0)).doInRedis(redisConnection));
+
+        // when
+        cacheService.onApplicationEvent(mock(ContextRefreshedEvent.class));
+        cacheService.onRoutesSeeded(new RoutesSeededEvent(0, false));
+
+        // then
+        assertEquals(7, cacheKeyNamespace.getGeneration());
+        verify(redisConnection).setNX(generationKey, CacheKeyNamespace.FIRST_GENERATION.getBytes(StandardCharsets.UTF_8));
+        verify(redisConnection, never()).incr(any());
+        verify(redisConnection, never()).scan(any(ScanOptions.class));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void refresh_generation_follows_a_bump_of_another_instance_and_invalidates_near_caches() {
+
+        // given
+        byte[] generationKey = CacheKeyNamespace.GENERATION_KEY.getBytes(StandardCharsets.UTF_8);
+
+        RedisConnection redisConnection = mock(RedisConnection.class);
+        when(redisConnection.get(generationKey)).thenReturn("3".getBytes(StandardCharsets.UTF_8), "4".getBytes(StandardCharsets.UTF_8));
+
+        when(routeIdToRouteInfo.execute(any(RedisCallback.class)))
+                .thenAnswer(invocation -> ((RedisCallback<Long>) invocation.getArgument(0)).doInRedis(redisConnection));
+
+        cacheService.refreshGeneration();
+
+        CityInfo cityInfo = new CityInfo("origin-name", "origin-country");
+        nearCacheCityInfoToRouteInfos.put(cityInfo, Collections.singletonList(routeInfo(cityInfo)));
+        nearCacheRouteIdToRouteInfo.put("route-id", routeInfo(cityInfo));
+
+        // when
+        cacheService.refreshGeneration();
+
+        // then
+        assertEquals(4, cacheKeyNamespace.getGeneration());
+        assertNull(nearCacheCityInfoToRouteInfos.getIfPresent(cityInfo));
+        assertNull(nearCacheRouteIdToRouteInfo.getIfPresent("route-id"));
+        verify(redisConnection, never()).incr(any());
+    }
+
+    @Test
+    public void get_cityinfo_stale_entry_is_served_and_refreshed_in_background() {
+
+        // given
+        CityInfo cityInfo = new CityInfo("origin city", "origin country");
+        List<RouteInfo> staleRouteInfos = Collections.singletonList(routeInfo(cityInfo));
+
+        when(cityInfoToRouteInfos.<String, RouteInfo>opsForHash())
+                .thenReturn(cityInfoToRouteInfosHashOps);
+        when(cityInfoToRouteInfosHashOps.values(cityInfo))
+                .thenReturn(staleRouteInfos);
+
+        // Note: within the last stale-ttl (300 seconds) of the entry.
+        when(cityInfoToRouteInfos.getExpire(cityInfo, TimeUnit.MILLISECONDS))
+                .thenReturn(TimeUnit.SECONDS.toMillis(10));
+
+        AtomicInteger refreshes = new AtomicInteger();
+
+        // when - then
+        StepVerifier.create(cacheService.get(cityInfo, () -> Mono.fromRunnable(refreshes::incrementAndGet)))
+                .expectNext(staleRouteInfos)
+                .verifyComplete();
+
+        assertEquals(1, refreshes.get());
+        assertEquals(1, staleHitFindByCityInfo.getCount());
+        assertEquals(0, earlyRefreshFindByCityInfo.getCount());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void get_cityinfo_window_is_sliced_in_redis_case() {
+
+        // given
+        CityInfo cityInfo = new CityInfo("origin city", "origin country");
+        RouteInfo routeInfo = routeInfo(cityInfo);
+
+        Instant departureFrom = routeInfo.getDepartureTime().minusSeconds(60);
+        Instant departureTo = routeInfo.getDepartureTime().plusSeconds(60);
+
+        when(cityInfoToRouteInfos.getKeySerializer()).thenReturn(mock(RedisSerializer.class));
+        when(cityInfoToDepartures.getKeySerializer()).thenReturn(mock(RedisSerializer.class));
+        when(cityInfoToRouteInfos.getHashValueSerializer()).thenReturn((RedisSerializer) new BinaryRouteInfoRedisSerializer(null));
+
+        // Note: the script replies with the ttl of the city entry and only the routes of the window.
+        when(cityInfoToRouteInfos.execute(any(RedisCallback.class)))
+                .thenReturn(Arrays.asList(TimeUnit.HOURS.toMillis(1), RouteInfoBinaryCodec.encode(routeInfo)));
+
+        // when - then
+        StepVerifier.create(cacheService.get(cityInfo, departureFrom, departureTo, Mono::empty))
+                .expectNext(Collections.singletonList(routeInfo))
+                .verifyComplete();
+
+        verify(cacheHitFindByCityInfo, times(1)).mark();
+        verify(cityInfoToRouteInfos, never()).opsForHash();
+        assertNull(nearCacheCityInfoToRouteInfos.getIfPresent(cityInfo));
+    }
+
+    @Test
+    public void get_cityinfo_window_is_sliced_from_near_cache_case() {
+
+        // given
+        CityInfo cityInfo = new CityInfo("origin city", "origin country");
+        Instant departureTime = Instant.now();
+
+        RouteInfo early = new RouteInfo("a", cityInfo, new CityInfo("destiny city", "destiny country"), departureTime, departureTime.plusSeconds(60));
+        RouteInfo inWindow = new RouteInfo("b", cityInfo, new CityInfo("destiny city", "destiny country"), departureTime.plusSeconds(600), departureTime.plusSeconds(660));
+        RouteInfo late = new RouteInfo("c", cityInfo, new CityInfo("destiny city", "destiny country"), departureTime.plusSeconds(1200), departureTime.plusSeconds(1260));
+
+        nearCacheCityInfoToRouteInfos.put(cityInfo, Arrays.asList(late, inWindow, early));
+
+        // when - then
+        StepVerifier.create(cacheService.get(cityInfo, departureTime.plusSeconds(1), departureTime.plusSeconds(1200), Mono::empty))
+                .expectNext(Collections.singletonList(inWindow))
+                .verifyComplete();
+
+        verify(nearCacheHitFindByCityInfo, times(1)).mark();
+        verifyZeroInteractions(cityInfoToRouteInfos, cityInfoToDepartures);
+    }
+
+    @Test
+    public void get_cityinfo_fresh_entry_is_not_refreshed() {
+
+        // given
+        CityInfo cityInfo = new CityInfo("origin city", "origin country");
+        List<RouteInfo> routeInfos = Collections.singletonList(routeInfo(cityInfo));
+
+        when(cityInfoToRouteInfos.<String, RouteInfo>opsForHash())
+                .thenReturn(cityInfoToRouteInfosHashOps);
+        when(cityInfoToRouteInfosHashOps.values(cityInfo))
+                .thenReturn(routeInfos);
+        when(cityInfoToRouteInfos.getExpire(cityInfo, TimeUnit.MILLISECONDS))
+                .thenReturn(TimeUnit.SECONDS.toMillis(3000));
+
+        // Note: loads take 1ms, so with ~45 minutes to expiry XFetch practically never fires.
+        loadFindByCityInfo.update(1, TimeUnit.MILLISECONDS);
+
+        AtomicInteger refreshes = new AtomicInteger();
+
+        // when - then
+        StepVerifier.create(cacheService.get(cityInfo, () -> Mono.fromRunnable(refreshes::incrementAndGet)))
+                .expectNext(routeInfos)
+                .verifyComplete();
+
+        assertEquals(0, refreshes.get());
+        assertEquals(0, staleHitFindByCityInfo.getCount());
+        assertEquals(0, earlyRefreshFindByCityInfo.getCount());
+    }
+
+    @Test
+    public void mark_stale_cityinfo_shortens_ttl_to_stale_window() {
+
+        // given
+        CityInfo cityInfo = new CityInfo("origin city", "origin country");
+        nearCacheCityInfoToRouteInfos.put(cityInfo, Collections.singletonList(routeInfo(cityInfo)));
+
+        when(cityInfoToRouteInfos.expire(cityInfo, TimeUnit.SECONDS.toMillis(300), TimeUnit.MILLISECONDS))
+                .thenReturn(true);
+
+        // when - then
+        StepVerifier.create(cacheService.markStale(cityInfo))
+                .expectNext(true)
+                .verifyComplete();
+
+        assertNull(nearCacheCityInfoToRouteInfos.getIfPresent(cityInfo));
+    }
+
+    private RouteInfo routeInfo(CityInfo cityInfo) {
+        Instant departureTime = Instant.now();
+        long timeToArrive = TimeUnit.SECONDS.convert(2, TimeUnit.HOURS);
+        Instant arrivalTime = departureTime.plusSeconds(timeToArrive);
+
+        return new RouteInfo(UUID.randomUUID().toString(), cityInfo, new CityInfo("destiny city", "destiny country"), departureTime, arrivalTime);
+    }
+
+    private String utf8(Object bytes) {
+        return new String((byte[]) bytes, StandardCharsets.UTF_8);
     }
-}
\ No newline at end of file
+}
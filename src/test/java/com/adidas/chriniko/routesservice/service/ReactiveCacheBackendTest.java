@@ -0,0 +1,150 @@
+package com.adidas.chriniko.routesservice.service;
+
+import com.adidas.chriniko.routesservice.configuration.RedisConfiguration;
+import com.adidas.chriniko.routesservice.dto.CityInfo;
+import com.adidas.chriniko.routesservice.dto.RouteInfo;
+import com.adidas.chriniko.routesservice.serializer.BinaryRouteInfoRedisSerializer;
+import com.adidas.chriniko.routesservice.serializer.CacheKeyNamespace;
+import com.adidas.chriniko.routesservice.serializer.CityInfoRedisSerializer;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.data.redis.core.ReactiveHashOperations;
+import org.springframework.data.redis.core.ReactiveRedisCallback;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.data.redis.core.ReactiveValueOperations;
+import org.springframework.data.redis.serializer.RedisSerializationContext;
+import org.springframework.data.redis.serializer.StringRedisSerializer;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.Mockito.*;
+
+@RunWith(MockitoJUnitRunner.class)
+public class ReactiveCacheBackendTest {
+
+    @Mock
+    private ReactiveRedisTemplate<CityInfo, List<RouteInfo>> cityInfoToRouteInfos;
+    @Mock
+    private ReactiveHashOperations<CityInfo, String, RouteInfo> cityInfoToRouteInfosHashOps;
+
+    @Mock
+    private ReactiveRedisTemplate<String, RouteInfo> routeIdToRouteInfo;
+    @Mock
+    private ReactiveValueOperations<String, RouteInfo> routeIdToRouteInfoValueOps;
+
+    @Mock
+    private ReactiveRedisTemplate<CityInfo, List<RouteInfo>> cityInfoToRoutePages;
+    @Mock
+    private ReactiveRedisTemplate<CityInfo, String> cityInfoToDepartures;
+    @Mock
+    private ReactiveRedisTemplate<CityInfo, List<RouteInfo>> cityInfoToInboundRoutes;
+
+    private ReactiveCacheBackend reactiveCacheBackend;
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+
+        reactiveCacheBackend = new ReactiveCacheBackend(cityInfoToRouteInfos, routeIdToRouteInfo, cityInfoToRoutePages, cityInfoToDepartures,
+                cityInfoToInboundRoutes, new RedisConfiguration().departureWindowScript(), new RedisConfiguration().cityUpsertScript(),
+                new RedisConfiguration().cityReplaceScript(), new CacheKeyNamespace(), 3600, 500);
+    }
+
+    @Test
+    public void get_routeid_miss_case() {
+
+        // given
+        String routeId = "xyz";
+
+        when(routeIdToRouteInfo.opsForValue())
+                .thenReturn(routeIdToRouteInfoValueOps);
+
+        when(routeIdToRouteInfoValueOps.get(routeId))
+                .thenReturn(Mono.empty());
+
+        when(routeIdToRouteInfo.getExpire(routeId))
+                .thenReturn(Mono.empty());
+
+        // when - then
+        StepVerifier
+                .create(reactiveCacheBackend.get(routeId))
+                .verifyComplete();
+    }
+
+    @Test
+    public void get_cityinfo_miss_case() {
+
+        // given
+        CityInfo cityInfo = new CityInfo("origin city", "origin country");
+
+        when(cityInfoToRouteInfos.<String, RouteInfo>opsForHash())
+                .thenReturn(cityInfoToRouteInfosHashOps);
+
+        when(cityInfoToRouteInfosHashOps.values(cityInfo))
+                .thenReturn(Flux.empty());
+
+        when(cityInfoToRouteInfos.getExpire(cityInfo))
+                .thenReturn(Mono.empty());
+
+        // when - then
+        StepVerifier
+                .create(reactiveCacheBackend.get(cityInfo))
+                .verifyComplete();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void upsert_cityinfo_writes_routes_departures_and_ttl_in_one_script_call() {
+
+        // given
+        CityInfo cityInfo = new CityInfo("origin city", "origin country");
+
+        RouteInfo first = routeInfo(cityInfo);
+        RouteInfo second = routeInfo(cityInfo);
+
+        when(cityInfoToRouteInfos.getSerializationContext())
+                .thenReturn(RedisSerializationContext.<CityInfo, List<RouteInfo>>newSerializationContext(new StringRedisSerializer())
+                        .key(new CityInfoRedisSerializer(new ObjectMapper()))
+                        .hashValue(new BinaryRouteInfoRedisSerializer(null))
+                        .build());
+
+        when(cityInfoToDepartures.getSerializationContext())
+                .thenReturn(RedisSerializationContext.<CityInfo, String>newSerializationContext(new StringRedisSerializer())
+                        .key(new CityInfoRedisSerializer(new ObjectMapper()))
+                        .build());
+
+        when(cityInfoToRouteInfos.execute(any(ReactiveRedisCallback.class)))
+                .thenReturn(Flux.just(2L));
+
+        // when - then
+        StepVerifier
+                .create(reactiveCacheBackend.upsert(cityInfo, Arrays.asList(first, second)))
+                .expectNext(Arrays.asList(first, second))
+                .verifyComplete();
+
+        verify(cityInfoToRouteInfos, times(1)).execute(any(ReactiveRedisCallback.class));
+        verify(cityInfoToRouteInfos, never()).opsForHash();
+        verify(cityInfoToRouteInfos, never()).expire(any(), any());
+        verify(cityInfoToDepartures, never()).opsForZSet();
+    }
+
+    private RouteInfo routeInfo(CityInfo cityInfo) {
+        Instant departureTime = Instant.now();
+        long timeToArrive = TimeUnit.SECONDS.convert(2, TimeUnit.HOURS);
+        Instant arrivalTime = departureTime.plusSeconds(timeToArrive);
+
+        return new RouteInfo(UUID.randomUUID().toString(), cityInfo, new CityInfo("destiny city", "destiny country"), departureTime, arrivalTime);
+    }
+}
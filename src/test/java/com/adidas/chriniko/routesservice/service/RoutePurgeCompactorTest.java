@@ -0,0 +1,79 @@
+package com.adidas.chriniko.routesservice.service;
+
+import com.adidas.chriniko.routesservice.repository.RouteRepository;
+import com.codahale.metrics.Meter;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+@RunWith(MockitoJUnitRunner.class)
+public class RoutePurgeCompactorTest {
+
+    @Mock
+    private RouteRepository routeRepository;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    private Meter purgedRoutes;
+
+    @Before
+    public void setUp() {
+        purgedRoutes = new Meter();
+
+        Mockito.when(transactionTemplate.execute(Mockito.any()))
+                .then(invocationOnMock -> invocationOnMock.<TransactionCallback<?>>getArgument(0).doInTransaction(null));
+    }
+
+    @Test
+    public void purge_stops_at_first_partial_batch_case() {
+
+        // given
+        RoutePurgeCompactor compactor = new RoutePurgeCompactor(routeRepository, transactionTemplate, purgedRoutes, true, 10, 5, 0);
+
+        Mockito.when(routeRepository.purge(10)).thenReturn(10, 10, 3);
+
+        // when
+        long purged = compactor.run();
+
+        // then
+        Assert.assertEquals(23, purged);
+        Assert.assertEquals(23, purgedRoutes.getCount());
+        Mockito.verify(transactionTemplate, Mockito.times(3)).execute(Mockito.any());
+    }
+
+    @Test
+    public void purge_is_bounded_per_run_case() {
+
+        // given
+        RoutePurgeCompactor compactor = new RoutePurgeCompactor(routeRepository, transactionTemplate, purgedRoutes, true, 10, 2, 0);
+
+        Mockito.when(routeRepository.purge(10)).thenReturn(10);
+
+        // when
+        long purged = compactor.run();
+
+        // then
+        Assert.assertEquals(20, purged);
+        Mockito.verify(routeRepository, Mockito.times(2)).purge(10);
+    }
+
+    @Test
+    public void purge_disabled_case() {
+
+        // given
+        RoutePurgeCompactor compactor = new RoutePurgeCompactor(routeRepository, transactionTemplate, purgedRoutes, false, 10, 2, 0);
+
+        // when
+        compactor.purge();
+
+        // then
+        Mockito.verifyZeroInteractions(routeRepository);
+    }
+}
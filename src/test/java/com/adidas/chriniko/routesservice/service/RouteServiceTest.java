@@ -1,29 +1,52 @@
 package com.adidas.chriniko.routesservice.service;
 
+import com.adidas.chriniko.routesservice.dto.BulkOperationResult;
+import com.adidas.chriniko.routesservice.dto.BulkRouteDelete;
+import com.adidas.chriniko.routesservice.dto.BulkRouteUpdate;
 import com.adidas.chriniko.routesservice.dto.CityInfo;
 import com.adidas.chriniko.routesservice.dto.RouteInfo;
 import com.adidas.chriniko.routesservice.entity.RouteEntity;
+import com.adidas.chriniko.routesservice.graph.RouteGraphIndex;
 import com.adidas.chriniko.routesservice.repository.RouteRepository;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.Timer;
 import org.javatuples.Pair;
+import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.InOrder;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.MockitoAnnotations;
 import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.http.HttpStatus;
+import org.springframework.transaction.support.TransactionCallback;
 import org.springframework.transaction.support.TransactionCallbackWithoutResult;
 import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.server.ResponseStatusException;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 import reactor.test.StepVerifier;
 
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
 
 @RunWith(MockitoJUnitRunner.class)
 public class RouteServiceTest {
@@ -37,12 +60,18 @@ public class RouteServiceTest {
     @Mock
     private CacheService cacheService;
 
+    @Mock
+    private RouteGraphIndex routeGraphIndex;
+
+    private Meter coalescedFindByCityInfo;
+
     private RouteService routeService;
 
     @Before
     public void setUp() {
         MockitoAnnotations.initMocks(this);
-        routeService = new RouteService(routeRepository, transactionTemplate, cacheService);
+        coalescedFindByCityInfo = new Meter();
+        routeService = new RouteService(routeRepository, transactionTemplate, cacheService, routeGraphIndex, Schedulers.elastic(), coalescedFindByCityInfo, new Meter(), new Timer(), new Timer(), 100, 1, 2, 10, 2);
     }
 
     @Test
@@ -77,7 +106,7 @@ public class RouteServiceTest {
         List<RouteEntity> routeEntities = Collections.singletonList(routeEntity);
         List<RouteInfo> routeInfos = Collections.singletonList(routeInfo);
 
-        Mockito.when(cacheService.get(originCityInfo))
+        Mockito.when(cacheService.get(Mockito.eq(originCityInfo), Mockito.any()))
                 .thenReturn(Mono.empty());
 
         Mockito.when(routeRepository.findByOrigin(originCityInfo.getName(), originCityInfo.getCountry()))
@@ -95,6 +124,52 @@ public class RouteServiceTest {
         Mockito.verify(cacheService).upsert(originCityInfo, routeInfos);
     }
 
+    @Test
+    public void find_by_cityinfo_concurrent_cache_misses_are_coalesced_case() throws Exception {
+
+        // given
+        CityInfo originCityInfo = new CityInfo("origin city", "origin country");
+
+        RouteEntity routeEntity = new RouteEntity();
+        routeEntity.setId(UUID.randomUUID().toString());
+        routeEntity.setOriginCityName(originCityInfo.getName());
+        routeEntity.setOriginCountry(originCityInfo.getCountry());
+        routeEntity.setDestinyCityName("destiny city");
+        routeEntity.setDestinyCountry("destiny country");
+        routeEntity.setDepartureTime(Instant.now());
+        routeEntity.setArrivalTime(Instant.now().plusSeconds(7200));
+
+        CountDownLatch dbLoadStarted = new CountDownLatch(1);
+        CountDownLatch releaseDbLoad = new CountDownLatch(1);
+
+        Mockito.when(cacheService.get(Mockito.eq(originCityInfo), Mockito.any()))
+                .thenReturn(Mono.empty());
+
+        Mockito.when(routeRepository.findByOrigin(originCityInfo.getName(), originCityInfo.getCountry()))
+                .thenAnswer(invocation -> {
+                    dbLoadStarted.countDown();
+                    releaseDbLoad.await(5, TimeUnit.SECONDS);
+                    return Optional.of(Collections.singletonList(routeEntity));
+                });
+
+        Mockito.when(cacheService.upsert(Mockito.eq(originCityInfo), Mockito.anyList()))
+                .thenAnswer(invocation -> Mono.just(Pair.with(originCityInfo, invocation.getArgument(1))));
+
+        // when
+        CompletableFuture<List<RouteInfo>> first = routeService.find(originCityInfo).toFuture();
+        dbLoadStarted.await(5, TimeUnit.SECONDS);
+        CompletableFuture<List<RouteInfo>> second = routeService.find(originCityInfo).toFuture();
+
+        releaseDbLoad.countDown();
+
+        // then
+        Assert.assertEquals(first.get(5, TimeUnit.SECONDS), second.get(5, TimeUnit.SECONDS));
+        Assert.assertEquals(1, coalescedFindByCityInfo.getCount());
+
+        Mockito.verify(routeRepository, Mockito.times(1)).findByOrigin(originCityInfo.getName(), originCityInfo.getCountry());
+        Mockito.verify(cacheService, Mockito.times(1)).upsert(Mockito.eq(originCityInfo), Mockito.anyList());
+    }
+
     @Test
     public void find_by_cityinfo_cache_no_result_case() {
 
@@ -103,7 +178,7 @@ public class RouteServiceTest {
         CityInfo originCityInfo = new CityInfo("origin city", "origin country");
 
 
-        Mockito.when(cacheService.get(originCityInfo))
+        Mockito.when(cacheService.get(Mockito.eq(originCityInfo), Mockito.any()))
                 .thenReturn(Mono.empty());
 
         Mockito.when(routeRepository.findByOrigin(originCityInfo.getName(), originCityInfo.getCountry()))
@@ -138,7 +213,7 @@ public class RouteServiceTest {
 
         List<RouteInfo> routeInfos = Collections.singletonList(routeInfo);
 
-        Mockito.when(cacheService.get(originCityInfo))
+        Mockito.when(cacheService.get(Mockito.eq(originCityInfo), Mockito.any()))
                 .thenReturn(Mono.just(routeInfos));
 
         // when - then
@@ -150,6 +225,364 @@ public class RouteServiceTest {
         Mockito.verifyZeroInteractions(routeRepository);
     }
 
+    @Test
+    public void find_by_cityinfos_partial_cache_hit_case() {
+
+        // given
+        Instant departureTime = Instant.now();
+        Instant arrivalTime = departureTime.plusSeconds(TimeUnit.SECONDS.convert(2, TimeUnit.HOURS));
+
+        CityInfo cachedCityInfo = new CityInfo("cached city", "cached country");
+        CityInfo missedCityInfo = new CityInfo("missed city", "missed country");
+        CityInfo emptyCityInfo = new CityInfo("empty city", "empty country");
+        CityInfo destinyCityInfo = new CityInfo("destiny city", "destiny country");
+
+        List<RouteInfo> cachedRouteInfos = Collections.singletonList(
+                new RouteInfo(UUID.randomUUID().toString(), cachedCityInfo, destinyCityInfo, departureTime, arrivalTime)
+        );
+
+        RouteEntity routeEntity = new RouteEntity();
+        routeEntity.setId(UUID.randomUUID().toString());
+        routeEntity.setOriginCityName(missedCityInfo.getName());
+        routeEntity.setOriginCountry(missedCityInfo.getCountry());
+        routeEntity.setDestinyCityName(destinyCityInfo.getName());
+        routeEntity.setDestinyCountry(destinyCityInfo.getCountry());
+        routeEntity.setDepartureTime(departureTime);
+        routeEntity.setArrivalTime(arrivalTime);
+
+        List<RouteInfo> missedRouteInfos = Collections.singletonList(
+                new RouteInfo(routeEntity.getId(), missedCityInfo, destinyCityInfo, departureTime, arrivalTime)
+        );
+
+        Map<CityInfo, List<RouteInfo>> cached = new LinkedHashMap<>();
+        cached.put(cachedCityInfo, cachedRouteInfos);
+
+        Mockito.when(cacheService.get(Mockito.eq(Arrays.asList(missedCityInfo, cachedCityInfo, emptyCityInfo)), Mockito.any()))
+                .thenReturn(Mono.just(cached));
+
+        Mockito.when(routeRepository.findByOrigins(Arrays.asList(
+                Pair.with(missedCityInfo.getName(), missedCityInfo.getCountry()),
+                Pair.with(emptyCityInfo.getName(), emptyCityInfo.getCountry())
+        ))).thenReturn(Collections.singletonList(routeEntity));
+
+        Mockito.when(cacheService.upsert(missedCityInfo, missedRouteInfos))
+                .thenReturn(Mono.just(Pair.with(missedCityInfo, missedRouteInfos)));
+
+        // when - then
+        StepVerifier
+                .create(routeService.find(Arrays.asList(missedCityInfo, cachedCityInfo, missedCityInfo, emptyCityInfo)))
+                .assertNext(results -> {
+                    Assert.assertEquals(Arrays.asList(missedCityInfo, cachedCityInfo, emptyCityInfo), new ArrayList<>(results.keySet()));
+                    Assert.assertEquals(missedRouteInfos, results.get(missedCityInfo));
+                    Assert.assertEquals(cachedRouteInfos, results.get(cachedCityInfo));
+                    Assert.assertEquals(Collections.emptyList(), results.get(emptyCityInfo));
+                })
+                .verifyComplete();
+
+        Mockito.verify(routeRepository, Mockito.times(1)).findByOrigins(Mockito.anyList());
+        Mockito.verify(routeRepository, Mockito.never()).findByOrigin(Mockito.anyString(), Mockito.anyString());
+        Mockito.verify(cacheService, Mockito.timeout(1000)).upsert(missedCityInfo, missedRouteInfos);
+    }
+
+    @Test
+    public void find_by_cityinfo_window_cache_miss_case() {
+
+        // given
+        Instant departureTime = Instant.now();
+        Instant departureFrom = departureTime.minusSeconds(3600);
+        Instant departureTo = departureTime.plusSeconds(3600);
+
+        CityInfo originCityInfo = new CityInfo("origin city", "origin country");
+        CityInfo destinyCityInfo = new CityInfo("destiny city", "destiny country");
+
+        RouteEntity routeEntity = new RouteEntity();
+        routeEntity.setId(UUID.randomUUID().toString());
+        routeEntity.setOriginCityName(originCityInfo.getName());
+        routeEntity.setOriginCountry(originCityInfo.getCountry());
+        routeEntity.setDestinyCityName(destinyCityInfo.getName());
+        routeEntity.setDestinyCountry(destinyCityInfo.getCountry());
+        routeEntity.setDepartureTime(departureTime);
+        routeEntity.setArrivalTime(departureTime.plusSeconds(7200));
+
+        List<RouteInfo> routeInfos = Collections.singletonList(
+                new RouteInfo(routeEntity.getId(), originCityInfo, destinyCityInfo, departureTime, departureTime.plusSeconds(7200))
+        );
+
+        Mockito.when(cacheService.get(Mockito.eq(originCityInfo), Mockito.eq(departureFrom), Mockito.eq(departureTo), Mockito.any()))
+                .thenReturn(Mono.empty());
+
+        Mockito.when(routeRepository.findByOriginAndDepartureTime(originCityInfo.getName(), originCityInfo.getCountry(), departureFrom, departureTo))
+                .thenReturn(Collections.singletonList(routeEntity));
+
+        Mockito.when(routeRepository.findByOrigin(originCityInfo.getName(), originCityInfo.getCountry()))
+                .thenReturn(Optional.of(Collections.singletonList(routeEntity)));
+
+        Mockito.when(cacheService.upsert(originCityInfo, routeInfos))
+                .thenReturn(Mono.just(Pair.with(originCityInfo, routeInfos)));
+
+        // when - then
+        StepVerifier
+                .create(routeService.find(originCityInfo, departureFrom, departureTo))
+                .expectNext(routeInfos)
+                .verifyComplete();
+
+        // Note: the window is read from the db, the whole city entry is loaded in the background.
+        Mockito.verify(routeRepository).findByOriginAndDepartureTime(originCityInfo.getName(), originCityInfo.getCountry(), departureFrom, departureTo);
+        Mockito.verify(cacheService, Mockito.timeout(1000)).upsert(originCityInfo, routeInfos);
+    }
+
+    @Test
+    public void find_page_by_cityinfo_cache_miss_case() {
+
+        // given
+        Instant departureTime = Instant.now();
+        Instant arrivalTime = departureTime.plusSeconds(TimeUnit.SECONDS.convert(2, TimeUnit.HOURS));
+
+        CityInfo originCityInfo = new CityInfo("origin city", "origin country");
+        CityInfo destinyCityInfo = new CityInfo("destiny city", "destiny country");
+
+        List<RouteEntity> routeEntities = new ArrayList<>();
+        List<RouteInfo> routeInfos = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            RouteEntity routeEntity = new RouteEntity();
+            routeEntity.setId(UUID.randomUUID().toString());
+            routeEntity.setOriginCityName(originCityInfo.getName());
+            routeEntity.setOriginCountry(originCityInfo.getCountry());
+            routeEntity.setDestinyCityName(destinyCityInfo.getName());
+            routeEntity.setDestinyCountry(destinyCityInfo.getCountry());
+            routeEntity.setDepartureTime(departureTime.plusSeconds(i));
+            routeEntity.setArrivalTime(arrivalTime);
+
+            routeEntities.add(routeEntity);
+            routeInfos.add(new RouteInfo(routeEntity.getId(), originCityInfo, destinyCityInfo, departureTime.plusSeconds(i), arrivalTime));
+        }
+
+        Mockito.when(cacheService.getPage(originCityInfo, "2:"))
+                .thenReturn(Mono.empty());
+
+        // Note: page size + 1, the extra route tells that there is a next page.
+        Mockito.when(routeRepository.findPageByOrigin(originCityInfo.getName(), originCityInfo.getCountry(), null, null, 3))
+                .thenReturn(routeEntities);
+
+        Mockito.when(cacheService.upsertPage(originCityInfo, "2:", routeInfos))
+                .thenReturn(Mono.just(routeInfos));
+
+        // when - then
+        StepVerifier
+                .create(routeService.find(originCityInfo, null, 2))
+                .assertNext(page -> {
+                    Assert.assertEquals(routeInfos.subList(0, 2), page.getResults());
+                    Assert.assertEquals(
+                            new PageCursor(routeInfos.get(1).getDepartureTime(), routeInfos.get(1).getId()),
+                            PageCursor.decode(page.getNextCursor())
+                    );
+                })
+                .verifyComplete();
+
+        Mockito.verify(cacheService).upsertPage(originCityInfo, "2:", routeInfos);
+    }
+
+    @Test
+    public void find_page_by_cityinfo_last_page_cache_hit_case() {
+
+        // given
+        CityInfo originCityInfo = new CityInfo("origin city", "origin country");
+        String cursor = new PageCursor(Instant.now(), UUID.randomUUID().toString()).encode();
+
+        List<RouteInfo> routeInfos = Collections.singletonList(new RouteInfo(
+                UUID.randomUUID().toString(),
+                originCityInfo,
+                new CityInfo("destiny city", "destiny country"),
+                Instant.now(),
+                Instant.now().plusSeconds(7200)
+        ));
+
+        Mockito.when(cacheService.getPage(originCityInfo, "2:" + cursor))
+                .thenReturn(Mono.just(routeInfos));
+
+        // when - then
+        StepVerifier
+                .create(routeService.find(originCityInfo, cursor, 2))
+                .assertNext(page -> {
+                    Assert.assertEquals(routeInfos, page.getResults());
+                    Assert.assertNull(page.getNextCursor());
+                })
+                .verifyComplete();
+
+        Mockito.verifyZeroInteractions(routeRepository);
+    }
+
+    @Test
+    public void find_page_by_cityinfo_invalid_input_case() {
+
+        // given
+        CityInfo originCityInfo = new CityInfo("origin city", "origin country");
+
+        // when - then
+        StepVerifier
+                .create(routeService.find(originCityInfo, "not a cursor!", 2))
+                .expectErrorMatches(error -> error instanceof ResponseStatusException
+                        && ((ResponseStatusException) error).getStatus() == HttpStatus.BAD_REQUEST)
+                .verify();
+
+        String tamperedCursor = new PageCursor(Instant.now(), "not-an-id").encode();
+        StepVerifier
+                .create(routeService.find(originCityInfo, tamperedCursor, 2))
+                .expectErrorMatches(error -> error instanceof ResponseStatusException
+                        && ((ResponseStatusException) error).getStatus() == HttpStatus.BAD_REQUEST)
+                .verify();
+
+        StepVerifier
+                .create(routeService.find(originCityInfo, null, 11))
+                .expectErrorMatches(error -> error instanceof ResponseStatusException
+                        && ((ResponseStatusException) error).getStatus() == HttpStatus.BAD_REQUEST)
+                .verify();
+
+        Mockito.verifyZeroInteractions(routeRepository, cacheService);
+    }
+
+    @Test
+    public void find_by_destiny_cache_miss_case() {
+
+        // given
+        Instant departureTime = Instant.now();
+        long timeToArrive = TimeUnit.SECONDS.convert(2, TimeUnit.HOURS);
+        Instant arrivalTime = departureTime.plusSeconds(timeToArrive);
+
+        CityInfo originCityInfo = new CityInfo("origin city", "origin country");
+        CityInfo destinyCityInfo = new CityInfo("destiny city", "destiny country");
+
+        String id = UUID.randomUUID().toString();
+        RouteInfo routeInfo = new RouteInfo(
+                id,
+                originCityInfo,
+                destinyCityInfo,
+                departureTime,
+                arrivalTime);
+
+        RouteEntity routeEntity = new RouteEntity();
+        routeEntity.setId(id);
+        routeEntity.setOriginCityName(originCityInfo.getName());
+        routeEntity.setOriginCountry(originCityInfo.getCountry());
+        routeEntity.setDestinyCityName(destinyCityInfo.getName());
+        routeEntity.setDestinyCountry(destinyCityInfo.getCountry());
+        routeEntity.setDepartureTime(departureTime);
+        routeEntity.setArrivalTime(arrivalTime);
+
+        List<RouteInfo> routeInfos = Collections.singletonList(routeInfo);
+
+        Mockito.when(cacheService.getInbound(destinyCityInfo))
+                .thenReturn(Mono.empty());
+
+        Mockito.when(routeRepository.findByDestiny(destinyCityInfo.getName(), destinyCityInfo.getCountry()))
+                .thenReturn(Collections.singletonList(routeEntity));
+
+        Mockito.when(cacheService.upsertInbound(destinyCityInfo, routeInfos))
+                .thenReturn(Mono.just(routeInfos));
+
+        // when - then
+        StepVerifier
+                .create(routeService.findByDestiny(destinyCityInfo))
+                .expectNext(routeInfos)
+                .verifyComplete();
+
+        Mockito.verify(cacheService).upsertInbound(destinyCityInfo, routeInfos);
+    }
+
+    @Test
+    public void stream_by_cityinfo_closes_cursor_case() {
+
+        // given
+        Instant departureTime = Instant.now();
+        Instant arrivalTime = departureTime.plusSeconds(TimeUnit.SECONDS.convert(2, TimeUnit.HOURS));
+
+        CityInfo originCityInfo = new CityInfo("origin city", "origin country");
+        CityInfo destinyCityInfo = new CityInfo("destiny city", "destiny country");
+
+        List<RouteEntity> routeEntities = new ArrayList<>();
+        List<RouteInfo> routeInfos = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            RouteEntity routeEntity = new RouteEntity();
+            routeEntity.setId(UUID.randomUUID().toString());
+            routeEntity.setOriginCityName(originCityInfo.getName());
+            routeEntity.setOriginCountry(originCityInfo.getCountry());
+            routeEntity.setDestinyCityName(destinyCityInfo.getName());
+            routeEntity.setDestinyCountry(destinyCityInfo.getCountry());
+            routeEntity.setDepartureTime(departureTime);
+            routeEntity.setArrivalTime(arrivalTime);
+
+            routeEntities.add(routeEntity);
+            routeInfos.add(new RouteInfo(routeEntity.getId(), originCityInfo, destinyCityInfo, departureTime, arrivalTime));
+        }
+
+        AtomicBoolean cursorClosed = new AtomicBoolean(false);
+        Mockito.when(routeRepository.streamByOrigin(originCityInfo.getName(), originCityInfo.getCountry(), 100))
+                .thenReturn(routeEntities.stream().onClose(() -> cursorClosed.set(true)));
+
+        // when - then
+        StepVerifier
+                .create(routeService.stream(originCityInfo), 1)
+                .expectNext(routeInfos.get(0))
+                .thenRequest(2)
+                .expectNext(routeInfos.get(1), routeInfos.get(2))
+                .verifyComplete();
+
+        Assert.assertTrue(cursorClosed.get());
+        Mockito.verifyZeroInteractions(cacheService);
+    }
+
+    @Test
+    public void stream_by_cityinfo_over_max_concurrent_streams_case() throws Exception {
+
+        // given
+        Instant departureTime = Instant.now();
+        CityInfo originCityInfo = new CityInfo("origin city", "origin country");
+        CityInfo destinyCityInfo = new CityInfo("destiny city", "destiny country");
+
+        RouteEntity routeEntity = new RouteEntity(
+                originCityInfo.getName(), originCityInfo.getCountry(),
+                destinyCityInfo.getName(), destinyCityInfo.getCountry(),
+                departureTime, departureTime.plusSeconds(TimeUnit.SECONDS.convert(2, TimeUnit.HOURS))
+        );
+        routeEntity.setId(UUID.randomUUID().toString());
+
+        CountDownLatch cursorOpened = new CountDownLatch(1);
+        CountDownLatch cursorClosed = new CountDownLatch(1);
+
+        // Note: the first cursor never ends, the next ones are empty.
+        Mockito.when(routeRepository.streamByOrigin(originCityInfo.getName(), originCityInfo.getCountry(), 100))
+                .thenAnswer(invocation -> {
+                    cursorOpened.countDown();
+                    return Stream.generate(() -> routeEntity).onClose(cursorClosed::countDown);
+                })
+                .thenAnswer(invocation -> Stream.<RouteEntity>empty());
+
+        // Note: never requests, so the stream stays open (max concurrent streams is 1).
+        Disposable openStream = routeService.stream(originCityInfo).subscribe(routeInfo -> {}, error -> {}, () -> {}, subscription -> {});
+        Assert.assertTrue(cursorOpened.await(5, TimeUnit.SECONDS));
+
+        // when - then
+        StepVerifier
+                .create(routeService.stream(originCityInfo))
+                .expectErrorMatches(error -> error instanceof ResponseStatusException
+                        && ((ResponseStatusException) error).getStatus() == HttpStatus.SERVICE_UNAVAILABLE)
+                .verify();
+
+        Assert.assertEquals(1, cursorClosed.getCount());
+
+        // when
+        openStream.dispose();
+
+        // then
+        Assert.assertTrue(cursorClosed.await(5, TimeUnit.SECONDS));
+
+        StepVerifier
+                .create(routeService.stream(originCityInfo))
+                .verifyComplete();
+
+        Mockito.verify(routeRepository, Mockito.times(2)).streamByOrigin(originCityInfo.getName(), originCityInfo.getCountry(), 100);
+    }
+
     @Test
     public void create() {
 
@@ -178,6 +611,12 @@ public class RouteServiceTest {
         routeEntity.setDepartureTime(departureTime);
         routeEntity.setArrivalTime(arrivalTime);
 
+        Mockito.when(cacheService.removePages(originCityInfo))
+                .thenReturn(Mono.just(true));
+
+        Mockito.when(cacheService.removeInbound(destinyCityInfo))
+                .thenReturn(Mono.just(true));
+
         Mockito.when(transactionTemplate.execute(Mockito.any(TransactionCallbackWithoutResult.class)))
                 .then(invocationOnMock -> {
                     routeRepository.insert(routeEntity);
@@ -192,6 +631,212 @@ public class RouteServiceTest {
 
         Mockito.verify(transactionTemplate).execute(Mockito.any(TransactionCallbackWithoutResult.class));
         Mockito.verify(routeRepository).insert(Mockito.any(RouteEntity.class));
+        Mockito.verify(routeGraphIndex).add(routeInfo);
+        Mockito.verify(cacheService, Mockito.timeout(1000)).removePages(originCityInfo);
+        Mockito.verify(cacheService, Mockito.timeout(1000)).removeInbound(destinyCityInfo);
+    }
+
+    @Test
+    public void ingest_writes_in_chunks_case() {
+
+        // given
+        Instant departureTime = Instant.now();
+        long timeToArrive = TimeUnit.SECONDS.convert(2, TimeUnit.HOURS);
+        Instant arrivalTime = departureTime.plusSeconds(timeToArrive);
+
+        CityInfo originCityInfo = new CityInfo("origin city", "origin country");
+        CityInfo destinyCityInfo = new CityInfo("destiny city", "destiny country");
+
+        List<RouteInfo> routeInfos = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            routeInfos.add(new RouteInfo(null, originCityInfo, destinyCityInfo, departureTime, arrivalTime));
+        }
+
+        Mockito.when(cacheService.markStale(originCityInfo))
+                .thenReturn(Mono.just(true));
+
+        Mockito.when(cacheService.removePages(originCityInfo))
+                .thenReturn(Mono.just(true));
+
+        Mockito.when(cacheService.removeInbound(destinyCityInfo))
+                .thenReturn(Mono.just(true));
+
+        Mockito.when(transactionTemplate.execute(Mockito.any(TransactionCallbackWithoutResult.class)))
+                .then(invocationOnMock -> {
+                    routeRepository.batchInsert(Collections.emptyList());
+                    return null;
+                });
+
+        // when - then
+        StepVerifier
+                .create(routeService.ingest(Flux.fromIterable(routeInfos)))
+                .assertNext(progress -> {
+                    Assert.assertEquals(1, progress.getChunk());
+                    Assert.assertEquals(2, progress.getChunkRoutes());
+                    Assert.assertEquals(2, progress.getTotalRoutes());
+                })
+                .assertNext(progress -> {
+                    Assert.assertEquals(2, progress.getChunk());
+                    Assert.assertEquals(1, progress.getChunkRoutes());
+                    Assert.assertEquals(3, progress.getTotalRoutes());
+                })
+                .verifyComplete();
+
+        // Note: one transaction, one graph write and one cache invalidation per chunk.
+        Mockito.verify(transactionTemplate, Mockito.times(2)).execute(Mockito.any(TransactionCallbackWithoutResult.class));
+        Mockito.verify(routeGraphIndex, Mockito.times(2)).addAll(Mockito.anyList());
+        Mockito.verify(cacheService, Mockito.timeout(1000).times(2)).markStale(originCityInfo);
+        Mockito.verify(cacheService, Mockito.timeout(1000).times(2)).removePages(originCityInfo);
+        Mockito.verify(cacheService, Mockito.timeout(1000).times(2)).removeInbound(destinyCityInfo);
+
+        Assert.assertTrue(routeInfos.stream().allMatch(routeInfo -> routeInfo.getId() != null));
+    }
+
+    @Test
+    public void bulk_update_by_origin_case() {
+
+        // given
+        Instant departureTime = Instant.now();
+        long timeToArrive = TimeUnit.SECONDS.convert(2, TimeUnit.HOURS);
+        Instant arrivalTime = departureTime.plusSeconds(timeToArrive);
+
+        CityInfo originCityInfo = new CityInfo("origin city", "origin country");
+        CityInfo destinyCityInfo = new CityInfo("destiny city", "destiny country");
+        CityInfo newDestinyCityInfo = new CityInfo("new destiny city", "destiny country");
+
+        List<RouteEntity> routeEntities = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            RouteEntity routeEntity = new RouteEntity();
+            routeEntity.setOriginCityName(originCityInfo.getName());
+            routeEntity.setOriginCountry(originCityInfo.getCountry());
+            routeEntity.setDestinyCityName(destinyCityInfo.getName());
+            routeEntity.setDestinyCountry(destinyCityInfo.getCountry());
+            routeEntity.setDepartureTime(departureTime);
+            routeEntity.setArrivalTime(arrivalTime);
+            routeEntities.add(routeEntity);
+        }
+        List<String> ids = Arrays.asList(routeEntities.get(0).getId(), routeEntities.get(1).getId());
+
+        Mockito.when(transactionTemplate.execute(Mockito.any()))
+                .then(invocationOnMock -> invocationOnMock.<TransactionCallback<?>>getArgument(0).doInTransaction(null));
+
+        Mockito.when(routeRepository.findByOriginForUpdate(originCityInfo.getName(), originCityInfo.getCountry()))
+                .thenReturn(routeEntities);
+
+        Mockito.when(routeRepository.bulkUpdate(ids, 3600L, newDestinyCityInfo.getName(), newDestinyCityInfo.getCountry()))
+                .thenReturn(2);
+
+        Mockito.when(cacheService.removeAll(ids)).thenReturn(Mono.just(2L));
+        Mockito.when(cacheService.remove(originCityInfo)).thenReturn(Mono.just(true));
+        Mockito.when(cacheService.removePages(originCityInfo)).thenReturn(Mono.just(true));
+        Mockito.when(cacheService.removeInbound(Mockito.any(CityInfo.class))).thenReturn(Mono.just(true));
+
+        // when - then
+        StepVerifier
+                .create(routeService.update(new BulkRouteUpdate(null, originCityInfo, 3600L, newDestinyCityInfo)))
+                .expectNext(new BulkOperationResult(2))
+                .verifyComplete();
+
+        Mockito.verify(routeRepository).bulkUpdate(ids, 3600L, newDestinyCityInfo.getName(), newDestinyCityInfo.getCountry());
+        Mockito.verify(routeGraphIndex).addAll(Arrays.asList(
+                new RouteInfo(ids.get(0), originCityInfo, newDestinyCityInfo, departureTime.plusSeconds(3600), arrivalTime.plusSeconds(3600)),
+                new RouteInfo(ids.get(1), originCityInfo, newDestinyCityInfo, departureTime.plusSeconds(3600), arrivalTime.plusSeconds(3600))
+        ));
+
+        // Note: one invalidation per affected city (not per route), the previous and the new destiny.
+        Mockito.verify(cacheService, Mockito.timeout(1000)).removeAll(ids);
+        Mockito.verify(cacheService, Mockito.timeout(1000)).remove(originCityInfo);
+        Mockito.verify(cacheService, Mockito.timeout(1000)).removePages(originCityInfo);
+        Mockito.verify(cacheService, Mockito.timeout(1000)).removeInbound(destinyCityInfo);
+        Mockito.verify(cacheService, Mockito.timeout(1000)).removeInbound(newDestinyCityInfo);
+        Mockito.verify(cacheService, Mockito.never()).remove(Mockito.anyString());
+    }
+
+    @Test
+    public void bulk_delete_by_ids_case() {
+
+        // given
+        CityInfo originCityInfo = new CityInfo("origin city", "origin country");
+        CityInfo destinyCityInfo = new CityInfo("destiny city", "destiny country");
+
+        RouteEntity routeEntity = new RouteEntity();
+        routeEntity.setOriginCityName(originCityInfo.getName());
+        routeEntity.setOriginCountry(originCityInfo.getCountry());
+        routeEntity.setDestinyCityName(destinyCityInfo.getName());
+        routeEntity.setDestinyCountry(destinyCityInfo.getCountry());
+
+        // Note: an unknown (or repeated) id is not an error, only the existing routes are deleted.
+        List<String> ids = Collections.singletonList(routeEntity.getId());
+
+        Mockito.when(transactionTemplate.execute(Mockito.any()))
+                .then(invocationOnMock -> invocationOnMock.<TransactionCallback<?>>getArgument(0).doInTransaction(null));
+
+        Mockito.when(routeRepository.findByIdsForUpdate(Arrays.asList(routeEntity.getId(), "unknown")))
+                .thenReturn(Collections.singletonList(routeEntity));
+
+        Mockito.when(routeRepository.bulkDelete(ids)).thenReturn(1);
+
+        Mockito.when(cacheService.removeAll(ids)).thenReturn(Mono.just(1L));
+        Mockito.when(cacheService.remove(originCityInfo)).thenReturn(Mono.just(true));
+        Mockito.when(cacheService.removePages(originCityInfo)).thenReturn(Mono.just(true));
+        Mockito.when(cacheService.removeInbound(destinyCityInfo)).thenReturn(Mono.just(true));
+
+        // when - then
+        StepVerifier
+                .create(routeService.delete(new BulkRouteDelete(Arrays.asList(routeEntity.getId(), "unknown", routeEntity.getId()), null)))
+                .expectNext(new BulkOperationResult(1))
+                .verifyComplete();
+
+        Mockito.verify(routeRepository).bulkDelete(ids);
+        Mockito.verify(routeGraphIndex).removeAll(Collections.singletonList(
+                new RouteInfo(routeEntity.getId(), originCityInfo, destinyCityInfo, null, null)
+        ));
+        Mockito.verify(cacheService, Mockito.timeout(1000)).removeInbound(destinyCityInfo);
+    }
+
+    @Test
+    public void bulk_invalid_selection_case() {
+
+        // given
+        CityInfo originCityInfo = new CityInfo("origin city", "origin country");
+
+        // when - then
+        StepVerifier
+                .create(routeService.delete(new BulkRouteDelete(Collections.singletonList("id"), originCityInfo)))
+                .expectErrorMatches(error -> error instanceof ResponseStatusException
+                        && ((ResponseStatusException) error).getStatus() == HttpStatus.BAD_REQUEST)
+                .verify();
+
+        StepVerifier
+                .create(routeService.update(new BulkRouteUpdate(null, originCityInfo, null, null)))
+                .expectErrorMatches(error -> error instanceof ResponseStatusException
+                        && ((ResponseStatusException) error).getStatus() == HttpStatus.BAD_REQUEST)
+                .verify();
+
+        Mockito.verifyZeroInteractions(transactionTemplate, routeRepository);
+    }
+
+    @Test
+    public void find_by_routeid_jdbc_scheduler_saturated_case() {
+
+        // given
+        ExecutorService saturatedExecutor = Executors.newSingleThreadExecutor();
+        saturatedExecutor.shutdown();
+
+        routeService = new RouteService(routeRepository, transactionTemplate, cacheService, routeGraphIndex, Schedulers.fromExecutorService(saturatedExecutor), new Meter(), new Meter(), new Timer(), new Timer(), 100, 1, 2, 10, 2);
+
+        String routeId = UUID.randomUUID().toString();
+
+        Mockito.when(cacheService.get(Mockito.eq(routeId), Mockito.any()))
+                .thenReturn(Mono.empty());
+
+        // when - then
+        StepVerifier.create(routeService.find(routeId))
+                .expectErrorMatches(error -> error instanceof ResponseStatusException
+                        && ((ResponseStatusException) error).getStatus() == HttpStatus.SERVICE_UNAVAILABLE)
+                .verify();
+
+        Mockito.verifyZeroInteractions(routeRepository);
     }
 
     @Test
@@ -242,8 +887,6 @@ public class RouteServiceTest {
                 departureTime,
                 arrivalTime);
 
-        List<RouteInfo> routeInfos = Collections.singletonList(routeInfo);
-
         RouteEntity routeEntity = new RouteEntity();
         routeEntity.setId(id);
         routeEntity.setOriginCityName(originCityInfo.getName());
@@ -257,23 +900,38 @@ public class RouteServiceTest {
                 .thenReturn(Optional.of(routeEntity));
 
 
-        Mockito.when(cacheService.remove(id))
+        Mockito.when(cacheService.upsert(id, routeInfo))
+                .thenReturn(Mono.just(Pair.with(id, routeInfo)));
+
+        Mockito.when(cacheService.replace(originCityInfo, routeInfo))
                 .thenReturn(Mono.just(true));
 
-        Mockito.when(cacheService.remove(originCityInfo))
+        Mockito.when(cacheService.markStale(originCityInfo))
                 .thenReturn(Mono.just(true));
 
-        Mockito.when(cacheService.upsert(id, routeInfo))
-                .thenReturn(Mono.just(Pair.with(id, routeInfo)));
+        Mockito.when(cacheService.removePages(originCityInfo))
+                .thenReturn(Mono.just(true));
 
-        Mockito.when(cacheService.upsert(originCityInfo, routeInfo))
-                .thenReturn(Mono.just(Pair.with(originCityInfo, routeInfos)));
+        Mockito.when(cacheService.removeInbound(destinyCityInfo))
+                .thenReturn(Mono.just(true));
 
         // when - then
         StepVerifier.create(routeService.update(id, routeInfo))
                 .expectNext(routeInfo)
                 .verifyComplete();
 
+        // Note: cache is touched only after the db write, and the city entry is kept (updated, stale) instead of removed.
+        InOrder inOrder = Mockito.inOrder(transactionTemplate, cacheService);
+        inOrder.verify(transactionTemplate).execute(Mockito.any(TransactionCallbackWithoutResult.class));
+        inOrder.verify(cacheService, Mockito.timeout(1000)).upsert(id, routeInfo);
+        inOrder.verify(cacheService, Mockito.timeout(1000)).replace(originCityInfo, routeInfo);
+        inOrder.verify(cacheService, Mockito.timeout(1000)).markStale(originCityInfo);
+        inOrder.verify(cacheService, Mockito.timeout(1000)).removePages(originCityInfo);
+        inOrder.verify(cacheService, Mockito.timeout(1000)).removeInbound(destinyCityInfo);
+
+        Mockito.verify(cacheService, Mockito.never()).remove(originCityInfo);
+        Mockito.verify(cacheService, Mockito.never()).remove(id);
+        Mockito.verify(cacheService, Mockito.never()).upsert(originCityInfo, routeInfo);
     }
 
     @Test
@@ -307,7 +965,7 @@ public class RouteServiceTest {
         routeEntity.setDepartureTime(departureTime);
         routeEntity.setArrivalTime(arrivalTime);
 
-        Mockito.when(cacheService.get(routeId))
+        Mockito.when(cacheService.get(Mockito.eq(routeId), Mockito.any()))
                 .thenReturn(Mono.empty());
 
         Mockito.when(routeRepository.find(routeId))
@@ -347,7 +1005,7 @@ public class RouteServiceTest {
                 departureTime,
                 arrivalTime);
 
-        Mockito.when(cacheService.get(routeId))
+        Mockito.when(cacheService.get(Mockito.eq(routeId), Mockito.any()))
                 .thenReturn(Mono.just(routeInfo));
 
         // when - then
@@ -390,7 +1048,7 @@ public class RouteServiceTest {
         routeEntity.setDepartureTime(departureTime);
         routeEntity.setArrivalTime(arrivalTime);
 
-        Mockito.when(cacheService.get(routeId))
+        Mockito.when(cacheService.get(Mockito.eq(routeId), Mockito.any()))
                 .thenReturn(Mono.empty());
 
         Mockito.when(routeRepository.find(routeId))
@@ -459,6 +1117,12 @@ public class RouteServiceTest {
         Mockito.when(cacheService.remove(routeEntity.getId()))
                 .thenReturn(Mono.just(true));
 
+        Mockito.when(cacheService.removePages(originCityInfo))
+                .thenReturn(Mono.just(true));
+
+        Mockito.when(cacheService.removeInbound(destinyCityInfo))
+                .thenReturn(Mono.just(true));
+
         Mockito.when(transactionTemplate.execute(Mockito.any(TransactionCallbackWithoutResult.class)))
                 .then(invocationOnMock -> {
                     routeRepository.delete(routeEntity);